@@ -0,0 +1,368 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.benchmark.MessageCodecBenchmark.BenchmarkMessage;
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.network.message.GameStateMessage;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.ship.BombPlanet;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.ShootShip;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.player.Player;
+import com.evervoid.state.player.ResourceAmount;
+import com.evervoid.state.prop.Pathfinder;
+import com.evervoid.state.prop.Ship;
+
+/**
+ * The baseline of the performance of the hot paths of the game: Json parsing, serialization and hashing, game state
+ * construction from Json and copying, galaxy generation, path finding, grid lookups, resource arithmetic, state and turn
+ * queries and message splitting. Every input is generated from a fixed seed, on each of the {@link BenchmarkStates} sizes, so
+ * that two runs on the same machine measure the same work. The results can be saved to a file, and a later run compared
+ * against them: <code>BaselineBenchmark [-save &lt;file&gt;] [-compare &lt;file&gt;]</code>
+ */
+public class BaselineBenchmark
+{
+	/**
+	 * Number of grid lookups per solar system in the SolarSystem.getPropsAt benchmark.
+	 */
+	private static final int sLookupsPerSystem = 200;
+	/**
+	 * Number of operations of each kind in the ResourceAmount benchmark.
+	 */
+	private static final int sResourceOperations = 1000;
+	/**
+	 * Number of ships the path finding benchmarks find paths and destinations for.
+	 */
+	private static final int sPathSamples = 40;
+	/**
+	 * The results of the benchmarks, in nanoseconds per operation, by name.
+	 */
+	private static final Map<String, Double> sResults = new LinkedHashMap<String, Double>();
+
+	/**
+	 * Compares the results of this run against the ones saved in a file, and prints how much faster or slower each benchmark
+	 * got.
+	 * 
+	 * @param file
+	 *            The file holding the baseline results
+	 */
+	private static void compare(final File file)
+	{
+		final Map<String, Double> baseline = new LinkedHashMap<String, Double>();
+		for (final Json result : Json.fromFile(file).getListAttribute("results")) {
+			baseline.put(result.getStringAttribute("name"), result.getDoubleAttribute("time"));
+		}
+		header("Compared to " + file);
+		for (final Map.Entry<String, Double> result : sResults.entrySet()) {
+			final Double before = baseline.get(result.getKey());
+			if (before == null) {
+				System.out.println(String.format(Locale.US, "%-64s %12s", result.getKey(), "new"));
+				continue;
+			}
+			System.out.println(String.format(Locale.US, "%-64s %12.3f ms/op -> %12.3f ms/op (x%.2f)", result.getKey(),
+					before / 1e6, result.getValue() / 1e6, before / result.getValue()));
+		}
+	}
+
+	/**
+	 * @param state
+	 *            The state
+	 * @return The ships of the state that are in a solar system, by ID
+	 */
+	private static List<Ship> getSortedShips(final EVGameState state)
+	{
+		final List<Ship> ships = new ArrayList<Ship>();
+		for (final Ship ship : state.getAllShips()) {
+			if (ship.getContainer() instanceof SolarSystem) {
+				ships.add(ship);
+			}
+		}
+		Collections.sort(ships, new Comparator<Ship>()
+		{
+			@Override
+			public int compare(final Ship a, final Ship b)
+			{
+				return a.getID() - b.getID();
+			}
+		});
+		return ships;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Optionally, "-save" and a file to save the results to, and "-compare" and a file holding the results of a
+	 *            previous run to compare against
+	 */
+	public static void main(final String[] args)
+	{
+		File save = null;
+		File baseline = null;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-save")) {
+				save = new File(args[++i]);
+			}
+			else if (args[i].equals("-compare")) {
+				baseline = new File(args[++i]);
+			}
+		}
+		runGalaxyGeneration();
+		runResourceAmounts();
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			runState(size);
+		}
+		if (baseline != null) {
+			compare(baseline);
+		}
+		if (save != null) {
+			// Attribute names are not case-sensitive, so the names of the benchmarks are stored as values
+			final List<Json> results = new ArrayList<Json>();
+			for (final Map.Entry<String, Double> result : sResults.entrySet()) {
+				results.add(new Json().setAttribute("name", result.getKey()).setAttribute("time", result.getValue()));
+			}
+			new Json().setListAttribute("results", results).toFile(save);
+			System.out.println("Saved the results to " + save);
+		}
+	}
+
+	/**
+	 * Runs an operation through the {@link BenchmarkRunner} and records its result.
+	 * 
+	 * @param name
+	 *            The name under which to report and record the result
+	 * @param warmup
+	 *            Number of untimed warmup iterations
+	 * @param iterations
+	 *            Number of timed iterations
+	 * @param operation
+	 *            The operation to time
+	 */
+	private static void record(final String name, final int warmup, final int iterations, final Runnable operation)
+	{
+		sResults.put(name, run(name, warmup, iterations, operation));
+	}
+
+	/**
+	 * Benchmarks the generation of a whole galaxy, solar systems and their contents included, for each number of players.
+	 */
+	private static void runGalaxyGeneration()
+	{
+		header("Galaxy generation");
+		final StateSize[] sizes = BenchmarkStates.sSizes;
+		for (int i = 0; i < sizes.length; i++) {
+			if (i > 0 && sizes[i].players == sizes[i - 1].players && sizes[i].seed == sizes[i - 1].seed) {
+				continue; // Only the fleets differ, and they are not part of the generation
+			}
+			final StateSize size = sizes[i];
+			record("Galaxy generation, " + size.players + " players", 3, 10, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(BenchmarkStates.generate(size.players, size.seed));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Benchmarks the ResourceAmount arithmetic done for incomes and construction costs: adding up incomes, checking whether
+	 * costs can be paid, paying them, and splitting costs over construction turns.
+	 */
+	private static void runResourceAmounts()
+	{
+		header("Resource amounts");
+		final Player player = BenchmarkStates.generate(BenchmarkStates.sSizes[0]).getPlayers().get(0);
+		final ResourceAmount resources = player.getResources();
+		final ResourceAmount cost = resources.divide(100);
+		record("ResourceAmount add, contains, subtract and divide x" + sResourceOperations, 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ResourceAmount total = resources.emptyClone();
+				for (int i = 0; i < sResourceOperations; i++) {
+					total = total.add(cost);
+					if (total.contains(cost)) {
+						total = total.subtract(cost.divide(2));
+					}
+				}
+				consume(total);
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks the hot paths on a state of the given size.
+	 * 
+	 * @param size
+	 *            The size of the state
+	 */
+	private static void runState(final StateSize size)
+	{
+		final EVGameState state = BenchmarkStates.generate(size);
+		final Json stateJson = state.toJson();
+		final String stateText = stateJson.toString();
+		final Random random = new Random(size.seed);
+		header(size + ", " + state.getAllShips().size() + " ships, " + stateText.length() / 1024 + " KB of Json");
+		final String prefix = size + ": ";
+		record(prefix + "Json parse", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(Json.fromString(stateText));
+			}
+		});
+		record(prefix + "Json serialize", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(stateJson.toString());
+			}
+		});
+		// Hashes are cached in the tree, so each iteration hashes a fresh one
+		record(prefix + "Json parse and hash", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(Json.fromString(stateText).getHash());
+			}
+		});
+		record(prefix + "EVGameState from Json", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try {
+					consume(new EVGameState(stateJson));
+				}
+				catch (final BadJsonInitialization e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		record(prefix + "EVGameState.clone", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(state.clone());
+			}
+		});
+		// Sample ships and destinations
+		final List<Ship> ships = new ArrayList<Ship>();
+		final List<GridLocation> destinations = new ArrayList<GridLocation>();
+		final Pathfinder pathfinder = new Pathfinder();
+		for (final Ship ship : getSortedShips(state)) {
+			if (ships.size() == sPathSamples) {
+				break;
+			}
+			final List<GridLocation> valid = new ArrayList<GridLocation>(pathfinder.getValidDestinations(ship));
+			valid.remove(ship.getLocation());
+			if (!valid.isEmpty()) {
+				Collections.sort(valid, new Comparator<GridLocation>()
+				{
+					@Override
+					public int compare(final GridLocation a, final GridLocation b)
+					{
+						return a.origin.x != b.origin.x ? a.origin.x - b.origin.x : a.origin.y - b.origin.y;
+					}
+				});
+				ships.add(ship);
+				destinations.add(valid.get(random.nextInt(valid.size())));
+			}
+		}
+		record(prefix + "Pathfinder.findPath x" + ships.size(), 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < ships.size(); i++) {
+					consume(pathfinder.findPath(ships.get(i), destinations.get(i)));
+				}
+			}
+		});
+		record(prefix + "Pathfinder.getValidDestinations x" + ships.size(), 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final Ship ship : ships) {
+					consume(pathfinder.getValidDestinations(ship));
+				}
+			}
+		});
+		final List<SolarSystem> systems = state.getGalaxy().getSolarSystems();
+		final List<GridLocation> lookups = new ArrayList<GridLocation>();
+		for (final SolarSystem ss : systems) {
+			for (int i = 0; i < sLookupsPerSystem; i++) {
+				lookups.add(new GridLocation(random.nextInt(ss.getWidth() - 1), random.nextInt(ss.getHeight() - 1), 2, 2));
+			}
+		}
+		record(prefix + "SolarSystem.getPropsAt x" + lookups.size(), 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < lookups.size(); i++) {
+					consume(systems.get(i / sLookupsPerSystem).getPropsAt(lookups.get(i)));
+				}
+			}
+		});
+		record(prefix + "EVGameState ship, planet and income queries", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(state.getAllShips().size() + state.getAllPlanets().size());
+				for (final Player player : state.getPlayers()) {
+					consume(state.getPlanetByPlayer(player));
+					consume(state.hasLost(player));
+					consume(player.getCurrentIncome());
+				}
+			}
+		});
+		final Turn turn = BenchmarkStates.randomTurn(state, size.seed);
+		record(prefix + "Turn.getActionsOfType, " + turn.size() + " actions", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(turn.getActionsOfType(MoveShip.class));
+				consume(turn.getActionsOfType(ShootShip.class, BombPlanet.class));
+			}
+		});
+		final BenchmarkMessage message = new BenchmarkMessage(new GameStateMessage(stateJson, "Player 1"));
+		record(prefix + "EVMessage.getMessages, GameStateMessage", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(message.getParts());
+			}
+		});
+	}
+
+}
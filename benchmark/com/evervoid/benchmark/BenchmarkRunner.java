@@ -0,0 +1,115 @@
+package com.evervoid.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * A minimal microbenchmark harness: runs an operation for a number of warmup iterations (to let the JIT settle), then times a
+ * number of measured iterations and prints the results. Benchmarks are plain main() programs in this package; run them from a
+ * checkout where res/ is reachable, like the game itself.
+ */
+public class BenchmarkRunner
+{
+	/**
+	 * Results of benchmarked operations are stored here so that the JIT cannot discard the work as dead code.
+	 */
+	private static volatile Object sBlackhole;
+	/**
+	 * HotSpot's extension of the thread management bean, which can report how many bytes a thread has allocated; null if the
+	 * running JVM does not support it.
+	 */
+	private static final com.sun.management.ThreadMXBean sThreadBean = getThreadBean();
+
+	/**
+	 * Stores a benchmark result so that the JIT cannot optimize its computation away.
+	 * 
+	 * @param result
+	 *            The result to consume
+	 */
+	public static void consume(final Object result)
+	{
+		sBlackhole = result;
+	}
+
+	/**
+	 * @return The number of bytes allocated by the current thread so far, or -1 if the JVM cannot tell
+	 */
+	private static long getAllocatedBytes()
+	{
+		if (sThreadBean == null) {
+			return -1;
+		}
+		return sThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return The thread bean if it supports allocation measurement, null otherwise
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean()
+	{
+		try {
+			final Object bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+				((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+				return (com.sun.management.ThreadMXBean) bean;
+			}
+		}
+		catch (final LinkageError e) {
+			// Not a HotSpot JVM
+		}
+		return null;
+	}
+
+	/**
+	 * Prints a header line for a group of benchmarks.
+	 * 
+	 * @param title
+	 *            The title of the group
+	 */
+	public static void header(final String title)
+	{
+		System.out.println();
+		System.out.println("=== " + title + " ===");
+	}
+
+	/**
+	 * Times an operation and prints the average and best time per operation, as well as the number of bytes it allocates when
+	 * the JVM can measure it.
+	 * 
+	 * @param name
+	 *            The name under which to report the results
+	 * @param warmup
+	 *            Number of untimed warmup iterations
+	 * @param iterations
+	 *            Number of timed iterations
+	 * @param operation
+	 *            The operation to time
+	 * @return The average time per operation, in nanoseconds
+	 */
+	public static double run(final String name, final int warmup, final int iterations, final Runnable operation)
+	{
+		for (int i = 0; i < warmup; i++) {
+			operation.run();
+		}
+		long total = 0;
+		long best = Long.MAX_VALUE;
+		final long allocatedBefore = getAllocatedBytes();
+		for (int i = 0; i < iterations; i++) {
+			final long start = System.nanoTime();
+			operation.run();
+			final long elapsed = System.nanoTime() - start;
+			total += elapsed;
+			best = Math.min(best, elapsed);
+		}
+		final long allocated = getAllocatedBytes() - allocatedBefore;
+		final double average = (double) total / iterations;
+		String line = String.format(Locale.US, "%-48s %12.3f ms/op (best %.3f ms, %d ops)", name, average / 1e6, best / 1e6,
+				iterations);
+		if (allocatedBefore != -1) {
+			line += String.format(Locale.US, " %12.1f KB/op allocated", allocated / 1024.0 / iterations);
+		}
+		System.out.println(line);
+		return average;
+	}
+}
@@ -0,0 +1,232 @@
+package com.evervoid.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.action.IllegalEVActionException;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.data.GameData;
+import com.evervoid.state.data.RaceData;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.player.Player;
+import com.evervoid.state.prop.Ship;
+import com.evervoid.utils.MathUtils;
+import com.jme3.math.FastMath;
+
+/**
+ * Builds reproducible game states for benchmarks. All of the galaxy generation randomness goes through {@link FastMath#rand},
+ * so seeding it before generating a state makes the generated galaxy identical from one run to the next.
+ */
+public class BenchmarkStates
+{
+	/**
+	 * A size of generated game state: a number of players, plus a number of extra ships added to every solar system on top of
+	 * the regular random population.
+	 */
+	public static class StateSize
+	{
+		/**
+		 * Extra ships per solar system.
+		 */
+		public final int fleet;
+		/**
+		 * Number of (non-neutral) players.
+		 */
+		public final int players;
+		/**
+		 * The seed for the random number generator.
+		 */
+		public final long seed;
+
+		/**
+		 * @param players
+		 *            Number of (non-neutral) players
+		 * @param fleet
+		 *            Extra ships per solar system
+		 * @param seed
+		 *            The seed for the random number generator
+		 */
+		public StateSize(final int players, final int fleet, final long seed)
+		{
+			this.players = players;
+			this.fleet = fleet;
+			this.seed = seed;
+		}
+
+		@Override
+		public String toString()
+		{
+			return players + " players, +" + fleet + " ships/system";
+		}
+	}
+
+	/**
+	 * Galaxy generation can loop forever on some unlucky layouts; give up on a seed after this many milliseconds.
+	 */
+	private static final long sGenerationTimeout = 30000;
+	/**
+	 * Lazily-loaded default game data.
+	 */
+	private static GameData sGameData = null;
+	/**
+	 * State sizes used for the "growing size" benchmarks. Galaxy generation rarely terminates with more than 4 players, so
+	 * bigger states are obtained by adding fleets rather than players. The seeds are known to generate properly.
+	 */
+	public static final StateSize[] sSizes = { new StateSize(2, 0, 1), new StateSize(4, 0, 5), new StateSize(4, 24, 5),
+			new StateSize(4, 96, 5) };
+
+	/**
+	 * Adds ships to every solar system of the state, owned by the players in turn.
+	 * 
+	 * @param state
+	 *            The state to add ships to
+	 * @param shipsPerSystem
+	 *            The number of ships to add to each solar system
+	 */
+	private static void addFleets(final EVGameState state, final int shipsPerSystem)
+	{
+		final List<Player> players = new ArrayList<Player>(state.getPlayers());
+		players.remove(state.getNullPlayer());
+		int turn = 0;
+		for (final SolarSystem ss : state.getGalaxy().getSolarSystems()) {
+			for (int i = 0; i < shipsPerSystem; i++) {
+				final Player owner = players.get(turn++ % players.size());
+				final RaceData race = owner.getRaceData();
+				final String shipType = MathUtils.getRandomElement(race.getShipTypes());
+				final Ship ship = new Ship(owner, ss, ss.getRandomLocation(race.getShipData(shipType).getDimension(), 2),
+						shipType, state);
+				state.registerProp(ship, ss);
+			}
+		}
+	}
+
+	/**
+	 * Generates a full game state of the given size.
+	 * 
+	 * @param size
+	 *            The size of the state
+	 * @return The generated state
+	 */
+	public static EVGameState generate(final StateSize size)
+	{
+		final EVGameState state = generate(size.players, size.seed);
+		addFleets(state, size.fleet);
+		return state;
+	}
+
+	/**
+	 * Generates a full game state with the given number of players.
+	 * 
+	 * @param players
+	 *            The number of (non-neutral) players in the game
+	 * @param seed
+	 *            The seed to use for the random number generator
+	 * @return The generated state
+	 */
+	public static EVGameState generate(final int players, final long seed)
+	{
+		final GameData data = getGameData();
+		final List<String> races = new ArrayList<String>(data.getRaceTypes());
+		final List<String> colors = new ArrayList<String>(data.getPlayerColors());
+		Collections.sort(races);
+		Collections.sort(colors);
+		final List<Player> playerList = new ArrayList<Player>(players);
+		for (int i = 0; i < players; i++) {
+			playerList.add(new Player("Player " + (i + 1), races.get(i % races.size()), colors.get(i % colors.size()), data));
+		}
+		FastMath.rand.setSeed(seed);
+		final Thread watchdog = new Thread("Benchmark generation watchdog")
+		{
+			@Override
+			public void run()
+			{
+				try {
+					Thread.sleep(sGenerationTimeout);
+				}
+				catch (final InterruptedException e) {
+					return;
+				}
+				System.err.println("Galaxy generation with " + players + " players and seed " + seed
+						+ " does not terminate; pick another seed.");
+				System.exit(1);
+			}
+		};
+		watchdog.setDaemon(true);
+		watchdog.start();
+		final EVGameState state = new EVGameState(playerList, data);
+		watchdog.interrupt();
+		return state;
+	}
+
+	/**
+	 * Builds a turn in which every ship in a solar system moves to a random valid destination other than where it is, as a busy turn would.
+	 * 
+	 * @param state
+	 *            The state to build the turn for
+	 * @param seed
+	 *            The seed used to pick destinations
+	 * @return The turn
+	 */
+	public static Turn randomTurn(final EVGameState state, final long seed)
+	{
+		final Random random = new Random(seed);
+		final List<Ship> ships = new ArrayList<Ship>(state.getAllShips());
+		Collections.sort(ships, new Comparator<Ship>()
+		{
+			@Override
+			public int compare(final Ship a, final Ship b)
+			{
+				return a.getID() - b.getID();
+			}
+		});
+		final Turn turn = new Turn();
+		for (final Ship ship : ships) {
+			if (!(ship.getContainer() instanceof SolarSystem)) {
+				continue;
+			}
+			final List<GridLocation> destinations = new ArrayList<GridLocation>(ship.getValidDestinations());
+			destinations.remove(ship.getLocation()); // Staying put is not a move
+			if (destinations.isEmpty()) {
+				continue;
+			}
+			Collections.sort(destinations, new Comparator<GridLocation>()
+			{
+				@Override
+				public int compare(final GridLocation a, final GridLocation b)
+				{
+					return a.origin.x != b.origin.x ? a.origin.x - b.origin.x : a.origin.y - b.origin.y;
+				}
+			});
+			try {
+				turn.addAction(new MoveShip(ship, destinations.get(random.nextInt(destinations.size())).origin));
+			}
+			catch (final IllegalEVActionException e) {
+				// Skip that ship
+			}
+		}
+		return turn;
+	}
+
+	/**
+	 * @return The default game data, loaded once.
+	 */
+	public static GameData getGameData()
+	{
+		if (sGameData == null) {
+			try {
+				sGameData = new GameData();
+			}
+			catch (final BadJsonInitialization e) {
+				throw new RuntimeException("Cannot load default game data", e);
+			}
+		}
+		return sGameData;
+	}
+}
@@ -0,0 +1,227 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.geometry.Point;
+import com.evervoid.state.geometry.PointSet;
+import com.evervoid.state.prop.Pathfinder;
+import com.evervoid.state.prop.ShipPath;
+
+/**
+ * Compares sets of points hashed through their String representation, as {@link Point} originally was, against sets of points
+ * with arithmetic hashing and {@link PointSet}s: filling and looking up all the points of a large grid, finding the paths of
+ * all the moves of a turn along with the points they cover (as {@link ShipPath} does), and checking these paths against each
+ * other for collisions.
+ */
+public class GeometryBenchmark
+{
+	/**
+	 * Height of the grid whose points are put in sets.
+	 */
+	private static final int sGridHeight = 80;
+	/**
+	 * Width of the grid whose points are put in sets.
+	 */
+	private static final int sGridWidth = 150;
+
+	/**
+	 * Collects the points covered by a path the way ShipPath originally did.
+	 * 
+	 * @param origin
+	 *            The starting location of the path
+	 * @param path
+	 *            The locations at which the ship turns
+	 * @return The points covered by the path
+	 */
+	private static Set<LegacyPoint> getLegacyPoints(final GridLocation origin, final List<GridLocation> path)
+	{
+		final Set<LegacyPoint> points = new HashSet<LegacyPoint>();
+		final Pathfinder pathfinder = new Pathfinder();
+		GridLocation previous = origin;
+		for (final GridLocation loc : path) {
+			for (final GridLocation subloc : pathfinder.getDirectRoute(previous.origin, loc.origin, loc.dimension)) {
+				for (final Point p : subloc.getPoints()) {
+					points.add(new LegacyPoint(p.x, p.y));
+				}
+			}
+			previous = loc;
+		}
+		return points;
+	}
+
+	/**
+	 * @param a
+	 *            A set of points
+	 * @param b
+	 *            Another set of points
+	 * @return Whether the sets have at least one point in common
+	 */
+	private static boolean intersects(final Set<LegacyPoint> a, final Set<LegacyPoint> b)
+	{
+		if (b.size() < a.size()) {
+			return intersects(b, a);
+		}
+		for (final LegacyPoint p : a) {
+			if (b.contains(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		header(sGridWidth + "x" + sGridHeight + " grid");
+		run("Fill and look up, String-hashed points", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final Set<LegacyPoint> points = new HashSet<LegacyPoint>();
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						points.add(new LegacyPoint(x, y));
+					}
+				}
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						consume(points.contains(new LegacyPoint(x, y)));
+					}
+				}
+			}
+		});
+		run("Fill and look up, Points", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final Set<Point> points = new HashSet<Point>();
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						points.add(new Point(x, y));
+					}
+				}
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						consume(points.contains(new Point(x, y)));
+					}
+				}
+			}
+		});
+		run("Fill and look up, PointSet", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final PointSet points = new PointSet();
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						points.add(x, y);
+					}
+				}
+				for (int x = 0; x < sGridWidth; x++) {
+					for (int y = 0; y < sGridHeight; y++) {
+						consume(points.contains(x, y));
+					}
+				}
+			}
+		});
+		// Moves of a whole turn in the biggest state
+		final StateSize size = BenchmarkStates.sSizes[BenchmarkStates.sSizes.length - 1];
+		final EVGameState state = BenchmarkStates.generate(size);
+		final List<MoveShip> moves = new ArrayList<MoveShip>();
+		for (final Action action : BenchmarkStates.randomTurn(state, size.seed).getActions()) {
+			final MoveShip move = (MoveShip) action;
+			if (!move.getDestination().equals(move.getShip().getLocation())) {
+				moves.add(move);
+			}
+		}
+		final Pathfinder pathfinder = new Pathfinder();
+		final List<Set<LegacyPoint>> legacyPaths = new ArrayList<Set<LegacyPoint>>(moves.size());
+		final List<ShipPath> paths = new ArrayList<ShipPath>(moves.size());
+		boolean pointsAgree = true;
+		for (final MoveShip move : moves) {
+			final GridLocation origin = move.getShip().getLocation();
+			final List<GridLocation> path = pathfinder.findPath(move.getShip(), move.getDestination());
+			final Set<LegacyPoint> legacyPoints = getLegacyPoints(origin, path);
+			final ShipPath shipPath = new ShipPath(origin, move.getDestination(), path, (SolarSystem) move.getShip()
+					.getContainer());
+			pointsAgree &= legacyPoints.size() == shipPath.getPoints().size();
+			for (final Point p : shipPath.getPoints()) {
+				pointsAgree &= legacyPoints.contains(new LegacyPoint(p.x, p.y));
+			}
+			legacyPaths.add(legacyPoints);
+			paths.add(shipPath);
+		}
+		header(size + ", " + moves.size() + " moves");
+		System.out.println("Points covered by the paths agree: " + pointsAgree);
+		run("Paths and points, String-hashed points", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final MoveShip move : moves) {
+					consume(getLegacyPoints(move.getShip().getLocation(),
+							pathfinder.findPath(move.getShip(), move.getDestination())));
+				}
+			}
+		});
+		run("Paths and points, PointSet", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final MoveShip move : moves) {
+					consume(new ShipPath(move.getShip().getLocation(), move.getDestination(), pathfinder.findPath(
+							move.getShip(), move.getDestination()), (SolarSystem) move.getShip().getContainer()));
+				}
+			}
+		});
+		// Collisions, between the moves in the same solar system
+		run("Pairwise collisions, String-hashed points", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < moves.size(); i++) {
+					for (int j = i + 1; j < moves.size(); j++) {
+						if (paths.get(i).getSolarSystem().equals(paths.get(j).getSolarSystem())) {
+							consume(intersects(legacyPaths.get(i), legacyPaths.get(j)));
+						}
+					}
+				}
+			}
+		});
+		run("Pairwise collisions, PointSet", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < moves.size(); i++) {
+					for (int j = i + 1; j < moves.size(); j++) {
+						consume(paths.get(i).collidesWith(paths.get(j)));
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,103 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.Json;
+import com.evervoid.utils.ResourceUtils;
+
+/**
+ * Compares the cursor-based {@link com.evervoid.json.JsonParser} with the original regex-based parser, on the schema files and
+ * on generated game states of growing size.
+ */
+public class JsonParserBenchmark
+{
+	/**
+	 * Benchmarks both parsers on the same input, and checks that they agree.
+	 * 
+	 * @param name
+	 *            The name of the input
+	 * @param input
+	 *            The Json string to parse
+	 * @param baselineIterations
+	 *            How many times to run the (slow) baseline parser
+	 */
+	private static void compare(final String name, final String input, final int baselineIterations)
+	{
+		run(name + " (" + input.length() / 1024 + " KB), cursor", 20, 50, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(Json.fromString(input));
+			}
+		});
+		run(name + " (" + input.length() / 1024 + " KB), regex", Math.min(5, baselineIterations), baselineIterations,
+				new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						consume(RegexJsonParser.parse(input));
+					}
+				});
+		final boolean match = Json.fromString(input).getHash().equals(RegexJsonParser.parse(input).getHash());
+		System.out.println("    Parsers agree: " + match);
+	}
+
+	/**
+	 * Reads a whole file as-is, so that the parsers see the comments and unquoted keys of the original.
+	 * 
+	 * @param file
+	 *            The file to read
+	 * @return The contents of the file
+	 */
+	private static String readFile(final File file)
+	{
+		final StringBuilder contents = new StringBuilder();
+		try {
+			final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			final char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) > 0) {
+				contents.append(buffer, 0, read);
+			}
+			reader.close();
+		}
+		catch (final IOException e) {
+			throw new RuntimeException("Cannot read " + file, e);
+		}
+		return contents.toString();
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		header("Schema files");
+		final File[] schemas = new File(ResourceUtils.getResourceDir() + "schema").listFiles();
+		Arrays.sort(schemas);
+		for (final File schema : schemas) {
+			if (schema.getName().endsWith(".json")) {
+				compare(schema.getName(), readFile(schema), 50);
+			}
+		}
+		header("Generated game states");
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			compare(size.toString(), BenchmarkStates.generate(size).toJson().toString(), 1);
+		}
+	}
+}
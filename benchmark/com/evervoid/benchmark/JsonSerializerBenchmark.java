@@ -0,0 +1,166 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.Json;
+
+/**
+ * Compares the time and allocations of the streaming {@link Json} serializer with the original String-concatenating one, on
+ * generated game states of growing size. Saving a game is {@link Json#toFile(File)} on the state's Json. Also compares the
+ * structural {@link Json#getHash()} with the MD5 of the serialized tree that it replaced.
+ */
+public class JsonSerializerBenchmark
+{
+	/**
+	 * Number of copies of the state to hash for the cold hash benchmark.
+	 */
+	private static final int sColdHashCopies = 40;
+	/**
+	 * Discards everything written to it, so that only the cost of serializing is measured.
+	 */
+	private static final OutputStream sNullStream = new OutputStream()
+	{
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length)
+		{
+			// Discard
+		}
+
+		@Override
+		public void write(final int b)
+		{
+			// Discard
+		}
+	};
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 * @throws IOException
+	 *             If the temporary save file cannot be created
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		final File saveFile = File.createTempFile("evervoid-benchmark", ".json");
+		saveFile.deleteOnExit();
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			final Json state = BenchmarkStates.generate(size).toJson();
+			header(size + " (" + state.toString().length() / 1024 + " KB)");
+			System.out.println("    Serializers agree: "
+					+ (state.toString().equals(LegacyJsonSerializer.toString(state)) && state.toPrettyString("").equals(
+							LegacyJsonSerializer.toPrettyString(state, ""))));
+			run("toString, legacy", 2, 5, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(LegacyJsonSerializer.toString(state));
+				}
+			});
+			run("toString", 20, 50, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.toString());
+				}
+			});
+			run("toPrettyString, legacy", 2, 5, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(LegacyJsonSerializer.toPrettyString(state, ""));
+				}
+			});
+			run("toPrettyString", 20, 50, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.toPrettyString());
+				}
+			});
+			run("save, legacy (toString + getBytes)", 2, 5, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						sNullStream.write(LegacyJsonSerializer.toString(state).getBytes("UTF-8"));
+					}
+					catch (final IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			run("save (UTF-8 stream)", 20, 50, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						state.write(sNullStream);
+					}
+					catch (final IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			run("save to file", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.toFile(saveFile));
+				}
+			});
+			run("getHash, legacy (MD5 of toString)", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						consume(MessageDigest.getInstance("MD5").digest(state.toString().getBytes("UTF-8")));
+					}
+					catch (final Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			// A fresh copy of the tree for each hash, so that nothing is cached yet
+			final Json[] copies = new Json[sColdHashCopies];
+			for (int i = 0; i < copies.length; i++) {
+				copies[i] = Json.fromString(state.toString());
+			}
+			run("getHash, cold", copies.length / 4, copies.length - copies.length / 4, new Runnable()
+			{
+				private int aNext = 0;
+
+				@Override
+				public void run()
+				{
+					consume(copies[aNext++].getHash());
+				}
+			});
+			run("getHash, cached", 20, 50, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.getHash());
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.evervoid.benchmark;
+
+import com.evervoid.json.Json;
+import com.evervoid.json.JsonParser;
+
+/**
+ * The original String-concatenating serializer of {@link Json}, kept as a baseline for {@link JsonSerializerBenchmark}. Leaf
+ * nodes are delegated to {@link Json#toString()}, since their representation has not changed.
+ */
+class LegacyJsonSerializer
+{
+	/**
+	 * Maximum length that a line can reach in pretty strings.
+	 */
+	private static final int sPrettyStringMaximumLength = 72;
+
+	/**
+	 * Serialize a Json node to a human-readable Json string
+	 * 
+	 * @param json
+	 *            The node to serialize
+	 * @param prefix
+	 *            Prefix that will be prepended to each line
+	 * @return A pretty Json string
+	 */
+	static String toPrettyString(final Json json, final String prefix)
+	{
+		final String plain = toString(json);
+		if (plain.length() < sPrettyStringMaximumLength) {
+			return plain;
+		}
+		switch (json.getType()) {
+			case LIST:
+				String str = "[";
+				for (final Json j : json.getList()) {
+					str += "\n" + prefix + "\t" + toPrettyString(j, prefix + "\t") + ",";
+				}
+				return str.substring(0, str.length() - 1) + "\n" + prefix + "]";
+			case OBJECT:
+				String obj = "{";
+				for (final String key : json.getAttributes()) {
+					obj += "\n" + prefix + "\t" + JsonParser.keyString(key)
+							+ toPrettyString(json.getAttribute(key), prefix + "\t") + ",";
+				}
+				return obj.substring(0, obj.length() - 1) + "\n" + prefix + "}";
+		}
+		return plain;
+	}
+
+	/**
+	 * Serialize a Json node to a Json string.
+	 * 
+	 * @param json
+	 *            The node to serialize
+	 * @return A Json string.
+	 */
+	static String toString(final Json json)
+	{
+		switch (json.getType()) {
+			case LIST:
+				if (json.getList().isEmpty()) {
+					return "[]";
+				}
+				String str = "[";
+				for (final Json j : json.getList()) {
+					str += toString(j) + ", ";
+				}
+				return str.substring(0, str.length() - 2) + "]";
+			case OBJECT:
+				if (json.size() == 0) {
+					return "{}";
+				}
+				String obj = "{";
+				for (final String key : json.getAttributes()) {
+					obj += JsonParser.keyString(key) + toString(json.getAttribute(key)) + ", ";
+				}
+				return obj.substring(0, obj.length() - 2) + "}";
+		}
+		return json.toString();
+	}
+}
@@ -0,0 +1,50 @@
+package com.evervoid.benchmark;
+
+/**
+ * A point hashed the way {@link com.evervoid.state.geometry.Point} originally was, through its String representation.
+ */
+class LegacyPoint
+{
+	/**
+	 * The x coordinate.
+	 */
+	final int x;
+	/**
+	 * The y coordinate.
+	 */
+	final int y;
+
+	/**
+	 * @param x
+	 *            The x coordinate
+	 * @param y
+	 *            The y coordinate
+	 */
+	LegacyPoint(final int x, final int y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+
+	@Override
+	public boolean equals(final Object other)
+	{
+		if (!(other instanceof LegacyPoint)) {
+			return false;
+		}
+		final LegacyPoint p = (LegacyPoint) other;
+		return x == p.x && y == p.y;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return toString().hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + x + ", " + y + "]";
+	}
+}
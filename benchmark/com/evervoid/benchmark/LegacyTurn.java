@@ -0,0 +1,65 @@
+package com.evervoid.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.Turn;
+
+/**
+ * The part of {@link Turn} that turn resolution relies on, as it was originally implemented: a flat list of actions, scanned to
+ * find the actions of a type or to remove one.
+ */
+class LegacyTurn
+{
+	/**
+	 * The list of actions played during this turn.
+	 */
+	private final List<Action> aActions = new ArrayList<Action>();
+
+	/**
+	 * @param action
+	 *            The action to add
+	 */
+	void addAction(final Action action)
+	{
+		aActions.add(action);
+	}
+
+	/**
+	 * @param action
+	 *            The action to remove
+	 */
+	void delAction(final Action action)
+	{
+		aActions.remove(action);
+	}
+
+	/**
+	 * @param classTypes
+	 *            The types of the Actions to get
+	 * @return A list of all actions in this turn that are instances of at least one of the passed classes
+	 */
+	List<Action> getActionsOfType(final Class<?>... classTypes)
+	{
+		final List<Action> actions = new ArrayList<Action>(aActions.size() / 2 + 1);
+		for (final Action act : aActions) {
+			for (final Class<?> c : classTypes) {
+				if (c.isInstance(act)) {
+					actions.add(act);
+				}
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * @param action
+	 *            The action to move to the back of the list
+	 */
+	void reEnqueueAction(final Action action)
+	{
+		delAction(action);
+		addAction(action);
+	}
+}
@@ -0,0 +1,312 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.BinaryJson;
+import com.evervoid.json.Json;
+import com.evervoid.network.EVMessage;
+import com.evervoid.network.PartialMessage;
+import com.evervoid.network.message.GameStateMessage;
+import com.evervoid.network.message.TurnMessage;
+import com.evervoid.state.EVGameState;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+
+/**
+ * Compares the binary {@link PartialMessage} framing, with text and binary Json payloads, against the original format in which
+ * each part was a Json object wrapping a slice of the Json text of the message. Sizes are those of the partial messages once
+ * serialized by jMonkeyEngine, as they are sent on the wire. The original format is decoded with the current Json parser, so
+ * that only the difference in formats is measured.
+ */
+public class MessageCodecBenchmark
+{
+	/**
+	 * An EVMessage with arbitrary content and type, giving access to the partial messages it is sent as.
+	 */
+	static class BenchmarkMessage extends EVMessage
+	{
+		/**
+		 * The type of the original message.
+		 */
+		private final String aType;
+
+		/**
+		 * @param message
+		 *            The message to mimic
+		 */
+		BenchmarkMessage(final EVMessage message)
+		{
+			super(message.getContent());
+			aType = message.getType();
+		}
+
+		/**
+		 * @return The partial messages that this message is sent as
+		 */
+		List<PartialMessage> getParts()
+		{
+			return getMessages();
+		}
+
+		@Override
+		public String getType()
+		{
+			return aType;
+		}
+	}
+
+	/**
+	 * A partial message in the original format: the UTF-8 bytes of a Json object holding a slice of the message text.
+	 */
+	@Serializable
+	public static class LegacyPartialMessage
+	{
+		/**
+		 * The encoded Json object.
+		 */
+		private byte[] aContent;
+
+		/**
+		 * Necessary for deserialization.
+		 */
+		public LegacyPartialMessage()
+		{
+		}
+
+		/**
+		 * @param content
+		 *            The encoded Json object
+		 */
+		LegacyPartialMessage(final byte[] content)
+		{
+			aContent = content;
+		}
+	}
+
+	/**
+	 * Size of the buffer that partial messages are serialized to.
+	 */
+	private static final int sFrameBufferSize = 65536;
+
+	/**
+	 * Benchmarks the encoding and decoding of a message in all formats.
+	 * 
+	 * @param name
+	 *            The name of the message
+	 * @param message
+	 *            The message
+	 */
+	private static void compare(final String name, final EVMessage message)
+	{
+		final BenchmarkMessage binary = new BenchmarkMessage(message);
+		final Json content = message.getContent();
+		final String type = message.getType();
+		final byte[] text = content.toString().getBytes();
+		final byte[] encoded = encodeBinary(content);
+		System.out.println(String.format("%s: legacy frames %d bytes, binary frames %d bytes; content as text %d bytes, "
+				+ "as binary Json %d bytes", name, wireSize(legacyEncode(content, type)), wireSize(binary.getParts()),
+				text.length, encoded.length));
+		System.out.println("    Binary Json round trip agrees: " + decodeBinary(encoded).getHash().equals(content.getHash()));
+		run(name + ", legacy encode", 3, 10, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(serialize(legacyEncode(content, type)));
+			}
+		});
+		run(name + ", binary encode", 10, 30, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(serialize(binary.getParts()));
+			}
+		});
+		final List<ByteBuffer> legacyFrames = serialize(legacyEncode(content, type));
+		run(name + ", legacy decode", 3, 10, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(legacyDecode(legacyFrames));
+			}
+		});
+		final List<ByteBuffer> binaryFrames = serialize(binary.getParts());
+		run(name + ", binary decode", 10, 30, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// The reassembly itself is package-private; decode the frames, then the Json they carry
+				try {
+					for (final ByteBuffer frame : binaryFrames) {
+						frame.rewind();
+						consume(Serializer.readClassAndObject(frame));
+					}
+				}
+				catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+				consume(decodeBinary(encoded));
+			}
+		});
+	}
+
+	/**
+	 * @param encoded
+	 *            Binary-encoded Json
+	 * @return The decoded Json
+	 */
+	private static Json decodeBinary(final byte[] encoded)
+	{
+		try {
+			return BinaryJson.read(new ByteArrayInputStream(encoded));
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param content
+	 *            A Json tree
+	 * @return The binary encoding of the tree
+	 */
+	private static byte[] encodeBinary(final Json content)
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			BinaryJson.write(content, out);
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a message the way it was originally done.
+	 * 
+	 * @param frames
+	 *            The serialized partial messages
+	 * @return The content of the message
+	 */
+	private static Json legacyDecode(final List<ByteBuffer> frames)
+	{
+		String finalJson = "";
+		for (final ByteBuffer frame : frames) {
+			frame.rewind();
+			try {
+				final LegacyPartialMessage part = (LegacyPartialMessage) Serializer.readClassAndObject(frame);
+				finalJson += Json.fromString(new String(part.aContent, "UTF8")).getStringAttribute("content");
+			}
+			catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return Json.fromString(finalJson);
+	}
+
+	/**
+	 * Encodes a message the way it was originally done.
+	 * 
+	 * @param content
+	 *            The content of the message
+	 * @param type
+	 *            The type of the message
+	 * @return The partial messages
+	 */
+	private static List<LegacyPartialMessage> legacyEncode(final Json content, final String type)
+	{
+		String jsonString = content.toString();
+		final String hash = content.getHash();
+		final List<String> parts = new ArrayList<String>();
+		while (jsonString.length() > 0) {
+			final int partSize = Math.min(10240, jsonString.length());
+			parts.add(jsonString.substring(0, partSize));
+			jsonString = jsonString.substring(partSize);
+		}
+		final List<LegacyPartialMessage> messages = new ArrayList<LegacyPartialMessage>(parts.size());
+		int partNumber = 0;
+		for (final String part : parts) {
+			final Json innerJson = new Json().setAttribute("content", part).setAttribute("type", type)
+					.setAttribute("hash", hash).setAttribute("part", partNumber).setAttribute("total", parts.size());
+			try {
+				messages.add(new LegacyPartialMessage(innerJson.toString().getBytes("UTF8")));
+			}
+			catch (final UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+			partNumber++;
+		}
+		return messages;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		Serializer.registerClass(PartialMessage.class);
+		Serializer.registerClass(LegacyPartialMessage.class);
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			final EVGameState state = BenchmarkStates.generate(size);
+			header(size.toString());
+			compare("GameStateMessage", new GameStateMessage(state, "Player 1"));
+			compare("TurnMessage", new TurnMessage(BenchmarkStates.randomTurn(state, size.seed)));
+		}
+	}
+
+	/**
+	 * Serializes messages the way jMonkeyEngine does before sending them.
+	 * 
+	 * @param messages
+	 *            The messages to serialize
+	 * @return One buffer per message
+	 */
+	private static List<ByteBuffer> serialize(final List<?> messages)
+	{
+		final List<ByteBuffer> frames = new ArrayList<ByteBuffer>(messages.size());
+		for (final Object message : messages) {
+			final ByteBuffer buffer = ByteBuffer.allocate(sFrameBufferSize);
+			try {
+				Serializer.writeClassAndObject(buffer, message);
+			}
+			catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			buffer.flip();
+			frames.add(buffer);
+		}
+		return frames;
+	}
+
+	/**
+	 * @param messages
+	 *            Messages to serialize
+	 * @return The total number of bytes of the serialized messages
+	 */
+	private static int wireSize(final List<?> messages)
+	{
+		int total = 0;
+		for (final ByteBuffer frame : serialize(messages)) {
+			total += frame.limit();
+		}
+		return total;
+	}
+}
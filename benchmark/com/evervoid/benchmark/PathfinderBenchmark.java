@@ -0,0 +1,333 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.data.RaceData;
+import com.evervoid.state.geometry.Dimension;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.geometry.Point;
+import com.evervoid.state.player.Player;
+import com.evervoid.state.prop.Pathfinder;
+import com.evervoid.state.prop.Prop;
+import com.evervoid.state.prop.Ship;
+
+/**
+ * Compares the {@link Pathfinder} against the original implementation, in a 150x80 solar system (the largest that galaxy
+ * generation creates) crowded with ships. Paths are searched from a sample of ships, both to valid destinations (the usual
+ * case when moving a ship) and to destinations that are within range but out of reach, being occupied or behind obstacles
+ * (the search then explores a large part of the solar system). Occupancy checks of random locations are also compared
+ * against the original map from points to props. Path searches and valid destinations are measured both with the reachability
+ * maps of the ships cached, as when a ship is selected again during a turn, and with the cache invalidated before each ship,
+ * as on the first selection of each ship after the solar system changed.
+ */
+public class PathfinderBenchmark
+{
+	/**
+	 * Number of ships added to the solar system.
+	 */
+	private static final int sFleetSize = 400;
+	/**
+	 * Number of random locations checked for occupancy.
+	 */
+	private static final int sQueryCount = 10000;
+	/**
+	 * Number of ships that paths are searched from.
+	 */
+	private static final int sSampleSize = 50;
+	/**
+	 * Seed used for everything random.
+	 */
+	private static final long sSeed = 1;
+	/**
+	 * Dimension of the solar system.
+	 */
+	private static final Dimension sSolarSystemDimension = new Dimension(150, 80);
+
+	/**
+	 * Builds a state whose first solar system is as large as possible and crowded with ships.
+	 * 
+	 * @return The state
+	 */
+	private static EVGameState buildState()
+	{
+		final Json json = BenchmarkStates.generate(2, sSeed).toJson();
+		final Json solarSystems = json.getAttribute("galaxy").getAttribute("solarsystems");
+		final String firstId = solarSystems.getAttributes().iterator().next();
+		solarSystems.getAttribute(firstId).setAttribute("dimension", sSolarSystemDimension);
+		final EVGameState state;
+		try {
+			state = new EVGameState(json);
+		}
+		catch (final BadJsonInitialization e) {
+			throw new RuntimeException(e);
+		}
+		final SolarSystem solarSystem = state.getGalaxy().getSolarSystem(Integer.parseInt(firstId));
+		final List<Player> players = new ArrayList<Player>(state.getPlayers());
+		players.remove(state.getNullPlayer());
+		final Random random = new Random(sSeed);
+		for (int i = 0; i < sFleetSize; i++) {
+			final Player owner = players.get(i % players.size());
+			final RaceData race = owner.getRaceData();
+			final List<String> shipTypes = new ArrayList<String>(race.getShipTypes());
+			Collections.sort(shipTypes);
+			final String shipType = shipTypes.get(random.nextInt(shipTypes.size()));
+			final Dimension dimension = race.getShipData(shipType).getDimension();
+			GridLocation location;
+			do {
+				location = new GridLocation(random.nextInt(sSolarSystemDimension.width - dimension.width + 1),
+						random.nextInt(sSolarSystemDimension.height - dimension.height + 1), dimension);
+			}
+			while (solarSystem.isOccupied(location));
+			state.registerProp(new Ship(owner, solarSystem, location, shipType, state), solarSystem);
+		}
+		return state;
+	}
+
+	/**
+	 * Changes the occupancy version of a solar system, so that the reachability maps cached on its ships are computed again,
+	 * by taking a prop other than a ship out and putting it back in.
+	 * 
+	 * @param solarSystem
+	 *            The solar system
+	 */
+	private static void invalidate(final SolarSystem solarSystem)
+	{
+		for (final Prop prop : solarSystem.elemIterator()) {
+			if (!(prop instanceof Ship)) {
+				solarSystem.removeElem(prop);
+				solarSystem.addElem(prop);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Checks a location for occupancy the way the SolarSystem used to.
+	 * 
+	 * @param grid
+	 *            Mapping from point to prop
+	 * @param location
+	 *            The location to check
+	 * @return Whether any point of the location is mapped to a prop
+	 */
+	private static boolean isOccupied(final Map<Point, Prop> grid, final GridLocation location)
+	{
+		for (final Point p : location.getPoints()) {
+			if (grid.get(p) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		final EVGameState state = buildState();
+		SolarSystem solarSystem = null;
+		for (final SolarSystem ss : state.getGalaxy().getSolarSystems()) {
+			if (ss.getDimension().equals(sSolarSystemDimension)) {
+				solarSystem = ss;
+			}
+		}
+		// Sample ships and destinations
+		final List<Ship> ships = new ArrayList<Ship>();
+		for (final Prop prop : solarSystem.elemIterator()) {
+			if (prop instanceof Ship) {
+				ships.add((Ship) prop);
+			}
+		}
+		final Random random = new Random(sSeed);
+		Collections.shuffle(ships, random);
+		final Comparator<GridLocation> byOrigin = new Comparator<GridLocation>()
+		{
+			@Override
+			public int compare(final GridLocation a, final GridLocation b)
+			{
+				return a.origin.x != b.origin.x ? a.origin.x - b.origin.x : a.origin.y - b.origin.y;
+			}
+		};
+		final List<Ship> reachableShips = new ArrayList<Ship>();
+		final List<GridLocation> reachable = new ArrayList<GridLocation>();
+		final List<Ship> unreachableShips = new ArrayList<Ship>();
+		final List<GridLocation> unreachable = new ArrayList<GridLocation>();
+		final Pathfinder pathfinder = new Pathfinder();
+		final LegacyPathfinder legacy = new LegacyPathfinder();
+		boolean destinationsAgree = true;
+		for (final Ship ship : ships.subList(0, Math.min(sSampleSize, ships.size()))) {
+			final Set<GridLocation> valid = pathfinder.getValidDestinations(ship);
+			destinationsAgree &= valid.equals(legacy.getValidDestinations(ship));
+			final List<GridLocation> destinations = new ArrayList<GridLocation>(valid);
+			destinations.remove(ship.getLocation());
+			if (destinations.isEmpty()) {
+				continue;
+			}
+			Collections.sort(destinations, byOrigin);
+			reachableShips.add(ship);
+			reachable.add(destinations.get(random.nextInt(destinations.size())));
+			// A cell within range that is not a valid destination is occupied, or only reachable through a detour
+			final GridLocation origin = ship.getLocation();
+			for (int dx = -ship.getSpeed(); dx <= ship.getSpeed() && unreachableShips.size() < reachableShips.size(); dx++) {
+				final GridLocation target = origin.add(dx, ship.getSpeed() - Math.abs(dx));
+				if (target.fitsIn(solarSystem.getDimension()) && target.origin.x >= 0 && target.origin.y >= 0
+						&& !valid.contains(target)) {
+					unreachableShips.add(ship);
+					unreachable.add(target);
+				}
+			}
+		}
+		// The legacy search explores the whole grid with linear scans for out-of-reach destinations; only try a few of them
+		final int legacyUnreachable = Math.min(3, unreachable.size());
+		boolean pathsAgree = true;
+		for (int i = 0; i < reachable.size(); i++) {
+			pathsAgree &= (pathfinder.findPath(reachableShips.get(i), reachable.get(i)) == null) == (legacy.findPath(
+					reachableShips.get(i), reachable.get(i)) == null);
+		}
+		for (int i = 0; i < legacyUnreachable; i++) {
+			pathsAgree &= (pathfinder.findPath(unreachableShips.get(i), unreachable.get(i)) == null) == (legacy.findPath(
+					unreachableShips.get(i), unreachable.get(i)) == null);
+		}
+		final SolarSystem grid = solarSystem;
+		header(solarSystem.getDimension() + " solar system, " + ships.size() + " ships");
+		System.out.println("Valid destinations agree: " + destinationsAgree + "; paths found for the same destinations: "
+				+ pathsAgree);
+		run(reachable.size() + " reachable paths, legacy", 1, 3, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < reachable.size(); i++) {
+					consume(legacy.findPath(reachableShips.get(i), reachable.get(i)));
+				}
+			}
+		});
+		run(reachable.size() + " reachable paths, uncached", 10, 50, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < reachable.size(); i++) {
+					invalidate(grid);
+					consume(pathfinder.findPath(reachableShips.get(i), reachable.get(i)));
+				}
+			}
+		});
+		run(reachable.size() + " reachable paths, cached", 10, 50, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < reachable.size(); i++) {
+					consume(pathfinder.findPath(reachableShips.get(i), reachable.get(i)));
+				}
+			}
+		});
+		run(legacyUnreachable + " out-of-reach paths, legacy", 0, 1, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < legacyUnreachable; i++) {
+					consume(legacy.findPath(unreachableShips.get(i), unreachable.get(i)));
+				}
+			}
+		});
+		run(unreachable.size() + " out-of-reach paths, heap", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < unreachable.size(); i++) {
+					consume(pathfinder.findPath(unreachableShips.get(i), unreachable.get(i)));
+				}
+			}
+		});
+		run(reachableShips.size() + " valid destination sets, legacy", 1, 5, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final Ship ship : reachableShips) {
+					consume(legacy.getValidDestinations(ship));
+				}
+			}
+		});
+		// Occupancy checks, against a map from points to props as the SolarSystem used to keep
+		final Map<Point, Prop> legacyGrid = new HashMap<Point, Prop>();
+		for (final Prop prop : solarSystem.elemIterator()) {
+			for (final Point p : prop.getLocation().getPoints()) {
+				legacyGrid.put(p, prop);
+			}
+		}
+		final List<GridLocation> queries = new ArrayList<GridLocation>(sQueryCount);
+		boolean occupancyAgrees = true;
+		for (int i = 0; i < sQueryCount; i++) {
+			final GridLocation location = new GridLocation(random.nextInt(sSolarSystemDimension.width - 4),
+					random.nextInt(sSolarSystemDimension.height - 4), 1 + random.nextInt(4), 1 + random.nextInt(4));
+			queries.add(location);
+			occupancyAgrees &= solarSystem.isOccupied(location) == isOccupied(legacyGrid, location);
+		}
+		System.out.println("Occupancy checks agree: " + occupancyAgrees);
+		run(sQueryCount + " occupancy checks, point map", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final GridLocation location : queries) {
+					consume(isOccupied(legacyGrid, location));
+				}
+			}
+		});
+		run(sQueryCount + " occupancy checks, bitmap", 5, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final GridLocation location : queries) {
+					consume(grid.isOccupied(location));
+				}
+			}
+		});
+		run(reachableShips.size() + " valid destination sets, uncached", 10, 50, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final Ship ship : reachableShips) {
+					invalidate(grid);
+					consume(pathfinder.getValidDestinations(ship));
+				}
+			}
+		});
+		run(reachableShips.size() + " valid destination sets, cached", 10, 50, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (final Ship ship : reachableShips) {
+					consume(pathfinder.getValidDestinations(ship));
+				}
+			}
+		});
+	}
+}
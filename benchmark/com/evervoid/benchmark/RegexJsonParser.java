@@ -0,0 +1,216 @@
+package com.evervoid.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.evervoid.json.Json;
+import com.evervoid.json.JsonParser;
+
+/**
+ * The original regex- and substring-based Json parser, kept verbatim as a baseline to compare {@link JsonParser} against. Every
+ * token re-trims and re-slices the remaining input, so parsing is quadratic in the input size. Do not use outside benchmarks.
+ */
+class RegexJsonParser
+{
+
+	/**
+	 * Holds a single parsed Json node, and the length of its original string representation.
+	 */
+	private static class JsonParsingResult
+	{
+		/**
+		 * The parsed Json.
+		 */
+		private final Json aNode;
+		/**
+		 * The length of the raw string representation of the Json.
+		 */
+		private final int aOffset;
+
+		/**
+		 * @param node
+		 *            The parsed Json node
+		 * @param offset
+		 *            The length of the string representation of the Json node in its original form
+		 */
+		JsonParsingResult(final Json node, final int offset)
+		{
+			aNode = node;
+			aOffset = offset;
+		}
+
+		/**
+		 * @param node
+		 *            The parsed Json node
+		 * @param str
+		 *            Determines the lengths of the string representation of the Json
+		 */
+		JsonParsingResult(final Json node, final String str)
+		{
+			this(node, str.length());
+		}
+
+		/**
+		 * @return The parsed Json node
+		 */
+		Json getJson()
+		{
+			return aNode;
+		}
+
+		/**
+		 * @return The length of the Json node's original string representation
+		 */
+		int getOffset()
+		{
+			return aOffset;
+		}
+	}
+
+	/**
+	 * Matches comments
+	 */
+	private static final Pattern sCommentPattern = Pattern.compile("^//[^\\r\\n]*|^/\\*[\\s\\S]*?\\*/");
+	/**
+	 * Matches float numbers
+	 */
+	private static final Pattern sFloatPattern = Pattern.compile("^-?\\d*\\.\\d+");
+	/**
+	 * Matches integers
+	 */
+	private static final Pattern sIntPattern = Pattern.compile("^-?\\d+");
+	/**
+	 * Matches the key part of a key -> value mapping ("key": value)
+	 */
+	private static final Pattern sObjectKeyPattern = Pattern
+					.compile("^([\\\"']?[^:\\\"'\\\\]*(?:\\\\.[^:\"'\\\\]*)*[\"']?)\\s*:\\s*");
+	/**
+	 * Matches a double-quoted string
+	 */
+	private static final Pattern sStringDoublePattern = Pattern.compile("^\"[^\"\\\\]*(?:\\\\.[^\"\\\\]*)*\"");
+	/**
+	 * Matches a single-quoted string
+	 */
+	private static final Pattern sStringSinglePattern = Pattern.compile("^'[^'\\\\]*(?:\\\\.[^'\\\\]*)*'");
+
+	/**
+	 * Removes leading Json comments from given string
+	 * 
+	 * @param str
+	 *            The string to remove leading comments from
+	 * @return The string without leading comments
+	 */
+	private static String stripLeadingComments(final String str)
+	{
+		String trimmed = str.trim();
+		Matcher commentMatcher = sCommentPattern.matcher(trimmed);
+		while (commentMatcher.find()) {
+			trimmed = trimmed.substring(commentMatcher.end()).trim();
+			commentMatcher = sCommentPattern.matcher(trimmed);
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Parses a Json string the way the original parser did.
+	 * 
+	 * @param jsonString
+	 *            The string to parse
+	 * @return The Json object representing the string
+	 */
+	public static Json parse(final String jsonString)
+	{
+		return parseString(jsonString.trim()).getJson();
+	}
+
+	/**
+	 * Parses a string partially
+	 * 
+	 * @param str
+	 *            The string to parse
+	 * @return A parsing result object containing the parsed Json node and the length of the parsed portion of the
+	 *         String
+	 */
+	private static JsonParsingResult parseString(final String str)
+	{
+		final String trimmed = stripLeadingComments(str);
+		// Try object:
+		if (trimmed.startsWith("{")) {
+			final int initialLength = trimmed.length();
+			String dict = stripLeadingComments(trimmed.substring(1));
+			final Json node = new Json();
+			while (!dict.startsWith("}")) {
+				final Matcher keyMatch = sObjectKeyPattern.matcher(dict);
+				if (keyMatch.find()) {
+					dict = stripLeadingComments(dict.substring(keyMatch.group().length()));
+					final JsonParsingResult result = parseString(dict);
+					node.setAttribute(JsonParser.plainKeyString(keyMatch.group(1)), result.getJson());
+					dict = stripLeadingComments(dict.substring(result.getOffset()));
+					if (dict.startsWith(",")) {
+						dict = stripLeadingComments(dict.substring(1));
+					}
+				} else {
+					break;
+				}
+			}
+			return new JsonParsingResult(node, initialLength - dict.length() + 1);
+		}
+		// Try boolean:
+		if (trimmed.startsWith("true")) {
+			return new JsonParsingResult(new Json(true), 4);
+		}
+		if (trimmed.startsWith("false")) {
+			return new JsonParsingResult(new Json(false), 5);
+		}
+		// Try null:
+		if (trimmed.startsWith("null")) {
+			return new JsonParsingResult(Json.getNullNode(), 4);
+		}
+		// Try string:
+		if (trimmed.startsWith("\"")) {
+			final Matcher stringDoubleMatcher = sStringDoublePattern.matcher(trimmed);
+			if (stringDoubleMatcher.find()) {
+				return new JsonParsingResult(new Json(JsonParser.plainString(stringDoubleMatcher.group())),
+								stringDoubleMatcher.group());
+			}
+		}
+		if (trimmed.startsWith("'")) {
+			final Matcher stringSingleMatcher = sStringSinglePattern.matcher(trimmed);
+			if (stringSingleMatcher.find()) {
+				return new JsonParsingResult(new Json(JsonParser.plainString(stringSingleMatcher.group())),
+								stringSingleMatcher.group());
+			}
+		}
+		// Try list:
+		if (trimmed.startsWith("[")) {
+			final int initialLength = trimmed.length();
+			String list = stripLeadingComments(trimmed.substring(1));
+			final List<Json> results = new ArrayList<Json>();
+			while (!list.startsWith("]")) {
+				final JsonParsingResult result = parseString(list);
+				results.add(result.getJson());
+				list = list.substring(result.getOffset()).trim();
+				if (list.startsWith(",")) {
+					list = stripLeadingComments(list.substring(1));
+				} else {
+					break;
+				}
+			}
+			return new JsonParsingResult(new Json(results), initialLength - list.length() + 1);
+		}
+		// Try float:
+		final Matcher floatMatcher = sFloatPattern.matcher(trimmed);
+		if (floatMatcher.find()) {
+			return new JsonParsingResult(new Json(Float.valueOf(floatMatcher.group())), floatMatcher.group());
+		}
+		// Try int:
+		final Matcher intMatcher = sIntPattern.matcher(trimmed);
+		if (intMatcher.find()) {
+			return new JsonParsingResult(new Json(Integer.valueOf(intMatcher.group())), intMatcher.group());
+		}
+		// If all fails, return a blank node
+		return new JsonParsingResult(new Json(), str);
+	}
+}
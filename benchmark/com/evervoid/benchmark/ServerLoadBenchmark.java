@@ -0,0 +1,213 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.server.EverVoidServer;
+import com.evervoid.state.EVGameState;
+import com.evervoid.utils.TimingWheel;
+
+/**
+ * Measures the capacity of the game server without a game client: the server runs in-process on its default ports, and
+ * {@link SimulatedClient}s, one per player, play a game against it over loopback. For each state size, the game starts from the
+ * generated state, then every client plays a number of turns made of valid moves, shots and constructions. The benchmark
+ * reports the time from the last turn being handed in to every client having the resolved turn, the message throughput, the
+ * bytes sent each way, the heap used by the server and clients together, and how late the shared {@link TimingWheel} ran its
+ * tasks. Several games can be played at the same time on the one server, each in its own
+ * {@link com.evervoid.server.GameSession}, to measure how the server scales with the number of games it hosts.
+ * <p>
+ * Usage: <code>ServerLoadBenchmark [turns] [games]</code>; 10 turns of 1 game are played per state size by default.
+ */
+public class ServerLoadBenchmark
+{
+	/**
+	 * Number of turns played per state size when none is given.
+	 */
+	private static final int sDefaultTurns = 10;
+
+	/**
+	 * @param clients
+	 *            The clients
+	 * @return The number of payload bytes the clients received from the server
+	 */
+	private static long getBytesReceived(final List<SimulatedClient> clients)
+	{
+		long bytes = 0;
+		for (final SimulatedClient client : clients) {
+			bytes += client.getBytesReceived();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param clients
+	 *            The clients
+	 * @return The number of payload bytes the clients sent to the server
+	 */
+	private static long getBytesSent(final List<SimulatedClient> clients)
+	{
+		long bytes = 0;
+		for (final SimulatedClient client : clients) {
+			bytes += client.getBytesSent();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param clients
+	 *            The clients
+	 * @return The number of messages the clients sent and received
+	 */
+	private static long getMessages(final List<SimulatedClient> clients)
+	{
+		long messages = 0;
+		for (final SimulatedClient client : clients) {
+			messages += client.getMessagesSent() + client.getMessagesReceived();
+		}
+		return messages;
+	}
+
+	/**
+	 * @return The number of bytes used on the heap, after a garbage collection
+	 */
+	private static long getUsedHeap()
+	{
+		final Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * @param clients
+	 *            The clients, game by game
+	 * @param players
+	 *            The number of players of each game
+	 * @return Whether the clients of each game have the same copy of the game state, as they should after committing the
+	 *         same turns
+	 */
+	private static boolean isInSync(final List<SimulatedClient> clients, final int players)
+	{
+		for (int first = 0; first < clients.size(); first += players) {
+			final String hash = clients.get(first).getState().toJson().getHash();
+			for (final SimulatedClient client : clients.subList(first, first + players)) {
+				if (!client.getState().toJson().getHash().equals(hash)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Optionally, the number of turns to play per state size
+	 */
+	public static void main(final String[] args)
+	{
+		final int turns = args.length > 0 ? Integer.parseInt(args[0]) : sDefaultTurns;
+		final int games = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			try {
+				play(size, turns, games);
+			}
+			catch (final IOException e) {
+				System.err.println("Cannot connect to the server: " + e.getMessage());
+				EverVoidServer.stop();
+				System.exit(1);
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Plays games of the given size on a fresh server and prints the measurements.
+	 * 
+	 * @param size
+	 *            The size of the state to start the games from
+	 * @param turns
+	 *            The number of turns to play
+	 * @param games
+	 *            The number of games to play at the same time
+	 * @throws IOException
+	 *             If a client cannot connect to the server
+	 */
+	private static void play(final StateSize size, final int turns, final int games) throws IOException
+	{
+		final EVGameState state = BenchmarkStates.generate(size);
+		final long heapBefore = getUsedHeap();
+		TimingWheel.getInstance().resetMetrics();
+		EverVoidServer.ensureStarted();
+		final List<SimulatedClient> clients = new ArrayList<SimulatedClient>(size.players * games);
+		try {
+			long setupTime = 0;
+			for (int game = 0; game < games; game++) {
+				// The clients of a game join the open lobby, which gets a game of its own once this one starts
+				final List<SimulatedClient> players = new ArrayList<SimulatedClient>(size.players);
+				// Nicknames match the ones of the generated players, so that the server can load the state
+				for (int i = 0; i < size.players; i++) {
+					players.add(new SimulatedClient("Player " + (i + 1), size.seed + game * size.players + i));
+				}
+				clients.addAll(players);
+				players.get(0).awaitLobby(size.players);
+				final long setupStart = System.nanoTime();
+				players.get(0).loadGame(state);
+				for (final SimulatedClient client : players) {
+					client.awaitState();
+				}
+				setupTime += System.nanoTime() - setupStart;
+			}
+			header(size + ", " + state.getGalaxy().getSolarSystems().size() + " solar systems, "
+					+ state.getAllShips().size() + " ships" + (games > 1 ? ", " + games + " games" : ""));
+			final long setupBytes = getBytesReceived(clients);
+			System.out.println(String.format(Locale.US, "Game start: %.1f ms, %.1f KB of state sent to clients", setupTime / 1e6
+					/ games, setupBytes / 1024.0));
+			final long sentBefore = getBytesSent(clients);
+			final long messagesBefore = getMessages(clients);
+			long actions = 0;
+			long totalLatency = 0;
+			long maxLatency = 0;
+			long maxHeap = 0;
+			final long start = System.nanoTime();
+			for (int turn = 1; turn <= turns; turn++) {
+				for (final SimulatedClient client : clients) {
+					actions += client.playTurn();
+				}
+				final long handedIn = System.nanoTime();
+				for (final SimulatedClient client : clients) {
+					client.awaitTurns(turn);
+				}
+				final long latency = System.nanoTime() - handedIn;
+				totalLatency += latency;
+				maxLatency = Math.max(maxLatency, latency);
+				final Runtime runtime = Runtime.getRuntime();
+				maxHeap = Math.max(maxHeap, runtime.totalMemory() - runtime.freeMemory());
+			}
+			final long elapsed = System.nanoTime() - start;
+			final long messages = getMessages(clients) - messagesBefore;
+			System.out.println(String.format(Locale.US,
+					"%d turns, %.1f actions/turn: %.1f ms/turn latency (max %.1f ms), %.2f turns/s", turns, (double) actions
+							/ turns, totalLatency / 1e6 / turns, maxLatency / 1e6, turns / (elapsed / 1e9)));
+			System.out.println(String.format(Locale.US, "%d messages, %.1f messages/s; %.1f KB/turn up, %.1f KB/turn down",
+					messages, messages / (elapsed / 1e9), (getBytesSent(clients) - sentBefore) / 1024.0 / turns,
+					(getBytesReceived(clients) - setupBytes) / 1024.0 / turns));
+			System.out.println("Clients in sync: " + isInSync(clients, size.players));
+			System.out.println("Scheduler: " + TimingWheel.getInstance());
+			System.out.println(String.format(Locale.US, "Heap: %.1f MB before the game, %.1f MB peak, %.1f MB after",
+					heapBefore / 1048576.0, maxHeap / 1048576.0, getUsedHeap() / 1048576.0));
+		}
+		finally {
+			for (final SimulatedClient client : clients) {
+				client.close();
+			}
+			EverVoidServer.stop();
+		}
+	}
+
+}
@@ -0,0 +1,479 @@
+package com.evervoid.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.network.EVMessage;
+import com.evervoid.network.EVMessageListener;
+import com.evervoid.network.EVMessageSendingException;
+import com.evervoid.network.EVNetworkClient;
+import com.evervoid.network.message.GameStateMessage;
+import com.evervoid.network.message.LobbyStateMessage;
+import com.evervoid.network.message.PingMessage;
+import com.evervoid.network.message.ReadyMessage;
+import com.evervoid.network.message.TurnMessage;
+import com.evervoid.network.message.lobby.LoadGameRequest;
+import com.evervoid.network.message.lobby.LobbyPlayerUpdate;
+import com.evervoid.network.message.lobby.RequestJoinLobby;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.IllegalEVActionException;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.building.IncrementBuildingConstruction;
+import com.evervoid.state.action.building.IncrementShipConstruction;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.ShootShip;
+import com.evervoid.state.building.Building;
+import com.evervoid.state.data.RaceData;
+import com.evervoid.state.data.ShipData;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.player.Player;
+import com.evervoid.state.prop.Planet;
+import com.evervoid.state.prop.Prop;
+import com.evervoid.state.prop.Ship;
+import com.jme3.network.MessageConnection;
+
+/**
+ * A headless game client, driven by a benchmark instead of a player. It connects to a server over the network, joins the
+ * lobby and gets ready, then keeps its own copy of the game state up to date with the turns sent by the server, so that it can
+ * play turns that are valid on that state: every ship shoots an enemy in range or moves to a random destination, and every
+ * planet keeps constructing buildings and ships.
+ */
+class SimulatedClient implements EVMessageListener
+{
+	/**
+	 * Orders props by ID, so that the turns played from a seed do not depend on hash set iteration order.
+	 */
+	private static final Comparator<Prop> sPropOrder = new Comparator<Prop>()
+	{
+		@Override
+		public int compare(final Prop a, final Prop b)
+		{
+			return a.getID() - b.getID();
+		}
+	};
+	/**
+	 * How long to wait for the server before giving up, in milliseconds.
+	 */
+	private static final long sTimeout = 60000;
+
+	/**
+	 * The connection to the server.
+	 */
+	private final EVNetworkClient aClient;
+	/**
+	 * The last lobby state received, or null if none was received yet.
+	 */
+	private Json aLobby = null;
+	/**
+	 * Number of messages received from the server.
+	 */
+	private long aMessagesReceived = 0;
+	/**
+	 * The nickname of this client, both in the lobby and in the game.
+	 */
+	private final String aNickname;
+	/**
+	 * The player this client plays as, or null until the game starts.
+	 */
+	private Player aPlayer = null;
+	/**
+	 * Picks the actions of the turns.
+	 */
+	private final Random aRandom;
+	/**
+	 * Whether this client told the server it is ready to play in the lobby.
+	 */
+	private boolean aReadySent = false;
+	/**
+	 * This client's copy of the game state, or null until the game starts.
+	 */
+	private EVGameState aState = null;
+	/**
+	 * Number of turns received from the server and committed to the state.
+	 */
+	private int aTurnsReceived = 0;
+
+	/**
+	 * Connects to a server on this machine and asks to join its lobby.
+	 * 
+	 * @param nickname
+	 *            The nickname to join the lobby with
+	 * @param seed
+	 *            The seed of the turns this client plays
+	 * @throws IOException
+	 *             If the server cannot be reached
+	 */
+	SimulatedClient(final String nickname, final long seed) throws IOException
+	{
+		aNickname = nickname;
+		aRandom = new Random(seed);
+		aClient = new EVNetworkClient("localhost");
+		aClient.addEVMessageListener(this);
+		aClient.start();
+		final long deadline = System.currentTimeMillis() + sTimeout;
+		while (!aClient.isConnected()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IOException("Server did not accept the connection of " + nickname);
+			}
+			try {
+				Thread.sleep(10);
+			}
+			catch (final InterruptedException e) {
+				throw new IOException("Interrupted while connecting " + nickname);
+			}
+		}
+		send(new RequestJoinLobby(nickname));
+	}
+
+	/**
+	 * Adds an action to a turn if it is valid on the state.
+	 * 
+	 * @param turn
+	 *            The turn
+	 * @param action
+	 *            The action; null actions are ignored
+	 */
+	private void addIfValid(final Turn turn, final Action action)
+	{
+		if (action != null && action.isValid()) {
+			turn.addAction(action);
+		}
+	}
+
+	/**
+	 * Waits to be notified of a new message, failing if the deadline passed.
+	 * 
+	 * @param deadline
+	 *            The time after which to give up, as given by System.currentTimeMillis()
+	 * @param what
+	 *            What is being waited for, for the error message
+	 */
+	private void await(final long deadline, final String what)
+	{
+		final long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+			throw new IllegalStateException(aNickname + " timed out waiting for " + what);
+		}
+		try {
+			wait(remaining);
+		}
+		catch (final InterruptedException e) {
+			throw new IllegalStateException(aNickname + " interrupted while waiting for " + what);
+		}
+	}
+
+	/**
+	 * Waits until the lobby, as last seen by this client, has the given number of players and all of them are ready.
+	 * 
+	 * @param players
+	 *            The number of players to wait for
+	 */
+	synchronized void awaitLobby(final int players)
+	{
+		final long deadline = System.currentTimeMillis() + sTimeout;
+		while (!isLobbyReady(players)) {
+			await(deadline, "lobby with " + players + " ready players");
+		}
+	}
+
+	/**
+	 * Waits until the game state was received from the server.
+	 */
+	synchronized void awaitState()
+	{
+		final long deadline = System.currentTimeMillis() + sTimeout;
+		while (aState == null) {
+			await(deadline, "game state");
+		}
+	}
+
+	/**
+	 * Waits until a number of turns were received from the server and committed.
+	 * 
+	 * @param turns
+	 *            The number of turns to wait for
+	 */
+	synchronized void awaitTurns(final int turns)
+	{
+		final long deadline = System.currentTimeMillis() + sTimeout;
+		while (aTurnsReceived < turns) {
+			await(deadline, "turn " + turns);
+		}
+	}
+
+	/**
+	 * Builds a turn for this client's player on its copy of the state. Ships shoot an enemy ship in range if there is one and
+	 * move to a random destination otherwise; planets start or continue a building in each slot, and completed buildings
+	 * construct ships. Only actions valid on the current state are part of the turn.
+	 * 
+	 * @return The turn
+	 */
+	private Turn buildTurn()
+	{
+		final Turn turn = new Turn();
+		final List<Ship> ships = new ArrayList<Ship>(aState.getAllShips());
+		Collections.sort(ships, sPropOrder);
+		for (final Ship ship : ships) {
+			if (ship.getPlayer().equals(aPlayer) && ship.getContainer() instanceof SolarSystem) {
+				addIfValid(turn, getShipAction(ship));
+			}
+		}
+		final List<Planet> planets = new ArrayList<Planet>(aState.getAllPlanets());
+		Collections.sort(planets, sPropOrder);
+		for (final Planet planet : planets) {
+			if (!planet.getPlayer().equals(aPlayer)) {
+				continue;
+			}
+			for (int slot = 0; slot < planet.getData().getNumOfBuildingSlots(); slot++) {
+				addIfValid(turn, getConstructionAction(planet, slot));
+			}
+		}
+		return turn;
+	}
+
+	/**
+	 * Disconnects from the server.
+	 */
+	void close()
+	{
+		try {
+			aClient.close();
+		}
+		catch (final Exception e) {
+			// Already disconnected by the server
+		}
+	}
+
+	/**
+	 * @return The number of payload bytes received from the server.
+	 */
+	long getBytesReceived()
+	{
+		return aClient.getBytesReceived();
+	}
+
+	/**
+	 * @return The number of payload bytes sent to the server.
+	 */
+	long getBytesSent()
+	{
+		return aClient.getPostman().getBytesSent();
+	}
+
+	/**
+	 * Picks the construction action for a building slot of a planet.
+	 * 
+	 * @param planet
+	 *            The planet
+	 * @param slot
+	 *            The building slot
+	 * @return The action, or null if nothing can be constructed in that slot
+	 */
+	private Action getConstructionAction(final Planet planet, final int slot)
+	{
+		final RaceData race = aPlayer.getRaceData();
+		final Building building = planet.getBuildingAt(slot);
+		try {
+			if (building == null) {
+				return new IncrementBuildingConstruction(aState, planet, slot, getRandomElement(race.getBuildings()));
+			}
+			if (!building.isBuildingComplete()) {
+				return new IncrementBuildingConstruction(aState, planet, slot, building.getBuildingType());
+			}
+			final List<String> shipTypes = building.getData().getAvailableShipTypes();
+			if (shipTypes.isEmpty()) {
+				return null;
+			}
+			final ShipData shipData = building.isConstructingShip() ? building.getShipCurrentlyBuilding() : race
+					.getShipData(getRandomElement(shipTypes));
+			return new IncrementShipConstruction(building, shipData);
+		}
+		catch (final IllegalEVActionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return The number of messages received from the server.
+	 */
+	synchronized long getMessagesReceived()
+	{
+		return aMessagesReceived;
+	}
+
+	/**
+	 * @return The number of messages sent to the server.
+	 */
+	long getMessagesSent()
+	{
+		return aClient.getPostman().getMessagesSent();
+	}
+
+	/**
+	 * Picks an element at random from a collection, in a reproducible way.
+	 * 
+	 * @param elements
+	 *            The elements
+	 * @return One of the elements, picked from this client's random number generator
+	 */
+	private String getRandomElement(final Iterable<String> elements)
+	{
+		final List<String> list = new ArrayList<String>();
+		for (final String element : elements) {
+			list.add(element);
+		}
+		Collections.sort(list);
+		return list.get(aRandom.nextInt(list.size()));
+	}
+
+	/**
+	 * Picks the action of a ship: shooting an enemy ship in range, or moving to a random destination.
+	 * 
+	 * @param ship
+	 *            The ship
+	 * @return The action, or null if the ship can do neither
+	 */
+	private Action getShipAction(final Ship ship)
+	{
+		try {
+			final List<Ship> targets = new ArrayList<Ship>();
+			for (final Prop prop : ((SolarSystem) ship.getContainer()).elemIterator()) {
+				if (prop instanceof Ship && ship.canShoot(prop)) {
+					targets.add((Ship) prop);
+				}
+			}
+			if (!targets.isEmpty()) {
+				Collections.sort(targets, sPropOrder);
+				// The server rolls the damage
+				return new ShootShip(ship, targets.get(aRandom.nextInt(targets.size())), -1);
+			}
+			final List<GridLocation> destinations = new ArrayList<GridLocation>(ship.getValidDestinations());
+			destinations.remove(ship.getLocation());
+			if (destinations.isEmpty()) {
+				return null;
+			}
+			return new MoveShip(ship, destinations.get(aRandom.nextInt(destinations.size())).origin);
+		}
+		catch (final IllegalEVActionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return This client's copy of the game state, or null until the game starts.
+	 */
+	synchronized EVGameState getState()
+	{
+		return aState;
+	}
+
+	/**
+	 * @param players
+	 *            The expected number of players
+	 * @return Whether the last lobby state seen has that number of players, all of them ready.
+	 */
+	private boolean isLobbyReady(final int players)
+	{
+		if (aLobby == null) {
+			return false;
+		}
+		final List<Json> lobbyPlayers = aLobby.getListAttribute("players");
+		if (lobbyPlayers.size() != players) {
+			return false;
+		}
+		for (final Json player : lobbyPlayers) {
+			if (!player.getBooleanAttribute("ready")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Asks the server to start the game from the given state. The nicknames of the players of the state must match the ones of
+	 * the players in the lobby.
+	 * 
+	 * @param state
+	 *            The state to start the game from
+	 */
+	void loadGame(final EVGameState state)
+	{
+		send(new LoadGameRequest(state));
+	}
+
+	@Override
+	public synchronized void messageReceived(final MessageConnection source, final EVMessage message)
+	{
+		aMessagesReceived++;
+		final String type = message.getType();
+		final Json content = message.getContent();
+		if (type.equals(PingMessage.class.getName())) {
+			send(message);
+		}
+		else if (type.equals(LobbyStateMessage.class.getName())) {
+			aLobby = content;
+			if (!aReadySent) {
+				for (final Json player : content.getListAttribute("players")) {
+					if (player.getStringAttribute("nickname").equals(aNickname)) {
+						// Keep the race and color the server picked, they get replaced by the loaded state's anyway
+						send(new LobbyPlayerUpdate(new Json().setAttribute("nickname", aNickname)
+								.setAttribute("race", player.getStringAttribute("race"))
+								.setAttribute("color", player.getStringAttribute("color")).setAttribute("ready", true)));
+						aReadySent = true;
+					}
+				}
+			}
+		}
+		else if (type.equals(GameStateMessage.class.getName())) {
+			try {
+				aState = new EVGameState(content.getAttribute("state"));
+			}
+			catch (final BadJsonInitialization e) {
+				throw new IllegalStateException(aNickname + " received a bad game state", e);
+			}
+			aPlayer = aState.getPlayerByNickname(content.getStringAttribute("player"));
+			send(new ReadyMessage());
+		}
+		else if (type.equals(TurnMessage.class.getName())) {
+			aState.commitTurn(new Turn(content, aState));
+			aTurnsReceived++;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Plays a turn: builds it from this client's copy of the state, and sends it to the server.
+	 * 
+	 * @return The number of actions in the turn
+	 */
+	synchronized int playTurn()
+	{
+		final Turn turn = buildTurn();
+		send(new TurnMessage(turn));
+		return turn.size();
+	}
+
+	/**
+	 * Sends a message to the server asynchronously.
+	 * 
+	 * @param message
+	 *            The message
+	 */
+	private void send(final EVMessage message)
+	{
+		try {
+			aClient.sendEverMessage(message);
+		}
+		catch (final EVMessageSendingException e) {
+			throw new IllegalStateException(aNickname + " cannot reach the server", e);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.StateSnapshot;
+import com.evervoid.state.prop.Prop;
+import com.evervoid.state.prop.Ship;
+
+/**
+ * Compares {@link StateSnapshot}s against copying a state through a full Json round trip, as {@link EVGameState#clone()} used
+ * to do. A snapshot only serializes the Props that changed since the previous one, so it is taken after no change, after a
+ * single ship changed, and after every ship changed (as after a turn in which they all move); each snapshot is hashed, as the
+ * server does after every turn. Restoring a state from a snapshot is compared against building it from the Json
+ * representation, which parses the game data again. Before timing anything, a turn is committed and the snapshot taken after
+ * it is checked against a full serialization of the state.
+ */
+public class SnapshotBenchmark
+{
+	/**
+	 * @param state
+	 *            The state
+	 * @return All the Props in the solar systems of the state, along with the ships in their cargo holds
+	 */
+	private static List<Prop> getProps(final EVGameState state)
+	{
+		final List<Prop> props = new ArrayList<Prop>();
+		for (final SolarSystem ss : state.getGalaxy().getSolarSystems()) {
+			for (final Prop prop : ss.elemIterator()) {
+				props.add(prop);
+				if (prop instanceof Ship) {
+					props.addAll(((Ship) prop).getCargo());
+				}
+			}
+		}
+		return props;
+	}
+
+	/**
+	 * Forgets the cached Json representations of Props, so that they are built again from scratch.
+	 * 
+	 * @param props
+	 *            The Props
+	 */
+	private static void invalidate(final List<Prop> props)
+	{
+		for (final Prop prop : props) {
+			prop.invalidateJson();
+		}
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			final EVGameState state = BenchmarkStates.generate(size);
+			final List<Prop> props = getProps(state);
+			final List<Prop> ships = new ArrayList<Prop>(state.getAllShips());
+			final List<Prop> oneShip = ships.subList(0, 1);
+			header(size + ", " + props.size() + " props, " + ships.size() + " ships");
+			state.commitTurn(BenchmarkStates.randomTurn(state, size.seed));
+			final StateSnapshot afterTurn = state.snapshot();
+			invalidate(props);
+			System.out.println("Snapshot after a turn matches a full serialization: "
+					+ afterTurn.getHash().equals(state.snapshot().getHash()));
+			System.out.println("Restored state matches the original: "
+					+ afterTurn.restore().toJson().getHash().equals(afterTurn.getHash()));
+			run("Json round trip, every Prop serialized", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					invalidate(props);
+					try {
+						consume(new EVGameState(state.toJson()));
+					}
+					catch (final BadJsonInitialization e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			run("EVGameState.clone", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.clone());
+				}
+			});
+			run("Snapshot and hash, every Prop serialized", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					invalidate(props);
+					consume(state.snapshot().getHash());
+				}
+			});
+			run("Snapshot and hash, every ship changed", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					invalidate(ships);
+					consume(state.snapshot().getHash());
+				}
+			});
+			run("Snapshot and hash, one ship changed", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					invalidate(oneShip);
+					consume(state.snapshot().getHash());
+				}
+			});
+			run("Snapshot and hash, nothing changed", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(state.snapshot().getHash());
+				}
+			});
+			final StateSnapshot snapshot = state.snapshot();
+			run("EVGameState from the snapshot Json", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						consume(new EVGameState(snapshot.getJson()));
+					}
+					catch (final BadJsonInitialization e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			run("StateSnapshot.restore", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(snapshot.restore());
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.BinaryJson;
+import com.evervoid.json.Json;
+import com.evervoid.network.message.RequestGameState;
+import com.evervoid.network.message.SaveGameStateReply;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.action.Turn;
+
+/**
+ * Measures the resynchronization of a client state with the server state: the size of the request (a digest of the client
+ * state) and of the reply (the patch bringing the client state up to date), against the size of the whole state, along with
+ * the time taken by each side. The client state is a copy of the server state, behind by either a whole turn (every ship
+ * moved) or a single ship move.
+ */
+public class StateSyncBenchmark
+{
+	/**
+	 * Benchmarks the resynchronization of a client state with the server state.
+	 * 
+	 * @param name
+	 *            The name of the scenario
+	 * @param client
+	 *            The client state
+	 * @param server
+	 *            The server state
+	 */
+	private static void compare(final String name, final EVGameState client, final EVGameState server)
+	{
+		final Json serverJson = server.toJson();
+		final RequestGameState request = new RequestGameState(client);
+		final Json digest = request.getContent().getAttribute("digest");
+		final SaveGameStateReply reply = new SaveGameStateReply(serverJson, digest);
+		System.out.println(String.format("%s: whole state %d bytes; request %d bytes, reply %d bytes", name,
+				encodedSize(new SaveGameStateReply(serverJson, null).getContent()), encodedSize(request.getContent()),
+				encodedSize(reply.getContent())));
+		try {
+			System.out.println("    Patched state matches: "
+					+ reply.getGameState(client).toJson().getHash().equals(serverJson.getHash()));
+		}
+		catch (final BadJsonInitialization e) {
+			System.out.println("    Patched state matches: false (" + e + ")");
+		}
+		run(name + ", client digest", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(new RequestGameState(client));
+			}
+		});
+		run(name + ", server diff", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				consume(new SaveGameStateReply(server.toJson(), digest));
+			}
+		});
+		run(name + ", client patch", 3, 20, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try {
+					consume(reply.getGameState(client));
+				}
+				catch (final BadJsonInitialization e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param content
+	 *            A Json tree
+	 * @return The size of its binary encoding, as sent in messages
+	 */
+	private static int encodedSize(final Json content)
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			BinaryJson.write(content, out);
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		return out.size();
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			final EVGameState server = BenchmarkStates.generate(size);
+			header(size.toString());
+			final EVGameState client = server.clone();
+			final Turn turn = BenchmarkStates.randomTurn(server, size.seed);
+			final Turn oneMove = new Turn();
+			oneMove.addAction(turn.getActions().get(0));
+			server.commitTurn(oneMove);
+			compare("One ship behind", client, server);
+			server.commitTurn(turn.delActions(oneMove));
+			compare("One turn behind", client, server);
+		}
+	}
+}
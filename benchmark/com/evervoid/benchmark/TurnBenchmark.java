@@ -0,0 +1,159 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.IllegalEVActionException;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.player.ReceiveIncome;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.RegenerateShip;
+import com.evervoid.state.geometry.Point;
+import com.evervoid.state.player.Player;
+import com.evervoid.state.prop.Ship;
+
+/**
+ * Compares {@link Turn} against the flat list of actions it originally was, on turns with thousands of actions (every ship of a
+ * large fleet moving and regenerating, several times over, plus income). Two access patterns are measured: the one the game
+ * engine originally used to order a turn (moving the actions of each phase to the back of the turn, one at a time), and the
+ * one the client uses to replay a turn (getting the actions of each phase, then removing them from the turn one at a time as
+ * they are committed).
+ */
+public class TurnBenchmark
+{
+	/**
+	 * The action classes of the phases of the benchmarked turns, in order.
+	 */
+	private static final Class<?>[][] sPhases = { { RegenerateShip.class }, { MoveShip.class }, { ReceiveIncome.class } };
+	/**
+	 * Numbers of actions in the benchmarked turns.
+	 */
+	private static final int[] sTurnSizes = { 1000, 4000, 16000 };
+
+	/**
+	 * Builds a list of actions: moves and regenerations of the ships of the state, in turn, with an income action every so
+	 * often.
+	 * 
+	 * @param state
+	 *            The state to build the actions for
+	 * @param count
+	 *            The number of actions to build
+	 * @param random
+	 *            Picks the destinations of the moves
+	 * @return The actions, in random order
+	 */
+	private static List<Action> buildActions(final EVGameState state, final int count, final Random random)
+	{
+		final List<Ship> ships = new ArrayList<Ship>(state.getAllShips());
+		final List<Player> players = new ArrayList<Player>(state.getPlayers());
+		players.remove(state.getNullPlayer());
+		final List<Action> actions = new ArrayList<Action>(count);
+		try {
+			for (int i = 0; actions.size() < count; i++) {
+				if (i % 20 == 0) {
+					final Player player = players.get(i / 20 % players.size());
+					actions.add(new ReceiveIncome(player, state, player.getCurrentIncome()));
+				}
+				else if (i % 3 == 0) {
+					actions.add(new RegenerateShip(ships.get(i % ships.size())));
+				}
+				else {
+					actions.add(new MoveShip(ships.get(i % ships.size()), new Point(random.nextInt(64), random.nextInt(64))));
+				}
+			}
+		}
+		catch (final IllegalEVActionException e) {
+			throw new RuntimeException(e);
+		}
+		Collections.shuffle(actions, random);
+		return actions;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		final StateSize size = BenchmarkStates.sSizes[BenchmarkStates.sSizes.length - 1];
+		final EVGameState state = BenchmarkStates.generate(size);
+		final Random random = new Random(size.seed);
+		for (final int turnSize : sTurnSizes) {
+			final List<Action> actions = buildActions(state, turnSize, random);
+			header(size + ", " + turnSize + " actions");
+			run("Order by phase, list", 1, 5, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final LegacyTurn turn = new LegacyTurn();
+					for (final Action action : actions) {
+						turn.addAction(action);
+					}
+					for (final Class<?>[] phase : sPhases) {
+						for (final Action action : turn.getActionsOfType(phase)) {
+							turn.reEnqueueAction(action);
+						}
+					}
+					consume(turn);
+				}
+			});
+			run("Order by phase, Turn", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Turn turn = new Turn();
+					turn.addActions(actions);
+					for (final Class<?>[] phase : sPhases) {
+						turn.reEnqueueActions(turn.getActionsOfType(phase));
+					}
+					consume(turn);
+				}
+			});
+			run("Replay by phase, list", 1, 5, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final LegacyTurn turn = new LegacyTurn();
+					for (final Action action : actions) {
+						turn.addAction(action);
+					}
+					for (final Class<?>[] phase : sPhases) {
+						for (final Action action : turn.getActionsOfType(phase)) {
+							turn.delAction(action);
+						}
+					}
+					consume(turn);
+				}
+			});
+			run("Replay by phase, Turn", 5, 20, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Turn turn = new Turn();
+					turn.addActions(actions);
+					for (final Class<?>[] phase : sPhases) {
+						for (final Action action : turn.getActionsOfType(phase)) {
+							turn.delAction(action);
+						}
+					}
+					consume(turn);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.evervoid.benchmark;
+
+import static com.evervoid.benchmark.BenchmarkRunner.consume;
+import static com.evervoid.benchmark.BenchmarkRunner.header;
+import static com.evervoid.benchmark.BenchmarkRunner.run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.evervoid.benchmark.BenchmarkStates.StateSize;
+import com.evervoid.json.Json;
+import com.evervoid.server.TurnResolver;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.IllegalEVActionException;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.building.IncrementBuildingConstruction;
+import com.evervoid.state.action.building.IncrementShipConstruction;
+import com.evervoid.state.action.player.ReceiveIncome;
+import com.evervoid.state.action.ship.BombPlanet;
+import com.evervoid.state.action.ship.CapturePlanet;
+import com.evervoid.state.action.ship.EnterCargo;
+import com.evervoid.state.action.ship.JumpShipIntoPortal;
+import com.evervoid.state.action.ship.LeaveCargo;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.ShootShip;
+import com.evervoid.state.player.Player;
+
+/**
+ * Compares the resolution of a turn by the {@link TurnResolver} against the way the game engine originally did it: moving the
+ * actions of each phase to the back of the turn one at a time, then committing the whole turn sequentially. The turn has every
+ * ship of the state move, plus the income of every player. Each resolution works on a fresh copy of the state, so the time
+ * taken by copying the state alone is reported as well. Resolving the same turn twice with the same seed must give the same
+ * state.
+ */
+public class TurnResolutionBenchmark
+{
+	/**
+	 * Seed of the resolved turns.
+	 */
+	private static final long sTurnSeed = 42;
+
+	/**
+	 * Copies a state along with a turn, so that the turn can be committed to the copy.
+	 * 
+	 * @param state
+	 *            The state to copy
+	 * @param turn
+	 *            The Json representation of the turn
+	 * @return The copy of the state, and the turn on it
+	 */
+	private static Object[] copy(final EVGameState state, final Json turn)
+	{
+		final EVGameState copy = state.clone();
+		return new Object[] { copy, new Turn(turn, copy) };
+	}
+
+	/**
+	 * Orders and commits a turn the way the game engine originally did.
+	 * 
+	 * @param state
+	 *            The state to commit the turn to
+	 * @param turn
+	 *            The turn
+	 * @return The committed turn
+	 */
+	private static Turn legacyResolve(final EVGameState state, final Turn turn)
+	{
+		final List<Action> combat = turn.getActionsOfType(ShootShip.class, BombPlanet.class);
+		for (final Action act : combat) {
+			if (act instanceof ShootShip) {
+				((ShootShip) act).rollDamage();
+			}
+			else {
+				((BombPlanet) act).rollDamage();
+			}
+			turn.reEnqueueAction(act);
+		}
+		shakeUpActions(turn, EnterCargo.class);
+		shakeUpActions(turn, LeaveCargo.class);
+		shakeUpActions(turn, JumpShipIntoPortal.class);
+		shakeUpActions(turn, CapturePlanet.class);
+		shakeUpActions(turn, MoveShip.class, JumpShipIntoPortal.class);
+		shakeUpActions(turn, IncrementBuildingConstruction.class);
+		shakeUpActions(turn, IncrementShipConstruction.class);
+		turn.reEnqueueActions(turn.getActionsOfType(ReceiveIncome.class));
+		return state.commitTurn(turn);
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused
+	 */
+	public static void main(final String[] args)
+	{
+		final TurnResolver resolver = new TurnResolver(Runtime.getRuntime().availableProcessors());
+		for (final StateSize size : BenchmarkStates.sSizes) {
+			final EVGameState state = BenchmarkStates.generate(size);
+			final Turn turn = BenchmarkStates.randomTurn(state, size.seed);
+			for (final Player p : state.getPlayers()) {
+				if (!p.isNullPlayer()) {
+					try {
+						turn.addAction(new ReceiveIncome(p, state, p.getCurrentIncome()));
+					}
+					catch (final IllegalEVActionException e) {
+						// Skip that player
+					}
+				}
+			}
+			final Json turnJson = turn.toJson();
+			header(size + ", " + turn.size() + " actions");
+			final Object[] first = copy(state, turnJson);
+			final Object[] second = copy(state, turnJson);
+			resolver.resolve((EVGameState) first[0], (Turn) first[1], sTurnSeed);
+			resolver.resolve((EVGameState) second[0], (Turn) second[1], sTurnSeed);
+			System.out.println("Same seed, same state: "
+					+ ((EVGameState) first[0]).toJson().getHash().equals(((EVGameState) second[0]).toJson().getHash()));
+			run("Copy only", 2, 10, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume(copy(state, turnJson));
+				}
+			});
+			run("Copy and resolve, legacy", 2, 10, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Object[] copy = copy(state, turnJson);
+					consume(legacyResolve((EVGameState) copy[0], (Turn) copy[1]));
+				}
+			});
+			run("Copy and resolve, TurnResolver", 2, 10, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Object[] copy = copy(state, turnJson);
+					consume(resolver.resolve((EVGameState) copy[0], (Turn) copy[1], sTurnSeed));
+				}
+			});
+		}
+		resolver.shutdown();
+	}
+
+	/**
+	 * Moves the actions of the given types to the back of the turn, in random order, the way the game engine originally did.
+	 * 
+	 * @param turn
+	 *            The turn
+	 * @param types
+	 *            The types of action to move
+	 */
+	private static void shakeUpActions(final Turn turn, final Class<?>... types)
+	{
+		final List<Action> actionsCopy = new ArrayList<Action>(turn.getActionsOfType(types));
+		Collections.shuffle(actionsCopy);
+		for (final Action act : actionsCopy) {
+			turn.reEnqueueAction(act);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 #!/bin/bash
 
-exclude='/\.svn|/\.settings|/\.project|/javadoc|/deploy|/res/'
+# Benchmarks (and the legacy code they compare against) are development tools, and are not shipped
+exclude='/\.svn|/\.settings|/\.project|/javadoc|/deploy|/res/|^\./benchmark'
 
 echo "Building everVoid jar."
 IFS="`echo -en "\n\b"`"
@@ -47,6 +47,7 @@ import com.evervoid.state.Color;
 import com.evervoid.state.EVGameState;
 import com.evervoid.state.action.Turn;
 import com.evervoid.utils.LoggerUtils;
+import com.evervoid.utils.LoggerUtils.LogMessage;
 import com.jme3.network.MessageConnection;
 
 public class EVClientEngine implements EVMessageListener
@@ -119,7 +120,7 @@ public class EVClientEngine implements EVMessageListener
             {
                 EVGameState state;
                 try {
-                    state = new EVGameState(Json.fromFile(saveFile));
+                    state = new EVGameState(EVClientSaver.load(saveFile));
                     sInstance.aClient.sendEverMessage(new LoadGameRequest(state));
                 } catch (final Exception e) {
                     LoggerUtils.warning("Caught exception " + e + "with message " + e.getMessage()
@@ -321,12 +322,23 @@ public class EVClientEngine implements EVMessageListener
                 observer.playerWon(GameView.getGameState().getPlayerByName(messageContents.getString()));
             }
         } else if (messageType.equals(SaveGameStateReply.class.getName())) {
-            for (final EVGameMessageListener observer : aGameObservers) {
-                try {
-                    observer.receivedSaveGameReply(messageContents.isNull() ? null : new EVGameState(messageContents));
-                } catch (final BadJsonInitialization e) {
+            final SaveGameStateReply reply = new SaveGameStateReply(messageContents);
+            final EVGameState serverState;
+            try {
+                serverState = reply.getGameState(GameView.getGameState());
+            } catch (final BadJsonInitialization e) {
+                if (reply.isFullState()) {
                     // If we really receive a bad game state from the server, something is very wrong
+                    LoggerUtils.severe("The server has sent a bad game state.");
+                } else {
+                    // The patch did not apply to our state; ask for the whole thing instead
+                    LoggerUtils.warning("Could not patch the game state with the server reply, requesting the full state.");
+                    requestGameState(null);
                 }
+                return;
+            }
+            for (final EVGameMessageListener observer : aGameObservers) {
+                observer.receivedSaveGameReply(serverState);
             }
         }
     }
@@ -339,7 +351,13 @@ public class EVClientEngine implements EVMessageListener
     @Override
     public void messageReceived(final MessageConnection source, final EVMessage message)
     {
-        LoggerUtils.info("Client received: " + message + " | " + message.getContent().toPrettyString());
+        LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE, new LogMessage() {
+            @Override
+            public String build()
+            {
+                return "Client received: " + message + " | " + message.getContent().toPrettyString();
+            }
+        });
         if (message.getType().equals(PingMessage.class.getName())) {
             returnPing(message);
             return;
@@ -2,14 +2,20 @@ package com.evervoid.client;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.evervoid.json.Json;
+import com.evervoid.state.BadSaveFileException;
 import com.evervoid.state.EVGameState;
+import com.evervoid.state.SaveFile;
+import com.evervoid.utils.LoggerUtils;
 
 /**
  * This class deals with saving everVoid games to disk. It determines the extension name and location of these save files.
+ * Games are saved as compressed {@link SaveFile}s; save files from before those, holding the plain Json representation of
+ * the state, can still be loaded.
  */
 public class EVClientSaver
 {
@@ -41,6 +47,26 @@ public class EVClientSaver
 		return sInstance;
 	}
 
+	/**
+	 * Reads the Json representation of a saved state from a save file, whatever its format.
+	 * 
+	 * @param file
+	 *            The save file
+	 * @return The Json representation of the state
+	 * @throws BadSaveFileException
+	 *             If the file is not a valid save file
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public static Json load(final File file) throws BadSaveFileException, IOException
+	{
+		if (SaveFile.isChunked(file)) {
+			return new SaveFile(file).readState();
+		}
+		// Save files used to hold the whole state as a single Json object
+		return Json.fromFile(file);
+	}
+
 	/**
 	 * @return The directory in which everVoid games are saved.
 	 */
@@ -105,11 +131,17 @@ public class EVClientSaver
 	 * 
 	 * @param filename
 	 *            The location of the file on disk.
-	 * @return The Json contained by the parameter file.
+	 * @return The Json contained by the parameter file; null if it cannot be read.
 	 */
 	public Json loadGame(final String filename)
 	{
-		return Json.fromFile(new File(getSaveFilesDirectory(), filename));
+		try {
+			return load(new File(getSaveFilesDirectory(), filename));
+		}
+		catch (final Exception e) {
+			LoggerUtils.warning("Cannot load save file " + filename + ": " + e);
+			return null;
+		}
 	}
 
 	/**
@@ -123,6 +155,13 @@ public class EVClientSaver
 	 */
 	private boolean saveGame(final File file, final EVGameState state)
 	{
-		return state.toJson().toFile(file);
+		try {
+			SaveFile.write(file, state, true);
+			return true;
+		}
+		catch (final IOException e) {
+			LoggerUtils.warning("Cannot save game to " + file + ": " + e);
+			return false;
+		}
 	}
 }
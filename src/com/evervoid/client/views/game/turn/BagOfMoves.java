@@ -1,13 +1,11 @@
 package com.evervoid.client.views.game.turn;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import com.evervoid.state.SolarSystem;
 import com.evervoid.state.action.ship.MoveShip;
-import com.evervoid.state.geometry.Point;
+import com.evervoid.state.geometry.PointSet;
 import com.evervoid.state.prop.ShipPath;
 
 /**
@@ -17,11 +15,11 @@ class BagOfMoves
 {
 	private final SolarSystem aContainer;
 	private final List<MoveShip> aMoves = new ArrayList<MoveShip>();
-	private final Set<Point> aPoints;
+	private final PointSet aPoints;
 
 	BagOfMoves(final MoveShip initial)
 	{
-		aPoints = new HashSet<Point>(initial.getFinalPath().getPoints());
+		aPoints = new PointSet(initial.getFinalPath().getPoints());
 		aMoves.add(initial);
 		aContainer = (SolarSystem) initial.getShip().getContainer();
 	}
@@ -42,16 +40,8 @@ class BagOfMoves
 		if (equals(other) || !aContainer.equals(other.aContainer)) { // Can't collide with self or with another container
 			return false;
 		}
-		if (other.aPoints.size() < aPoints.size()) { // If other has less points
-			return other.collidesWith(this); // Then switch around the order of comparison
-		}
-		// Else, the current bag is the smaller one
-		for (final Point p : aPoints) {
-			if (other.aPoints.contains(p)) {
-				return true;
-			}
-		}
-		return false;
+		// The intersection is checked from the smaller bag
+		return aPoints.intersects(other.aPoints);
 	}
 
 	MoveShip getOneMove()
@@ -68,9 +58,7 @@ class BagOfMoves
 			aMoves.add(act);
 		}
 		other.aMoves.clear();
-		for (final Point p : other.aPoints) {
-			aPoints.add(p);
-		}
+		aPoints.addAll(other.aPoints);
 		other.aPoints.clear();
 	}
 }
\ No newline at end of file
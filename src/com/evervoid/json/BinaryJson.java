@@ -0,0 +1,374 @@
+package com.evervoid.json;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of Json trees, for when the output does not need to be human-readable (network messages). Each node
+ * is a tag byte followed by its value; ints and sizes are variable-length, and every distinct string (attribute names, mostly)
+ * is only spelled out the first time it appears, later occurrences referring back to it by index. Regular usage:
+ * BinaryJson.write(json, stream); Json copy = BinaryJson.read(stream);
+ */
+public class BinaryJson
+{
+	/**
+	 * Largest number of bytes a single encoded tree is decoded from.
+	 */
+	public static final int sMaxLength = 64 << 20;
+	/**
+	 * Tag of a Boolean node with value false.
+	 */
+	private static final int sTagFalse = 1;
+	/**
+	 * Tag of a decimal Number node; followed by the 8 bytes of the double.
+	 */
+	private static final int sTagFloat = 4;
+	/**
+	 * Tag of an integer Number node; followed by the zigzag varint of the value.
+	 */
+	private static final int sTagInt = 3;
+	/**
+	 * Tag of a List node; followed by the varint number of elements, then the elements.
+	 */
+	private static final int sTagList = 6;
+	/**
+	 * Tag of a Null node.
+	 */
+	private static final int sTagNull = 0;
+	/**
+	 * Tag of an Object node; followed by the varint number of attributes, then the (string key, value) pairs.
+	 */
+	private static final int sTagObject = 7;
+	/**
+	 * Tag of a String node; followed by the string.
+	 */
+	private static final int sTagString = 5;
+	/**
+	 * Tag of a Boolean node with value true.
+	 */
+	private static final int sTagTrue = 2;
+
+	/**
+	 * Decodes a Json tree from a stream, reading at most {@link #sMaxLength} bytes.
+	 * 
+	 * @param in
+	 *            The stream to read from; only the bytes of the tree are consumed
+	 * @return The decoded Json tree
+	 * @throws IOException
+	 *             If the stream cannot be read, or does not contain a valid encoded tree
+	 */
+	public static Json read(final InputStream in) throws IOException
+	{
+		return read(in, sMaxLength);
+	}
+
+	/**
+	 * Decodes a Json tree from a stream holding a known number of bytes. Every size read from the stream is checked against
+	 * the bytes left before anything is allocated for it, so that a malformed or hostile stream cannot make the decoder
+	 * allocate more than the stream could possibly describe.
+	 * 
+	 * @param in
+	 *            The stream to read from; only the bytes of the tree are consumed
+	 * @param length
+	 *            The number of bytes available in the stream; at most {@link #sMaxLength}
+	 * @return The decoded Json tree
+	 * @throws IOException
+	 *             If the stream cannot be read, or does not contain a valid encoded tree within the given length
+	 */
+	public static Json read(final InputStream in, final int length) throws IOException
+	{
+		return new BinaryJson(in, Math.min(length, sMaxLength)).readNode();
+	}
+
+	/**
+	 * Encodes a Json tree to a stream. The stream is flushed but not closed.
+	 * 
+	 * @param json
+	 *            The Json tree to encode
+	 * @param out
+	 *            The stream to write to
+	 * @throws IOException
+	 *             If the stream cannot be written to
+	 */
+	public static void write(final Json json, final OutputStream out) throws IOException
+	{
+		final BinaryJson encoder = new BinaryJson(out);
+		encoder.writeNode(json);
+		encoder.aOut.flush();
+	}
+
+	/**
+	 * The stream to read from, when decoding.
+	 */
+	private final DataInputStream aIn;
+	/**
+	 * The stream to write to, when encoding.
+	 */
+	private final DataOutputStream aOut;
+	/**
+	 * Strings seen so far, by index, when decoding.
+	 */
+	private final List<String> aReadStrings;
+	/**
+	 * Number of bytes left to read, when decoding.
+	 */
+	private int aRemaining;
+	/**
+	 * Indices of the strings seen so far, when encoding.
+	 */
+	private final Map<String, Integer> aWrittenStrings;
+
+	/**
+	 * Creates a decoder.
+	 * 
+	 * @param in
+	 *            The stream to read from
+	 * @param length
+	 *            The number of bytes that may be read from the stream
+	 */
+	private BinaryJson(final InputStream in, final int length)
+	{
+		aIn = new DataInputStream(in);
+		aOut = null;
+		aRemaining = length;
+		aReadStrings = new ArrayList<String>();
+		aWrittenStrings = null;
+	}
+
+	/**
+	 * Creates an encoder.
+	 * 
+	 * @param out
+	 *            The stream to write to
+	 */
+	private BinaryJson(final OutputStream out)
+	{
+		aIn = null;
+		aOut = new DataOutputStream(out);
+		aRemaining = 0;
+		aReadStrings = null;
+		aWrittenStrings = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Checks that a number of items could fit in the bytes left, without consuming them.
+	 * 
+	 * @param count
+	 *            The number of items
+	 * @param minimumSize
+	 *            The smallest number of bytes a single item takes
+	 * @throws IOException
+	 *             If the items cannot possibly fit in the bytes left
+	 */
+	private void checkSize(final int count, final int minimumSize) throws IOException
+	{
+		if (count < 0 || (long) count * minimumSize > aRemaining) {
+			throw new IOException("Binary Json size " + (count & 0xffffffffL) + " exceeds the " + aRemaining
+					+ " bytes left");
+		}
+	}
+
+	/**
+	 * Accounts for bytes about to be read.
+	 * 
+	 * @param bytes
+	 *            The number of bytes about to be read
+	 * @throws IOException
+	 *             If fewer bytes than that are left
+	 */
+	private void consume(final int bytes) throws IOException
+	{
+		if (bytes < 0 || bytes > aRemaining) {
+			throw new IOException("Binary Json size " + (bytes & 0xffffffffL) + " exceeds the " + aRemaining
+					+ " bytes left");
+		}
+		aRemaining -= bytes;
+	}
+
+	/**
+	 * @return The next node in the stream
+	 * @throws IOException
+	 *             If the stream cannot be read or is invalid
+	 */
+	private Json readNode() throws IOException
+	{
+		consume(1);
+		final int tag = aIn.readUnsignedByte();
+		switch (tag) {
+			case sTagNull:
+				return Json.getNullNode();
+			case sTagFalse:
+				return new Json(false);
+			case sTagTrue:
+				return new Json(true);
+			case sTagInt:
+				final int zigzag = readVarInt();
+				return new Json(zigzag >>> 1 ^ -(zigzag & 1));
+			case sTagFloat:
+				consume(8);
+				return new Json(aIn.readDouble());
+			case sTagString:
+				return new Json(readString());
+			case sTagList:
+				final int length = readVarInt();
+				// Every element takes at least one byte
+				checkSize(length, 1);
+				final List<Json> elements = new ArrayList<Json>(length);
+				for (int i = 0; i < length; i++) {
+					elements.add(readNode());
+				}
+				return new Json(elements);
+			case sTagObject:
+				final int attributes = readVarInt();
+				// Every attribute takes at least two bytes: a string reference and a value
+				checkSize(attributes, 2);
+				final Json object = new Json();
+				for (int i = 0; i < attributes; i++) {
+					final String key = readString();
+					object.setAttribute(key, readNode());
+				}
+				return object;
+		}
+		throw new IOException("Invalid binary Json tag: " + tag);
+	}
+
+	/**
+	 * Reads a string, either spelled out or as a reference to a previous one.
+	 * 
+	 * @return The string
+	 * @throws IOException
+	 *             If the stream cannot be read or is invalid
+	 */
+	private String readString() throws IOException
+	{
+		final int header = readVarInt();
+		if ((header & 1) != 0) {
+			final int index = header >>> 1;
+			if (index >= aReadStrings.size()) {
+				throw new IOException("Invalid binary Json string reference: " + index);
+			}
+			return aReadStrings.get(index);
+		}
+		consume(header >>> 1);
+		final byte[] bytes = new byte[header >>> 1];
+		aIn.readFully(bytes);
+		final String str = new String(bytes, "UTF-8");
+		aReadStrings.add(str);
+		return str;
+	}
+
+	/**
+	 * @return The next unsigned variable-length int in the stream
+	 * @throws IOException
+	 *             If the stream cannot be read or is invalid
+	 */
+	private int readVarInt() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			consume(1);
+			final int b = aIn.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid binary Json varint");
+	}
+
+	/**
+	 * Writes a node and its children.
+	 * 
+	 * @param json
+	 *            The node to write
+	 * @throws IOException
+	 *             If the stream cannot be written to
+	 */
+	private void writeNode(final Json json) throws IOException
+	{
+		switch (json.getType()) {
+			case NULL:
+				aOut.write(sTagNull);
+				break;
+			case BOOLEAN:
+				aOut.write(json.getBoolean() ? sTagTrue : sTagFalse);
+				break;
+			case NUMBER:
+				if (json.isInteger()) {
+					final int value = json.getInt();
+					aOut.write(sTagInt);
+					writeVarInt(value << 1 ^ value >> 31);
+				}
+				else {
+					aOut.write(sTagFloat);
+					aOut.writeDouble(json.getDouble());
+				}
+				break;
+			case STRING:
+				aOut.write(sTagString);
+				writeString(json.getString());
+				break;
+			case LIST:
+				aOut.write(sTagList);
+				writeVarInt(json.size());
+				for (final Json element : json) {
+					writeNode(element);
+				}
+				break;
+			case OBJECT:
+				aOut.write(sTagObject);
+				writeVarInt(json.size());
+				for (final String key : json.getAttributes()) {
+					writeString(key);
+					writeNode(json.getAttribute(key));
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Writes a string, spelling it out the first time and referring back to it afterwards.
+	 * 
+	 * @param str
+	 *            The string to write
+	 * @throws IOException
+	 *             If the stream cannot be written to
+	 */
+	private void writeString(final String str) throws IOException
+	{
+		final Integer index = aWrittenStrings.get(str);
+		if (index != null) {
+			writeVarInt(index << 1 | 1);
+			return;
+		}
+		aWrittenStrings.put(str, aWrittenStrings.size());
+		final byte[] bytes = str.getBytes("UTF-8");
+		writeVarInt(bytes.length << 1);
+		aOut.write(bytes);
+	}
+
+	/**
+	 * Writes an unsigned int in 1 to 5 bytes, 7 bits at a time.
+	 * 
+	 * @param value
+	 *            The value to write
+	 * @throws IOException
+	 *             If the stream cannot be written to
+	 */
+	private void writeVarInt(final int value) throws IOException
+	{
+		int remaining = value;
+		while ((remaining & ~0x7f) != 0) {
+			aOut.write(remaining & 0x7f | 0x80);
+			remaining >>>= 7;
+		}
+		aOut.write(remaining);
+	}
+}
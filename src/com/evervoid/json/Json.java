@@ -2,12 +2,14 @@ package com.evervoid.json;
 
 import static com.evervoid.utils.ResourceUtils.getResourceDir;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.security.MessageDigest;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -16,6 +18,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A Json node.
@@ -54,15 +57,164 @@ public class Json implements Iterable<Json>, Jsonable
 		STRING;
 	}
 
+	/**
+	 * A 128-bit structural hash of a node, along with the hash epoch it was computed in.
+	 */
+	private static final class StructuralHash
+	{
+		/**
+		 * The epoch this hash was computed in; it is stale if the epoch has moved on since.
+		 */
+		private final long aEpoch;
+		/**
+		 * High 64 bits of the hash.
+		 */
+		private final long aHigh;
+		/**
+		 * Low 64 bits of the hash.
+		 */
+		private final long aLow;
+
+		/**
+		 * @param high
+		 *            High 64 bits of the hash
+		 * @param low
+		 *            Low 64 bits of the hash
+		 * @param epoch
+		 *            The epoch this hash was computed in
+		 */
+		private StructuralHash(final long high, final long low, final long epoch)
+		{
+			aHigh = high;
+			aLow = low;
+			aEpoch = epoch;
+		}
+	}
+
 	/**
 	 * The format for Json decimals. determines the number of significant values after the decimal point.
 	 */
 	private static final DecimalFormat sDoubleFormat = new DecimalFormat("#.####################");
+	/**
+	 * Current hash epoch. Cached hashes are only valid within the epoch they were computed in. Modifying a node that has a
+	 * cached hash moves to a new epoch, since the cached hashes of its ancestors (which it does not know about) become wrong.
+	 * Building new trees out of existing nodes does not touch the epoch.
+	 */
+	private static final AtomicLong sHashEpoch = new AtomicLong();
+	/**
+	 * Multiplier for the high half of structural hashes (64-bit FNV prime).
+	 */
+	private static final long sHashPrimeHigh = 0x100000001b3L;
+	/**
+	 * Multiplier for the low half of structural hashes (64-bit golden ratio).
+	 */
+	private static final long sHashPrimeLow = 0x9e3779b97f4a7c15L;
 	/**
 	 * Maximum length that a line can reach in .toPrettyPrint()
 	 */
 	private static final int sPrettyStringMaximumLength = 72;
 
+	/**
+	 * Writes the decimal representation of an int, without going through an intermediate String.
+	 * 
+	 * @param out
+	 *            The Appendable to write to
+	 * @param value
+	 *            The value to write
+	 * @throws IOException
+	 *             If the Appendable cannot be written to
+	 */
+	private static void appendInt(final Appendable out, final int value) throws IOException
+	{
+		if (value == Integer.MIN_VALUE) {
+			out.append("-2147483648");
+			return;
+		}
+		int remaining = value;
+		if (remaining < 0) {
+			out.append('-');
+			remaining = -remaining;
+		}
+		int divisor = 1;
+		while (remaining / divisor >= 10) {
+			divisor *= 10;
+		}
+		while (divisor > 0) {
+			out.append((char) ('0' + remaining / divisor % 10));
+			divisor /= 10;
+		}
+	}
+
+	/**
+	 * Writes an attribute key followed by its separator. Same output as {@link JsonParser#keyString(String)}.
+	 * 
+	 * @param out
+	 *            The Appendable to write to
+	 * @param key
+	 *            The key to write
+	 * @throws IOException
+	 *             If the Appendable cannot be written to
+	 */
+	private static void appendKey(final Appendable out, final String key) throws IOException
+	{
+		final String cleaner = key.trim().toLowerCase();
+		if (needsQuoting(cleaner)) {
+			appendString(out, cleaner);
+		}
+		else {
+			out.append(cleaner);
+		}
+		out.append(": ");
+	}
+
+	/**
+	 * Writes a quoted and escaped string. Same output as {@link JsonParser#sanitizeString(String)}.
+	 * 
+	 * @param out
+	 *            The Appendable to write to
+	 * @param str
+	 *            The string to write
+	 * @throws IOException
+	 *             If the Appendable cannot be written to
+	 */
+	private static void appendString(final Appendable out, final String str) throws IOException
+	{
+		out.append('"');
+		int start = 0;
+		final int length = str.length();
+		for (int i = 0; i < length; i++) {
+			final char c = str.charAt(i);
+			if (c == '\\' || c == '"' || c == '\r' || c == '\n') {
+				out.append(str, start, i);
+				start = i + 1;
+				if (c == '\\') {
+					out.append("\\\\");
+				}
+				else if (c == '"') {
+					out.append("\\\"");
+				}
+				else if (c == '\n') {
+					out.append("\\n");
+				}
+			}
+		}
+		out.append(str, start, length).append('"');
+	}
+
+	/**
+	 * Formats a decimal value. DecimalFormat is not thread-safe, and nodes may be serialized from several threads at once.
+	 * 
+	 * @param value
+	 *            The value to format
+	 * @return The formatted value
+	 */
+	private static String formatDouble(final double value)
+	{
+		synchronized (sDoubleFormat) {
+			return sDoubleFormat.format(value);
+		}
+	}
+
 	/**
 	 * Parse a Json file and return a Json object
 	 * 
@@ -72,19 +224,27 @@ public class Json implements Iterable<Json>, Jsonable
 	 */
 	public static Json fromFile(final File jsonFile)
 	{
-		String s = "";
+		Reader reader = null;
 		try {
 			// I hate Java IO
-			final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile)));
-			String line;
-			while ((line = reader.readLine()) != null) {
-				s += line.trim() + "\n";
-			}
+			reader = new InputStreamReader(new FileInputStream(jsonFile), "UTF-8");
+			// Best-effort, as before streaming: keep whatever could be read
+			return new JsonParser(reader, false).parse();
 		}
 		catch (final Exception e) {
 			e.printStackTrace();
 		}
-		return fromString(s);
+		finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				}
+				catch (final IOException e) {
+					// Nothing left to do with it anyway
+				}
+			}
+		}
+		return new Json();
 	}
 
 	/**
@@ -99,6 +259,20 @@ public class Json implements Iterable<Json>, Jsonable
 		return fromFile(new File(getResourceDir() + jsonFile.replace("/", File.separator)));
 	}
 
+	/**
+	 * Parse Json from a Reader and return a Json object. The Reader is consumed progressively and is not closed.
+	 * 
+	 * @param reader
+	 *            The Reader to parse from
+	 * @return The parsed representation
+	 * @throws JsonParseException
+	 *             If the Reader fails, or if the Json it holds is malformed or cut short
+	 */
+	public static Json fromReader(final Reader reader)
+	{
+		return new JsonParser(reader, true).parse();
+	}
+
 	/**
 	 * Parse a Json String and return a Json object
 	 * 
@@ -119,6 +293,78 @@ public class Json implements Iterable<Json>, Jsonable
 		return new Json(JsonType.NULL);
 	}
 
+	/**
+	 * Hashes a string, ignoring carriage returns (which are dropped during serialization).
+	 * 
+	 * @param seed
+	 *            The starting value of the hash
+	 * @param str
+	 *            The string to hash
+	 * @param prime
+	 *            The multiplier to use
+	 * @return The hash of the string
+	 */
+	private static long hashChars(final long seed, final String str, final long prime)
+	{
+		long hash = seed;
+		final int length = str.length();
+		for (int i = 0; i < length; i++) {
+			final char c = str.charAt(i);
+			if (c != '\r') {
+				hash = (hash ^ c) * prime;
+			}
+		}
+		return mix(hash ^ length);
+	}
+
+	/**
+	 * Scrambles the bits of a hash, so that each input bit affects all output bits (MurmurHash3's finalizer).
+	 * 
+	 * @param value
+	 *            The value to scramble
+	 * @return The scrambled value
+	 */
+	private static long mix(final long value)
+	{
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * @param key
+	 *            A trimmed, lowercase key
+	 * @return Whether the key needs to be quoted when serialized
+	 */
+	private static boolean needsQuoting(final String key)
+	{
+		return key.indexOf('"') != -1 || key.indexOf('\'') != -1 || key.indexOf(' ') != -1;
+	}
+
+	/**
+	 * @param str
+	 *            A string value
+	 * @return The length of the string once quoted and escaped
+	 */
+	private static int quotedLength(final String str)
+	{
+		int length = str.length() + 2;
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+			if (c == '\\' || c == '"' || c == '\n') {
+				length++;
+			}
+			else if (c == '\r') {
+				length--;
+			}
+		}
+		return length;
+	}
+
 	/**
 	 * This node's boolean value, if it is a boolean
 	 */
@@ -144,6 +390,10 @@ public class Json implements Iterable<Json>, Jsonable
 	 * This node's map of String -> Json nodes, if it is an object
 	 */
 	private Map<String, Json> aObject = null;
+	/**
+	 * Cached structural hash of this node, or null if it has never been hashed or was modified since.
+	 */
+	private volatile StructuralHash aStructuralHash = null;
 	/**
 	 * This node's String value, if it is a String
 	 */
@@ -316,6 +566,115 @@ public class Json implements Iterable<Json>, Jsonable
 		}
 	}
 
+	/**
+	 * Computes the length of the compact representation of this node, giving up as soon as it exceeds a given budget. Used by
+	 * the pretty printer to decide whether a node fits on one line without serializing it.
+	 * 
+	 * @param budget
+	 *            The length beyond which the exact result does not matter
+	 * @return The length of {@link #toString()}, or any value greater than the budget if it is longer than that
+	 */
+	private int compactLength(final int budget)
+	{
+		switch (aType) {
+			case NUMBER:
+				if (aFromInt) {
+					return aInt < 0 ? String.valueOf(aInt).length() : aInt < 10 ? 1 : (int) Math.log10(aInt) + 1;
+				}
+				return formatDouble(aDouble).length();
+			case STRING:
+				return quotedLength(aString);
+			case BOOLEAN:
+				return aBoolean ? 4 : 5;
+			case NULL:
+				return 4;
+			case LIST:
+				int listLength = aList.size() * 2;
+				for (final Json j : aList) {
+					if (listLength > budget) {
+						break;
+					}
+					listLength += j.compactLength(budget - listLength);
+				}
+				return Math.max(listLength, 2);
+			case OBJECT:
+				int objectLength = aObject.size() * 2;
+				for (final Map.Entry<String, Json> entry : aObject.entrySet()) {
+					if (objectLength > budget) {
+						break;
+					}
+					final String key = entry.getKey().trim().toLowerCase();
+					objectLength += (needsQuoting(key) ? quotedLength(key) : key.length()) + 2;
+					objectLength += entry.getValue().compactLength(budget - objectLength);
+				}
+				return Math.max(objectLength, 2);
+		}
+		return 2;
+	}
+
+	/**
+	 * Computes the structural hash of this node from the (possibly cached) hashes of its children.
+	 * 
+	 * @param epoch
+	 *            The current hash epoch
+	 * @return The structural hash of this node
+	 */
+	private StructuralHash computeStructuralHash(final long epoch)
+	{
+		final long tag = aType.ordinal() + 1;
+		long high = tag * sHashPrimeHigh;
+		long low = tag * sHashPrimeLow;
+		switch (aType) {
+			case NUMBER:
+				// Numbers that serialize the same must hash the same, so 2 and 2.0 both hash as the integer 2
+				final long integral = getIntegralRepresentation();
+				if (integral != Long.MIN_VALUE) {
+					high = mix(high + integral);
+					low = mix(low + integral);
+				}
+				else {
+					final String number = formatDouble(aDouble);
+					high = hashChars(high, number, sHashPrimeHigh);
+					low = hashChars(low, number, sHashPrimeLow);
+				}
+				break;
+			case STRING:
+				high = hashChars(high, aString, sHashPrimeHigh);
+				low = hashChars(low, aString, sHashPrimeLow);
+				break;
+			case BOOLEAN:
+				high = mix(high + (aBoolean ? 1 : 0));
+				low = mix(low + (aBoolean ? 1 : 0));
+				break;
+			case LIST:
+				// Order matters: chain the children
+				for (final Json j : aList) {
+					final StructuralHash child = j.getStructuralHash(epoch);
+					high = mix(high * sHashPrimeHigh + child.aHigh);
+					low = mix(low * sHashPrimeLow + child.aLow);
+				}
+				high = mix(high ^ aList.size());
+				low = mix(low ^ aList.size());
+				break;
+			case OBJECT:
+				// Attributes are unordered: sum up the entries, so that no sorting is needed
+				long sumHigh = 0;
+				long sumLow = 0;
+				for (final Map.Entry<String, Json> entry : aObject.entrySet()) {
+					final String key = entry.getKey().trim().toLowerCase();
+					final StructuralHash child = entry.getValue().getStructuralHash(epoch);
+					sumHigh += mix(hashChars(high, key, sHashPrimeHigh) * sHashPrimeHigh + child.aHigh);
+					sumLow += mix(hashChars(low, key, sHashPrimeLow) * sHashPrimeLow + child.aLow);
+				}
+				high = mix(high ^ sumHigh ^ aObject.size());
+				low = mix(low ^ sumLow ^ aObject.size());
+				break;
+			case NULL:
+				break;
+		}
+		return new StructuralHash(high, low, epoch);
+	}
+
 	/**
 	 * Compares two Json nodes.
 	 * 
@@ -429,25 +788,23 @@ public class Json implements Iterable<Json>, Jsonable
 	}
 
 	/**
-	 * A representative hash that can be used for comparison purposes.
+	 * A representative hash that can be used for comparison purposes. Two nodes have the same hash if they have the same
+	 * {@link #toString()} representation. The hash is computed from the (cached) hashes of the children, so asking again for
+	 * the hash of an unchanged tree, or of a tree built out of already-hashed subtrees, is cheap.
 	 * 
-	 * @return The hash value for this Json.
+	 * @return The hash value for this Json, as 32 hexadecimal digits.
 	 */
 	public String getHash()
 	{
-		try {
-			final byte[] digest = MessageDigest.getInstance("MD5").digest(toString().getBytes("UTF-8"));
-			final StringBuilder hex = new StringBuilder(digest.length * 2);
-			for (final byte element : digest) {
-				hex.append(Character.forDigit((element & 0xf0) >> 4, 16));
-				hex.append(Character.forDigit(element & 0x0f, 16));
-			}
-			return hex.toString();
+		final StructuralHash hash = getStructuralHash();
+		final StringBuilder hex = new StringBuilder(32);
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			hex.append(Character.forDigit((int) (hash.aHigh >>> shift) & 0xf, 16));
 		}
-		catch (final Exception e) {
-			// This will never happen
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			hex.append(Character.forDigit((int) (hash.aLow >>> shift) & 0xf, 16));
 		}
-		return "";
+		return hex.toString();
 	}
 
 	/**
@@ -473,6 +830,27 @@ public class Json implements Iterable<Json>, Jsonable
 		return getAttribute(attribute).getInt();
 	}
 
+	/**
+	 * @return The value of this Number node if it serializes as an int, or Long.MIN_VALUE if it serializes as something else
+	 */
+	private long getIntegralRepresentation()
+	{
+		if (aFromInt) {
+			return aInt;
+		}
+		if (aDouble == Math.rint(aDouble) && Math.abs(aDouble) <= Integer.MAX_VALUE && !(aDouble == 0 && 1 / aDouble < 0)) {
+			return (long) aDouble;
+		}
+		if (Math.abs(aDouble) < 1) {
+			// Tiny values may still be rounded to 0
+			final String number = formatDouble(aDouble);
+			if (number.equals("0")) {
+				return 0;
+			}
+		}
+		return Long.MIN_VALUE;
+	}
+
 	/**
 	 * @return The list of children Json nodes in a Json list
 	 */
@@ -572,6 +950,29 @@ public class Json implements Iterable<Json>, Jsonable
 		return l;
 	}
 
+	/**
+	 * @return The structural hash of this node, from the cache if it is still valid
+	 */
+	private StructuralHash getStructuralHash()
+	{
+		return getStructuralHash(sHashEpoch.get());
+	}
+
+	/**
+	 * @param epoch
+	 *            The current hash epoch
+	 * @return The structural hash of this node, from the cache if it is still valid
+	 */
+	private StructuralHash getStructuralHash(final long epoch)
+	{
+		StructuralHash hash = aStructuralHash;
+		if (hash == null || hash.aEpoch != epoch) {
+			hash = computeStructuralHash(epoch);
+			aStructuralHash = hash;
+		}
+		return hash;
+	}
+
 	/**
 	 * @return The type of this node
 	 */
@@ -592,6 +993,24 @@ public class Json implements Iterable<Json>, Jsonable
 		return isObject() && aObject.containsKey(attribute);
 	}
 
+	@Override
+	public int hashCode()
+	{
+		return (int) getStructuralHash().aLow;
+	}
+
+	/**
+	 * Forgets the cached hash of this node before it gets modified. If it had one, then ancestors may have cached hashes that
+	 * include it, so all cached hashes are invalidated.
+	 */
+	private void invalidateHash()
+	{
+		if (aStructuralHash != null) {
+			aStructuralHash = null;
+			sHashEpoch.incrementAndGet();
+		}
+	}
+
 	/**
 	 * @return Whether this Json node is a Boolean or not
 	 */
@@ -600,6 +1019,14 @@ public class Json implements Iterable<Json>, Jsonable
 		return aType.equals(JsonType.BOOLEAN);
 	}
 
+	/**
+	 * @return Whether this Json node is a Number that was initialized from an integer (and serializes as such)
+	 */
+	boolean isInteger()
+	{
+		return aType.equals(JsonType.NUMBER) && aFromInt;
+	}
+
 	/**
 	 * @return Whether this Json node is a List or not
 	 */
@@ -703,6 +1130,7 @@ public class Json implements Iterable<Json>, Jsonable
 	 */
 	public Json setAttribute(final String key, final Object element)
 	{
+		invalidateHash();
 		aObject.put(key.toLowerCase(), makeJson(element));
 		return this;
 	}
@@ -769,13 +1197,26 @@ public class Json implements Iterable<Json>, Jsonable
 	 */
 	public boolean toFile(final File file)
 	{
+		Writer writer = null;
 		try {
-			new FileOutputStream(file).write(toString().getBytes("UTF-8"));
+			writer = new Utf8Writer(new FileOutputStream(file));
+			write(writer);
 			return true;
 		}
 		catch (final Exception e) {
 			e.printStackTrace();
 		}
+		finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				}
+				catch (final IOException e) {
+					e.printStackTrace();
+					return false;
+				}
+			}
+		}
 		return false;
 	}
 
@@ -822,38 +1263,14 @@ public class Json implements Iterable<Json>, Jsonable
 	 */
 	public String toPrettyString(final String prefix)
 	{
-		final String plain = toString();
-		if (plain.length() < sPrettyStringMaximumLength) {
-			return plain;
+		final StringBuilder builder = new StringBuilder();
+		try {
+			writePretty(builder, prefix);
 		}
-		switch (aType) {
-			case NUMBER:
-			case STRING:
-			case BOOLEAN:
-			case NULL:
-				// Same as regular string representation
-				return toString();
-			case LIST:
-				if (aList.isEmpty()) {
-					return "[]";
-				}
-				String str = "[";
-				for (final Json j : aList) {
-					str += "\n" + prefix + "\t" + j.toPrettyString(prefix + "\t") + ",";
-				}
-				return str.substring(0, str.length() - 1) + "\n" + prefix + "]";
-			case OBJECT:
-				if (aObject.isEmpty()) {
-					return "{}";
-				}
-				String obj = "{";
-				for (final String key : getAttributes()) {
-					obj += "\n" + prefix + "\t" + JsonParser.keyString(key) + aObject.get(key).toPrettyString(prefix + "\t")
-							+ ",";
-				}
-				return obj.substring(0, obj.length() - 1) + "\n" + prefix + "}";
+		catch (final IOException e) {
+			// StringBuilders do not throw
 		}
-		return "{}";
+		return builder.toString();
 	}
 
 	/**
@@ -863,38 +1280,134 @@ public class Json implements Iterable<Json>, Jsonable
 	 */
 	@Override
 	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		try {
+			write(builder);
+		}
+		catch (final IOException e) {
+			// StringBuilders do not throw
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Serialize this Json object to an Appendable, in the same format as {@link #toString()}.
+	 * 
+	 * @param out
+	 *            The Appendable to write to
+	 * @throws IOException
+	 *             If the Appendable cannot be written to
+	 */
+	public void write(final Appendable out) throws IOException
 	{
 		switch (aType) {
 			case NUMBER:
 				if (aFromInt) {
-					return String.valueOf(aInt);
+					appendInt(out, aInt);
+				}
+				else {
+					out.append(formatDouble(aDouble));
 				}
-				return sDoubleFormat.format(aDouble);
+				return;
 			case STRING:
-				return JsonParser.sanitizeString(aString);
+				appendString(out, aString);
+				return;
 			case BOOLEAN:
-				return Boolean.toString(aBoolean);
+				out.append(aBoolean ? "true" : "false");
+				return;
 			case NULL:
-				return "null";
+				out.append("null");
+				return;
 			case LIST:
-				if (aList.isEmpty()) {
-					return "[]";
-				}
-				String str = "[";
+				out.append('[');
+				boolean firstElement = true;
 				for (final Json j : aList) {
-					str += j.toString() + ", ";
+					if (!firstElement) {
+						out.append(", ");
+					}
+					firstElement = false;
+					j.write(out);
 				}
-				return str.substring(0, str.length() - 2) + "]";
+				out.append(']');
+				return;
 			case OBJECT:
-				if (aObject.isEmpty()) {
-					return "{}";
-				}
-				String obj = "{";
+				out.append('{');
+				boolean firstAttribute = true;
 				for (final String key : getAttributes()) {
-					obj += JsonParser.keyString(key) + aObject.get(key) + ", ";
+					if (!firstAttribute) {
+						out.append(", ");
+					}
+					firstAttribute = false;
+					appendKey(out, key);
+					aObject.get(key).write(out);
 				}
-				return obj.substring(0, obj.length() - 2) + "}";
+				out.append('}');
+				return;
+		}
+		out.append("{}");
+	}
+
+	/**
+	 * Serialize this Json object to a stream as UTF-8, in the same format as {@link #toString()}. The stream is flushed but
+	 * not closed.
+	 * 
+	 * @param out
+	 *            The stream to write to
+	 * @throws IOException
+	 *             If the stream cannot be written to
+	 */
+	public void write(final OutputStream out) throws IOException
+	{
+		final Writer writer = new Utf8Writer(out);
+		write(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Serialize this Json object to an Appendable, in the same format as {@link #toPrettyString(String)}.
+	 * 
+	 * @param out
+	 *            The Appendable to write to
+	 * @param prefix
+	 *            Prefix that will be prepended to each line
+	 * @throws IOException
+	 *             If the Appendable cannot be written to
+	 */
+	public void writePretty(final Appendable out, final String prefix) throws IOException
+	{
+		if (compactLength(sPrettyStringMaximumLength) < sPrettyStringMaximumLength || aType.equals(JsonType.NUMBER)
+				|| aType.equals(JsonType.STRING) || aType.equals(JsonType.BOOLEAN) || aType.equals(JsonType.NULL)) {
+			write(out);
+			return;
+		}
+		final String childPrefix = prefix + "\t";
+		if (aType.equals(JsonType.LIST)) {
+			out.append('[');
+			boolean firstElement = true;
+			for (final Json j : aList) {
+				if (!firstElement) {
+					out.append(',');
+				}
+				firstElement = false;
+				out.append('\n').append(childPrefix);
+				j.writePretty(out, childPrefix);
+			}
+			out.append('\n').append(prefix).append(']');
+		}
+		else {
+			out.append('{');
+			boolean firstAttribute = true;
+			for (final String key : getAttributes()) {
+				if (!firstAttribute) {
+					out.append(',');
+				}
+				firstAttribute = false;
+				out.append('\n').append(childPrefix);
+				appendKey(out, key);
+				aObject.get(key).writePretty(out, childPrefix);
+			}
+			out.append('\n').append(prefix).append('}');
 		}
-		return "{}";
 	}
 }
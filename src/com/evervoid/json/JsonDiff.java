@@ -0,0 +1,316 @@
+package com.evervoid.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes and applies differences between Json trees, so that a tree can be brought up to date by sending only what changed
+ * instead of the whole thing.
+ * <p>
+ * The side that holds the old tree does not need to send it to the side computing the difference: a {@link #digest(Json, int)}
+ * of it is enough. A digest describes the tree down to a given depth by the hashes of its nodes; everything below that depth
+ * is only known by the hash of its topmost node, and is sent in full if it changed. Elements of lists of objects which all
+ * have a distinct "id" attribute are matched by id rather than by position, so that inserting or removing one element does
+ * not make all the following ones look different.
+ * <p>
+ * A patch is a Json tree of one of these forms:
+ * <ul>
+ * <li>A null node: nothing changed.</li>
+ * <li>{"=": value}: the node is replaced by value.</li>
+ * <li>{"o": {key: patch, ...}, "-": [key, ...]}: the Object node has its listed attributes patched (or added, when the patch
+ * is a replacement), and the attributes listed in "-" removed; other attributes are kept as they are.</li>
+ * <li>{"l": [entry, ...]}: the List node is rebuilt from the entries, in order. An entry is either {"=": value}, a new
+ * element; {"@": index, "n": count}, a run of count unchanged old elements starting at index; or {"@": index, "p": patch},
+ * the old element at index, patched.</li>
+ * </ul>
+ * Regular usage: Json patch = JsonDiff.diff(JsonDiff.digest(oldTree, depth), newTree); then, on the other side, Json newTree
+ * = JsonDiff.patch(oldTree, patch). When both trees are at hand, a digest of unlimited depth gives the finest patch.
+ */
+public class JsonDiff
+{
+	/**
+	 * Number of hexadecimal digits of the node hashes kept in digests. Half of the full hash is plenty to tell apart two
+	 * versions of the same node.
+	 */
+	private static final int sDigestHashLength = 16;
+	/**
+	 * Attribute by which elements of lists of objects are matched.
+	 */
+	private static final String sKeyAttribute = "id";
+
+	/**
+	 * Computes the patch bringing a tree up to date, knowing only a digest of it.
+	 * 
+	 * @param digest
+	 *            The digest of the outdated tree, as returned by {@link #digest(Json, int)}
+	 * @param target
+	 *            The up-to-date tree
+	 * @return The patch to apply to the outdated tree; a null node if it is already up to date
+	 */
+	public static Json diff(final Json digest, final Json target)
+	{
+		if (digestHash(digest).equals(hash(target))) {
+			return Json.getNullNode();
+		}
+		if (digest.isObject() && digest.hasAttribute("o") && target.isObject()) {
+			return diffObject(digest.getAttribute("o"), target);
+		}
+		if (digest.isObject() && digest.hasAttribute("l") && target.isList()) {
+			return diffList(digest, target);
+		}
+		return replacement(target);
+	}
+
+	/**
+	 * Computes the patch of a List node against the digest of its outdated version.
+	 * 
+	 * @param digest
+	 *            The digest of the outdated List node
+	 * @param target
+	 *            The up-to-date List node
+	 * @return The patch of the List node
+	 */
+	private static Json diffList(final Json digest, final Json target)
+	{
+		final List<Json> oldElements = digest.getListAttribute("l");
+		final Map<String, Integer> oldIndices = new HashMap<String, Integer>();
+		if (digest.hasAttribute("k") && getKeys(target) != null) {
+			int index = 0;
+			for (final Json key : digest.getAttribute("k")) {
+				oldIndices.put(key.toString(), index++);
+			}
+		}
+		final List<Json> entries = new ArrayList<Json>();
+		int runStart = -1;
+		int runLength = 0;
+		for (int i = 0; i < target.size(); i++) {
+			final Json element = target.getListItem(i);
+			final int oldIndex;
+			if (oldIndices.isEmpty()) {
+				oldIndex = i < oldElements.size() ? i : -1;
+			}
+			else {
+				final Integer index = oldIndices.get(element.getAttribute(sKeyAttribute).toString());
+				oldIndex = index == null ? -1 : index;
+			}
+			final Json patch = oldIndex < 0 ? replacement(element) : diff(oldElements.get(oldIndex), element);
+			if (patch.isNull() && runLength > 0 && runStart + runLength == oldIndex) {
+				runLength++;
+				continue;
+			}
+			if (runLength > 0) {
+				entries.add(new Json().setAttribute("@", runStart).setAttribute("n", runLength));
+				runLength = 0;
+			}
+			if (patch.isNull()) {
+				runStart = oldIndex;
+				runLength = 1;
+			}
+			else if (oldIndex < 0) {
+				entries.add(patch);
+			}
+			else {
+				entries.add(new Json().setAttribute("@", oldIndex).setAttribute("p", patch));
+			}
+		}
+		if (runLength > 0) {
+			entries.add(new Json().setAttribute("@", runStart).setAttribute("n", runLength));
+		}
+		return new Json().setListAttribute("l", entries);
+	}
+
+	/**
+	 * Computes the patch of an Object node against the digests of the attributes of its outdated version.
+	 * 
+	 * @param attributes
+	 *            The digests of the attributes of the outdated Object node
+	 * @param target
+	 *            The up-to-date Object node
+	 * @return The patch of the Object node
+	 */
+	private static Json diffObject(final Json attributes, final Json target)
+	{
+		final Json patches = new Json();
+		for (final String key : target.getAttributes()) {
+			final Json value = target.getAttribute(key);
+			final Json patch = attributes.hasAttribute(key) ? diff(attributes.getAttribute(key), value) : replacement(value);
+			if (!patch.isNull()) {
+				patches.setAttribute(key, patch);
+			}
+		}
+		final List<String> removed = new ArrayList<String>();
+		for (final String key : attributes.getAttributes()) {
+			if (!target.hasAttribute(key)) {
+				removed.add(key);
+			}
+		}
+		final Json patch = new Json().setAttribute("o", patches);
+		if (!removed.isEmpty()) {
+			patch.setListAttribute("-", removed);
+		}
+		return patch;
+	}
+
+	/**
+	 * Describes a tree by the hashes of its nodes, down to a given depth. A digest is much smaller than the tree itself, yet
+	 * allows {@link #diff(Json, Json)} to tell which parts of it changed.
+	 * 
+	 * @param json
+	 *            The tree to describe
+	 * @param depth
+	 *            How many levels of nodes are described individually; with 0, the digest is only the hash of the root
+	 * @return The digest of the tree
+	 */
+	public static Json digest(final Json json, final int depth)
+	{
+		final Json hash = new Json(hash(json));
+		if (depth <= 0 || json.size() == 0) {
+			return hash;
+		}
+		if (json.isObject()) {
+			final Json attributes = new Json();
+			for (final String key : json.getAttributes()) {
+				attributes.setAttribute(key, digest(json.getAttribute(key), depth - 1));
+			}
+			return new Json().setAttribute("#", hash).setAttribute("o", attributes);
+		}
+		if (json.isList()) {
+			final List<Json> elements = new ArrayList<Json>(json.size());
+			for (final Json element : json) {
+				elements.add(digest(element, depth - 1));
+			}
+			final Json digest = new Json().setAttribute("#", hash).setListAttribute("l", elements);
+			final List<Json> keys = getKeys(json);
+			if (keys != null) {
+				digest.setListAttribute("k", keys);
+			}
+			return digest;
+		}
+		return hash;
+	}
+
+	/**
+	 * @param digest
+	 *            A digest
+	 * @return The hash of the node described by the digest
+	 */
+	private static String digestHash(final Json digest)
+	{
+		return digest.isString() ? digest.getString() : digest.getStringAttribute("#");
+	}
+
+	/**
+	 * @param list
+	 *            A List node
+	 * @return The keys by which the elements of the list can be matched, in order; null if they must be matched by position
+	 */
+	private static List<Json> getKeys(final Json list)
+	{
+		final List<Json> keys = new ArrayList<Json>(list.size());
+		final Set<String> seen = new HashSet<String>();
+		for (final Json element : list) {
+			if (!element.isObject() || !element.hasAttribute(sKeyAttribute)) {
+				return null;
+			}
+			final Json key = element.getAttribute(sKeyAttribute);
+			if (!seen.add(key.toString())) {
+				return null;
+			}
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	/**
+	 * @param json
+	 *            A Json node
+	 * @return The hash of the node, as stored in digests
+	 */
+	private static String hash(final Json json)
+	{
+		return json.getHash().substring(0, sDigestHashLength);
+	}
+
+	/**
+	 * Applies a patch to a tree. The tree itself is left untouched, but the patched tree shares the unchanged nodes with it.
+	 * 
+	 * @param base
+	 *            The tree to patch; may be null if the patch replaces it entirely
+	 * @param patch
+	 *            The patch, as returned by {@link #diff(Json, Json)}
+	 * @return The patched tree
+	 * @throws BadJsonInitialization
+	 *             If the patch is malformed or does not fit the structure of the tree
+	 */
+	public static Json patch(final Json base, final Json patch) throws BadJsonInitialization
+	{
+		if (patch.isNull()) {
+			if (base == null) {
+				throw new BadJsonInitialization();
+			}
+			return base;
+		}
+		if (!patch.isObject()) {
+			throw new BadJsonInitialization();
+		}
+		if (patch.hasAttribute("=")) {
+			return patch.getAttribute("=");
+		}
+		if (base != null && base.isObject() && patch.hasAttribute("o")) {
+			final Json patches = patch.getAttribute("o");
+			final Set<String> removed = new HashSet<String>();
+			if (patch.hasAttribute("-")) {
+				removed.addAll(patch.getStringListAttribute("-"));
+			}
+			final Json patched = new Json();
+			for (final String key : base.getAttributes()) {
+				if (!removed.contains(key) && !patches.hasAttribute(key)) {
+					patched.setAttribute(key, base.getAttribute(key));
+				}
+			}
+			for (final String key : patches.getAttributes()) {
+				patched.setAttribute(key, patch(base.getAttribute(key), patches.getAttribute(key)));
+			}
+			return patched;
+		}
+		if (base != null && base.isList() && patch.hasAttribute("l")) {
+			final List<Json> elements = new ArrayList<Json>();
+			for (final Json entry : patch.getAttribute("l")) {
+				if (!entry.isObject()) {
+					throw new BadJsonInitialization();
+				}
+				if (!entry.hasAttribute("@")) {
+					elements.add(patch(null, entry));
+					continue;
+				}
+				final int index = entry.getIntAttribute("@");
+				final int count = entry.hasAttribute("n") ? entry.getIntAttribute("n") : 1;
+				if (index < 0 || count < 1 || index + count > base.size()) {
+					throw new BadJsonInitialization();
+				}
+				if (entry.hasAttribute("p")) {
+					elements.add(patch(base.getListItem(index), entry.getAttribute("p")));
+				}
+				else {
+					elements.addAll(base.getList().subList(index, index + count));
+				}
+			}
+			return new Json(elements);
+		}
+		throw new BadJsonInitialization();
+	}
+
+	/**
+	 * @param json
+	 *            The new value of a node
+	 * @return The patch replacing the node by the new value
+	 */
+	private static Json replacement(final Json json)
+	{
+		return new Json().setAttribute("=", json);
+	}
+}
@@ -0,0 +1,33 @@
+package com.evervoid.json;
+
+/**
+ * JsonParseException is thrown when Json read from a stream cannot be read, or is cut short or malformed. It is unchecked,
+ * since parsing Json from a String never throws it.
+ */
+public class JsonParseException extends RuntimeException
+{
+	/**
+	 * For versioning purposes.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 *            What went wrong
+	 */
+	public JsonParseException(final String message)
+	{
+		super(message);
+	}
+
+	/**
+	 * @param message
+	 *            What went wrong
+	 * @param cause
+	 *            The error the input could not be read because of
+	 */
+	public JsonParseException(final String message, final Throwable cause)
+	{
+		super(message, cause);
+	}
+}
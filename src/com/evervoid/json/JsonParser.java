@@ -1,40 +1,34 @@
 package com.evervoid.json;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Parses Json strings and returns Json objects. Regular usage: Json results = new JsonParser(jsonString).parse();
+ * Parses Json strings and returns Json objects. Regular usage: Json results = new JsonParser(jsonString).parse(); The parser
+ * walks its input exactly once with a cursor, and never creates substrings of it. The input can be a String, a char array, or a
+ * Reader (which is consumed progressively through a fixed-size buffer). The accepted dialect is a superset of Json: comments
+ * (both // and /* styles), single-quoted strings, unquoted object keys, optional commas between object attributes, and
+ * trailing commas. Parsing is best-effort by default: malformed or truncated input yields whatever could be made of it. A
+ * strict parser instead throws a {@link JsonParseException} when the input cannot be read, or is malformed or cut short.
  */
 public class JsonParser
 {
     /**
-     * Matches comments
+     * Size of the buffer used when reading from a Reader.
      */
-    private static Pattern sCommentPattern = Pattern.compile("^//[^\\r\\n]*|^/\\*[\\s\\S]*?\\*/");
-    /**
-     * Matches float numbers
-     */
-    private static Pattern sFloatPattern = Pattern.compile("^-?\\d*\\.\\d+");
-    /**
-     * Matches integers
-     */
-    private static Pattern sIntPattern = Pattern.compile("^-?\\d+");
-    /**
-     * Matches the key part of a key -> value mapping ("key": value)
-     */
-    private static Pattern sObjectKeyPattern = Pattern
-                    .compile("^([\\\"']?[^:\\\"'\\\\]*(?:\\\\.[^:\"'\\\\]*)*[\"']?)\\s*:\\s*");
-    /**
-     * Matches a double-quoted string
-     */
-    private static Pattern sStringDoublePattern = Pattern.compile("^\"[^\"\\\\]*(?:\\\\.[^\"\\\\]*)*\"");
+    private static final int sReaderBufferSize = 8192;
+
     /**
-     * Matches a single-quoted string
+     * @param c
+     *            A character, or -1
+     * @return Whether c is a decimal digit.
      */
-    private static Pattern sStringSinglePattern = Pattern.compile("^'[^'\\\\]*(?:\\\\.[^'\\\\]*)*'");
+    private static boolean isDigit(final int c)
+    {
+        return c >= '0' && c <= '9';
+    }
 
     /**
      * Takes a plain string and returns a proper key string for use in a Json object
@@ -95,27 +89,69 @@ public class JsonParser
     }
 
     /**
-     * Removes leading Json comments from given string
+     * The characters being parsed. When reading from a Reader, this is a window over the input that gets refilled as the cursor
+     * moves forward.
+     */
+    private final char[] aBuffer;
+    /**
+     * Index of the next unread character in the buffer.
+     */
+    private int aCursor;
+    /**
+     * Index one past the last valid character in the buffer.
+     */
+    private int aLimit;
+    /**
+     * The Reader to pull more characters from, or null if the whole input is already in the buffer.
+     */
+    private final Reader aReader;
+    /**
+     * Reused when accumulating strings and keys.
+     */
+    private final StringBuilder aScratch = new StringBuilder();
+    /**
+     * Whether errors are thrown rather than worked around.
+     */
+    private final boolean aStrict;
+
+    /**
+     * Creates a new Json parser over a portion of a character array. The array is not copied and must not be modified while
+     * parsing.
      * 
-     * @param str
-     *            The string to remove leading comments from
-     * @return The string without leading comments
+     * @param chars
+     *            The characters to parse
+     * @param offset
+     *            The index of the first character to parse
+     * @param length
+     *            The number of characters to parse
      */
-    private static String stripLeadingComments(final String str)
+    JsonParser(final char[] chars, final int offset, final int length)
     {
-        String trimmed = str.trim();
-        Matcher commentMatcher = sCommentPattern.matcher(trimmed);
-        while (commentMatcher.find()) {
-            trimmed = trimmed.substring(commentMatcher.end()).trim();
-            commentMatcher = sCommentPattern.matcher(trimmed);
-        }
-        return trimmed;
+        aBuffer = chars;
+        aCursor = offset;
+        aLimit = offset + length;
+        aReader = null;
+        aStrict = false;
     }
 
     /**
-     * The raw unparsed string.
+     * Creates a new Json parser reading from a Reader. The Reader is consumed up to the end of the first Json value; it is not
+     * closed.
+     * 
+     * @param reader
+     *            The Reader that this parser is meant to parse
+     * @param strict
+     *            Whether to throw a {@link JsonParseException} if the Reader fails, or if the input is malformed or cut
+     *            short; otherwise, the input is considered to end there
      */
-    private final String aRawString;
+    JsonParser(final Reader reader, final boolean strict)
+    {
+        aBuffer = new char[sReaderBufferSize];
+        aCursor = 0;
+        aLimit = 0;
+        aReader = reader;
+        aStrict = strict;
+    }
 
     /**
      * Creates a new Json parser
@@ -125,105 +161,442 @@ public class JsonParser
      */
     JsonParser(final String jsonString)
     {
-        aRawString = jsonString.trim();
+        this(jsonString.toCharArray(), 0, jsonString.length());
+    }
+
+    /**
+     * Makes sure there is at least one unread character in the buffer, pulling more from the Reader if needed.
+     * 
+     * @return False if the end of the input has been reached.
+     */
+    private boolean fill()
+    {
+        if (aCursor < aLimit) {
+            return true;
+        }
+        if (aReader == null) {
+            return false;
+        }
+        try {
+            int read;
+            do {
+                read = aReader.read(aBuffer, 0, aBuffer.length);
+            }
+            while (read == 0);
+            if (read < 0) {
+                return false;
+            }
+            aCursor = 0;
+            aLimit = read;
+            return true;
+        }
+        catch (final IOException e) {
+            return readFailed(e);
+        }
+    }
+
+    /**
+     * Reports malformed or truncated input, if the parser is strict.
+     * 
+     * @param problem
+     *            What is wrong with the input
+     */
+    private void invalid(final String problem)
+    {
+        if (aStrict) {
+            throw new JsonParseException(problem);
+        }
     }
 
     /**
-     * Parses the string provided in the constructor
+     * Consumes the given keyword if the input continues with it.
      * 
-     * @return The Json object representing the string
+     * @param keyword
+     *            The keyword to match
+     * @return Whether the keyword was matched and consumed.
+     */
+    private boolean matchKeyword(final String keyword)
+    {
+        // Keywords are short, so only look within the current window
+        if (!fill() || aLimit - aCursor < keyword.length() && !refillWindow(keyword.length())) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (aBuffer[aCursor + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        aCursor += keyword.length();
+        return true;
+    }
+
+    /**
+     * Parses the input provided in the constructor
+     * 
+     * @return The Json object representing the input
      */
     Json parse()
     {
-        return parseString(aRawString).getJson();
+        return parseValue();
     }
 
     /**
-     * Parses a string partially
+     * Parses a list; the cursor is right after the opening bracket.
      * 
-     * @param str
-     *            The string to parse
-     * @return A parsing result object containing the parsed Json node and the length of the parsed portion of the
-     *         String
+     * @return The list node
      */
-    private JsonParsingResult parseString(final String str)
+    private Json parseList()
     {
-        final String trimmed = stripLeadingComments(str);
-        // Try object:
-        if (trimmed.startsWith("{")) {
-            final int initialLength = trimmed.length();
-            String dict = stripLeadingComments(trimmed.substring(1));
-            final Json node = new Json();
-            while (!dict.startsWith("}")) {
-                final Matcher keyMatch = sObjectKeyPattern.matcher(dict);
-                if (keyMatch.find()) {
-                    dict = stripLeadingComments(dict.substring(keyMatch.group().length()));
-                    final JsonParsingResult result = parseString(dict);
-                    node.setAttribute(plainKeyString(keyMatch.group(1)), result.getJson());
-                    dict = stripLeadingComments(dict.substring(result.getOffset()));
-                    if (dict.startsWith(",")) {
-                        dict = stripLeadingComments(dict.substring(1));
-                    }
-                } else {
+        final List<Json> results = new ArrayList<Json>();
+        skipIgnorable();
+        while (peek() != ']' && peek() != -1) {
+            results.add(parseValue());
+            skipIgnorable();
+            if (peek() != ',') {
+                break;
+            }
+            aCursor++;
+            skipIgnorable();
+        }
+        if (peek() == ']') {
+            aCursor++;
+        }
+        else {
+            invalid("Unterminated Json list");
+        }
+        return new Json(results);
+    }
+
+    /**
+     * Parses a number (either an integer or a decimal number).
+     * 
+     * @return The number node, or null if the input does not contain a number at the cursor.
+     */
+    private Json parseNumber()
+    {
+        aScratch.setLength(0);
+        int c = peek();
+        if (c == '-') {
+            aScratch.append('-');
+            aCursor++;
+            c = peek();
+        }
+        long integral = 0;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            aScratch.append((char) c);
+            integral = integral * 10 + (c - '0');
+            if (integral > (long) Integer.MAX_VALUE + 1) {
+                // Same failure mode as Integer.valueOf
+                throw new NumberFormatException("Integer out of range in Json input: " + aScratch);
+            }
+            digits++;
+            aCursor++;
+            c = peek();
+        }
+        if (c == '.' && isDigit(peekAhead())) {
+            // Decimal part; parse through Float in order to preserve the historical precision of Json decimals
+            aScratch.append('.');
+            aCursor++;
+            c = peek();
+            while (c >= '0' && c <= '9') {
+                aScratch.append((char) c);
+                aCursor++;
+                c = peek();
+            }
+            return new Json(Float.parseFloat(aScratch.toString()));
+        }
+        if (digits == 0) {
+            return null;
+        }
+        final long value = aScratch.charAt(0) == '-' ? -integral : integral;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer out of range in Json input: " + aScratch);
+        }
+        return new Json((int) value);
+    }
+
+    /**
+     * Parses an object; the cursor is right after the opening brace.
+     * 
+     * @return The object node
+     */
+    private Json parseObject()
+    {
+        final Json node = new Json();
+        skipIgnorable();
+        int c = peek();
+        while (c != '}' && c != -1) {
+            final String key = parseObjectKey();
+            if (key == null) {
+                break;
+            }
+            skipIgnorable();
+            node.setAttribute(key, parseValue());
+            skipIgnorable();
+            c = peek();
+            if (c == ',') {
+                aCursor++;
+                skipIgnorable();
+                c = peek();
+            }
+        }
+        if (c == '}') {
+            aCursor++;
+        }
+        else {
+            invalid("Unterminated Json object");
+        }
+        return node;
+    }
+
+    /**
+     * Parses the key part of a key -> value mapping, including the colon.
+     * 
+     * @return The plain key, or null if there is no valid key at the cursor.
+     */
+    private String parseObjectKey()
+    {
+        final int first = peek();
+        final String key;
+        if (first == '"' || first == '\'') {
+            aCursor++;
+            key = readQuoted((char) first);
+            skipIgnorable();
+        }
+        else {
+            // Unquoted keys run up to the colon, and are trimmed
+            aScratch.setLength(0);
+            int c = peek();
+            while (c != ':' && c != -1 && c != '"' && c != '\'' && c != '\\') {
+                aScratch.append((char) c);
+                aCursor++;
+                c = peek();
+            }
+            int end = aScratch.length();
+            while (end > 0 && aScratch.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            aScratch.setLength(end);
+            key = aScratch.toString();
+        }
+        if (peek() != ':') {
+            return null;
+        }
+        aCursor++;
+        return key;
+    }
+
+    /**
+     * Parses a single Json value at the cursor.
+     * 
+     * @return The parsed Json node
+     */
+    private Json parseValue()
+    {
+        skipIgnorable();
+        final int c = peek();
+        switch (c) {
+            case '{':
+                aCursor++;
+                return parseObject();
+            case '[':
+                aCursor++;
+                return parseList();
+            case '"':
+            case '\'':
+                aCursor++;
+                return new Json(readQuoted((char) c));
+            case 't':
+                if (matchKeyword("true")) {
+                    return new Json(true);
+                }
+                break;
+            case 'f':
+                if (matchKeyword("false")) {
+                    return new Json(false);
+                }
+                break;
+            case 'n':
+                if (matchKeyword("null")) {
+                    return Json.getNullNode();
+                }
+                break;
+            default:
+                final Json number = parseNumber();
+                if (number != null) {
+                    return number;
+                }
+        }
+        // If all fails, return a blank node and give up on the rest of the input
+        invalid(c == -1 ? "Json input ends before a value" : "Invalid Json value starting with '" + (char) c + "'");
+        skipToEnd();
+        return new Json();
+    }
+
+    /**
+     * @return The character at the cursor, or -1 at the end of the input.
+     */
+    private int peek()
+    {
+        if (!fill()) {
+            return -1;
+        }
+        return aBuffer[aCursor];
+    }
+
+    /**
+     * @return The character right after the cursor, or -1 if there is none.
+     */
+    private int peekAhead()
+    {
+        if (aCursor + 1 >= aLimit && !refillWindow(2)) {
+            return -1;
+        }
+        return aBuffer[aCursor + 1];
+    }
+
+    /**
+     * Handles an error reading from the Reader: a strict parser throws it, others consider the input to end there.
+     * 
+     * @param e
+     *            The error
+     * @return False, as no more input is available
+     */
+    private boolean readFailed(final IOException e)
+    {
+        if (aStrict) {
+            throw new JsonParseException("Cannot read Json input: " + e.getMessage(), e);
+        }
+        e.printStackTrace();
+        return false;
+    }
+
+    /**
+     * Reads a quoted string; the cursor is right after the opening quote. Escape sequences are decoded in a single pass: \\, \"
+     * and \n are unescaped, unknown escapes are kept as-is, and carriage returns are dropped.
+     * 
+     * @param quote
+     *            The quote character that terminates the string
+     * @return The plain string
+     */
+    private String readQuoted(final char quote)
+    {
+        aScratch.setLength(0);
+        while (fill()) {
+            // Copy unescaped runs in bulk
+            final int start = aCursor;
+            while (aCursor < aLimit) {
+                final char c = aBuffer[aCursor];
+                if (c == quote || c == '\\' || c == '\r') {
                     break;
                 }
+                aCursor++;
+            }
+            aScratch.append(aBuffer, start, aCursor - start);
+            if (aCursor == aLimit) {
+                continue;
             }
-            return new JsonParsingResult(node, initialLength - dict.length() + 1);
-        }
-        // Try boolean:
-        if (trimmed.startsWith("true")) {
-            return new JsonParsingResult(new Json(true), 4);
-        }
-        if (trimmed.startsWith("false")) {
-            return new JsonParsingResult(new Json(false), 5);
-        }
-        // Try null:
-        if (trimmed.startsWith("null")) {
-            return new JsonParsingResult(Json.getNullNode(), 4);
-        }
-        // Try string:
-        if (trimmed.startsWith("\"")) {
-            final Matcher stringDoubleMatcher = sStringDoublePattern.matcher(trimmed);
-            if (stringDoubleMatcher.find()) {
-                return new JsonParsingResult(new Json(plainString(stringDoubleMatcher.group())),
-                                stringDoubleMatcher.group());
-            }
-        }
-        if (trimmed.startsWith("'")) {
-            final Matcher stringSingleMatcher = sStringSinglePattern.matcher(trimmed);
-            if (stringSingleMatcher.find()) {
-                return new JsonParsingResult(new Json(plainString(stringSingleMatcher.group())),
-                                stringSingleMatcher.group());
-            }
-        }
-        // Try list:
-        if (trimmed.startsWith("[")) {
-            final int initialLength = trimmed.length();
-            String list = stripLeadingComments(trimmed.substring(1));
-            final List<Json> results = new ArrayList<Json>();
-            while (!list.startsWith("]")) {
-                final JsonParsingResult result = parseString(list);
-                results.add(result.getJson());
-                list = list.substring(result.getOffset()).trim();
-                if (list.startsWith(",")) {
-                    list = stripLeadingComments(list.substring(1));
-                } else {
+            final char c = aBuffer[aCursor++];
+            if (c == quote) {
+                return aScratch.toString();
+            }
+            if (c == '\\') {
+                final int escaped = peek();
+                if (escaped == -1) {
+                    aScratch.append('\\');
                     break;
                 }
+                aCursor++;
+                if (escaped == 'n') {
+                    aScratch.append('\n');
+                }
+                else if (escaped == '\\' || escaped == '"') {
+                    aScratch.append((char) escaped);
+                }
+                else {
+                    aScratch.append('\\').append((char) escaped);
+                }
             }
-            return new JsonParsingResult(new Json(results), initialLength - list.length() + 1);
+            // Carriage returns are dropped
         }
-        // Try float:
-        final Matcher floatMatcher = sFloatPattern.matcher(trimmed);
-        if (floatMatcher.find()) {
-            return new JsonParsingResult(new Json(Float.valueOf(floatMatcher.group())), floatMatcher.group());
+        invalid("Unterminated Json string");
+        return aScratch.toString();
+    }
+
+    /**
+     * Makes sure that at least the given number of characters are available in the buffer, by compacting it and reading more.
+     * Only meaningful when reading from a Reader.
+     * 
+     * @param count
+     *            The number of characters needed
+     * @return Whether the requested number of characters is available.
+     */
+    private boolean refillWindow(final int count)
+    {
+        if (aReader == null) {
+            return aLimit - aCursor >= count;
         }
-        // Try int:
-        final Matcher intMatcher = sIntPattern.matcher(trimmed);
-        if (intMatcher.find()) {
-            return new JsonParsingResult(new Json(Integer.valueOf(intMatcher.group())), intMatcher.group());
+        final int remaining = aLimit - aCursor;
+        System.arraycopy(aBuffer, aCursor, aBuffer, 0, remaining);
+        aCursor = 0;
+        aLimit = remaining;
+        try {
+            while (aLimit < count) {
+                final int read = aReader.read(aBuffer, aLimit, aBuffer.length - aLimit);
+                if (read < 0) {
+                    return false;
+                }
+                aLimit += read;
+            }
+        }
+        catch (final IOException e) {
+            return readFailed(e);
+        }
+        return true;
+    }
+
+    /**
+     * Skips whitespace and comments.
+     */
+    private void skipIgnorable()
+    {
+        while (fill()) {
+            final char c = aBuffer[aCursor];
+            if (c <= ' ') {
+                aCursor++;
+            }
+            else if (c == '/' && peekAhead() == '/') {
+                aCursor += 2;
+                int next = peek();
+                while (next != '\n' && next != '\r' && next != -1) {
+                    aCursor++;
+                    next = peek();
+                }
+            }
+            else if (c == '/' && peekAhead() == '*') {
+                aCursor += 2;
+                while (fill()) {
+                    if (aBuffer[aCursor] == '*' && peekAhead() == '/') {
+                        aCursor += 2;
+                        break;
+                    }
+                    aCursor++;
+                }
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the cursor to the end of the input.
+     */
+    private void skipToEnd()
+    {
+        while (fill()) {
+            aCursor = aLimit;
         }
-        // If all fails, return a blank node
-        return new JsonParsingResult(new Json(), str);
     }
 }
@@ -0,0 +1,147 @@
+package com.evervoid.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Writer that encodes characters straight to UTF-8 bytes into an internal buffer, which is handed to the underlying
+ * OutputStream when full. This avoids the intermediate Strings and byte arrays of String.getBytes(), as well as the charset
+ * lookup and encoder state of an OutputStreamWriter.
+ */
+public class Utf8Writer extends Writer
+{
+	/**
+	 * Size of the byte buffer.
+	 */
+	private static final int sBufferSize = 8192;
+	/**
+	 * Encoded bytes not yet written to the stream.
+	 */
+	private final byte[] aBuffer = new byte[sBufferSize];
+	/**
+	 * Number of valid bytes in the buffer.
+	 */
+	private int aCount = 0;
+	/**
+	 * High surrogate waiting for its low half, when a write call ends in the middle of a surrogate pair; 0 if none.
+	 */
+	private char aHighSurrogate = 0;
+	/**
+	 * The stream to write to.
+	 */
+	private final OutputStream aOut;
+
+	/**
+	 * Creates a new UTF-8 Writer.
+	 * 
+	 * @param out
+	 *            The OutputStream that the encoded bytes are written to
+	 */
+	public Utf8Writer(final OutputStream out)
+	{
+		aOut = out;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		aOut.close();
+	}
+
+	/**
+	 * Encodes a single code point into the buffer.
+	 * 
+	 * @param codePoint
+	 *            The code point to encode
+	 * @throws IOException
+	 *             If the buffer needed flushing and the stream could not be written to
+	 */
+	private void encode(final int codePoint) throws IOException
+	{
+		if (aCount > sBufferSize - 4) {
+			flushBuffer();
+		}
+		if (codePoint < 0x80) {
+			aBuffer[aCount++] = (byte) codePoint;
+		}
+		else if (codePoint < 0x800) {
+			aBuffer[aCount++] = (byte) (0xc0 | codePoint >> 6);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint & 0x3f);
+		}
+		else if (codePoint < 0x10000) {
+			aBuffer[aCount++] = (byte) (0xe0 | codePoint >> 12);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint & 0x3f);
+		}
+		else {
+			aBuffer[aCount++] = (byte) (0xf0 | codePoint >> 18);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+			aBuffer[aCount++] = (byte) (0x80 | codePoint & 0x3f);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		flushBuffer();
+		aOut.flush();
+	}
+
+	/**
+	 * Writes the buffered bytes to the stream, without flushing the stream itself.
+	 * 
+	 * @throws IOException
+	 *             If the stream could not be written to
+	 */
+	private void flushBuffer() throws IOException
+	{
+		if (aCount > 0) {
+			aOut.write(aBuffer, 0, aCount);
+			aCount = 0;
+		}
+	}
+
+	@Override
+	public void write(final char[] chars, final int offset, final int length) throws IOException
+	{
+		for (int i = offset; i < offset + length; i++) {
+			write(chars[i]);
+		}
+	}
+
+	@Override
+	public void write(final int c) throws IOException
+	{
+		final char ch = (char) c;
+		if (aHighSurrogate != 0) {
+			final char high = aHighSurrogate;
+			aHighSurrogate = 0;
+			if (Character.isLowSurrogate(ch)) {
+				encode(Character.toCodePoint(high, ch));
+				return;
+			}
+			// Unpaired high surrogate; same replacement as String.getBytes()
+			encode('?');
+		}
+		if (Character.isHighSurrogate(ch)) {
+			aHighSurrogate = ch;
+		}
+		else if (Character.isLowSurrogate(ch)) {
+			encode('?');
+		}
+		else {
+			encode(ch);
+		}
+	}
+
+	@Override
+	public void write(final String str, final int offset, final int length) throws IOException
+	{
+		for (int i = offset; i < offset + length; i++) {
+			write(str.charAt(i));
+		}
+	}
+}
@@ -1,8 +1,14 @@
 package com.evervoid.network;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.evervoid.json.BinaryJson;
 import com.evervoid.json.Json;
 import com.evervoid.json.Jsonable;
 import com.jme3.network.Message;
@@ -14,6 +20,76 @@ import com.jme3.network.Message;
  */
 public abstract class EVMessage implements Message
 {
+    /**
+     * Receives the encoded message content and cuts it into parts of at most {@link PartialMessage#sMaxPartialMessageSize}
+     * bytes as it goes, so that the whole encoded content never needs to exist as a single array.
+     */
+    private static class PartSplitter extends OutputStream
+    {
+        /**
+         * The part being filled.
+         */
+        private byte[] aCurrent = new byte[PartialMessage.sMaxPartialMessageSize];
+        /**
+         * Number of bytes in the part being filled.
+         */
+        private int aCurrentSize = 0;
+        /**
+         * The parts filled so far.
+         */
+        private final List<byte[]> aParts = new ArrayList<byte[]>();
+
+        /**
+         * @return All parts, including the last incomplete one
+         */
+        List<byte[]> getParts()
+        {
+            if (aCurrentSize > 0 || aParts.isEmpty()) {
+                aParts.add(Arrays.copyOf(aCurrent, aCurrentSize));
+                aCurrentSize = 0;
+            }
+            return aParts;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length)
+        {
+            int position = offset;
+            while (position < offset + length) {
+                final int chunk = Math.min(offset + length - position, aCurrent.length - aCurrentSize);
+                System.arraycopy(bytes, position, aCurrent, aCurrentSize, chunk);
+                aCurrentSize += chunk;
+                position += chunk;
+                if (aCurrentSize == aCurrent.length) {
+                    aParts.add(aCurrent);
+                    aCurrent = new byte[PartialMessage.sMaxPartialMessageSize];
+                    aCurrentSize = 0;
+                }
+            }
+        }
+
+        @Override
+        public void write(final int b)
+        {
+            aCurrent[aCurrentSize++] = (byte) b;
+            if (aCurrentSize == aCurrent.length) {
+                aParts.add(aCurrent);
+                aCurrent = new byte[PartialMessage.sMaxPartialMessageSize];
+                aCurrentSize = 0;
+            }
+        }
+    }
+
+    /**
+     * How message contents are encoded when sent. Receivers understand all encodings.
+     */
+    private static final byte sEncoding = PartialMessage.sEncodingBinaryJson;
+    /**
+     * The ID of the next message to be sent. Starts at a random value, so that messages sent by different processes are very
+     * unlikely to share IDs.
+     */
+    private static final AtomicLong sNextMessageId = new AtomicLong(new Random().nextLong());
+
     /**
      * The Json containing the message.
      */
@@ -51,18 +127,22 @@ public abstract class EVMessage implements Message
      */
     protected List<PartialMessage> getMessages()
     {
-        String jsonString = aMessageContent.toString();
-        final String hash = aMessageContent.getHash();
-        final List<String> parts = new ArrayList<String>();
-        while (jsonString.length() > 0) {
-            final int partSize = Math.min(PartialMessage.sMaxPartialMessageSize, jsonString.length());
-            parts.add(jsonString.substring(0, partSize));
-            jsonString = jsonString.substring(partSize);
+        final PartSplitter splitter = new PartSplitter();
+        try {
+            if (sEncoding == PartialMessage.sEncodingBinaryJson) {
+                BinaryJson.write(aMessageContent, splitter);
+            } else {
+                aMessageContent.write(splitter);
+            }
+        } catch (final IOException e) {
+            // PartSplitter does not throw
         }
+        final List<byte[]> parts = splitter.getParts();
+        final long messageId = sNextMessageId.getAndIncrement();
         final List<PartialMessage> messages = new ArrayList<PartialMessage>(parts.size());
         int partNumber = 0;
-        for (final String part : parts) {
-            messages.add(new PartialMessage(part, getType(), hash, partNumber, parts.size()));
+        for (final byte[] part : parts) {
+            messages.add(new PartialMessage(getType(), messageId, sEncoding, part, partNumber, parts.size()));
             partNumber++;
         }
         return messages;
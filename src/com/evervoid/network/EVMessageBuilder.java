@@ -1,18 +1,42 @@
 package com.evervoid.network;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
 
+import com.evervoid.json.BinaryJson;
 import com.evervoid.json.Json;
+import com.evervoid.json.JsonParseException;
+import com.evervoid.utils.LoggerUtils;
 
 /**
- * This class compiles a list of {@link PartialMessage} into the {@link EVMessage} they represent. The
+ * This class compiles a list of {@link PartialMessage} into the {@link EVMessage} they represent.
  */
 public class EVMessageBuilder
 {
     /**
-     * The assembled partial messages.
+     * How the content of the message is encoded.
      */
-    private final String[] aParts;
+    private final byte aEncoding;
+    /**
+     * When the last part was received, in milliseconds.
+     */
+    private long aLastActivity;
+    /**
+     * The content slices of the partial messages received so far.
+     */
+    private final byte[][] aParts;
+    /**
+     * Number of content bytes received so far.
+     */
+    private int aReceivedBytes = 0;
+    /**
+     * Number of distinct parts received so far.
+     */
+    private int aReceivedParts = 0;
     /**
      * The type of the message being built.
      */
@@ -23,11 +47,50 @@ public class EVMessageBuilder
      *            The type of the final message being built.
      * @param totalParts
      *            The total number of parts in the final message.
+     * @param encoding
+     *            How the content of the final message is encoded.
      */
-    public EVMessageBuilder(final String type, final int totalParts)
+    public EVMessageBuilder(final String type, final int totalParts, final byte encoding)
     {
         aType = type;
-        aParts = new String[totalParts];
+        aParts = new byte[totalParts][];
+        aEncoding = encoding;
+        aLastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Decodes the content of the message, reading the parts in sequence without concatenating them.
+     * 
+     * @return The content of the message
+     * @throws IOException
+     *             If the content is invalid
+     */
+    private Json decodeContent() throws IOException
+    {
+        final InputStream in = new SequenceInputStream(new Enumeration<InputStream>()
+        {
+            private int aNextPart = 0;
+
+            @Override
+            public boolean hasMoreElements()
+            {
+                return aNextPart < aParts.length;
+            }
+
+            @Override
+            public InputStream nextElement()
+            {
+                return new ByteArrayInputStream(aParts[aNextPart++]);
+            }
+        });
+        if (aEncoding == PartialMessage.sEncodingBinaryJson) {
+            return BinaryJson.read(in, aReceivedBytes);
+        }
+        try {
+            return Json.fromReader(new InputStreamReader(in, "UTF-8"));
+        } catch (final JsonParseException e) {
+            throw new IOException(e.getMessage(), e);
+        }
     }
 
     /**
@@ -35,10 +98,27 @@ public class EVMessageBuilder
      * 
      * @param message
      *            The partial message to place.
+     * @return The number of content bytes added; 0 if the part was a duplicate.
      */
-    void addPart(final PartialMessage message)
+    int addPart(final PartialMessage message)
     {
-        aParts[message.getPart()] = message.getDecodedMessage();
+        aLastActivity = System.currentTimeMillis();
+        if (aParts[message.getPart()] != null) {
+            return 0;
+        }
+        final byte[] payload = message.getPayload();
+        aParts[message.getPart()] = payload;
+        aReceivedParts++;
+        aReceivedBytes += payload.length;
+        return payload.length;
+    }
+
+    /**
+     * @return When the last part was received, in milliseconds.
+     */
+    long getLastActivity()
+    {
+        return aLastActivity;
     }
 
     /**
@@ -48,41 +128,50 @@ public class EVMessageBuilder
      */
     EVMessage getMessage()
     {
-        String finalJson = "";
-        for (final String aPart : aParts) {
-            if (aPart == null) {
-                return null;
-            }
-            finalJson += aPart;
+        if (!isComplete()) {
+            return null;
         }
         try {
-            // now we have to find the constructor for the type of the message
-            final Class<?> cl = Class.forName(aType);
-            if (finalJson.equals("{}")) {
-                // TODO there has to be a better way to do this.  Is this a NULL NODE?
-                // if there is no content then use the default constructor
-                // this just makes creating EVMessage subclasses easier
-                return (EVMessage) cl.newInstance();
+            final EVMessage message = MessageRegistry.create(aType, decodeContent());
+            if (message == null) {
+                LoggerUtils.warning("Dropping message of unregistered type " + aType);
             }
-            final java.lang.reflect.Constructor<?> co = cl.getConstructor(Json.class);
-            return (EVMessage) co.newInstance(Json.fromString(finalJson));
-
-        } catch (final ClassNotFoundException e) {
-            e.printStackTrace();
-        } catch (final SecurityException e) {
-            e.printStackTrace();
-        } catch (final NoSuchMethodException e) {
-            e.printStackTrace();
-        } catch (final IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (final InstantiationException e) {
-            e.printStackTrace();
-        } catch (final IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (final InvocationTargetException e) {
-            e.printStackTrace();
+            return message;
+        } catch (final IOException e) {
+            LoggerUtils.warning("Dropping message of type " + aType + ", its content is invalid: " + e);
+            return null;
         }
-        return null; // TODO throw an exception here instead
-        // TODO here in case test code fails: return new EVMessage(Json.fromString(finalJson), aType);
+    }
+
+    /**
+     * @return The number of content bytes received so far.
+     */
+    int getReceivedBytes()
+    {
+        return aReceivedBytes;
+    }
+
+    /**
+     * @return The total number of parts in the final message.
+     */
+    int getTotalParts()
+    {
+        return aParts.length;
+    }
+
+    /**
+     * @return The type of the final message being built.
+     */
+    String getType()
+    {
+        return aType;
+    }
+
+    /**
+     * @return Whether all parts have been received.
+     */
+    boolean isComplete()
+    {
+        return aReceivedParts == aParts.length;
     }
 }
@@ -3,14 +3,15 @@ package com.evervoid.network;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 import com.evervoid.client.EverVoidClient;
 import com.evervoid.utils.LoggerUtils;
 import com.jme3.network.Client;
+import com.jme3.network.ClientStateListener.DisconnectInfo;
 import com.jme3.network.Message;
 import com.jme3.network.MessageListener;
 import com.jme3.network.base.DefaultClient;
@@ -26,14 +27,22 @@ import com.jme3.network.kernel.udp.UdpConnector;
  */
 public class EVNetworkClient extends DefaultClient implements MessageListener<Client>
 {
+    /**
+     * Holds the partial messages received until they can be built into a full EVMessage.
+     */
+    private final MessageAssembler aAssembler = new MessageAssembler("server");
+    /**
+     * Number of payload bytes received from the server.
+     */
+    private final AtomicLong aBytesReceived = new AtomicLong();
     /**
      * All Objects listening for EVMessages
      */
     private final Set<EVMessageListener> aListeners = new HashSet<EVMessageListener>();
     /**
-     * The partial messages received to be held until they can be built into a full EVMessage.
+     * Delivers outgoing messages to the server.
      */
-    private final Map<String, EVMessageBuilder> aMessages = new HashMap<String, EVMessageBuilder>();
+    private final Postman aPostman = new Postman(this);
 
     /**
      * Connects to the default everVoid ports at the given host.
@@ -81,6 +90,15 @@ public class EVNetworkClient extends DefaultClient implements MessageListener<Cl
         LoggerUtils.info("Client has a new EverMessageListener: " + listener);
     }
 
+    @Override
+    protected void closeConnections(final DisconnectInfo info)
+    {
+        // whether the client was closed or the server went away, drop what is still queued and release its senders
+        aPostman.close();
+        aAssembler.close();
+        super.closeConnections(info);
+    }
+
     /**
      * Attempts to connect UDP and TCP sockets and sets them if connection is sucessful.
      * 
@@ -127,51 +145,45 @@ public class EVNetworkClient extends DefaultClient implements MessageListener<Cl
     }
 
     /**
-     * @param message
-     *            The message to get a builder for
-     * @return The builder associated with the given message
+     * @return The number of payload bytes received from the server.
      */
-    private EVMessageBuilder getBuilder(final PartialMessage message)
+    public long getBytesReceived()
     {
-        final String hash = message.getHash();
-        if (!aMessages.containsKey(hash)) {
-            final EVMessageBuilder builder = new EVMessageBuilder(message.getType(), message.getTotalParts());
-            aMessages.put(hash, builder);
-            return builder;
-        }
-        return aMessages.get(hash);
+        return aBytesReceived.get();
+    }
+
+    /**
+     * @return The Postman delivering messages to the server; it holds the outgoing queue metrics
+     */
+    public Postman getPostman()
+    {
+        return aPostman;
     }
 
     @Override
     public void messageReceived(final Client source, final Message m)
     {
         final PartialMessage msg = (PartialMessage) m;
-        LoggerUtils.info("Client side EverMessageHandler received a new PartialMessage from " + source + ": " + msg);
-        final EVMessageBuilder builder = getBuilder(msg);
-        builder.addPart(msg);
-        final EVMessage finalMsg = builder.getMessage();
+        aBytesReceived.addAndGet(msg.getPayload().length);
+        // Logged for every part, so the text is only built when network debugging is on
+        final boolean debug = LoggerUtils.isLoggable(LoggerUtils.sNetworkCategory, Level.FINE);
+        if (debug) {
+            LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE,
+                    "Client side EverMessageHandler received a new PartialMessage from " + source + ": " + msg);
+        }
+        final EVMessage finalMsg = aAssembler.addPart(msg);
         if (finalMsg == null) {
-            LoggerUtils.info("PartialMessage is not enough to complete the full EverMessage.");
             return;
         }
-        LoggerUtils.info("PartialMessage is enough to complete the full EverMessage from " + source + ": " + finalMsg);
-        removePartialMessage(msg);
+        if (debug) {
+            LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE,
+                    "PartialMessage is enough to complete the full EverMessage from " + source + ": " + finalMsg);
+        }
         for (final EVMessageListener listener : aListeners) {
             listener.messageReceived(source, finalMsg);
         }
     }
 
-    /**
-     * Removes the partial message from the saved list.
-     * 
-     * @param message
-     *            The message to remove.
-     */
-    private void removePartialMessage(final PartialMessage message)
-    {
-        aMessages.remove(message.getHash());
-    }
-
     /**
      * Sends an EVMessage asynchronously.
      * 
@@ -198,11 +210,6 @@ public class EVNetworkClient extends DefaultClient implements MessageListener<Cl
      */
     public void sendEverMessage(final EVMessage message, final boolean async) throws EVMessageSendingException
     {
-        final Postman postman = new Postman(this, message);
-        if (async) {
-            postman.start();
-            return;
-        }
-        postman.send();
+        aPostman.deliver(message, async);
     }
 }
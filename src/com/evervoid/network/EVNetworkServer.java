@@ -5,12 +5,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
 import com.evervoid.client.EverVoidClient;
 import com.evervoid.utils.LoggerUtils;
+import com.jme3.network.ConnectionListener;
 import com.jme3.network.HostedConnection;
 import com.jme3.network.Message;
 import com.jme3.network.MessageListener;
+import com.jme3.network.Server;
 import com.jme3.network.base.DefaultServer;
 import com.jme3.network.kernel.tcp.SelectorKernel;
 import com.jme3.network.kernel.udp.UdpKernel;
@@ -18,10 +21,10 @@ import com.jme3.network.serializing.Serializer;
 
 /**
  * A network server for everVoid games. Connections are represented by {@link HostedConnection}s. Received
- * {@link PartialMessage}s are stored until they can be compiled into {@link EVMessage}s and sent to all the
+ * {@link PartialMessage}s are stored, per connection, until they can be compiled into {@link EVMessage}s and sent to all the
  * {@link EVMessageListener}s.
  */
-public class EVNetworkServer extends DefaultServer implements MessageListener<HostedConnection>
+public class EVNetworkServer extends DefaultServer implements MessageListener<HostedConnection>, ConnectionListener
 {
 	/**
 	 * The default everVoid port for TCP communication.
@@ -39,14 +42,18 @@ public class EVNetworkServer extends DefaultServer implements MessageListener<Ho
 	 * The default everVoid port for TCP discovery.
 	 */
 	public static final int sDiscoveryPortUDP = 51258;
+	/**
+	 * Assemblers of incoming messages, one per connection.
+	 */
+	private final Map<HostedConnection, MessageAssembler> aAssemblers = new HashMap<HostedConnection, MessageAssembler>();
 	/**
 	 * All objects listening for EVMessages delivered to the server.
 	 */
 	private final Set<EVMessageListener> aListeners = new HashSet<EVMessageListener>();
 	/**
-	 * Incomplete EVMessages waiting for more PartialMessages.
+	 * Postmen delivering outgoing messages, one per connection.
 	 */
-	private final Map<String, EVMessageBuilder> aMessages = new HashMap<String, EVMessageBuilder>();
+	private final Map<HostedConnection, Postman> aPostmen = new HashMap<HostedConnection, Postman>();
 
 	/**
 	 * Creates a server on the default everVoid ports.
@@ -74,6 +81,7 @@ public class EVNetworkServer extends DefaultServer implements MessageListener<Ho
 		super("everVoid", EverVoidClient.getVersionAsInt(), new SelectorKernel(tcpPort), new UdpKernel(updPort));
 		Serializer.registerClass(PartialMessage.class);
 		addMessageListener(this);
+		addConnectionListener(this);
 	}
 
 	/**
@@ -87,52 +95,97 @@ public class EVNetworkServer extends DefaultServer implements MessageListener<Ho
 		aListeners.add(listener);
 	}
 
+	@Override
+	public void connectionAdded(final Server server, final HostedConnection conn)
+	{
+		// Created here only, so that sending to a connection once it is gone cannot bring its Postman back
+		synchronized (aAssemblers) {
+			aAssemblers.put(conn, new MessageAssembler(conn.toString()));
+		}
+		synchronized (aPostmen) {
+			aPostmen.put(conn, new Postman(conn));
+		}
+	}
+
+	@Override
+	public void connectionRemoved(final Server server, final HostedConnection conn)
+	{
+		final MessageAssembler assembler;
+		synchronized (aAssemblers) {
+			assembler = aAssemblers.remove(conn);
+		}
+		if (assembler != null) {
+			if (assembler.getPendingMessages() > 0) {
+				LoggerUtils.info("Server dropping " + assembler.getPendingMessages() + " incomplete messages ("
+						+ assembler.getPendingBytes() + " bytes) from " + conn);
+			}
+			assembler.close();
+		}
+		final Postman postman;
+		synchronized (aPostmen) {
+			postman = aPostmen.remove(conn);
+		}
+		if (postman != null) {
+			LoggerUtils.info("Server closing " + postman + " to " + conn);
+			postman.close();
+		}
+	}
+
 	/**
-	 * @param message
-	 *            The message to get a builder for
-	 * @return The builder associated with the given message
+	 * @param connection
+	 *            A connection to a client
+	 * @return The assembler of the messages received from the connection; null if the connection is not (or no longer)
+	 *         connected
 	 */
-	private EVMessageBuilder getBuilder(final PartialMessage message)
+	private MessageAssembler getAssembler(final HostedConnection connection)
 	{
-		final String hash = message.getHash();
-		if (!aMessages.containsKey(hash)) {
-			final EVMessageBuilder builder = new EVMessageBuilder(message.getType(), message.getTotalParts());
-			aMessages.put(hash, builder);
-			return builder;
+		synchronized (aAssemblers) {
+			return aAssemblers.get(connection);
+		}
+	}
+
+	/**
+	 * @param connection
+	 *            A connection to a client
+	 * @return The Postman delivering messages to the connection, which holds the outgoing queue metrics; null if the
+	 *         connection is not (or no longer) connected
+	 */
+	public Postman getPostman(final HostedConnection connection)
+	{
+		synchronized (aPostmen) {
+			return aPostmen.get(connection);
 		}
-		return aMessages.get(hash);
 	}
 
 	@Override
 	public void messageReceived(final HostedConnection source, final Message m)
 	{
 		final PartialMessage msg = (PartialMessage) m;
-		LoggerUtils.info("Server received a new PartialMessage from " + source + ": " + msg);
-		final EVMessageBuilder builder = getBuilder(msg);
-		builder.addPart(msg);
-		final EVMessage finalMsg = builder.getMessage();
+		// Logged for every part, so the text is only built when network debugging is on
+		final boolean debug = LoggerUtils.isLoggable(LoggerUtils.sNetworkCategory, Level.FINE);
+		if (debug) {
+			LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE, "Server received a new PartialMessage from " + source
+					+ ": " + msg);
+		}
+		final MessageAssembler assembler = getAssembler(source);
+		if (assembler == null) {
+			LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.WARNING, "Server dropping " + msg + " from " + source
+					+ ", the connection is gone");
+			return;
+		}
+		final EVMessage finalMsg = assembler.addPart(msg);
 		if (finalMsg == null) {
-			LoggerUtils.info("PartialMessage is not enough to complete the full EverMessage.");
 			return;
 		}
-		LoggerUtils.info("PartialMessage is enough to complete the full EverMessage from " + source + ": " + finalMsg);
-		removePartialMessage(msg);
+		if (debug) {
+			LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE,
+					"PartialMessage is enough to complete the full EverMessage from " + source + ": " + finalMsg);
+		}
 		for (final EVMessageListener listener : aListeners) {
 			listener.messageReceived(source, finalMsg);
 		}
 	}
 
-	/**
-	 * Removes the partial message from the saved list.
-	 * 
-	 * @param message
-	 *            The message to remove.
-	 */
-	private void removePartialMessage(final PartialMessage message)
-	{
-		aMessages.remove(message.getHash());
-	}
-
 	/**
 	 * Sends an EVMessage to the connection.
 	 * 
@@ -143,16 +196,15 @@ public class EVNetworkServer extends DefaultServer implements MessageListener<Ho
 	 * @param async
 	 *            Whether sending should be asynchronous.
 	 * @throws EVMessageSendingException
-	 *             If the destination cannot be reached. Asynchronous messages will not raise exceptions.
+	 *             If the destination cannot be reached, or is not connected anymore.
 	 */
 	public void sendEVMessage(final HostedConnection destination, final EVMessage message, final boolean async)
 			throws EVMessageSendingException
 	{
-		final Postman postman = new Postman(destination, message);
-		if (async) {
-			postman.start();
-			return;
+		final Postman postman = getPostman(destination);
+		if (postman == null) {
+			throw new EVMessageSendingException(destination);
 		}
-		postman.send();
+		postman.deliver(message, async);
 	}
 }
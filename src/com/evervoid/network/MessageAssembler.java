@@ -0,0 +1,254 @@
+package com.evervoid.network;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.evervoid.utils.LoggerUtils;
+import com.evervoid.utils.TimingWheel;
+import com.evervoid.utils.TimingWheel.Timeout;
+
+/**
+ * Reassembles the {@link PartialMessage}s coming from a single connection into {@link EVMessage}s. Message IDs are only
+ * unique per sender, so there must be one assembler per connection. Incomplete messages are dropped if no part arrives for a
+ * while, and the total size of incomplete messages is bounded, so that a misbehaving or disconnected peer cannot make them
+ * pile up. Each incomplete message has a timeout on the shared {@link TimingWheel}; it is not pushed back on every part, but
+ * checked when it is up and scheduled again for the rest of the time if a part came in meanwhile. Each incomplete message is
+ * charged for its bookkeeping as well as its content, and the number of incomplete messages is capped, so that first parts
+ * with little or no content cannot pile up either.
+ */
+class MessageAssembler
+{
+	/**
+	 * Bytes charged for the bookkeeping of each incomplete message, on top of its content and of its slots for parts.
+	 */
+	private static final int sBuilderOverhead = 256;
+	/**
+	 * Maximum number of bytes of incomplete messages held for a connection, content and bookkeeping included.
+	 */
+	static final int sMaxPendingBytes = 16 << 20;
+	/**
+	 * Maximum number of incomplete messages held for a connection; a peer sends the parts of its messages in order, so it
+	 * only ever has a few of them in progress at once.
+	 */
+	static final int sMaxPendingMessages = 64;
+	/**
+	 * Maximum number of parts of a message; a message with more parts could not fit within {@link #sMaxPendingBytes}.
+	 * Checked before the builder of a message is created, since the builder allocates room for every part up front.
+	 */
+	static final int sMaxParts = sMaxPendingBytes / PartialMessage.sMaxPartialMessageSize + 1;
+	/**
+	 * How long an incomplete message is held without receiving any new part, in milliseconds.
+	 */
+	static final long sPartTimeout = 60000;
+	/**
+	 * Bytes charged for each slot a builder allocates for a part.
+	 */
+	private static final int sSlotSize = 8;
+
+	/**
+	 * @param totalParts
+	 *            The number of parts of a message
+	 * @return The bytes charged for the bookkeeping of the message while it is incomplete
+	 */
+	private static int getOverhead(final int totalParts)
+	{
+		return sBuilderOverhead + totalParts * sSlotSize;
+	}
+
+	/**
+	 * Incomplete messages, by message ID.
+	 */
+	private final Map<Long, EVMessageBuilder> aBuilders = new HashMap<Long, EVMessageBuilder>();
+	/**
+	 * The timeouts of the incomplete messages, by message ID.
+	 */
+	private final Map<Long, Timeout> aExpiries = new HashMap<Long, Timeout>();
+	/**
+	 * Number of bytes held in incomplete messages, content and bookkeeping included.
+	 */
+	private int aPendingBytes = 0;
+	/**
+	 * Description of the connection, for logging.
+	 */
+	private final String aSource;
+
+	/**
+	 * @param source
+	 *            Description of the connection, for logging
+	 */
+	MessageAssembler(final String source)
+	{
+		aSource = source;
+	}
+
+	/**
+	 * Adds a part to the message it belongs to. The message is decoded once the assembler is released, so that decoding a
+	 * large message does not hold up the timeouts of the shared {@link TimingWheel}.
+	 * 
+	 * @param part
+	 *            The received part
+	 * @return The complete message, if this part completed it; null otherwise.
+	 */
+	EVMessage addPart(final PartialMessage part)
+	{
+		final EVMessageBuilder complete = collect(part);
+		if (complete == null) {
+			return null;
+		}
+		return complete.getMessage();
+	}
+
+	/**
+	 * Drops all incomplete messages and cancels their timeouts, once the connection is gone.
+	 */
+	synchronized void close()
+	{
+		for (final Timeout timeout : aExpiries.values()) {
+			timeout.cancel();
+		}
+		aExpiries.clear();
+		aBuilders.clear();
+		aPendingBytes = 0;
+	}
+
+	/**
+	 * Adds a part to the builder of the message it belongs to.
+	 * 
+	 * @param part
+	 *            The received part
+	 * @return The builder of the message, if this part completed it; null otherwise. A complete builder is no longer held by
+	 *         the assembler.
+	 */
+	private synchronized EVMessageBuilder collect(final PartialMessage part)
+	{
+		final int total = part.getTotalParts();
+		// Only a single-part message can be empty; parts of larger messages always carry content
+		if (total <= 0 || total > sMaxParts || part.getPart() < 0 || part.getPart() >= total || part.getPayload() == null
+				|| part.getPayload().length > PartialMessage.sMaxPartialMessageSize || part.getType() == null
+				|| total > 1 && part.getPayload().length == 0) {
+			LoggerUtils.warning("Dropping malformed " + part + " from " + aSource);
+			return null;
+		}
+		final Long messageId = part.getMessageId();
+		EVMessageBuilder builder = aBuilders.get(messageId);
+		if (builder == null) {
+			if (total == 1) {
+				// Nothing to wait for
+				builder = new EVMessageBuilder(part.getType(), total, part.getEncoding());
+				builder.addPart(part);
+				return builder;
+			}
+			if (aBuilders.size() >= sMaxPendingMessages) {
+				LoggerUtils.warning("Dropping " + part + " from " + aSource + ", " + aBuilders.size()
+						+ " incomplete messages is the most allowed");
+				return null;
+			}
+			final int overhead = getOverhead(total);
+			if (aPendingBytes + overhead + part.getPayload().length > sMaxPendingBytes) {
+				LoggerUtils.warning("Dropping " + part + " from " + aSource + ", " + aPendingBytes
+						+ " bytes of incomplete messages leaves no room for it");
+				return null;
+			}
+			builder = new EVMessageBuilder(part.getType(), total, part.getEncoding());
+			aBuilders.put(messageId, builder);
+			aPendingBytes += overhead;
+			scheduleExpiry(messageId, builder, sPartTimeout);
+		}
+		else if (builder.getTotalParts() != total || !builder.getType().equals(part.getType())) {
+			LoggerUtils.warning("Dropping " + part + " from " + aSource + ", it does not match the message it belongs to");
+			return null;
+		}
+		if (aPendingBytes + part.getPayload().length > sMaxPendingBytes) {
+			LoggerUtils.warning("Dropping incomplete message #" + messageId + " from " + aSource + ", "
+					+ (aPendingBytes + part.getPayload().length) + " bytes of incomplete messages is more than the allowed "
+					+ sMaxPendingBytes);
+			drop(messageId, builder);
+			return null;
+		}
+		aPendingBytes += builder.addPart(part);
+		if (!builder.isComplete()) {
+			return null;
+		}
+		drop(messageId, builder);
+		return builder;
+	}
+
+	/**
+	 * Forgets an incomplete message, and cancels its timeout.
+	 * 
+	 * @param messageId
+	 *            The ID of the message
+	 * @param builder
+	 *            Its builder
+	 */
+	private void drop(final Long messageId, final EVMessageBuilder builder)
+	{
+		aBuilders.remove(messageId);
+		aPendingBytes -= builder.getReceivedBytes() + getOverhead(builder.getTotalParts());
+		final Timeout timeout = aExpiries.remove(messageId);
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	/**
+	 * Drops an incomplete message if it has not received any part for too long, or checks it again later otherwise.
+	 * 
+	 * @param messageId
+	 *            The ID of the message
+	 * @param builder
+	 *            Its builder
+	 */
+	private synchronized void expire(final Long messageId, final EVMessageBuilder builder)
+	{
+		if (aBuilders.get(messageId) != builder) {
+			return; // Completed or dropped since
+		}
+		final long idle = System.currentTimeMillis() - builder.getLastActivity();
+		if (idle < sPartTimeout) {
+			scheduleExpiry(messageId, builder, sPartTimeout - idle);
+			return;
+		}
+		LoggerUtils.warning("Dropping incomplete " + builder.getType() + " #" + messageId + " from " + aSource
+				+ ", no part received for " + idle + " ms");
+		drop(messageId, builder);
+	}
+
+	/**
+	 * @return The number of bytes held in incomplete messages, content and bookkeeping included.
+	 */
+	synchronized int getPendingBytes()
+	{
+		return aPendingBytes;
+	}
+
+	/**
+	 * @return The number of incomplete messages held.
+	 */
+	synchronized int getPendingMessages()
+	{
+		return aBuilders.size();
+	}
+
+	/**
+	 * Schedules the check of whether an incomplete message has timed out.
+	 * 
+	 * @param messageId
+	 *            The ID of the message
+	 * @param builder
+	 *            Its builder
+	 * @param delay
+	 *            The time until the check, in milliseconds
+	 */
+	private void scheduleExpiry(final Long messageId, final EVMessageBuilder builder, final long delay)
+	{
+		aExpiries.put(messageId, TimingWheel.getInstance().schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				expire(messageId, builder);
+			}
+		}, delay));
+	}
+}
@@ -0,0 +1,287 @@
+package com.evervoid.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.evervoid.json.Json;
+import com.evervoid.network.message.ChatMessage;
+import com.evervoid.network.message.GameStateMessage;
+import com.evervoid.network.message.JoinErrorMessage;
+import com.evervoid.network.message.LobbyStateMessage;
+import com.evervoid.network.message.PingMessage;
+import com.evervoid.network.message.PlayerDefeatedMessage;
+import com.evervoid.network.message.PlayerVictoryMessage;
+import com.evervoid.network.message.ReadyMessage;
+import com.evervoid.network.message.RequestGameState;
+import com.evervoid.network.message.SaveGameStateReply;
+import com.evervoid.network.message.ServerChatMessage;
+import com.evervoid.network.message.ServerInfoMessage;
+import com.evervoid.network.message.ServerQuitting;
+import com.evervoid.network.message.StartingGameMessage;
+import com.evervoid.network.message.TurnMessage;
+import com.evervoid.network.message.lobby.LeavingLobby;
+import com.evervoid.network.message.lobby.LoadGameRequest;
+import com.evervoid.network.message.lobby.LobbyPlayerUpdate;
+import com.evervoid.network.message.lobby.RequestJoinLobby;
+import com.evervoid.network.message.lobby.RequestServerInfo;
+import com.evervoid.network.message.lobby.StartGameMessage;
+
+/**
+ * The types of {@link EVMessage}s that can be received, each with a numeric tag and a factory. Partial messages carry the tag
+ * of their type rather than its class name, and received messages are built by their factory rather than by looking their
+ * constructor up by reflection. The tag of a type is its position in the registry: new types must be registered last, and
+ * registered types must never be removed or reordered, or clients and servers from before the change could not talk to
+ * the ones after it.
+ */
+public class MessageRegistry
+{
+	/**
+	 * Creates messages of one type from their content.
+	 */
+	public interface Factory
+	{
+		/**
+		 * @param content
+		 *            The content of the message
+		 * @return The message
+		 */
+		public EVMessage create(Json content);
+	}
+
+	/**
+	 * The factories of all registered types, indexed by tag.
+	 */
+	private static final List<Factory> sFactories = new ArrayList<Factory>();
+	/**
+	 * The tags of all registered types, by class name.
+	 */
+	private static final Map<String, Integer> sTags = new HashMap<String, Integer>();
+	/**
+	 * The class names of all registered types, indexed by tag.
+	 */
+	private static final List<String> sTypes = new ArrayList<String>();
+	static {
+		// Append new types at the end only; tags are positions in this list
+		register(ChatMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new ChatMessage(content);
+			}
+		});
+		register(GameStateMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new GameStateMessage(content);
+			}
+		});
+		register(JoinErrorMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new JoinErrorMessage(content);
+			}
+		});
+		register(LobbyStateMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new LobbyStateMessage(content);
+			}
+		});
+		register(PingMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new PingMessage(content);
+			}
+		});
+		register(PlayerDefeatedMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new PlayerDefeatedMessage(content);
+			}
+		});
+		register(PlayerVictoryMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new PlayerVictoryMessage(content);
+			}
+		});
+		register(ReadyMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new ReadyMessage(content);
+			}
+		});
+		register(RequestGameState.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new RequestGameState(content);
+			}
+		});
+		register(SaveGameStateReply.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new SaveGameStateReply(content);
+			}
+		});
+		register(ServerInfoMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new ServerInfoMessage(content);
+			}
+		});
+		register(ServerChatMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new ServerChatMessage(content);
+			}
+		});
+		register(ServerQuitting.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new ServerQuitting();
+			}
+		});
+		register(StartingGameMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new StartingGameMessage();
+			}
+		});
+		register(TurnMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new TurnMessage(content);
+			}
+		});
+		register(LeavingLobby.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new LeavingLobby();
+			}
+		});
+		register(LoadGameRequest.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new LoadGameRequest(content);
+			}
+		});
+		register(LobbyPlayerUpdate.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new LobbyPlayerUpdate(content);
+			}
+		});
+		register(RequestJoinLobby.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new RequestJoinLobby(content);
+			}
+		});
+		register(RequestServerInfo.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new RequestServerInfo();
+			}
+		});
+		register(StartGameMessage.class, new Factory()
+		{
+			@Override
+			public EVMessage create(final Json content)
+			{
+				return new StartGameMessage();
+			}
+		});
+	}
+
+	/**
+	 * Creates a message from its content.
+	 * 
+	 * @param type
+	 *            The class name of the type of the message
+	 * @param content
+	 *            The content of the message
+	 * @return The message; null if the type is not registered
+	 */
+	public static EVMessage create(final String type, final Json content)
+	{
+		final Integer tag = sTags.get(type);
+		return tag == null ? null : sFactories.get(tag).create(content);
+	}
+
+	/**
+	 * @param type
+	 *            The class name of a type of message
+	 * @return The tag of the type; -1 if it is not registered
+	 */
+	public static int getTag(final String type)
+	{
+		final Integer tag = sTags.get(type);
+		return tag == null ? -1 : tag;
+	}
+
+	/**
+	 * @param tag
+	 *            The tag of a type of message
+	 * @return The class name of the type; null if no type has this tag
+	 */
+	public static String getType(final int tag)
+	{
+		return tag >= 0 && tag < sTypes.size() ? sTypes.get(tag) : null;
+	}
+
+	/**
+	 * Registers a type of message, with the next free tag.
+	 * 
+	 * @param type
+	 *            The type
+	 * @param factory
+	 *            The factory creating messages of this type
+	 */
+	private static void register(final Class<? extends EVMessage> type, final Factory factory)
+	{
+		sTags.put(type.getName(), sFactories.size());
+		sTypes.add(type.getName());
+		sFactories.add(factory);
+	}
+}
@@ -1,30 +1,59 @@
 package com.evervoid.network;
 
-import java.io.UnsupportedEncodingException;
-
-import com.evervoid.json.Json;
 import com.jme3.network.Message;
 import com.jme3.network.serializing.Serializable;
 
 /**
  * This is the main message class. All messages that are actually sent are of this type. However, it should never be used
- * directly either. It is public because jMonkeyEngine's deserializer needs to access it.
+ * directly either. It is public because jMonkeyEngine's deserializer needs to access it. Each PartialMessage carries a slice of
+ * the encoded content of an {@link EVMessage}, along with the information needed to put the slices back together: the type of
+ * the overall message, its ID, and the index of the slice. Registered types are sent as their {@link MessageRegistry} tag
+ * rather than as their class name. These fields are written by jMonkeyEngine's binary field
+ * serializer, so none of them should be final or transient.
  */
 @Serializable
 public class PartialMessage implements Message
 {
 	/**
-	 * The maximum size for all partial messages.
+	 * Encoding of content encoded with {@link com.evervoid.json.BinaryJson}.
+	 */
+	static final byte sEncodingBinaryJson = 1;
+	/**
+	 * Encoding of content serialized as UTF-8 Json text.
+	 */
+	static final byte sEncodingJsonText = 0;
+	/**
+	 * The maximum size for all partial messages, in bytes of content.
 	 */
 	static final int sMaxPartialMessageSize = 10240;
 	/**
-	 * The contents of this message.
+	 * How the content of the overall message is encoded.
+	 */
+	private byte aEncoding;
+	/**
+	 * The ID of the overall message, unique among the messages sent by this process.
+	 */
+	private long aMessageId;
+	/**
+	 * The part number that this partial message is.
+	 */
+	private int aPart;
+	/**
+	 * This part's slice of the encoded content.
+	 */
+	private byte[] aPayload;
+	/**
+	 * The MessageRegistry tag of the type of the overall message; -1 if the type is not registered.
+	 */
+	private short aTag = -1;
+	/**
+	 * The total number of parts of the overall message.
 	 */
-	private byte[] aContent;
+	private int aTotalParts;
 	/**
-	 * The decoded version of the message.
+	 * The message type of the overall message, if it is not registered; null otherwise, the tag standing for it.
 	 */
-	private Json aDecodedMessage = null;
+	private String aType;
 
 	/**
 	 * This argument-less public constructor is necessary for deserialization on the SpiderMonkey side.
@@ -34,81 +63,63 @@ public class PartialMessage implements Message
 	}
 
 	/**
-	 * Create a new EverCompressedMessage
+	 * Create a new PartialMessage
 	 * 
-	 * @param content
-	 *            The partial message content (as a String)
 	 * @param messageType
 	 *            The message type of the overall message
-	 * @param messageHash
-	 *            The hash of the final message
+	 * @param messageId
+	 *            The ID of the overall message
+	 * @param encoding
+	 *            How the content of the overall message is encoded
+	 * @param payload
+	 *            This part's slice of the encoded content
 	 * @param messagePart
 	 *            The part number that this partial message is
 	 * @param totalParts
 	 *            The total number of parts of the overall message
 	 */
-	PartialMessage(final String content, final String messageType, final String messageHash, final int messagePart,
-			final int totalParts)
+	PartialMessage(final String messageType, final long messageId, final byte encoding, final byte[] payload,
+			final int messagePart, final int totalParts)
 	{
-		final Json innerJson = new Json().setAttribute("content", content).setAttribute("type", messageType)
-				.setAttribute("hash", messageHash).setAttribute("part", messagePart).setAttribute("total", totalParts);
-		try {
-			setContents(innerJson.toString().getBytes("UTF8"));
-		}
-		catch (final UnsupportedEncodingException e) {
-			// Never gonna happen, Java supports UTF-8
-		}
+		aTag = (short) MessageRegistry.getTag(messageType);
+		aType = aTag < 0 ? messageType : null;
+		aMessageId = messageId;
+		aEncoding = encoding;
+		aPayload = payload;
+		aPart = messagePart;
+		aTotalParts = totalParts;
 	}
 
 	/**
-	 * Decodes the underlying Json in the ByteMessage
+	 * @return How the content of the overall message is encoded
 	 */
-	private void decode()
+	byte getEncoding()
 	{
-		if (aDecodedMessage != null) {
-			return;
-		}
-		try {
-			aDecodedMessage = Json.fromString(new String(getMessage(), "UTF8"));
-		}
-		catch (final UnsupportedEncodingException e) {
-			// Never gonna happen, Java supports UTF-8
-		}
+		return aEncoding;
 	}
 
 	/**
-	 * @return The decoded message contained.
+	 * @return The ID of the overall message
 	 */
-	public String getDecodedMessage()
+	long getMessageId()
 	{
-		decode();
-		return aDecodedMessage.getStringAttribute("content");
+		return aMessageId;
 	}
 
 	/**
-	 * @return The hash of the overall message
-	 */
-	String getHash()
-	{
-		decode();
-		return aDecodedMessage.getStringAttribute("hash");
-	}
-
-	/**
-	 * @return The encoded byte message.
+	 * @return The part number of this partial message
 	 */
-	public byte[] getMessage()
+	public int getPart()
 	{
-		return aContent;
+		return aPart;
 	}
 
 	/**
-	 * @return The part number of this partial message
+	 * @return This part's slice of the encoded content of the overall message
 	 */
-	public int getPart()
+	byte[] getPayload()
 	{
-		decode();
-		return aDecodedMessage.getIntAttribute("part");
+		return aPayload;
 	}
 
 	/**
@@ -116,35 +127,22 @@ public class PartialMessage implements Message
 	 */
 	int getTotalParts()
 	{
-		decode();
-		return aDecodedMessage.getIntAttribute("total");
+		return aTotalParts;
 	}
 
 	/**
-	 * @return The type of the overall message
+	 * @return The type of the overall message; null if its tag is not known to this process
 	 */
 	String getType()
 	{
-		decode();
-		return aDecodedMessage.getStringAttribute("type");
+		return aType != null ? aType : MessageRegistry.getType(aTag);
 	}
 
 	@Override
 	public boolean isReliable()
 	{
-		// TODO Auto-generated method stub
-		return false;
-	}
-
-	/**
-	 * Sets the content of the message.
-	 * 
-	 * @param byteMessage
-	 *            The byte content to set.
-	 */
-	public void setContents(final byte[] byteMessage)
-	{
-		aContent = byteMessage;
+		// Parts must arrive, and in order; otherwise jMonkeyEngine would send them over UDP
+		return true;
 	}
 
 	@Override
@@ -157,6 +155,7 @@ public class PartialMessage implements Message
 	@Override
 	public String toString()
 	{
-		return "Part of " + getType() + " #" + getHash() + " (" + (getPart() + 1) + "/" + getTotalParts() + ")";
+		return "Part of " + getType() + " #" + aMessageId + " (" + (aPart + 1) + "/" + aTotalParts + ", " + aPayload.length
+				+ " bytes)";
 	}
 }
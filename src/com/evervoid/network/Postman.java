@@ -1,82 +1,437 @@
 package com.evervoid.network;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import com.evervoid.utils.LoggerUtils;
 import com.jme3.network.MessageConnection;
 
 /**
- * Separates a {@link EVMessage} into smaller {@link PartialMessage}s and sends them to a {@link MessageConnection} . Sending
- * can be done synchronously or asynchronously. Note that ALL SENDING MUST BE DONE THROUGH THE POSTMAN. EVMessages are not
- * serializable, only PartialMessages are.
+ * Delivers {@link EVMessage}s to a {@link MessageConnection}. There is one Postman per connection. Messages are separated
+ * into smaller {@link PartialMessage}s which are queued, and the queue is drained by a thread from an executor shared by all
+ * Postmen; everything queued by the time the thread gets to it is sent in one batch. Sending can be done synchronously or
+ * asynchronously. Note that ALL SENDING MUST BE DONE THROUGH THE POSTMAN. EVMessages are not serializable, only
+ * PartialMessages are.
  */
-class Postman extends Thread
+public class Postman implements Runnable
 {
 	/**
-	 * The destination to which the message will be delivered.
+	 * Shared by the parts of one message, to report back to a synchronous sender.
+	 */
+	private static class Delivery
+	{
+		/**
+		 * Released once the last part has been handed to the connection, or if the message is dropped.
+		 */
+		private final CountDownLatch aDone = new CountDownLatch(1);
+		/**
+		 * Whether any part failed to be sent.
+		 */
+		private volatile boolean aFailed = false;
+	}
+
+	/**
+	 * A queued part, along with what is needed to account for it once sent.
+	 */
+	private static class Envelope
+	{
+		/**
+		 * The delivery of the message that this part belongs to.
+		 */
+		private final Delivery aDelivery;
+		/**
+		 * Whether this is the last part of its message.
+		 */
+		private final boolean aLast;
+		/**
+		 * The part to send.
+		 */
+		private final PartialMessage aPart;
+		/**
+		 * When this part was queued, in nanoseconds.
+		 */
+		private final long aQueuedTime;
+
+		/**
+		 * @param part
+		 *            The part to send
+		 * @param delivery
+		 *            The delivery of the message that this part belongs to
+		 * @param last
+		 *            Whether this is the last part of its message
+		 */
+		private Envelope(final PartialMessage part, final Delivery delivery, final boolean last)
+		{
+			aPart = part;
+			aDelivery = delivery;
+			aLast = last;
+			aQueuedTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Executor draining the queues of all Postmen. Connections to clients never block when sent to (jMonkeyEngine queues the
+	 * data until the socket is writable), so a couple of threads are enough.
+	 */
+	private static final ExecutorService sExecutor = Executors.newFixedThreadPool(2, new ThreadFactory()
+	{
+		private final AtomicInteger aCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "Postman " + aCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	/**
+	 * Maximum number of payload bytes queued for a single connection. Senders trying to queue more block until the queue
+	 * drains, so a slow connection slows down its senders rather than piling up memory.
+	 */
+	static final int sMaxQueuedBytes = 1 << 20;
+	/**
+	 * How long a sender waits for room in the queue, or for a synchronous message to be sent, before giving up, in
+	 * milliseconds.
+	 */
+	private static final long sQueueTimeout = 30000;
+	/**
+	 * Number of payload bytes sent.
+	 */
+	private long aBytesSent = 0;
+	/**
+	 * Whether the connection is gone; nothing gets queued anymore.
+	 */
+	private boolean aClosed = false;
+	/**
+	 * The destination to which messages are delivered.
 	 */
 	private final MessageConnection aDestination;
 	/**
-	 * The message to deliver.
+	 * Largest number of parts that were queued at once.
+	 */
+	private int aMaxQueueDepth = 0;
+	/**
+	 * Longest time a part spent between being queued and being sent, in nanoseconds.
+	 */
+	private long aMaxSendLatency = 0;
+	/**
+	 * Number of messages entirely sent.
+	 */
+	private long aMessagesSent = 0;
+	/**
+	 * Number of parts that the connection failed to send.
+	 */
+	private long aPartsFailed = 0;
+	/**
+	 * Number of parts sent.
+	 */
+	private long aPartsSent = 0;
+	/**
+	 * Parts waiting to be sent.
+	 */
+	private final Queue<Envelope> aQueue = new LinkedList<Envelope>();
+	/**
+	 * Number of payload bytes in the queue.
+	 */
+	private int aQueuedBytes = 0;
+	/**
+	 * Whether a thread of the executor is busy with (or about to drain) this queue.
+	 */
+	private boolean aScheduled = false;
+	/**
+	 * Sum of the time the sent parts spent between being queued and being sent, in nanoseconds.
 	 */
-	private final EVMessage aMessage;
+	private long aTotalSendLatency = 0;
 
 	/**
 	 * @param destination
-	 *            The destination where the message should be delivered.
-	 * @param message
-	 *            The message to send.
+	 *            The destination where messages should be delivered.
 	 */
-	Postman(final MessageConnection destination, final EVMessage message)
+	Postman(final MessageConnection destination)
 	{
 		aDestination = destination;
-		aMessage = message;
-		setName("Postman");
 	}
 
-	@Override
-	public void run()
+	/**
+	 * Drops all queued parts and refuses new ones. Called when the connection goes away.
+	 */
+	synchronized void close()
 	{
+		aClosed = true;
+		failQueued();
+	}
+
+	/**
+	 * Separates a message into PartialMessages and queues them for sending.
+	 * 
+	 * @param message
+	 *            The message to send.
+	 * @param async
+	 *            Whether to return as soon as the message is queued, or to wait until it is sent.
+	 * @throws EVMessageSendingException
+	 *             If the destination is gone, its queue stayed full for too long, or (when sending synchronously) the message
+	 *             could not be sent in time.
+	 */
+	void deliver(final EVMessage message, final boolean async) throws EVMessageSendingException
+	{
+		final List<PartialMessage> parts = message.getMessages();
+		int size = 0;
+		for (final PartialMessage part : parts) {
+			size += part.getPayload().length;
+		}
+		final Delivery delivery = new Delivery();
+		synchronized (this) {
+			final long deadline = System.currentTimeMillis() + sQueueTimeout;
+			// An oversized message still goes through once the queue is empty
+			while (!aClosed && aQueuedBytes > 0 && aQueuedBytes + size > sMaxQueuedBytes) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					LoggerUtils.warning("Postman gave up on " + message + " to " + aDestination + ", queue is full: "
+							+ this);
+					throw new EVMessageSendingException(aDestination);
+				}
+				try {
+					wait(remaining);
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new EVMessageSendingException(aDestination);
+				}
+			}
+			if (aClosed) {
+				throw new EVMessageSendingException(aDestination);
+			}
+			int index = 0;
+			for (final PartialMessage part : parts) {
+				index++;
+				aQueue.add(new Envelope(part, delivery, index == parts.size()));
+			}
+			aQueuedBytes += size;
+			aMaxQueueDepth = Math.max(aMaxQueueDepth, aQueue.size());
+			if (!aScheduled) {
+				aScheduled = true;
+				sExecutor.execute(this);
+			}
+		}
+		if (LoggerUtils.isLoggable(LoggerUtils.sNetworkCategory, Level.FINE)) {
+			LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.FINE, "Postman queued " + message + " to " + aDestination
+					+ " (" + parts.size() + " parts, " + size + " bytes)");
+		}
+		if (async) {
+			return;
+		}
 		try {
-			send();
+			if (!delivery.aDone.await(sQueueTimeout, TimeUnit.MILLISECONDS)) {
+				LoggerUtils.warning("Postman gave up waiting for " + message + " to be sent to " + aDestination + ": "
+						+ this);
+				throw new EVMessageSendingException(aDestination);
+			}
 		}
-		catch (final EVMessageSendingException e) {
-			// Do nothing, can't notify back anymore at this point
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EVMessageSendingException(aDestination);
+		}
+		if (delivery.aFailed) {
+			throw new EVMessageSendingException(aDestination);
 		}
 	}
 
 	/**
-	 * Splits the contained EVMessage into smaller PartialMessages and then sends them.
+	 * Marks the delivery of a part as failed, releasing a synchronous sender waiting on it.
 	 * 
-	 * @return Whether the send was successful.
-	 * @throws EVMessageSendingException
-	 *             If we couldn't reach the client.
+	 * @param envelope
+	 *            The part that could not be sent
 	 */
-	protected boolean send() throws EVMessageSendingException
+	private static void fail(final Envelope envelope)
 	{
-		final List<PartialMessage> messages = aMessage.getMessages();
-		int partIndex = 1;
-		final int parts = messages.size();
-		for (final PartialMessage part : messages) {
-			try {
-				LoggerUtils.info("Postman Sending to " + aDestination + ", part " + partIndex + "/" + parts);
+		envelope.aDelivery.aFailed = true;
+		envelope.aDelivery.aDone.countDown();
+	}
+
+	/**
+	 * Fails all queued parts and empties the queue. The caller must hold the lock of the Postman.
+	 */
+	private void failQueued()
+	{
+		for (final Envelope envelope : aQueue) {
+			fail(envelope);
+		}
+		aQueue.clear();
+		aQueuedBytes = 0;
+		notifyAll();
+	}
+
+	/**
+	 * @return The average time parts spent between being queued and being sent, in milliseconds.
+	 */
+	public synchronized double getAverageSendLatency()
+	{
+		if (aPartsSent == 0) {
+			return 0;
+		}
+		return aTotalSendLatency / 1e6 / aPartsSent;
+	}
+
+	/**
+	 * @return The number of payload bytes sent.
+	 */
+	public synchronized long getBytesSent()
+	{
+		return aBytesSent;
+	}
+
+	/**
+	 * @return The largest number of parts that were queued at once.
+	 */
+	public synchronized int getMaxQueueDepth()
+	{
+		return aMaxQueueDepth;
+	}
+
+	/**
+	 * @return The longest time a part spent between being queued and being sent, in milliseconds.
+	 */
+	public synchronized double getMaxSendLatency()
+	{
+		return aMaxSendLatency / 1e6;
+	}
+
+	/**
+	 * @return The number of messages entirely sent.
+	 */
+	public synchronized long getMessagesSent()
+	{
+		return aMessagesSent;
+	}
+
+	/**
+	 * @return The number of parts that the connection failed to send; they are not counted as sent.
+	 */
+	public synchronized long getPartsFailed()
+	{
+		return aPartsFailed;
+	}
+
+	/**
+	 * @return The number of parts sent.
+	 */
+	public synchronized long getPartsSent()
+	{
+		return aPartsSent;
+	}
+
+	/**
+	 * @return The number of parts currently waiting to be sent.
+	 */
+	public synchronized int getQueueDepth()
+	{
+		return aQueue.size();
+	}
+
+	/**
+	 * @return The number of payload bytes currently waiting to be sent.
+	 */
+	public synchronized int getQueuedBytes()
+	{
+		return aQueuedBytes;
+	}
+
+	/**
+	 * Drains the queue, one batch at a time, until it is empty. Runs on the shared executor.
+	 */
+	@Override
+	public void run()
+	{
+		List<Envelope> batch = null;
+		int sent = 0;
+		try {
+			while (true) {
+				synchronized (this) {
+					if (aQueue.isEmpty()) {
+						aScheduled = false;
+						return;
+					}
+					batch = new ArrayList<Envelope>(aQueue);
+					aQueue.clear();
+				}
 				synchronized (aDestination) {
 					// make sure we're the only one using this connection
-					aDestination.send(part);
+					for (sent = 0; sent < batch.size(); sent++) {
+						send(batch.get(sent));
+					}
 				}
-				if (partIndex != parts) { // If it's not the last message
-					Thread.sleep(100); // Wait a bit
+			}
+		}
+		finally {
+			synchronized (this) {
+				if (aScheduled) {
+					// Something went badly wrong while draining; nobody would drain the queue anymore, so fail everything
+					aScheduled = false;
+					for (int i = sent; batch != null && i < batch.size(); i++) {
+						fail(batch.get(i));
+					}
+					failQueued();
 				}
 			}
-			catch (final NullPointerException e) {
-				// Happens when inner client (inside the jME classes) doesn't get removed properly.
-				throw new EVMessageSendingException(aDestination);
+		}
+	}
+
+	/**
+	 * Sends a single part and accounts for it; parts that cannot be sent are counted as failed rather than sent.
+	 * 
+	 * @param envelope
+	 *            The part to send
+	 */
+	private void send(final Envelope envelope)
+	{
+		try {
+			aDestination.send(envelope.aPart);
+		}
+		catch (final RuntimeException e) {
+			// NullPointerExceptions happen when inner client (inside the jME classes) doesn't get removed properly; other
+			// exceptions when the connection is closed. Either way, this part is lost.
+			LoggerUtils.log(LoggerUtils.sNetworkCategory, Level.WARNING, "Postman could not send " + envelope.aPart + " to "
+					+ aDestination + ": " + e);
+			synchronized (this) {
+				aQueuedBytes = Math.max(0, aQueuedBytes - envelope.aPart.getPayload().length);
+				aPartsFailed++;
+				notifyAll();
 			}
-			catch (final InterruptedException e) {
-				// Not going to happen
+			fail(envelope);
+			return;
+		}
+		final long latency = System.nanoTime() - envelope.aQueuedTime;
+		synchronized (this) {
+			aQueuedBytes = Math.max(0, aQueuedBytes - envelope.aPart.getPayload().length);
+			aPartsSent++;
+			aBytesSent += envelope.aPart.getPayload().length;
+			aTotalSendLatency += latency;
+			aMaxSendLatency = Math.max(aMaxSendLatency, latency);
+			if (envelope.aLast && !envelope.aDelivery.aFailed) {
+				aMessagesSent++;
 			}
-			partIndex++;
+			notifyAll();
+		}
+		if (envelope.aLast) {
+			envelope.aDelivery.aDone.countDown();
 		}
-		return true;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("Postman(%d parts/%d bytes queued, max %d parts; %d messages/%d parts/%d bytes sent, "
+				+ "%d parts failed; latency %.1f ms avg, %.1f ms max)", aQueue.size(), aQueuedBytes, aMaxQueueDepth,
+				aMessagesSent, aPartsSent, aBytesSent, aPartsFailed, getAverageSendLatency(), getMaxSendLatency());
 	}
 }
@@ -2,6 +2,7 @@ package com.evervoid.network.message;
 
 import com.evervoid.json.BadJsonInitialization;
 import com.evervoid.json.Json;
+import com.evervoid.json.Jsonable;
 import com.evervoid.network.EVMessage;
 import com.evervoid.state.EVGameState;
 
@@ -10,7 +11,13 @@ import com.evervoid.state.EVGameState;
  */
 public class GameStateMessage extends EVMessage
 {
-    public GameStateMessage(final EVGameState state, final String localPlayer)
+    /**
+     * @param state
+     *            The game state, or its Json representation when sending the same state to several players
+     * @param localPlayer
+     *            The name of the player receiving the state
+     */
+    public GameStateMessage(final Jsonable state, final String localPlayer)
     {
         super(new Json().setAttribute("state", state).setAttribute("player", localPlayer));
     }
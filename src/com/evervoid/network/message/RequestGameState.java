@@ -1,20 +1,48 @@
 package com.evervoid.network.message;
 
 import com.evervoid.json.Json;
+import com.evervoid.json.JsonDiff;
 import com.evervoid.network.EVMessage;
 import com.evervoid.state.EVGameState;
 
+/**
+ * Asks the server for its game state. Along with the hash of its own state, the client sends a digest of it, so that the
+ * server can reply with only what differs.
+ */
 public class RequestGameState extends EVMessage
 {
+    /**
+     * Depth of the digest of the client state. Deep enough to describe each prop of each solar system by its own hash, so that
+     * only the props that differ are sent back.
+     */
+    private static final int sDigestDepth = 5;
+
+    /**
+     * @param clientState
+     *            The state to synchronize to; may be null
+     * @return The content of the request
+     */
+    private static Json buildContent(final EVGameState clientState)
+    {
+        if (clientState == null) {
+            return new Json().setAttribute("gamehash", "");
+        }
+        final Json state = clientState.toJson();
+        final Json digest = JsonDiff.digest(state, sDigestDepth);
+        // The game data never changes during a game, there is no point in describing it in detail
+        digest.getAttribute("o").setAttribute("gamedata", JsonDiff.digest(state.getAttribute("gamedata"), 0));
+        return new Json().setAttribute("gamehash", state.getHash()).setAttribute("digest", digest);
+    }
+
     /**
      * Constructor; state may be null since this is sent on the client side
      * 
      * @param clientState
-     *            The state to synchronize to
+     *            The state to synchronize to; if null, the whole server state is sent back
      */
     public RequestGameState(final EVGameState clientState)
     {
-        super(new Json().setAttribute("gamehash", clientState == null ? "" : clientState.toJson().getHash()));
+        super(buildContent(clientState));
     }
 
     public RequestGameState(final Json json)
@@ -1,18 +1,63 @@
 package com.evervoid.network.message;
 
+import com.evervoid.json.BadJsonInitialization;
 import com.evervoid.json.Json;
+import com.evervoid.json.JsonDiff;
 import com.evervoid.network.EVMessage;
 import com.evervoid.state.EVGameState;
 
+/**
+ * Reply to a {@link RequestGameState}. Rather than the whole server state, it holds the patch bringing the client state up to
+ * date with it, along with the hash of the server state to check the result against.
+ */
 public class SaveGameStateReply extends EVMessage
 {
-    public SaveGameStateReply(final EVGameState savable)
+    /**
+     * @param serverState
+     *            The Json representation of the server state
+     * @param clientDigest
+     *            The digest of the client state, as sent in the request; if null, the whole server state is sent
+     */
+    public SaveGameStateReply(final Json serverState, final Json clientDigest)
     {
-        super(savable);
+        super(new Json().setAttribute("hash", serverState.getHash()).setAttribute("patch",
+                clientDigest == null ? new Json().setAttribute("=", serverState) : JsonDiff.diff(clientDigest, serverState)));
     }
 
     public SaveGameStateReply(final Json json)
     {
         super(json);
     }
+
+    /**
+     * Applies the reply to the client state.
+     * 
+     * @param reference
+     *            The client state, as it was when the request was sent; may be null if the request was sent without one
+     * @return The server state, or null if the client state is already identical to it
+     * @throws BadJsonInitialization
+     *             If the patch does not apply to the client state, or does not give the server state; the whole state should
+     *             then be requested
+     */
+    public EVGameState getGameState(final EVGameState reference) throws BadJsonInitialization
+    {
+        final Json patch = getContent().getAttribute("patch");
+        if (patch.isNull()) {
+            return null;
+        }
+        final Json state = JsonDiff.patch(reference == null ? null : reference.toJson(), patch);
+        if (!state.getHash().equals(getContent().getStringAttribute("hash"))) {
+            throw new BadJsonInitialization();
+        }
+        return new EVGameState(state);
+    }
+
+    /**
+     * @return Whether the reply holds the whole server state, rather than a patch of the client state
+     */
+    public boolean isFullState()
+    {
+        final Json patch = getContent().getAttribute("patch");
+        return patch.isObject() && patch.hasAttribute("=");
+    }
 }
@@ -19,4 +19,18 @@ public class ServerInfoMessage extends EVMessage
         super(new Json().setAttribute("ingame", inGame).setAttribute("players", lobby.getNumOfPlayers())
                         .setAttribute("name", lobby.getServerName()));
     }
+
+    /**
+     * @param lobby
+     *            The lobby of the session new players would join
+     * @param inGame
+     *            Whether the game of that session is running
+     * @param session
+     *            The ID of that session
+     */
+    public ServerInfoMessage(final LobbyState lobby, final boolean inGame, final int session)
+    {
+        super(new Json().setAttribute("ingame", inGame).setAttribute("players", lobby.getNumOfPlayers())
+                        .setAttribute("name", lobby.getServerName()).setAttribute("session", session));
+    }
 }
@@ -10,7 +10,7 @@ public class LoadGameRequest extends LobbyMessage
         super(savedState);
     }
 
-    protected LoadGameRequest(final Json json)
+    public LoadGameRequest(final Json json)
     {
         super(json);
     }
@@ -3,10 +3,12 @@ package com.evervoid.network.message.lobby;
 import com.evervoid.json.Jsonable;
 import com.evervoid.network.EVMessage;
 import com.evervoid.server.EVNetworkEngine;
+import com.evervoid.server.GameSession;
 
 /**
  * LobbyMessages are all the {@link EVMessage}s that can be sent between clients and servers while the players are in
- * the lobby. These messages are handled by the {@link EVNetworkEngine} in the handleLobbyMessage(...) method.
+ * the lobby. These messages are received by the {@link EVNetworkEngine}, which handles the ones joining a lobby and passes
+ * the others to the {@link GameSession} of the client, in its handleLobbyMessage(...) method.
  */
 public abstract class LobbyMessage extends EVMessage
 {
@@ -18,4 +18,15 @@ public class RequestJoinLobby extends LobbyMessage
     {
         super(new Json().setAttribute("nickname", nickname));
     }
+
+    /**
+     * @param nickname
+     *            The nickname the player would like to have
+     * @param session
+     *            The ID of the game session to join on the server
+     */
+    public RequestJoinLobby(final String nickname, final int session)
+    {
+        super(new Json().setAttribute("nickname", nickname).setAttribute("session", session));
+    }
 }
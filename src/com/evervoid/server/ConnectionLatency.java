@@ -0,0 +1,126 @@
+package com.evervoid.server;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The round-trip times measured on one connection, from the {@link com.evervoid.network.message.PingMessage}s it sent back.
+ * A smoothed round-trip time and its variation are kept as exponentially weighted moving averages, the same way TCP does;
+ * the most recent samples are also kept, so that percentiles can be taken from them. Not thread-safe: only the session of the
+ * connection uses it.
+ */
+public class ConnectionLatency
+{
+	/**
+	 * Longest round-trip time a sample counts for, in milliseconds; a single stall longer than that says nothing more about
+	 * the connection, and would otherwise linger in the averages for many rounds.
+	 */
+	private static final long sMaxSample = 10000;
+	/**
+	 * Weight of a new sample in the smoothed round-trip time.
+	 */
+	private static final double sSmoothingGain = 0.125;
+	/**
+	 * Weight of a new sample in the variation of the round-trip time.
+	 */
+	private static final double sVariationGain = 0.25;
+	/**
+	 * Number of recent samples kept to take percentiles from.
+	 */
+	private static final int sWindowSize = 32;
+	/**
+	 * Number of samples measured so far.
+	 */
+	private int aCount = 0;
+	/**
+	 * The most recent samples, in milliseconds; the oldest one is overwritten first.
+	 */
+	private final long[] aSamples = new long[sWindowSize];
+	/**
+	 * The smoothed round-trip time, in milliseconds.
+	 */
+	private double aSmoothed = 0;
+	/**
+	 * The smoothed mean deviation of the round-trip time, in milliseconds.
+	 */
+	private double aVariation = 0;
+
+	/**
+	 * Adds a measured round-trip time.
+	 * 
+	 * @param roundTrip
+	 *            The round-trip time, in milliseconds; negative times (clock adjustments) are counted as 0, and times
+	 *            longer than {@link #sMaxSample} as that
+	 */
+	public void addSample(final long roundTrip)
+	{
+		final long sample = Math.max(0, Math.min(sMaxSample, roundTrip));
+		if (aCount == 0) {
+			aSmoothed = sample;
+			aVariation = sample / 2.0;
+		}
+		else {
+			aVariation += sVariationGain * (Math.abs(aSmoothed - sample) - aVariation);
+			aSmoothed += sSmoothingGain * (sample - aSmoothed);
+		}
+		aSamples[aCount % sWindowSize] = sample;
+		aCount++;
+	}
+
+	/**
+	 * @return How long a message from this connection may reasonably be late, in milliseconds: the largest of the 95th
+	 *         percentile of the recent samples and of the smoothed round-trip time plus four times its variation.
+	 */
+	public double getAllowance()
+	{
+		return Math.max(getPercentile(0.95), aSmoothed + 4 * aVariation);
+	}
+
+	/**
+	 * @param fraction
+	 *            The fraction of samples that must be lower than or equal to the returned one, between 0 and 1
+	 * @return The percentile of the recent samples, in milliseconds; 0 if there are none
+	 */
+	public long getPercentile(final double fraction)
+	{
+		final int size = Math.min(aCount, sWindowSize);
+		if (size == 0) {
+			return 0;
+		}
+		final long[] sorted = Arrays.copyOf(aSamples, size);
+		Arrays.sort(sorted);
+		final int rank = (int) Math.ceil(fraction * size) - 1;
+		return sorted[Math.max(0, Math.min(size - 1, rank))];
+	}
+
+	/**
+	 * @return The number of samples measured so far.
+	 */
+	public int getSampleCount()
+	{
+		return aCount;
+	}
+
+	/**
+	 * @return The smoothed round-trip time, in milliseconds.
+	 */
+	public double getSmoothed()
+	{
+		return aSmoothed;
+	}
+
+	/**
+	 * @return The smoothed mean deviation of the round-trip time, in milliseconds.
+	 */
+	public double getVariation()
+	{
+		return aVariation;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(Locale.US, "%.0f ms smoothed, %.0f ms variation, %d ms p95 over %d samples", aSmoothed,
+				aVariation, getPercentile(0.95), Math.min(aCount, sWindowSize));
+	}
+}
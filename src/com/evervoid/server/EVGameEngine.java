@@ -1,15 +1,16 @@
 package com.evervoid.server;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import com.evervoid.json.BadJsonInitialization;
 import com.evervoid.json.Json;
@@ -28,22 +29,17 @@ import com.evervoid.state.EVGameState;
 import com.evervoid.state.action.Action;
 import com.evervoid.state.action.IllegalEVActionException;
 import com.evervoid.state.action.Turn;
-import com.evervoid.state.action.building.IncrementBuildingConstruction;
-import com.evervoid.state.action.building.IncrementShipConstruction;
 import com.evervoid.state.action.planet.RegeneratePlanet;
 import com.evervoid.state.action.player.ReceiveIncome;
-import com.evervoid.state.action.ship.BombPlanet;
-import com.evervoid.state.action.ship.CapturePlanet;
-import com.evervoid.state.action.ship.EnterCargo;
-import com.evervoid.state.action.ship.JumpShipIntoPortal;
-import com.evervoid.state.action.ship.LeaveCargo;
-import com.evervoid.state.action.ship.MoveShip;
 import com.evervoid.state.action.ship.RegenerateShip;
-import com.evervoid.state.action.ship.ShootShip;
 import com.evervoid.state.data.GameData;
 import com.evervoid.state.player.Player;
 import com.evervoid.state.prop.Planet;
 import com.evervoid.state.prop.Ship;
+import com.evervoid.utils.LoggerUtils;
+import com.evervoid.utils.LoggerUtils.LogMessage;
+import com.evervoid.utils.TimingWheel;
+import com.evervoid.utils.TimingWheel.Timeout;
 import com.jme3.network.HostedConnection;
 
 /**
@@ -53,17 +49,17 @@ import com.jme3.network.HostedConnection;
 public class EVGameEngine implements EVGameMessageObserver
 {
 	/**
-	 * The GameEngine logs.
+	 * Time given to a player whose latency has not been measured yet to hand in their turn once it is over, in milliseconds.
 	 */
-	private static final Logger aGameEngineLog = Logger.getLogger(EVGameEngine.class.getName());
+	private static final long sDefaultGrace = 3000;
 	/**
-	 * A list of all {@link Action} classes that have to do with combat.
+	 * How many times the latency allowance of a player they are given to hand in their turn once it is over.
 	 */
-	public static final Class<?>[] sCombatActionTypes = { ShootShip.class, BombPlanet.class };
+	private static final double sLatencyFactor = 3;
 	/**
-	 * A list of all {@link Action} classes that have to do with moving.
+	 * The least time given to a player to hand in their turn once it is over, in milliseconds.
 	 */
-	public static final Class<?>[] sMoveActionTypes = { MoveShip.class, JumpShipIntoPortal.class };
+	private static final long sMinimumGrace = 1000;
 	/**
 	 * A map from Client to Player.
 	 */
@@ -73,13 +69,21 @@ public class EVGameEngine implements EVGameMessageObserver
 	 */
 	private final GameData aGameData;
 	/**
-	 * A set of all clients in the game.
+	 * Seed of the game; the seed of each turn is derived from it and from the turn number.
 	 */
-	private HashSet<HostedConnection> aReadyMap;
+	private final long aGameSeed = new Random().nextLong();
+	/**
+	 * Journal of the current game; null if it could not be created.
+	 */
+	private TurnJournal aJournal = null;
+	/**
+	 * The session the game is played in.
+	 */
+	protected GameSession aServer;
 	/**
-	 * The Server.
+	 * A set of all clients in the game.
 	 */
-	protected EVNetworkEngine aServer;
+	private HashSet<HostedConnection> aReadyMap;
 	/**
 	 * The current state of the game.
 	 */
@@ -88,30 +92,44 @@ public class EVGameEngine implements EVGameMessageObserver
 	 * A map of Players to the set of moves they've handed in.
 	 */
 	private final Map<Player, Turn> aTurnMap = new HashMap<Player, Turn>();
+	/**
+	 * Orders and commits the actions of each turn.
+	 */
+	private final TurnResolver aTurnResolver;
+	/**
+	 * When the current turn started, as given by System.currentTimeMillis().
+	 */
+	private long aTurnStart = 0;
 	/**
 	 * The current turn.
 	 */
 	private int aTurnNumber = 1;
 	/**
-	 * The timeout timer.
+	 * The deadline of the current turn, as given by System.currentTimeMillis(); it is only ever moved earlier during a turn.
 	 */
-	private Timer aTurnTimer = new Timer();
+	private long aTurnDeadline = Long.MAX_VALUE;
+	/**
+	 * The deadline of the current turn; null until the first turn starts.
+	 */
+	private Timeout aTurnTimeout = null;
 
 	/**
-	 * Create a new GameEngine attached to a server.
+	 * Create a new GameEngine attached to a game session.
 	 * 
-	 * @param server
-	 *            The server to which the game is attached.
-	 * @throws BadJsonInitialization
-	 *             If the default GameData is corrupted.
+	 * @param session
+	 *            The session to which the game is attached.
+	 * @param gameData
+	 *            The game data of the session.
+	 * @param resolvers
+	 *            The threads resolving turns, shared with the other sessions of the server.
 	 */
-	EVGameEngine(final EVNetworkEngine server) throws BadJsonInitialization
+	EVGameEngine(final GameSession session, final GameData gameData, final ExecutorService resolvers)
 	{
-		aGameEngineLog.setLevel(Level.ALL);
-		aGameEngineLog.info("Game engine starting with server " + server);
-		aServer = server;
-		server.registerListener(this);
-		aGameData = new GameData();
+		LoggerUtils.log(LoggerUtils.sEngineCategory, Level.INFO, "Game engine starting in " + session);
+		aServer = session;
+		session.registerListener(this);
+		aGameData = gameData;
+		aTurnResolver = new TurnResolver(resolvers);
 	}
 
 	/**
@@ -135,8 +153,8 @@ public class EVGameEngine implements EVGameMessageObserver
 				return false; // Trying to impersonate another player
 			}
 		}
-		if (aTurnMap.get(client) != null) {
-			return false;
+		if (aTurnMap.get(sender) != null) {
+			return false; // Already handed in a turn
 		}
 		aTurnMap.put(sender, turn);
 		return true;
@@ -178,54 +196,48 @@ public class EVGameEngine implements EVGameMessageObserver
 
 	/**
 	 * Adds and moves to the turn and organizes them so they run in the correct order. These are the steps: 1. Ship/Planet
-	 * regeneration 2. Combat 3. Docking 4. Unloading 5. Jumping 7. All other movement 8. Building construction 9. Ship
-	 * construction 10. Income 11. Check for winning/dropping/...
+	 * regeneration 2. Combat 3. Docking 4. Unloading 5. Jumping 6. Capturing planets 7. All other movement 8. Building
+	 * construction 9. Ship construction 10. Income 11. Check for winning/dropping/...
 	 */
 	private void calculateTurn()
 	{
-		// compress all client turns into one
+		// compress all client turns into one, in the order of the players' names so that the turn is reproducible
+		final List<Player> players = new ArrayList<Player>(aTurnMap.keySet());
+		Collections.sort(players, new Comparator<Player>()
+		{
+			@Override
+			public int compare(final Player p1, final Player p2)
+			{
+				return p1.getName().compareTo(p2.getName());
+			}
+		});
 		final Turn combinedTurn = new Turn();
-		for (final Player p : aTurnMap.keySet()) {
+		for (final Player p : players) {
 			combinedTurn.addTurn(aTurnMap.get(p));
 		}
+		final long seed = aGameSeed + aTurnNumber;
 		// inform
-		aGameEngineLog.info("Game engine building turn from original:\n" + combinedTurn.toJson().toPrettyString());
-		// start calculating turn
-		// !WARNING!: If you need to modify the order of actions, do not forget to edit res/action_order.txt and
-		// TurnSynchronizer to reflect the changes.
-		// 1: Regeneration (Ships, planets)
-		combinedTurn.reEnqueueActions(regenerateShips());
-		combinedTurn.reEnqueueActions(regeneratePlanets());
-		// 2: Combat (Shooting, bombing)
-		final List<Action> combatActions = combinedTurn.getActionsOfType(sCombatActionTypes);
-		for (final Action act : combatActions) {
-			if (act instanceof ShootShip) {
-				((ShootShip) act).rollDamage();
-				combinedTurn.reEnqueueAction(act);
-			}
-			else if (act instanceof BombPlanet) {
-				((BombPlanet) act).rollDamage();
-				combinedTurn.reEnqueueAction(act);
+		LoggerUtils.log(LoggerUtils.sEngineCategory, Level.INFO, "Game engine building turn " + aTurnNumber + " with seed "
+				+ seed + " from " + combinedTurn.size() + " actions");
+		// The whole turn is only printed out when debugging the engine
+		LoggerUtils.log(LoggerUtils.sEngineCategory, Level.FINE, new LogMessage()
+		{
+			@Override
+			public String build()
+			{
+				return "Original turn:\n" + combinedTurn.toJson().toPrettyString();
 			}
-		}
-		// 3: Docking ships
-		shakeUpActions(combinedTurn, EnterCargo.class);
-		// 4: Unloading ships
-		shakeUpActions(combinedTurn, LeaveCargo.class);
-		// 5: Jumps
-		shakeUpActions(combinedTurn, JumpShipIntoPortal.class);
-		// 6: Capturing planets
-		shakeUpActions(combinedTurn, CapturePlanet.class);
-		// 7: Movement
-		shakeUpActions(combinedTurn, sMoveActionTypes);
-		// 8: Building construction
-		shakeUpActions(combinedTurn, IncrementBuildingConstruction.class);
-		// 9: Ship construction
-		shakeUpActions(combinedTurn, IncrementShipConstruction.class);
-		// 10: Income
-		combinedTurn.reEnqueueActions(calculateIncome());
+		});
+		// !WARNING!: If you need to modify the order of actions, do not forget to edit res/action_order.txt, TurnResolver
+		// and TurnSynchronizer to reflect the changes.
+		combinedTurn.addActions(regenerateShips());
+		combinedTurn.addActions(regeneratePlanets());
+		combinedTurn.addActions(calculateIncome());
+		final Json handedIn = combinedTurn.toJson();
 		// Finally - send out turn
-		aServer.sendAll(new TurnMessage(aState.commitTurn(combinedTurn)));
+		final Turn committedTurn = aTurnResolver.resolve(aState, combinedTurn, seed);
+		aServer.sendAll(new TurnMessage(committedTurn));
+		journalTurn(seed, handedIn, committedTurn);
 		aTurnNumber++;
 		// Check if some other players have lost
 		for (final Player p : aState.getPlayers()) {
@@ -245,7 +257,7 @@ public class EVGameEngine implements EVGameMessageObserver
 	}
 
 	@Override
-	public void clientQuit(final com.jme3.network.Client client)
+	public void clientQuit(final HostedConnection client)
 	{
 		if (!aClientMap.containsKey(client)) {
 			return; // the player doesn't exist, why is this being called?
@@ -255,9 +267,9 @@ public class EVGameEngine implements EVGameMessageObserver
 		if (aClientMap.size() == 1) {
 			announceWinner(aClientMap.values().iterator().next());
 		}
-		if (aClientMap.isEmpty()) {
-			// no more players, go ahead and stop server
-			EverVoidServer.stop();
+		// once there are no more players, the session closes itself; otherwise, the turn may only have been waiting on them
+		if (aTurnTimeout != null && !aClientMap.isEmpty()) {
+			tryCalculateTurn();
 		}
 	}
 
@@ -269,12 +281,51 @@ public class EVGameEngine implements EVGameMessageObserver
 		return aTurnNumber;
 	}
 
+	/**
+	 * @param player
+	 *            A player of the game
+	 * @return Whether the turn is waiting on the player: they have not handed in their turn yet, and have not lost.
+	 */
+	private boolean isPending(final Player player)
+	{
+		return aTurnMap.get(player) == null && !aState.hasLost(player);
+	}
+
+	/**
+	 * Appends a committed turn to the journal of the game, if there is one. The journal is dropped if it cannot be written to
+	 * anymore; the game goes on without it.
+	 * 
+	 * @param seed
+	 *            The seed the turn was resolved with
+	 * @param handedIn
+	 *            The Json representation of the actions handed to the TurnResolver
+	 * @param committedTurn
+	 *            The actions that were committed
+	 */
+	private void journalTurn(final long seed, final Json handedIn, final Turn committedTurn)
+	{
+		if (aJournal == null) {
+			return;
+		}
+		try {
+			aJournal.append(aTurnNumber, seed, handedIn, committedTurn, aState.toJson().getHash());
+		}
+		catch (final IOException e) {
+			LoggerUtils.log(LoggerUtils.sEngineCategory, Level.WARNING, "Cannot write to game journal " + aJournal.getFile()
+					+ ", no longer journaling: " + e);
+			aJournal.close();
+			aJournal = null;
+		}
+	}
+
 	@Override
 	public void messageReceived(final String type, final LobbyState lobby, final HostedConnection client, final Json content)
 	{
 		if (type.equals(TurnMessage.class.getName())) {
-			addAllMoves(client, new Turn(content, aState));
-			tryCalculateTurn();
+			if (addAllMoves(client, new Turn(content, aState)) && !tryCalculateTurn()) {
+				// the deadline only depends on the players who have not handed in their turn yet
+				scheduleDeadline();
+			}
 		}
 		else if (type.equals(StartGameMessage.class.getName())) {
 			final List<Player> playerList = new ArrayList<Player>();
@@ -328,8 +379,8 @@ public class EVGameEngine implements EVGameMessageObserver
 				final Player p = aState.getPlayerByNickname(player.getNickname());
 				if (p == null) {
 					// We're really in trouble here
-					aGameEngineLog.severe("Cannot find player from loaded game corresponding to LobbyPlayer "
-							+ player.getNickname());
+					LoggerUtils.log(LoggerUtils.sEngineCategory, Level.SEVERE,
+							"Cannot find player from loaded game corresponding to LobbyPlayer " + player.getNickname());
 				}
 				aClientMap.put(player.getClient(), p);
 				aTurnMap.put(p, null);
@@ -339,11 +390,13 @@ public class EVGameEngine implements EVGameMessageObserver
 			resetTimer();
 		}
 		else if (type.equals(RequestGameState.class.getName())) {
-			aGameEngineLog.info("Got game state request from client " + client);
+			LoggerUtils.log(LoggerUtils.sEngineCategory, Level.INFO, "Got game state request from client " + client);
 			final String clientHash = content.getStringAttribute("gamehash");
-			final String thisHash = aState.toJson().getHash();
-			aGameEngineLog.info("Client hash is " + clientHash + "; server hash is " + thisHash);
-			aServer.sendEVMessage(client, new SaveGameStateReply(clientHash.equals(thisHash) ? null : aState));
+			final Json thisState = aState.toJson();
+			LoggerUtils.log(LoggerUtils.sEngineCategory, Level.INFO, "Client hash is " + clientHash + "; server hash is "
+					+ thisState.getHash());
+			// Only send what differs from the client state
+			aServer.sendEVMessage(client, new SaveGameStateReply(thisState, content.getAttribute("digest")));
 		}
 	}
 
@@ -390,23 +443,37 @@ public class EVGameEngine implements EVGameMessageObserver
 		return actions;
 	}
 
+	/**
+	 * @return The time given to the players who have not handed in their turn yet to do so once the turn is over, in
+	 *         milliseconds; it covers the measured latency of the slowest of them, but is never longer than a turn (or than
+	 *         the default grace, for very short turns).
+	 */
+	private long getGrace()
+	{
+		long grace = sMinimumGrace;
+		for (final Map.Entry<HostedConnection, Player> entry : aClientMap.entrySet()) {
+			if (!isPending(entry.getValue())) {
+				continue;
+			}
+			final ConnectionLatency latency = aServer.getLatency(entry.getKey());
+			if (latency == null || latency.getSampleCount() == 0) {
+				grace = Math.max(grace, sDefaultGrace);
+			}
+			else {
+				grace = Math.max(grace, (long) (sLatencyFactor * latency.getAllowance()));
+			}
+		}
+		return Math.min(grace, Math.max(sDefaultGrace, 1000L * aGameData.getTurnLength()));
+	}
+
 	/**
 	 * Resets the timer that determines when turns are calculated, a small buffer of time is given for messages to arrive.
 	 */
 	public void resetTimer()
 	{
-		// Cancel current timer and remove the scheduled task from the list
-		aTurnTimer.cancel();
-		aTurnTimer = new Timer();
-		aTurnTimer.schedule(new TimerTask()
-		{
-			@Override
-			public void run()
-			{
-				calculateTurn();
-			}
-		}, 1000 * aGameData.getTurnLength() + Math.max(3000, (int) (3 * aServer.maxPingTime())));
-		// give some time for late turns to come in
+		aTurnStart = System.currentTimeMillis();
+		aTurnDeadline = Long.MAX_VALUE;
+		scheduleDeadline();
 	}
 
 	/**
@@ -421,50 +488,94 @@ public class EVGameEngine implements EVGameMessageObserver
 	}
 
 	/**
-	 * @param state
-	 *            The state to set.
+	 * Schedules the calculation of the current turn at its deadline: once the turn is over, plus the time the players who
+	 * have not handed in their turn yet need for it to arrive. The deadline is only moved earlier, as players hand in their
+	 * turn; the turn is calculated right away once all of them did.
 	 */
-	protected void setState(final EVGameState state)
+	private void scheduleDeadline()
 	{
-		aState = state;
+		final long deadline = aTurnStart + 1000L * aGameData.getTurnLength() + getGrace();
+		if (deadline >= aTurnDeadline) {
+			return;
+		}
+		aTurnDeadline = deadline;
+		if (aTurnTimeout != null) {
+			aTurnTimeout.cancel();
+		}
+		final int turnNumber = aTurnNumber;
+		aTurnTimeout = TimingWheel.getInstance().schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// Turns are calculated by the session, in order with the messages of the players
+				aServer.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						// the turn may have been calculated in the meantime, once all players handed theirs in
+						if (aTurnNumber == turnNumber) {
+							calculateTurn();
+						}
+					}
+				});
+			}
+		}, deadline - System.currentTimeMillis());
+		LoggerUtils.log(LoggerUtils.sEngineCategory, Level.FINE, "Turn " + turnNumber + " of " + aServer + " due in "
+				+ (deadline - System.currentTimeMillis()) + " ms");
 	}
 
 	/**
-	 * Extract the action of the specified types from the specified turn, and reenqueues them in random order at the end of the
-	 * turn
+	 * Sets the state of the game, and starts a new journal of the game from it.
 	 * 
-	 * @param turn
-	 *            The turn to extract from (and to reenqueue to)
-	 * @param types
-	 *            The types of action to extract
+	 * @param state
+	 *            The state to set.
 	 */
-	private void shakeUpActions(final Turn turn, final Class<?>... types)
+	protected void setState(final EVGameState state)
 	{
-		final List<Action> actionsCopy = new ArrayList<Action>(turn.getActionsOfType(types));
-		Collections.shuffle(actionsCopy); // Shake it up
-		for (final Action act : actionsCopy) {
-			turn.reEnqueueAction(act);
+		aState = state;
+		if (aJournal != null) {
+			aJournal.close();
+		}
+		try {
+			aJournal = TurnJournal.create(state);
+			LoggerUtils.log(LoggerUtils.sEngineCategory, Level.INFO, "Game engine journaling the game to "
+					+ aJournal.getFile());
+		}
+		catch (final IOException e) {
+			LoggerUtils.log(LoggerUtils.sEngineCategory, Level.WARNING,
+					"Cannot create game journal, the game will not be journaled: " + e);
+			aJournal = null;
 		}
 	}
 
 	@Override
 	public void serverStopped()
 	{
-		aTurnTimer.cancel();
-		aTurnTimer.purge();
+		if (aTurnTimeout != null) {
+			aTurnTimeout.cancel();
+			aTurnTimeout = null;
+		}
+		aTurnResolver.shutdown();
+		if (aJournal != null) {
+			aJournal.close();
+			aJournal = null;
+		}
 		aClientMap.clear();
 		aTurnMap.clear();
 	}
 
 	/**
-	 * Wait on all players to send moves in before calculating a turn.
+	 * Wait on all players to send moves in before calculating a turn; players who have lost are not waited on, so that the
+	 * turn is calculated as soon as every active player has handed theirs in, without waiting for the deadline.
 	 * 
 	 * @return Whether a turn was calculated.
 	 */
 	private boolean tryCalculateTurn()
 	{
 		for (final Player p : aTurnMap.keySet()) {
-			if (aTurnMap.get(p) == null) {
+			if (isPending(p)) {
 				return false;
 			}
 		}
@@ -2,7 +2,6 @@ package com.evervoid.server;
 
 import com.evervoid.json.Json;
 import com.evervoid.network.lobby.LobbyState;
-import com.jme3.network.Client;
 import com.jme3.network.HostedConnection;
 
 /**
@@ -16,7 +15,7 @@ public interface EVGameMessageObserver
 	 * @param client
 	 *            The Client that has quit
 	 */
-	void clientQuit(Client client);
+	void clientQuit(HostedConnection client);
 
 	/**
 	 * Notifies the observer that Server has received a message
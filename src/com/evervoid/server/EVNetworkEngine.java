@@ -4,11 +4,16 @@ import static com.evervoid.network.EVNetworkServer.sDiscoveryPortTCP;
 import static com.evervoid.network.EVNetworkServer.sDiscoveryPortUDP;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.evervoid.json.BadJsonInitialization;
 import com.evervoid.json.Json;
@@ -16,92 +21,111 @@ import com.evervoid.network.EVMessage;
 import com.evervoid.network.EVMessageListener;
 import com.evervoid.network.EVMessageSendingException;
 import com.evervoid.network.EVNetworkServer;
-import com.evervoid.network.lobby.LobbyPlayer;
-import com.evervoid.network.lobby.LobbyState;
-import com.evervoid.network.message.ChatMessage;
-import com.evervoid.network.message.GameStateMessage;
 import com.evervoid.network.message.JoinErrorMessage;
-import com.evervoid.network.message.LobbyStateMessage;
-import com.evervoid.network.message.PingMessage;
-import com.evervoid.network.message.ServerChatMessage;
 import com.evervoid.network.message.ServerInfoMessage;
 import com.evervoid.network.message.ServerQuitting;
-import com.evervoid.network.message.StartingGameMessage;
 import com.evervoid.network.message.lobby.LeavingLobby;
-import com.evervoid.network.message.lobby.LoadGameRequest;
-import com.evervoid.network.message.lobby.LobbyMessage;
-import com.evervoid.network.message.lobby.LobbyPlayerUpdate;
 import com.evervoid.network.message.lobby.RequestJoinLobby;
 import com.evervoid.network.message.lobby.RequestServerInfo;
-import com.evervoid.network.message.lobby.StartGameMessage;
-import com.evervoid.state.BadSaveFileException;
-import com.evervoid.state.EVGameState;
 import com.evervoid.state.data.GameData;
-import com.evervoid.state.player.Player;
 import com.evervoid.utils.LoggerUtils;
-import com.evervoid.utils.MathUtils;
+import com.evervoid.utils.TimingWheel;
 import com.jme3.network.ConnectionListener;
 import com.jme3.network.HostedConnection;
 import com.jme3.network.MessageConnection;
 import com.jme3.network.Server;
 
 /**
- * everVoid Server allowing communication from and to clients.
+ * everVoid Server allowing communication from and to clients. The server hosts any number of {@link GameSession}s, each with
+ * its own lobby and game; clients join the session they ask for, or the open one (the latest session whose game has not
+ * started yet, created as needed), and all their messages are then routed to that session. The sessions share one worker
+ * pool to handle their messages and calculate their turns, and one pool of threads to resolve turns.
  */
 public class EVNetworkEngine implements EVMessageListener, ConnectionListener
 {
+    /**
+     * The name of the server, as shown in lobbies.
+     */
+    private static final String sServerName = "My cool everVoid server";
     /**
      * The time between two pings
      */
     public static final int sTimeBetweenPings = 15000;
+
     /**
-     * The types of messages relate to the lobby.
+     * Creates a pool of daemon threads.
+     * 
+     * @param threads
+     *            The number of threads
+     * @param name
+     *            The name of the threads
+     * @return The pool
      */
-    private static String[] sValidLobbyMessages = { RequestServerInfo.class.getName(),
-            RequestJoinLobby.class.getName(), LobbyPlayerUpdate.class.getName(), StartGameMessage.class.getName(),
-            LoadGameRequest.class.getName(), LeavingLobby.class.getName() };
+    private static ExecutorService createPool(final int threads, final String name)
+    {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     /**
      * A dummy server that allows players to ping for discovery.
      */
     private EVNetworkServer aDiscoveryServer;
     /**
-     * All observers waiting for game messages.
+     * The game data of all sessions; null if it cannot be read.
      */
-    private final Set<EVGameMessageObserver> aGameMessagesObservers;
+    private GameData aGameData;
     /**
-     * Whether the game is running
+     * The server for all players connected to the game.
      */
-    private boolean aInGame = false;
+    private EVNetworkServer aNetworkServer;
     /**
-     * The current state of the lobby.
+     * The ID of the next session to be created.
      */
-    private LobbyState aLobby;
+    private int aNextSessionID = 1;
     /**
-     * The ping time of the slowest client in any given round of pinging.
+     * The session new players join when they do not ask for a specific one; null if there is no such session yet.
      */
-    private long aLongestPingTime;
+    private GameSession aOpenSession = null;
     /**
-     * The server for all players connected to the game.
+     * The threads resolving the turns of all sessions.
      */
-    private EVNetworkServer aNetworkServer;
+    private final ExecutorService aResolvers;
     /**
-     * The timer that runs pinging rounds.
+     * All the sessions, by ID. Also guards aOpenSession and aSessionsByClient.
      */
-    private Timer aPingTimer;
+    private final Map<Integer, GameSession> aSessions = new TreeMap<Integer, GameSession>();
+    /**
+     * The session of each client that joined one.
+     */
+    private final Map<HostedConnection, GameSession> aSessionsByClient = new HashMap<HostedConnection, GameSession>();
+    /**
+     * The worker pool running the tasks of all sessions.
+     */
+    private final ExecutorService aWorkers;
 
     /**
      * Constructor for the EverVoidServer using default ports.
      */
     public EVNetworkEngine()
     {
-        aGameMessagesObservers = new HashSet<EVGameMessageObserver>();
-        // The game data is loaded from the default JSON file here; might want to load it from the real game state, but they
-        // should match anyway
+        final int processors = Runtime.getRuntime().availableProcessors();
+        aWorkers = createPool(processors, "Game session");
+        aResolvers = createPool(processors, "Turn resolution");
+        // The game data is loaded from the default JSON file once, and shared by all sessions; might want to load it from the
+        // real game state, but they should match anyway
         try {
-            aLobby = new LobbyState(new GameData(), "My cool everVoid server");
+            aGameData = new GameData();
         } catch (final BadJsonInitialization e2) {
             LoggerUtils.info("Cannot read game data: " + e2.getStackTrace());
-            aLobby = null;
+            aGameData = null;
         }
         LoggerUtils.info("Creating server on ports " + sDiscoveryPortTCP + "; " + sDiscoveryPortUDP);
         try {
@@ -121,12 +145,6 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
         LoggerUtils.info("Server created: " + aNetworkServer);
         aNetworkServer.addEVMessageListener(this);
         aNetworkServer.addConnectionListener(this);
-        LoggerUtils.info("Set connection listener and message listener, initializing game engine.");
-        try {
-            new EVGameEngine(this); // Will register itself (bad?)
-        } catch (final BadJsonInitialization e1) {
-            LoggerUtils.info("Cannot start game engine: " + e1.getStackTrace());
-        }
         try {
             aNetworkServer.start();
         } catch (final Exception e) {
@@ -140,230 +158,143 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
         LoggerUtils.info("Server up and waiting for connections.");
     }
 
+    /**
+     * Removes a session from the server; it stops once the tasks it already has queued are done.
+     * 
+     * @param session
+     *            The session to close
+     */
+    void closeSession(final GameSession session)
+    {
+        synchronized (aSessions) {
+            if (aSessions.remove(session.getID()) == null) {
+                return;
+            }
+            if (aOpenSession == session) {
+                aOpenSession = null;
+            }
+            aSessionsByClient.values().removeAll(Collections.singleton(session));
+        }
+        session.close();
+    }
+
     @Override
     public void connectionAdded(final Server server, final HostedConnection conn)
     {}
 
     @Override
     public void connectionRemoved(final Server server, final HostedConnection conn)
-    {}
+    {
+        removeClient(conn);
+    }
 
     /**
-     * unregisters an observer from the network engine.
+     * Stops routing the messages of a client to a session, once the session turned it away.
      * 
-     * @param observer
-     *            The observer to unregister.
+     * @param client
+     *            The client
+     * @param session
+     *            The session that turned it away
      */
-    public void deregisterObserver(final EVGameMessageObserver observer)
+    void forgetClient(final HostedConnection client, final GameSession session)
     {
-        aGameMessagesObservers.remove(observer);
+        synchronized (aSessions) {
+            if (aSessionsByClient.get(client) == session) {
+                aSessionsByClient.remove(client);
+            }
+        }
     }
 
     /**
-     * @return A random player nickname.
+     * @return The session new players join when they do not ask for a specific one; it is created if there is none, or if
+     *         the game of the previous one has started.
      */
-    public String getNewPlayerNickame()
+    private GameSession getOpenSession()
     {
-        final Json names = Json.fromFile("schema/players.json");
-        final List<String> freeNames = new ArrayList<String>();
-        for (final String name : names.getStringListAttribute("names")) {
-            if (aLobby.getPlayerByNickname(name) == null) {
-                freeNames.add(name);
+        synchronized (aSessions) {
+            if (aOpenSession == null || aOpenSession.isGameRunning()) {
+                final int id = aNextSessionID++;
+                aOpenSession = new GameSession(this, id, aGameData, sServerName, aWorkers, aResolvers);
+                aSessions.put(id, aOpenSession);
+                LoggerUtils.info("Created " + aOpenSession + "; " + aSessions.size() + " sessions are running.");
             }
+            return aOpenSession;
         }
-        if (!freeNames.isEmpty()) {
-            return MathUtils.getRandomElement(freeNames);
-        }
-        // Otherwise, generate a boring name
-        int i;
-        for (i = 1; aLobby.getPlayerByNickname("Player " + i) != null; i++) {
-            // Nothing
-        }
-        return "Player " + i;
     }
 
     /**
-     * Handles an EverMessage
-     * 
-     * @param source
-     *            The source of the lobby message.
-     * @param message
-     *            An EverMessage; can be a lobby or a non-lobby one
-     * @return True if the message is a lobby one and was handled, false otherwise
+     * @param id
+     *            The ID of a session
+     * @return The session with that ID, or null if there is none
      */
-    private boolean handleLobbyMessage(final HostedConnection source, final EVMessage message)
+    public GameSession getSession(final int id)
     {
-        final String messageType = message.getType();
-        // Handle only lobby messages
-        final boolean isLobby = false;
-        if (!(message instanceof LobbyMessage)) {
-            return false;
-        }
-        /*
-         * for (final String s : sValidLobbyMessages) {
-         * if (s.equals(messageType)) {
-         * isLobby = true;
-         * }
-         * }
-         * if (!isLobby) { return false; }
-         */
-
-        final Json content = message.getContent();
-        if (messageType.equals(RequestServerInfo.class.getName())) {
-            try {
-                aDiscoveryServer.sendEVMessage(source, new ServerInfoMessage(aLobby, aInGame), true);
-            } catch (final EVMessageSendingException e) {
-                // No big deal, client just won't see us in server list
-            }
-            aLobby.removePlayer(source); // If it was in the lobby somehow, remove it
-            return true;
-        }
-        if (messageType.equals(RequestJoinLobby.class.getName())) {
-            if (aLobby.getPlayerByClient(source) != null || aInGame) {
-                // Some guy is trying to handshake twice or handshaking in-game -> DENIED
-                return true;
-            }
-            String nickname = content.getStringAttribute("nickname");
-            if (nickname.equals(EVGameState.sNeutralPlayerName)) {
-                sendEVMessage(source, new JoinErrorMessage("Nickname \"" + EVGameState.sNeutralPlayerName
-                                + "\" is reserved."));
-                return true;
-            }
-            if (aLobby.getPlayerByNickname(nickname) != null) {
-                // Nickname already in use
-                nickname = getNewPlayerNickame();
-            }
-            LoggerUtils.info("Adding player " + nickname + " at Client " + source + " to lobby.");
-            aLobby.addPlayer(source, nickname);
-            refreshLobbies();
-            return true;
-        } else if (messageType.equals(LeavingLobby.class.getName())) {
-            aLobby.removePlayer(source);
-            refreshLobbies();
-            return true;
-        }
-        // It's not a handshake, so it must be a legit lobby message from this point on
-        if (aInGame || aLobby.getPlayerByClient(source) == null) {
-            return true; // We're in-game or client is not authenticated
+        synchronized (aSessions) {
+            return aSessions.get(id);
         }
-        if (messageType.equals(LobbyPlayerUpdate.class.getName())) {
-            if (aLobby.updatePlayer(source, content)) {
-                refreshLobbies();
-            }
-        } else if (messageType.equals(StartGameMessage.class.getName())) {
-            if (!isReadyToStart()) {
-                sendEVMessage(source, new ServerChatMessage("Cannot start game yet, some players are not ready."));
-            } else {
-                // Starting game! Build list of lobby players and pass it to game observers
-                sendAll(new ServerChatMessage("Game starting."));
-                sendAll(new StartingGameMessage());
-                aInGame = true;
-                final Json players = aLobby.getBaseJson();
-                for (final EVGameMessageObserver observer : aGameMessagesObservers) {
-                    observer.messageReceived(messageType, aLobby, source, players);
-                }
-                // ping all to get a feel for ping times
-                pingAll();
-            }
-        } else if (messageType.equals(LoadGameRequest.class.getName())) {
-            EVGameState loaded;
-            LoggerUtils.info("Attempting to load game from Client " + source + ".");
-            try {
-                loaded = loadGame(content);
-                // Start game, no errors
-                sendAll(new ServerChatMessage("Loaded game starting."));
-                sendAll(new StartingGameMessage());
-                aInGame = true;
-                LoggerUtils.info("Successfully loaded game from Client " + source + ".");
-                for (final EVGameMessageObserver observer : aGameMessagesObservers) {
-                    observer.messageReceived(messageType, aLobby, source, loaded.toJson());
-                }
-            } catch (final BadSaveFileException e) {
-                LoggerUtils.info("Eror while loading game from Client " + source + ": " + e.getMessage());
-                sendAll(new ServerChatMessage("Error while loading game: " + e.getMessage()));
-            }
-        }
-        return true;
     }
 
     /**
-     * @return Whether the game is running.
+     * @return All the sessions running on the server, by increasing ID.
      */
-    public boolean isGameRunning()
+    public Collection<GameSession> getSessions()
     {
-        return aInGame;
+        synchronized (aSessions) {
+            return new ArrayList<GameSession>(aSessions.values());
+        }
     }
 
     /**
-     * @return Whether we can start the game right now
+     * @return Whether the game of any session is running.
      */
-    private boolean isReadyToStart()
+    public boolean isGameRunning()
     {
-        for (final LobbyPlayer player : aLobby.getPlayers()) {
-            if (!player.isReady()) {
-                return false;
+        for (final GameSession session : getSessions()) {
+            if (session.isGameRunning()) {
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
     /**
-     * Attempt to load a game from a save file
+     * Adds a client to the session it asked for, or to the open session if it did not ask for one.
      * 
-     * @param state
-     *            The Json'd game state to load
-     * @return The loaded game state
-     * @throws BadSaveFileException
-     *             When an error happens during loading.
+     * @param source
+     *            The client
+     * @param content
+     *            The content of its request to join
      */
-    private EVGameState loadGame(final Json state) throws BadSaveFileException
+    private void join(final HostedConnection source, final Json content)
     {
-        EVGameState loadedState;
-        try {
-            loadedState = new EVGameState(state);
-        } catch (final BadJsonInitialization e) {
-            throw new BadSaveFileException("Invalid save file.");
-        }
-        // First, match all players; don't modify them yet until we're sure we have everyone
-        String missingPlayers = "";
-        int missingCount = 0;
-        for (final Player p : loadedState.getPlayers()) {
-            if (p.equals(loadedState.getNullPlayer())) {
-                continue;
+        final GameSession session;
+        synchronized (aSessions) {
+            if (aSessionsByClient.containsKey(source)) {
+                return; // Some guy is trying to handshake twice -> DENIED
             }
-            final LobbyPlayer lobbyP = aLobby.getPlayerByNickname(p.getNickname());
-            if (lobbyP == null) {
-                missingPlayers += ", " + p.getNickname();
-                missingCount++;
+            if (content.hasAttribute("session")) {
+                session = aSessions.get(content.getIntAttribute("session"));
+            }
+            else {
+                session = getOpenSession();
+            }
+            if (session != null) {
+                aSessionsByClient.put(source, session);
             }
         }
-        if (missingCount != 0) {
-            throw new BadSaveFileException("Missing player" + (missingCount == 1 ? "" : "s") + ": "
-                            + missingPlayers.substring(2) + ".");
-        }
-        // Second, check if everyone is ready
-        if (!isReadyToStart()) {
-            throw new BadSaveFileException("Players not ready.");
+        if (session == null) {
+            sendEVMessage(source, new JoinErrorMessage("There is no game #" + content.getIntAttribute("session")
+                            + " on this server."), true);
+            return;
         }
-        // Third, modify players to match loaded state
-        for (final Player p : loadedState.getPlayers()) {
-            if (p.equals(loadedState.getNullPlayer())) {
-                continue;
+        final String nickname = content.getStringAttribute("nickname");
+        session.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                session.join(source, nickname);
             }
-            final LobbyPlayer lobbyP = aLobby.getPlayerByNickname(p.getNickname());
-            lobbyP.setColor(p.getColor().name);
-            lobbyP.setRace(p.getRaceData().getType());
-        }
-        // All good, start the damn game already
-        return loadedState;
-    }
-
-    /**
-     * @return The maximum amount of time we wait before pinging a silent connection.
-     */
-    public double maxPingTime()
-    {
-        return aLongestPingTime;
+        });
     }
 
     @Override
@@ -371,132 +302,68 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
     {
         final HostedConnection hc = (HostedConnection) source;
         final String messageType = message.getType();
-        final Json messageContents = message.getContent();
-        if (messageType.equals(PingMessage.class.getName())) {
-            // it's just a ping, set maxPingTime if you must
-            final long timeDiff = System.currentTimeMillis() - messageContents.getLong();
-            aLongestPingTime = Math.max(aLongestPingTime, timeDiff);
-            return;
-        }
-        // Handle global messages first
-        if (messageType.equals(ChatMessage.class.getName())) {
-            final LobbyPlayer fromPlayer = aLobby.getPlayerByClient(hc);
-            sendAll(new ChatMessage(fromPlayer.getNickname(), fromPlayer.getColor(),
-                            messageContents.getStringAttribute("message")));
+        // Handle the messages that are not bound to a session first
+        if (messageType.equals(RequestServerInfo.class.getName())) {
+            final GameSession open = getOpenSession();
+            try {
+                aDiscoveryServer.sendEVMessage(hc, new ServerInfoMessage(open.getLobby(), open.isGameRunning(), open
+                                .getID()), true);
+            } catch (final EVMessageSendingException e) {
+                // No big deal, client just won't see us in server list
+            }
+            removeClient(hc); // If it was in a lobby somehow, remove it
             return;
         }
-        // Else, handle lobby messages
-        if (handleLobbyMessage(hc, message)) {
-            // If it's a lobby message, intercept it and don't send it to the observers
+        if (messageType.equals(RequestJoinLobby.class.getName())) {
+            join(hc, message.getContent());
             return;
         }
-        // Else, it's a game message, so forward to game observers
-        for (final EVGameMessageObserver observer : aGameMessagesObservers) {
-            observer.messageReceived(messageType, aLobby, hc, messageContents);
-        }
-    }
-
-    /**
-     * Pings the connection.
-     * 
-     * @param client
-     *            The connection to ping.
-     */
-    private void ping(final HostedConnection client)
-    {
-        sendEVMessage(client, new PingMessage());
-    }
-
-    /**
-     * Pings all players.
-     */
-    public void pingAll()
-    {
-        LoggerUtils.info("Previous max ping time was " + aLongestPingTime + ". Starting another round of pinging");
-        // reset max ping time so that it's up do date
-        aLongestPingTime = 0;
-        // ping all players
-        for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
-            ping(player.getClient());
+        final GameSession session;
+        synchronized (aSessions) {
+            session = aSessionsByClient.get(hc);
+            if (messageType.equals(LeavingLobby.class.getName())) {
+                aSessionsByClient.remove(hc);
+            }
         }
-        // schedule a new round of pinging
-        if (aPingTimer != null) {
-            aPingTimer.cancel();
+        if (session == null) {
+            return; // Client is not authenticated
         }
-        aPingTimer = new Timer();
-        aPingTimer.schedule(new TimerTask() {
+        // Else, route it to the session of the client
+        session.execute(new Runnable() {
             @Override
             public void run()
             {
-                pingAll();
+                session.messageReceived(hc, message);
             }
-        }, sTimeBetweenPings);
-        // ping every once in a while
-    }
-
-    /**
-     * Send a message to all clients containing the current lobby info
-     */
-    private void refreshLobbies()
-    {
-        for (final LobbyPlayer lobbyplayer : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
-            sendEVMessage(lobbyplayer.getClient(), new LobbyStateMessage(aLobby, lobbyplayer));
-        }
+        });
     }
 
     /**
-     * Registers a listener for all EVMessages.
+     * Removes a client from its session, if it is in one.
      * 
-     * @param listener
-     *            The listener.
-     */
-    public void registerListener(final EVGameMessageObserver listener)
-    {
-        aGameMessagesObservers.add(listener);
-    }
-
-    /**
-     * Sends the message to all players.
-     * 
-     * @param message
-     *            The message to send.
-     */
-    protected void sendAll(final EVMessage message)
-    {
-        // clone list to deal with potential concurrent modification
-        for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
-            sendEVMessage(player.getClient(), message);
-        }
-    }
-
-    /**
-     * Sends the state to all players.
-     * 
-     * @param state
-     *            The state to send.
+     * @param client
+     *            The client
      */
-    void sendAllState(final EVGameState state)
+    private void removeClient(final HostedConnection client)
     {
-        for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
-            sendEVMessage(player.getClient(), new GameStateMessage(state, player.getNickname()));
+        final GameSession session;
+        synchronized (aSessions) {
+            session = aSessionsByClient.remove(client);
+        }
+        if (session != null) {
+            session.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    session.clientLeft(client);
+                }
+            });
         }
     }
 
     /**
-     * Sends an EVMessage asynchronously to a connected client.
-     * 
-     * @param destination
-     *            The destination of the message.
-     * @param message
-     *            The message to send.
-     */
-    protected void sendEVMessage(final HostedConnection destination, final EVMessage message)
-    {
-        sendEVMessage(destination, message, true);
-    }
-
-    /**
-     * Sends an EVMessage to a connected client.
+     * Sends an EVMessage to a connected client. If it cannot be sent, the client is dropped from the server. Messages to a
+     * client that is already disconnected are dropped; its removal from its session is already on its way.
      * 
      * @param destination
      *            The destination of the message.
@@ -507,14 +374,21 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
      */
     protected void sendEVMessage(final HostedConnection destination, final EVMessage message, final boolean async)
     {
+        if (aNetworkServer.getPostman(destination) == null) {
+            LoggerUtils.info("Not sending message " + message + " to client " + destination + ", it is disconnected");
+            return;
+        }
         try {
             aNetworkServer.sendEVMessage(destination, message, async);
         } catch (final Exception e) {
             LoggerUtils.severe("Could not send message " + message + " to client " + destination);
             e.printStackTrace();
-            destination.close("unresponsive");
-            aLobby.removePlayer(destination);
-            refreshLobbies();
+            try {
+                destination.close("unresponsive");
+            } catch (final RuntimeException closeError) {
+                // The connection went away on its own meanwhile
+            }
+            removeClient(destination);
         }
     }
 
@@ -523,15 +397,7 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
      */
     void stop()
     {
-        // 1. we are no longer in a game
-        aInGame = false;
-        // 2. if there's a ping timer floating around, kill it
-        // do this first otherwise ping messages might be sent to connections we're currently attempting to close
-        if (aPingTimer != null) {
-            aPingTimer.cancel();
-            aPingTimer = null;
-        }
-        // 3. for each connected client send a quit message synchronously then close the connection
+        // 1. for each connected client send a quit message synchronously then close the connection
         for (final HostedConnection client : new ArrayList<HostedConnection>(aNetworkServer.getConnections())) {
             try {
                 if (client != null) {
@@ -543,11 +409,25 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
                 LoggerUtils.warning("Could not kick client " + client);
             }
         }
-        // 4. inform all observers that the server has just stopped
-        for (final EVGameMessageObserver observer : aGameMessagesObservers) {
-            observer.serverStopped();
+        // 2. close all sessions, which stops their games and pinging rounds, and let them finish what they were doing
+        final List<GameSession> sessions;
+        synchronized (aSessions) {
+            sessions = new ArrayList<GameSession>(aSessions.values());
+            aSessions.clear();
+            aSessionsByClient.clear();
+            aOpenSession = null;
+        }
+        for (final GameSession session : sessions) {
+            session.close();
+        }
+        aWorkers.shutdown();
+        try {
+            aWorkers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        // 5. shut down the discovery server, we don't want people trying to join our game if it doesn't exist
+        aResolvers.shutdown();
+        // 3. shut down the discovery server, we don't want people trying to join our game if it doesn't exist
         try {
             if (aDiscoveryServer.isRunning()) {
                 aDiscoveryServer.close();
@@ -557,7 +437,7 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
             e.printStackTrace();
             System.exit(0);
         }
-        // 6. shut down the server
+        // 4. shut down the server
         try {
             if (aNetworkServer.isRunning()) {
                 aNetworkServer.close();
@@ -572,6 +452,6 @@ public class EVNetworkEngine implements EVMessageListener, ConnectionListener
         } catch (final InterruptedException e) {
             // should never happen
         }
-        LoggerUtils.info("The game server has succesfully shut down");
+        LoggerUtils.info("The game server has succesfully shut down; " + TimingWheel.getInstance());
     }
 }
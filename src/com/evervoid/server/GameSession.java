@@ -0,0 +1,625 @@
+package com.evervoid.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.network.EVMessage;
+import com.evervoid.network.lobby.LobbyPlayer;
+import com.evervoid.network.lobby.LobbyState;
+import com.evervoid.network.message.ChatMessage;
+import com.evervoid.network.message.GameStateMessage;
+import com.evervoid.network.message.JoinErrorMessage;
+import com.evervoid.network.message.LobbyStateMessage;
+import com.evervoid.network.message.PingMessage;
+import com.evervoid.network.message.ServerChatMessage;
+import com.evervoid.network.message.StartingGameMessage;
+import com.evervoid.network.message.lobby.LeavingLobby;
+import com.evervoid.network.message.lobby.LoadGameRequest;
+import com.evervoid.network.message.lobby.LobbyMessage;
+import com.evervoid.network.message.lobby.LobbyPlayerUpdate;
+import com.evervoid.network.message.lobby.StartGameMessage;
+import com.evervoid.state.BadSaveFileException;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.data.GameData;
+import com.evervoid.state.player.Player;
+import com.evervoid.utils.LoggerUtils;
+import com.evervoid.utils.MathUtils;
+import com.evervoid.utils.TimingWheel;
+import com.evervoid.utils.TimingWheel.Timeout;
+import com.jme3.network.HostedConnection;
+
+/**
+ * One lobby, and then the game played by its players, among the ones hosted by an {@link EVNetworkEngine}. Each session has
+ * its own {@link EVGameEngine}, state and turn timer. Everything a session does, from handling the messages of its players to
+ * calculating turns, is queued and run one task at a time on a worker pool shared by all sessions, so that the session needs
+ * no locking of its own while many sessions run in parallel.
+ */
+public class GameSession implements Runnable
+{
+	/**
+	 * Whether the session has been closed; it does not run new tasks anymore.
+	 */
+	private boolean aClosed = false;
+	/**
+	 * All observers waiting for game messages.
+	 */
+	private final Set<EVGameMessageObserver> aGameMessagesObservers = new HashSet<EVGameMessageObserver>();
+	/**
+	 * The ID of the session, unique on its server.
+	 */
+	private final int aID;
+	/**
+	 * Whether the game is running.
+	 */
+	private volatile boolean aInGame = false;
+	/**
+	 * The round-trip times measured on the connection of each player.
+	 */
+	private final Map<HostedConnection, ConnectionLatency> aLatencies = new HashMap<HostedConnection, ConnectionLatency>();
+	/**
+	 * The state of the lobby of the session.
+	 */
+	private final LobbyState aLobby;
+	/**
+	 * The ping time of the slowest client in any given round of pinging.
+	 */
+	private long aLongestPingTime;
+	/**
+	 * The network engine hosting the session.
+	 */
+	private final EVNetworkEngine aManager;
+	/**
+	 * The content of the last ping sent to each player who has not answered it yet; only echoes of it are measured.
+	 */
+	private final Map<HostedConnection, Json> aPendingPings = new HashMap<HostedConnection, Json>();
+	/**
+	 * The next round of pinging; null until the game starts.
+	 */
+	private Timeout aPingTimeout;
+	/**
+	 * Whether a worker is currently running the tasks of the session, or is about to.
+	 */
+	private boolean aScheduled = false;
+	/**
+	 * The tasks waiting to be run, in order.
+	 */
+	private final Queue<Runnable> aTasks = new LinkedList<Runnable>();
+	/**
+	 * The worker pool shared by all sessions.
+	 */
+	private final ExecutorService aWorkers;
+
+	/**
+	 * Creates a session and its game engine.
+	 * 
+	 * @param manager
+	 *            The network engine hosting the session
+	 * @param id
+	 *            The ID of the session
+	 * @param gameData
+	 *            The game data of the lobby and of the game
+	 * @param serverName
+	 *            The name of the server, as shown in the lobby
+	 * @param workers
+	 *            The worker pool running the tasks of all sessions
+	 * @param resolvers
+	 *            The threads resolving turns, shared by all sessions
+	 */
+	GameSession(final EVNetworkEngine manager, final int id, final GameData gameData, final String serverName,
+			final ExecutorService workers, final ExecutorService resolvers)
+	{
+		aManager = manager;
+		aID = id;
+		aLobby = new LobbyState(gameData, serverName);
+		aWorkers = workers;
+		new EVGameEngine(this, gameData, resolvers); // Registers itself as an observer
+	}
+
+	/**
+	 * Removes a client from the session, once it left or its connection was lost. The session is closed once its last
+	 * player is gone.
+	 * 
+	 * @param client
+	 *            The client
+	 */
+	void clientLeft(final HostedConnection client)
+	{
+		if (aLobby.getPlayerByClient(client) == null) {
+			return;
+		}
+		aLobby.removePlayer(client);
+		aLatencies.remove(client);
+		aPendingPings.remove(client);
+		for (final EVGameMessageObserver observer : aGameMessagesObservers) {
+			observer.clientQuit(client);
+		}
+		if (aLobby.getNumOfPlayers() == 0) {
+			LoggerUtils.info("Closing " + this + ", its last player left");
+			aManager.closeSession(this);
+		}
+		else if (!aInGame) {
+			refreshLobbies();
+		}
+	}
+
+	/**
+	 * Closes the session: its pinging rounds and game are stopped, and no task runs after the ones already queued.
+	 */
+	void close()
+	{
+		execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				aInGame = false;
+				if (aPingTimeout != null) {
+					aPingTimeout.cancel();
+					aPingTimeout = null;
+				}
+				for (final EVGameMessageObserver observer : aGameMessagesObservers) {
+					observer.serverStopped();
+				}
+				aGameMessagesObservers.clear();
+			}
+		});
+		synchronized (this) {
+			aClosed = true;
+		}
+	}
+
+	/**
+	 * Unregisters an observer from the session.
+	 * 
+	 * @param observer
+	 *            The observer to unregister.
+	 */
+	public void deregisterObserver(final EVGameMessageObserver observer)
+	{
+		aGameMessagesObservers.remove(observer);
+	}
+
+	/**
+	 * Queues a task to be run by the session, after the ones already queued. Tasks queued after the session was closed are
+	 * dropped.
+	 * 
+	 * @param task
+	 *            The task
+	 */
+	void execute(final Runnable task)
+	{
+		synchronized (this) {
+			if (aClosed) {
+				return;
+			}
+			aTasks.add(task);
+			if (aScheduled) {
+				return;
+			}
+			aScheduled = true;
+		}
+		try {
+			aWorkers.execute(this);
+		}
+		catch (final RejectedExecutionException e) {
+			// The server is shutting down
+		}
+	}
+
+	/**
+	 * @return The ID of the session, unique on its server.
+	 */
+	public int getID()
+	{
+		return aID;
+	}
+
+	/**
+	 * @param client
+	 *            A client of the session
+	 * @return The round-trip times measured on the connection of the client; null if none were measured yet.
+	 */
+	public ConnectionLatency getLatency(final HostedConnection client)
+	{
+		return aLatencies.get(client);
+	}
+
+	/**
+	 * @return The state of the lobby of the session.
+	 */
+	public LobbyState getLobby()
+	{
+		return aLobby;
+	}
+
+	/**
+	 * @return A random player nickname that is not taken in this session.
+	 */
+	public String getNewPlayerNickame()
+	{
+		final Json names = Json.fromFile("schema/players.json");
+		final List<String> freeNames = new ArrayList<String>();
+		for (final String name : names.getStringListAttribute("names")) {
+			if (aLobby.getPlayerByNickname(name) == null) {
+				freeNames.add(name);
+			}
+		}
+		if (!freeNames.isEmpty()) {
+			return MathUtils.getRandomElement(freeNames);
+		}
+		// Otherwise, generate a boring name
+		int i;
+		for (i = 1; aLobby.getPlayerByNickname("Player " + i) != null; i++) {
+			// Nothing
+		}
+		return "Player " + i;
+	}
+
+	/**
+	 * Handles a lobby message from one of the players of the session.
+	 * 
+	 * @param source
+	 *            The source of the lobby message.
+	 * @param message
+	 *            The lobby message
+	 */
+	private void handleLobbyMessage(final HostedConnection source, final EVMessage message)
+	{
+		final String messageType = message.getType();
+		final Json content = message.getContent();
+		if (messageType.equals(LeavingLobby.class.getName())) {
+			clientLeft(source);
+			return;
+		}
+		if (aInGame || aLobby.getPlayerByClient(source) == null) {
+			return; // We're in-game or client is not authenticated
+		}
+		if (messageType.equals(LobbyPlayerUpdate.class.getName())) {
+			if (aLobby.updatePlayer(source, content)) {
+				refreshLobbies();
+			}
+		}
+		else if (messageType.equals(StartGameMessage.class.getName())) {
+			if (!isReadyToStart()) {
+				sendEVMessage(source, new ServerChatMessage("Cannot start game yet, some players are not ready."));
+			}
+			else {
+				// Starting game! Build list of lobby players and pass it to game observers
+				sendAll(new ServerChatMessage("Game starting."));
+				sendAll(new StartingGameMessage());
+				aInGame = true;
+				final Json players = aLobby.getBaseJson();
+				for (final EVGameMessageObserver observer : aGameMessagesObservers) {
+					observer.messageReceived(messageType, aLobby, source, players);
+				}
+				// ping all to get a feel for ping times
+				pingAll();
+			}
+		}
+		else if (messageType.equals(LoadGameRequest.class.getName())) {
+			EVGameState loaded;
+			LoggerUtils.info("Attempting to load game from Client " + source + " in " + this + ".");
+			try {
+				loaded = loadGame(content);
+				// Start game, no errors
+				sendAll(new ServerChatMessage("Loaded game starting."));
+				sendAll(new StartingGameMessage());
+				aInGame = true;
+				LoggerUtils.info("Successfully loaded game from Client " + source + " in " + this + ".");
+				for (final EVGameMessageObserver observer : aGameMessagesObservers) {
+					observer.messageReceived(messageType, aLobby, source, loaded.toJson());
+				}
+				// turn deadlines depend on ping times, as for new games
+				pingAll();
+			}
+			catch (final BadSaveFileException e) {
+				LoggerUtils.info("Eror while loading game from Client " + source + ": " + e.getMessage());
+				sendAll(new ServerChatMessage("Error while loading game: " + e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the game is running.
+	 */
+	public boolean isGameRunning()
+	{
+		return aInGame;
+	}
+
+	/**
+	 * @return Whether we can start the game right now
+	 */
+	private boolean isReadyToStart()
+	{
+		for (final LobbyPlayer player : aLobby.getPlayers()) {
+			if (!player.isReady()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a client to the lobby of the session; the client is turned away if the game has already started.
+	 * 
+	 * @param source
+	 *            The client
+	 * @param requestedNickname
+	 *            The nickname the client asked for; another one is picked if it is already taken
+	 */
+	void join(final HostedConnection source, final String requestedNickname)
+	{
+		if (aLobby.getPlayerByClient(source) != null) {
+			return; // Some guy is trying to handshake twice -> DENIED
+		}
+		if (aInGame) {
+			aManager.forgetClient(source, this);
+			sendEVMessage(source, new JoinErrorMessage("This game has already started."));
+			return;
+		}
+		if (requestedNickname.equals(EVGameState.sNeutralPlayerName)) {
+			aManager.forgetClient(source, this);
+			sendEVMessage(source, new JoinErrorMessage("Nickname \"" + EVGameState.sNeutralPlayerName + "\" is reserved."));
+			return;
+		}
+		String nickname = requestedNickname;
+		if (aLobby.getPlayerByNickname(nickname) != null) {
+			// Nickname already in use
+			nickname = getNewPlayerNickame();
+		}
+		LoggerUtils.info("Adding player " + nickname + " at Client " + source + " to the lobby of " + this + ".");
+		aLobby.addPlayer(source, nickname);
+		refreshLobbies();
+	}
+
+	/**
+	 * Attempt to load a game from a save file
+	 * 
+	 * @param state
+	 *            The Json'd game state to load
+	 * @return The loaded game state
+	 * @throws BadSaveFileException
+	 *             When an error happens during loading.
+	 */
+	private EVGameState loadGame(final Json state) throws BadSaveFileException
+	{
+		EVGameState loadedState;
+		try {
+			loadedState = new EVGameState(state);
+		}
+		catch (final BadJsonInitialization e) {
+			throw new BadSaveFileException("Invalid save file.");
+		}
+		// First, match all players; don't modify them yet until we're sure we have everyone
+		String missingPlayers = "";
+		int missingCount = 0;
+		for (final Player p : loadedState.getPlayers()) {
+			if (p.equals(loadedState.getNullPlayer())) {
+				continue;
+			}
+			final LobbyPlayer lobbyP = aLobby.getPlayerByNickname(p.getNickname());
+			if (lobbyP == null) {
+				missingPlayers += ", " + p.getNickname();
+				missingCount++;
+			}
+		}
+		if (missingCount != 0) {
+			throw new BadSaveFileException("Missing player" + (missingCount == 1 ? "" : "s") + ": "
+					+ missingPlayers.substring(2) + ".");
+		}
+		// Second, check if everyone is ready
+		if (!isReadyToStart()) {
+			throw new BadSaveFileException("Players not ready.");
+		}
+		// Third, modify players to match loaded state
+		for (final Player p : loadedState.getPlayers()) {
+			if (p.equals(loadedState.getNullPlayer())) {
+				continue;
+			}
+			final LobbyPlayer lobbyP = aLobby.getPlayerByNickname(p.getNickname());
+			lobbyP.setColor(p.getColor().name);
+			lobbyP.setRace(p.getRaceData().getType());
+		}
+		// All good, start the damn game already
+		return loadedState;
+	}
+
+	/**
+	 * @return The maximum amount of time we wait before pinging a silent connection.
+	 */
+	public double maxPingTime()
+	{
+		return aLongestPingTime;
+	}
+
+	/**
+	 * Handles a message from one of the players of the session.
+	 * 
+	 * @param source
+	 *            The client the message comes from
+	 * @param message
+	 *            The message
+	 */
+	void messageReceived(final HostedConnection source, final EVMessage message)
+	{
+		final String messageType = message.getType();
+		final Json messageContents = message.getContent();
+		if (messageType.equals(PingMessage.class.getName())) {
+			// it's just a ping; only the echo of the ping the client was last sent is measured, so that neither a late echo
+			// of an older round nor a made-up timestamp can skew the latency of the connection
+			final Json sent = aPendingPings.get(source);
+			if (sent == null || !sent.equals(messageContents)) {
+				return;
+			}
+			aPendingPings.remove(source);
+			final long timeDiff = System.currentTimeMillis() - sent.getLong();
+			aLongestPingTime = Math.max(aLongestPingTime, timeDiff);
+			if (aLobby.getPlayerByClient(source) != null) {
+				ConnectionLatency latency = aLatencies.get(source);
+				if (latency == null) {
+					latency = new ConnectionLatency();
+					aLatencies.put(source, latency);
+				}
+				latency.addSample(timeDiff);
+			}
+			return;
+		}
+		// Handle global messages first
+		if (messageType.equals(ChatMessage.class.getName())) {
+			final LobbyPlayer fromPlayer = aLobby.getPlayerByClient(source);
+			if (fromPlayer != null) {
+				sendAll(new ChatMessage(fromPlayer.getNickname(), fromPlayer.getColor(),
+						messageContents.getStringAttribute("message")));
+			}
+			return;
+		}
+		// Else, handle lobby messages
+		if (message instanceof LobbyMessage) {
+			// If it's a lobby message, intercept it and don't send it to the observers
+			handleLobbyMessage(source, message);
+			return;
+		}
+		// Else, it's a game message, so forward to game observers
+		for (final EVGameMessageObserver observer : aGameMessagesObservers) {
+			observer.messageReceived(messageType, aLobby, source, messageContents);
+		}
+	}
+
+	/**
+	 * Pings all players, and schedules the next round of pinging.
+	 */
+	public void pingAll()
+	{
+		LoggerUtils.info("Previous max ping time in " + this + " was " + aLongestPingTime
+				+ ". Starting another round of pinging");
+		// reset max ping time so that it's up do date
+		aLongestPingTime = 0;
+		// ping all players
+		for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
+			final PingMessage ping = new PingMessage();
+			aPendingPings.put(player.getClient(), ping.getContent());
+			sendEVMessage(player.getClient(), ping);
+		}
+		// schedule a new round of pinging
+		if (aPingTimeout != null) {
+			aPingTimeout.cancel();
+		}
+		aPingTimeout = TimingWheel.getInstance().schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						pingAll();
+					}
+				});
+			}
+		}, EVNetworkEngine.sTimeBetweenPings);
+	}
+
+	/**
+	 * Send a message to all clients containing the current lobby info
+	 */
+	private void refreshLobbies()
+	{
+		for (final LobbyPlayer lobbyplayer : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
+			sendEVMessage(lobbyplayer.getClient(), new LobbyStateMessage(aLobby, lobbyplayer));
+		}
+	}
+
+	/**
+	 * Registers a listener for the game messages of the session.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 */
+	public void registerListener(final EVGameMessageObserver listener)
+	{
+		aGameMessagesObservers.add(listener);
+	}
+
+	@Override
+	public void run()
+	{
+		while (true) {
+			final Runnable task;
+			synchronized (this) {
+				task = aTasks.poll();
+				if (task == null) {
+					aScheduled = false;
+					return;
+				}
+			}
+			try {
+				task.run();
+			}
+			catch (final RuntimeException e) {
+				// One bad message must not take the whole session down
+				LoggerUtils.severe("Uncaught exception in " + this, e);
+			}
+		}
+	}
+
+	/**
+	 * Sends the message to all players.
+	 * 
+	 * @param message
+	 *            The message to send.
+	 */
+	protected void sendAll(final EVMessage message)
+	{
+		// clone list to deal with potential concurrent modification
+		for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
+			sendEVMessage(player.getClient(), message);
+		}
+	}
+
+	/**
+	 * Sends the state to all players.
+	 * 
+	 * @param state
+	 *            The state to send.
+	 */
+	void sendAllState(final EVGameState state)
+	{
+		// Only the player name differs between messages, serialize the state once
+		final Json stateJson = state.toJson();
+		for (final LobbyPlayer player : new ArrayList<LobbyPlayer>(aLobby.getPlayers())) {
+			sendEVMessage(player.getClient(), new GameStateMessage(stateJson, player.getNickname()));
+		}
+	}
+
+	/**
+	 * Sends an EVMessage asynchronously to a client.
+	 * 
+	 * @param destination
+	 *            The destination of the message.
+	 * @param message
+	 *            The message to send.
+	 */
+	protected void sendEVMessage(final HostedConnection destination, final EVMessage message)
+	{
+		aManager.sendEVMessage(destination, message, true);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "game session #" + aID;
+	}
+}
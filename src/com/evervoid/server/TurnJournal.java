@@ -0,0 +1,266 @@
+package com.evervoid.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+import com.evervoid.json.Json;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.action.Turn;
+import com.evervoid.utils.LoggerUtils;
+import com.evervoid.utils.ResourceUtils;
+
+/**
+ * An on-disk journal of a game, written by the server as the game goes: the state the game started from, then every turn
+ * committed on it, along with the seed it was resolved with. Each record is a Json object on its own line, and each line is
+ * flushed as soon as it is written, so that the journal holds every turn resolved before a crash. A {@link TurnReplay} rebuilds
+ * the state of the game at any turn from the journal.
+ */
+public class TurnJournal
+{
+	/**
+	 * Record type of the first line of a journal, holding the state the game started from.
+	 */
+	static final String sStartRecord = "start";
+	/**
+	 * Extension of journal files.
+	 */
+	public static final String sJournalFileExtension = ".evjournal";
+	/**
+	 * Number of journals kept in the journal directory; the oldest ones are deleted when a new one is created.
+	 */
+	public static final int sMaxJournals = 50;
+	/**
+	 * The journal files this process is still writing to, as absolute files; they are never deleted. Also guards the
+	 * creation and deletion of journals.
+	 */
+	private static final Set<File> sOpenJournals = new HashSet<File>();
+	/**
+	 * Record type of the lines of a journal holding a turn.
+	 */
+	static final String sTurnRecord = "turn";
+
+	/**
+	 * Creates a journal in the journal directory, named after the current time and made unique so that sessions starting at
+	 * the same time do not write to the same file. The oldest journals are deleted so that at most {@link #sMaxJournals}
+	 * remain, apart from those still being written to.
+	 * 
+	 * @param initialState
+	 *            The state the game starts from
+	 * @return The journal
+	 * @throws IOException
+	 *             If the journal cannot be written
+	 */
+	public static TurnJournal create(final EVGameState initialState) throws IOException
+	{
+		final File directory = getJournalDirectory();
+		final String prefix = "game-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-";
+		synchronized (sOpenJournals) {
+			deleteOldJournals(directory, sMaxJournals - 1);
+			return new TurnJournal(File.createTempFile(prefix, sJournalFileExtension, directory), initialState);
+		}
+	}
+
+	/**
+	 * Deletes the oldest journals of a directory, leaving a given number of them. Journals this process is still writing to
+	 * are never deleted, and count towards the ones left.
+	 * 
+	 * @param directory
+	 *            The journal directory
+	 * @param kept
+	 *            The number of journals to leave, the most recently modified ones
+	 */
+	static void deleteOldJournals(final File directory, final int kept)
+	{
+		final File[] journals = directory.listFiles(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(final File dir, final String name)
+			{
+				return name.endsWith(sJournalFileExtension);
+			}
+		});
+		if (journals == null || journals.length <= kept) {
+			return;
+		}
+		Arrays.sort(journals, new Comparator<File>()
+		{
+			@Override
+			public int compare(final File f1, final File f2)
+			{
+				return Long.valueOf(f2.lastModified()).compareTo(Long.valueOf(f1.lastModified()));
+			}
+		});
+		synchronized (sOpenJournals) {
+			int left = 0;
+			for (final File journal : journals) {
+				if (left < kept || sOpenJournals.contains(journal.getAbsoluteFile())) {
+					left++;
+				}
+				else if (!journal.delete()) {
+					LoggerUtils.log(LoggerUtils.sEngineCategory, Level.WARNING, "Cannot delete old game journal " + journal);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The directory in which journals are created; it is created if it does not exist yet
+	 */
+	public static File getJournalDirectory()
+	{
+		final File directory = new File(ResourceUtils.getAppDir(), "journals");
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		return directory;
+	}
+
+	/**
+	 * Reads all the records of a journal. A truncated last line, as left by a crash while it was being written, is ignored.
+	 * 
+	 * @param file
+	 *            The journal file
+	 * @return The records of the journal, in order
+	 * @throws IOException
+	 *             If the journal cannot be read
+	 */
+	static List<Json> read(final File file) throws IOException
+	{
+		final List<Json> records = new ArrayList<Json>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				try {
+					records.add(Json.fromString(line));
+				}
+				catch (final RuntimeException e) {
+					break; // Cut short by a crash
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return records;
+	}
+
+	/**
+	 * The journal file.
+	 */
+	private final File aFile;
+	/**
+	 * Writes to the journal file.
+	 */
+	private final Writer aWriter;
+
+	/**
+	 * Creates a journal, overwriting the file if it exists.
+	 * 
+	 * @param file
+	 *            The journal file
+	 * @param initialState
+	 *            The state the game starts from
+	 * @throws IOException
+	 *             If the journal cannot be written
+	 */
+	public TurnJournal(final File file, final EVGameState initialState) throws IOException
+	{
+		aFile = file;
+		aWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		synchronized (sOpenJournals) {
+			sOpenJournals.add(file.getAbsoluteFile());
+		}
+		try {
+			write(new Json().setAttribute("type", sStartRecord).setAttribute("state", initialState));
+		}
+		catch (final IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a turn to the journal.
+	 * 
+	 * @param turnNumber
+	 *            The number of the turn
+	 * @param seed
+	 *            The seed the turn was resolved with
+	 * @param handedIn
+	 *            The Json representation of the actions of the turn as they were handed to the {@link TurnResolver}; resolving
+	 *            them again on the same state with the same seed gives the same turn
+	 * @param committed
+	 *            The actions that were committed, in order
+	 * @param stateHash
+	 *            The hash of the state once the turn is committed
+	 * @throws IOException
+	 *             If the journal cannot be written
+	 */
+	public void append(final int turnNumber, final long seed, final Json handedIn, final Turn committed, final String stateHash)
+			throws IOException
+	{
+		write(new Json().setAttribute("type", sTurnRecord).setAttribute("number", turnNumber)
+				.setAttribute("seed", new Json(Long.valueOf(seed))).setAttribute("handedin", handedIn)
+				.setAttribute("committed", committed).setAttribute("hash", stateHash));
+	}
+
+	/**
+	 * Closes the journal; nothing can be appended to it afterwards, and it may be deleted once it is among the oldest ones.
+	 */
+	public void close()
+	{
+		try {
+			aWriter.close();
+		}
+		catch (final IOException e) {
+			// Everything was flushed already
+		}
+		synchronized (sOpenJournals) {
+			sOpenJournals.remove(aFile.getAbsoluteFile());
+		}
+	}
+
+	/**
+	 * @return The journal file
+	 */
+	public File getFile()
+	{
+		return aFile;
+	}
+
+	/**
+	 * Writes a record on its own line, and flushes it to the file.
+	 * 
+	 * @param record
+	 *            The record
+	 * @throws IOException
+	 *             If the journal cannot be written
+	 */
+	private void write(final Json record) throws IOException
+	{
+		record.write(aWriter);
+		aWriter.write('\n');
+		aWriter.flush();
+	}
+}
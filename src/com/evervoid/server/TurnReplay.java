@@ -0,0 +1,207 @@
+package com.evervoid.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.StateSnapshot;
+import com.evervoid.state.action.Turn;
+
+/**
+ * Rebuilds the states of a game from its {@link TurnJournal}, without a client or any animation: turns are committed straight
+ * to the state, as fast as the state can take them. The state after a turn is rebuilt from the closest checkpoint before it;
+ * checkpoints are taken every few turns as they are replayed, so going back a few turns does not replay the whole game. The
+ * journal can also be replayed through a {@link TurnResolver}, by resolving again the actions handed in during each turn with
+ * the seed of the turn, which checks that turn resolution still gives the same results. Checkpoints are {@link StateSnapshot}s,
+ * which share everything that did not change between them, so keeping many of them is cheap.
+ * <p>
+ * Run from the command line, it replays a whole journal, reports where the replay diverges from the recorded states if it
+ * does, and can save the last state as a save file for the game to be loaded again:
+ * <code>TurnReplay &lt;journal&gt; [-resolve] [-save &lt;file&gt;]</code>
+ */
+public class TurnReplay
+{
+	/**
+	 * Number of turns between two checkpoints.
+	 */
+	private static final int sCheckpointInterval = 10;
+
+	/**
+	 * Replays a journal.
+	 * 
+	 * @param args
+	 *            The journal file, optionally followed by "-resolve" to replay through a TurnResolver and by "-save" and a
+	 *            file to save the last state to
+	 */
+	public static void main(final String[] args)
+	{
+		if (args.length == 0) {
+			System.err.println("Usage: TurnReplay <journal> [-resolve] [-save <file>]");
+			System.exit(1);
+		}
+		boolean resolve = false;
+		File save = null;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-resolve")) {
+				resolve = true;
+			}
+			else if (args[i].equals("-save") && i + 1 < args.length) {
+				save = new File(args[++i]);
+			}
+		}
+		try {
+			final TurnReplay replay = new TurnReplay(new File(args[0]));
+			final TurnResolver resolver = resolve ? new TurnResolver(Runtime.getRuntime().availableProcessors()) : null;
+			final long start = System.nanoTime();
+			final int divergence = replay.verify(resolver);
+			final long elapsed = System.nanoTime() - start;
+			if (resolver != null) {
+				resolver.shutdown();
+			}
+			System.out.println("Replayed " + replay.getTurnCount() + " turns in " + elapsed / 1000000 + " ms");
+			if (divergence >= 0) {
+				System.out.println("Replay diverges from the journal at turn " + divergence);
+			}
+			else {
+				System.out.println("Every turn matches the journal");
+			}
+			if (save != null) {
+				replay.getState(replay.getTurnCount()).toJson().toFile(save);
+				System.out.println("Saved the last state to " + save);
+			}
+		}
+		catch (final IOException e) {
+			System.err.println("Cannot read journal: " + e);
+			System.exit(1);
+		}
+		catch (final BadJsonInitialization e) {
+			System.err.println("Corrupted journal: " + e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Snapshots of the states of the game, by number of turns replayed; the state the game started from is at 0.
+	 */
+	private final SortedMap<Integer, StateSnapshot> aCheckpoints = new TreeMap<Integer, StateSnapshot>();
+	/**
+	 * The turn records of the journal, in order.
+	 */
+	private final List<Json> aTurns;
+
+	/**
+	 * Reads a journal.
+	 * 
+	 * @param journal
+	 *            The journal file
+	 * @throws IOException
+	 *             If the journal cannot be read
+	 * @throws BadJsonInitialization
+	 *             If the journal does not start with the state the game started from
+	 */
+	public TurnReplay(final File journal) throws IOException, BadJsonInitialization
+	{
+		final List<Json> records = TurnJournal.read(journal);
+		if (records.isEmpty() || !TurnJournal.sStartRecord.equals(records.get(0).getStringAttribute("type"))) {
+			throw new BadJsonInitialization();
+		}
+		aCheckpoints.put(0, new EVGameState(records.get(0).getAttribute("state")).snapshot());
+		aTurns = records.subList(1, records.size());
+	}
+
+	/**
+	 * Takes a checkpoint of a state if one is due.
+	 * 
+	 * @param state
+	 *            The state
+	 * @param turns
+	 *            The number of turns replayed to get to the state
+	 */
+	private void checkpoint(final EVGameState state, final int turns)
+	{
+		if (turns % sCheckpointInterval == 0 && !aCheckpoints.containsKey(turns)) {
+			aCheckpoints.put(turns, state.snapshot());
+		}
+	}
+
+	/**
+	 * Rebuilds the state of the game after a number of turns, by committing the recorded turns from the closest checkpoint.
+	 * 
+	 * @param turns
+	 *            The number of turns to replay, between 0 (the state the game started from) and {@link #getTurnCount()}
+	 * @return The state of the game after these turns
+	 */
+	public EVGameState getState(final int turns)
+	{
+		if (turns < 0 || turns > aTurns.size()) {
+			throw new IllegalArgumentException("Journal has " + aTurns.size() + " turns, cannot replay " + turns);
+		}
+		int replayed = aCheckpoints.headMap(turns + 1).lastKey();
+		final EVGameState state = aCheckpoints.get(replayed).restore();
+		while (replayed < turns) {
+			replayTurn(state, aTurns.get(replayed), null);
+			replayed++;
+			checkpoint(state, replayed);
+		}
+		return state;
+	}
+
+	/**
+	 * @return The number of turns in the journal
+	 */
+	public int getTurnCount()
+	{
+		return aTurns.size();
+	}
+
+	/**
+	 * Commits a turn to a state.
+	 * 
+	 * @param state
+	 *            The state
+	 * @param record
+	 *            The record of the turn in the journal
+	 * @param resolver
+	 *            If null, the committed actions of the turn are committed again, in the same order; otherwise, the handed-in
+	 *            actions of the turn are resolved again with this resolver and the seed of the turn
+	 */
+	private void replayTurn(final EVGameState state, final Json record, final TurnResolver resolver)
+	{
+		if (resolver == null) {
+			state.commitTurn(new Turn(record.getAttribute("committed"), state));
+		}
+		else {
+			resolver.resolve(state, new Turn(record.getAttribute("handedin"), state), record.getLongAttribute("seed"));
+		}
+	}
+
+	/**
+	 * Replays the whole journal from the state the game started from, checking the state after each turn against the
+	 * recorded one.
+	 * 
+	 * @param resolver
+	 *            If null, the committed actions of each turn are committed again; otherwise, the actions handed in during each
+	 *            turn are resolved again with this resolver
+	 * @return The index of the first turn after which the state differs from the recorded one, or -1 if they all match
+	 */
+	public int verify(final TurnResolver resolver)
+	{
+		final EVGameState state = aCheckpoints.get(0).restore();
+		for (int i = 0; i < aTurns.size(); i++) {
+			replayTurn(state, aTurns.get(i), resolver);
+			final StateSnapshot snapshot = state.snapshot();
+			if (!snapshot.getHash().equals(aTurns.get(i).getStringAttribute("hash"))) {
+				return i;
+			}
+			if ((i + 1) % sCheckpointInterval == 0 && !aCheckpoints.containsKey(i + 1)) {
+				aCheckpoints.put(i + 1, snapshot);
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,316 @@
+package com.evervoid.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.action.Action;
+import com.evervoid.state.action.Turn;
+import com.evervoid.state.action.building.BuildingAction;
+import com.evervoid.state.action.building.IncrementBuildingConstruction;
+import com.evervoid.state.action.building.IncrementShipConstruction;
+import com.evervoid.state.action.planet.PlanetAction;
+import com.evervoid.state.action.planet.RegeneratePlanet;
+import com.evervoid.state.action.player.ReceiveIncome;
+import com.evervoid.state.action.ship.BombPlanet;
+import com.evervoid.state.action.ship.CapturePlanet;
+import com.evervoid.state.action.ship.EnterCargo;
+import com.evervoid.state.action.ship.JumpShipIntoPortal;
+import com.evervoid.state.action.ship.LeaveCargo;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.RegenerateShip;
+import com.evervoid.state.action.ship.ShipAction;
+import com.evervoid.state.action.ship.ShootShip;
+import com.evervoid.state.prop.Prop;
+import com.evervoid.state.prop.Ship;
+import com.evervoid.utils.EVContainer;
+
+/**
+ * Orders and commits the actions of a turn, phase by phase, in the order listed in res/schema/action_order.txt. Within a phase,
+ * actions are grouped by the solar system they take place in, and the groups are committed by increasing solar system ID.
+ * Everything random about a turn (the order of the actions within a group, the damage of shots and bombs) is drawn from a
+ * generator seeded from the seed of the turn, the phase and the solar system, so that a turn resolves to the same result
+ * given the same state, actions and seed. Moving ships only affects the solar system they move in, so the movement groups
+ * are committed in parallel.
+ */
+public class TurnResolver
+{
+	/**
+	 * Index of the combat phase in {@link #sPhases}; the damage of the actions of this phase is rolled before committing them.
+	 */
+	private static final int sCombatPhase = 1;
+	/**
+	 * Partition of the actions that do not take place in a solar system.
+	 */
+	private static final int sGalaxyPartition = -1;
+	/**
+	 * Index of the movement phase in {@link #sPhases}; this is the phase committed in parallel.
+	 */
+	private static final int sMovementPhase = 6;
+	/**
+	 * The {@link Action} classes of each phase of a turn, in the order the phases are committed. Actions of other classes are
+	 * committed first, in the order they were handed in.
+	 */
+	private static final Class<?>[][] sPhases = { { RegenerateShip.class, RegeneratePlanet.class },
+			{ ShootShip.class, BombPlanet.class }, { EnterCargo.class }, { LeaveCargo.class }, { JumpShipIntoPortal.class },
+			{ CapturePlanet.class }, { MoveShip.class }, { IncrementBuildingConstruction.class },
+			{ IncrementShipConstruction.class }, { ReceiveIncome.class } };
+	/**
+	 * Whether the actions of each phase of {@link #sPhases} are committed in random order, so that no player gets to act
+	 * first consistently.
+	 */
+	private static final boolean[] sShuffledPhases = { false, false, true, true, true, true, true, true, true, false };
+
+	/**
+	 * Commits actions one after the other.
+	 * 
+	 * @param state
+	 *            The state to commit the actions to
+	 * @param actions
+	 *            The actions to commit
+	 * @return The actions that were committed successfully, in order
+	 */
+	private static List<Action> commit(final EVGameState state, final List<Action> actions)
+	{
+		final List<Action> committed = new ArrayList<Action>(actions.size());
+		for (final Action action : actions) {
+			if (state.commitAction(action)) {
+				committed.add(action);
+			}
+		}
+		return committed;
+	}
+
+	/**
+	 * @param action
+	 *            An action
+	 * @return The ID of the solar system the action takes place in, or {@link #sGalaxyPartition} if it does not take place in
+	 *         a single solar system
+	 */
+	static int getPartition(final Action action)
+	{
+		Prop prop = null;
+		if (action instanceof ShipAction) {
+			prop = ((ShipAction) action).getShip();
+		}
+		else if (action instanceof PlanetAction) {
+			prop = ((PlanetAction) action).getPlanet();
+		}
+		else if (action instanceof BuildingAction) {
+			prop = ((BuildingAction) action).getBuilding().getPlanet();
+		}
+		if (prop == null) {
+			return sGalaxyPartition;
+		}
+		// Ships in cargo are in the solar system of the ship carrying them
+		EVContainer<Prop> container = prop.getContainer();
+		while (container instanceof Ship) {
+			container = ((Ship) container).getContainer();
+		}
+		return container instanceof SolarSystem ? ((SolarSystem) container).getID() : sGalaxyPartition;
+	}
+
+	/**
+	 * @param action
+	 *            An action
+	 * @return The index of the phase the action is committed in, or -1 if it is not part of any phase
+	 */
+	static int getPhase(final Action action)
+	{
+		for (int phase = 0; phase < sPhases.length; phase++) {
+			for (final Class<?> type : sPhases[phase]) {
+				if (type.isInstance(action)) {
+					return phase;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param seed
+	 *            The seed of the turn
+	 * @param phase
+	 *            The index of a phase
+	 * @param partition
+	 *            A partition of the phase
+	 * @return The seed of the random number generator of the partition; nearby turns, phases and partitions get unrelated
+	 *         seeds
+	 */
+	private static long getSeed(final long seed, final int phase, final int partition)
+	{
+		long z = seed + 0x9E3779B97F4A7C15L * (phase * 0x10001L + partition + 1);
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+
+	/**
+	 * Commits the groups of actions of the movement phase.
+	 */
+	private final ExecutorService aExecutor;
+	/**
+	 * Whether the executor belongs to this resolver, and is shut down along with it.
+	 */
+	private final boolean aOwnsExecutor;
+
+	/**
+	 * Creates a TurnResolver committing the movement phase on the given executor, which may be shared with other resolvers.
+	 * The executor is not shut down along with the resolver. Its tasks never wait on anything, so it can be shared by any
+	 * number of games resolving turns at the same time.
+	 * 
+	 * @param executor
+	 *            The executor committing the movement phase
+	 */
+	public TurnResolver(final ExecutorService executor)
+	{
+		aExecutor = executor;
+		aOwnsExecutor = false;
+	}
+
+	/**
+	 * Creates a TurnResolver.
+	 * 
+	 * @param threads
+	 *            Number of threads committing the movement phase
+	 */
+	public TurnResolver(final int threads)
+	{
+		aExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(final Runnable runnable)
+			{
+				final Thread thread = new Thread(runnable, "Turn resolution");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		aOwnsExecutor = true;
+	}
+
+	/**
+	 * Commits the groups of actions of a phase in parallel, each group on its own.
+	 * 
+	 * @param state
+	 *            The state to commit the actions to
+	 * @param partitions
+	 *            The groups of actions, by solar system ID
+	 * @return The actions that were committed successfully, group by group
+	 */
+	private List<Action> commitInParallel(final EVGameState state, final SortedMap<Integer, List<Action>> partitions)
+	{
+		final List<Future<List<Action>>> results = new ArrayList<Future<List<Action>>>(partitions.size());
+		for (final List<Action> actions : partitions.values()) {
+			results.add(aExecutor.submit(new Callable<List<Action>>()
+			{
+				@Override
+				public List<Action> call()
+				{
+					return commit(state, actions);
+				}
+			}));
+		}
+		final List<Action> committed = new ArrayList<Action>();
+		try {
+			for (final Future<List<Action>> result : results) {
+				committed.addAll(result.get());
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while resolving a turn", e);
+		}
+		catch (final ExecutionException e) {
+			throw new RuntimeException("Could not commit an action", e.getCause());
+		}
+		return committed;
+	}
+
+	/**
+	 * Orders the actions of a turn and commits them to the state.
+	 * 
+	 * @param state
+	 *            The state to commit the turn to
+	 * @param turn
+	 *            The actions of the turn, in the order they were handed in
+	 * @param seed
+	 *            The seed of the turn
+	 * @return A Turn made of the actions that were committed successfully, in the order they were committed
+	 */
+	public Turn resolve(final EVGameState state, final Turn turn, final long seed)
+	{
+		final List<Action> unphased = new ArrayList<Action>();
+		final List<SortedMap<Integer, List<Action>>> phases = new ArrayList<SortedMap<Integer, List<Action>>>(sPhases.length);
+		for (int phase = 0; phase < sPhases.length; phase++) {
+			phases.add(new TreeMap<Integer, List<Action>>());
+		}
+		for (final Action action : turn) {
+			final int phase = getPhase(action);
+			if (phase < 0) {
+				unphased.add(action);
+				continue;
+			}
+			final int partition = getPartition(action);
+			List<Action> actions = phases.get(phase).get(partition);
+			if (actions == null) {
+				actions = new ArrayList<Action>();
+				phases.get(phase).put(partition, actions);
+			}
+			actions.add(action);
+		}
+		final Turn committed = new Turn();
+		committed.addActions(commit(state, unphased));
+		for (int phase = 0; phase < sPhases.length; phase++) {
+			final SortedMap<Integer, List<Action>> partitions = phases.get(phase);
+			for (final Map.Entry<Integer, List<Action>> entry : partitions.entrySet()) {
+				final Random random = new Random(getSeed(seed, phase, entry.getKey()));
+				if (sShuffledPhases[phase]) {
+					Collections.shuffle(entry.getValue(), random);
+				}
+				if (phase == sCombatPhase) {
+					for (final Action action : entry.getValue()) {
+						if (action instanceof ShootShip) {
+							((ShootShip) action).rollDamage(random);
+						}
+						else if (action instanceof BombPlanet) {
+							((BombPlanet) action).rollDamage(random);
+						}
+					}
+				}
+			}
+			if (phase == sMovementPhase && partitions.size() > 1) {
+				committed.addActions(commitInParallel(state, partitions));
+			}
+			else {
+				// Other phases can reach across solar systems (ships dying, jumping, capturing planets), so they stay sequential
+				for (final List<Action> actions : partitions.values()) {
+					committed.addActions(commit(state, actions));
+				}
+			}
+		}
+		return committed;
+	}
+
+	/**
+	 * Stops the threads of the resolver, if it has its own; it cannot resolve turns anymore afterwards.
+	 */
+	public void shutdown()
+	{
+		if (aOwnsExecutor) {
+			aExecutor.shutdown();
+		}
+	}
+}
@@ -2,11 +2,13 @@ package com.evervoid.state;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.evervoid.json.BadJsonInitialization;
 import com.evervoid.json.Json;
@@ -27,7 +29,6 @@ import com.evervoid.state.prop.Prop;
 import com.evervoid.state.prop.Ship;
 import com.evervoid.state.prop.Star;
 import com.evervoid.utils.EVContainer;
-import com.evervoid.utils.LoggerUtils;
 import com.evervoid.utils.MathUtils;
 
 /**
@@ -71,10 +72,18 @@ public class EVGameState implements Jsonable
 	 * A map of id to Building.
 	 */
 	private final Map<Integer, Building> aAllBuildings = new HashMap<Integer, Building>();
+	/**
+	 * All the Planets registered to this state, ordered by ID.
+	 */
+	private final Set<Planet> aAllPlanets = new TreeSet<Planet>();
 	/**
 	 * A map from id to Prop.
 	 */
 	private final Map<Integer, Prop> aAllProps = new HashMap<Integer, Prop>();
+	/**
+	 * All the Ships registered to this state, ordered by ID.
+	 */
+	private final Set<Ship> aAllShips = new TreeSet<Ship>();
 	/**
 	 * The galaxy associated with this state.
 	 */
@@ -87,14 +96,30 @@ public class EVGameState implements Jsonable
 	 * Whether the game has started.
 	 */
 	private boolean aGameStarted = false;
+	/**
+	 * The ID the next Building will get. IDs are never reused, even once the Building holding one is gone.
+	 */
+	private int aNextBuildingID = 0;
+	/**
+	 * The ID the next Prop will get. IDs are never reused, even once the Prop holding one is gone.
+	 */
+	private int aNextPropID = 0;
 	/**
 	 * The null player. All unclaimed planets and SolarSystems belong to the null player.
 	 */
 	private final Player aNullPlayer;
+	/**
+	 * The Planets registered to this state, by owner.
+	 */
+	private final Map<Player, Set<Planet>> aPlanetsByPlayer = new HashMap<Player, Set<Planet>>();
 	/**
 	 * The list of all Players, excluding the NullPlayer.
 	 */
 	private final List<Player> aPlayerList;
+	/**
+	 * The Ships registered to this state, by owner.
+	 */
+	private final Map<Player, Set<Ship>> aShipsByPlayer = new HashMap<Player, Set<Ship>>();
 
 	/**
 	 * Creates a GameState from the contents of the Json.
@@ -105,10 +130,25 @@ public class EVGameState implements Jsonable
 	 *             If the GameState Json is badly formed
 	 */
 	public EVGameState(final Json json) throws BadJsonInitialization
+	{
+		this(json, new GameData(json.getAttribute("gamedata")));
+	}
+
+	/**
+	 * Creates a GameState from the contents of the Json, using GameData that has already been read from it.
+	 * 
+	 * @param json
+	 *            The Json representation of the game state
+	 * @param data
+	 *            The GameData of the game state
+	 * @throws BadJsonInitialization
+	 *             If the GameState Json is badly formed
+	 */
+	EVGameState(final Json json, final GameData data) throws BadJsonInitialization
 	{
 		// read Json attributes
 		aGameStarted = json.getBooleanAttribute("gamestarted");
-		aGameData = new GameData(json.getAttribute("gamedata"));
+		aGameData = data;
 		// read players
 		final Json players = json.getAttribute("players");
 		aPlayerList = new ArrayList<Player>(players.size());
@@ -127,6 +167,13 @@ public class EVGameState implements Jsonable
 		// This is because certain stuff (props) need to look up stuff from the game state when constructing themselves
 		// Thus aGalaxy must be defined in the game state before they can look that up
 		aGalaxy = new Galaxy(json.getAttribute("galaxy"), this);
+		// Props and Buildings that are gone may have held greater IDs than the ones left; those must not be reused
+		if (json.hasAttribute("nextpropid")) {
+			aNextPropID = Math.max(aNextPropID, json.getIntAttribute("nextpropid"));
+		}
+		if (json.hasAttribute("nextbuildingid")) {
+			aNextBuildingID = Math.max(aNextBuildingID, json.getIntAttribute("nextbuildingid"));
+		}
 	}
 
 	/**
@@ -161,17 +208,7 @@ public class EVGameState implements Jsonable
 	@Override
 	public EVGameState clone()
 	{
-		try {
-			return new EVGameState(toJson());
-		}
-		catch (final BadJsonInitialization e) {
-			// this should never happen
-			// if it does, this mean the toJson() is not in sync with the constructor
-			// this is bad news all around
-			LoggerUtils
-					.severe("Error caught in State cloning. This is bad news, it very likely means the toJson() is having trouble");
-			return null;
-		}
+		return snapshot().restore();
 	}
 
 	/**
@@ -198,7 +235,7 @@ public class EVGameState implements Jsonable
 	public Turn commitTurn(final Turn turn)
 	{
 		final Turn newTurn = new Turn();
-		for (final Action action : turn.getActions()) {
+		for (final Action action : turn) {
 			if (commitAction(action)) {
 				newTurn.addAction(action);
 			}
@@ -225,35 +262,31 @@ public class EVGameState implements Jsonable
 	 */
 	public void deregisterProp(final int propID)
 	{
-		aAllProps.remove(propID);
+		final Prop prop = aAllProps.remove(propID);
+		if (prop instanceof Ship) {
+			aAllShips.remove(prop);
+			getIndex(aShipsByPlayer, prop.getPlayer()).remove(prop);
+		}
+		else if (prop instanceof Planet) {
+			aAllPlanets.remove(prop);
+			getIndex(aPlanetsByPlayer, prop.getPlayer()).remove(prop);
+		}
 	}
 
 	/**
-	 * @return A set of all Planets registered to this state.
+	 * @return A read-only view of all Planets registered to this state, ordered by ID.
 	 */
 	public Set<Planet> getAllPlanets()
 	{
-		final Set<Planet> planets = new HashSet<Planet>();
-		for (final Prop p : aAllProps.values()) {
-			if (p instanceof Planet) {
-				planets.add((Planet) p);
-			}
-		}
-		return planets;
+		return Collections.unmodifiableSet(aAllPlanets);
 	}
 
 	/**
-	 * @return A set of all ships registered to this state.
+	 * @return A read-only view of all ships registered to this state, ordered by ID.
 	 */
 	public Set<Ship> getAllShips()
 	{
-		final Set<Ship> ships = new HashSet<Ship>();
-		for (final Prop p : aAllProps.values()) {
-			if (p instanceof Ship) {
-				ships.add((Ship) p);
-			}
-		}
-		return ships;
+		return Collections.unmodifiableSet(aAllShips);
 	}
 
 	/**
@@ -294,6 +327,23 @@ public class EVGameState implements Jsonable
 		return aGalaxy;
 	}
 
+	/**
+	 * @param index
+	 *            An index of Props by owner
+	 * @param player
+	 *            The owner
+	 * @return The set of Props of the player in the index, created if the player has none yet
+	 */
+	private <T extends Prop> Set<T> getIndex(final Map<Player, Set<T>> index, final Player player)
+	{
+		Set<T> props = index.get(player);
+		if (props == null) {
+			props = new TreeSet<T>();
+			index.put(player, props);
+		}
+		return props;
+	}
+
 	/**
 	 * @return The global jump cost as defined by the GameData.
 	 */
@@ -303,36 +353,19 @@ public class EVGameState implements Jsonable
 	}
 
 	/**
-	 * @return The next unused prop id.
+	 * @return The next unused building id; it is taken once a Building with it is registered.
 	 */
 	public int getNextBuildingID()
 	{
-		if (aAllBuildings.isEmpty()) {
-			return 0;
-		}
-		int maxID = Integer.MIN_VALUE;
-		for (final int id : aAllBuildings.keySet()) {
-			maxID = Math.max(maxID, id);
-		}
-		return maxID + 1;
+		return aNextBuildingID;
 	}
 
 	/**
-	 * @return A new, unused prop id.
+	 * @return A new, unused prop id; it is taken once a Prop with it is registered.
 	 */
 	public int getNextPropID()
 	{
-		// If we have no prop, then ID 0 is not taken
-		if (aAllProps.isEmpty()) {
-			return 0;
-		}
-		// If we have props, iterate over them, get the max, and return max+1
-		// because that ID is certainly not taken
-		int maxId = Integer.MIN_VALUE;
-		for (final Integer id : aAllProps.keySet()) {
-			maxId = Math.max(maxId, id);
-		}
-		return maxId + 1;
+		return aNextPropID;
 	}
 
 	/**
@@ -371,17 +404,15 @@ public class EVGameState implements Jsonable
 	/**
 	 * @param player
 	 *            The Player whose Planets are being retreived
-	 * @return All the planets owned by a particular player.
+	 * @return A read-only view of all the planets owned by a particular player, ordered by ID.
 	 */
 	public Set<Planet> getPlanetByPlayer(final Player player)
 	{
-		final Set<Planet> planetSet = new HashSet<Planet>();
-		for (final Prop p : aAllProps.values()) {
-			if (p instanceof Planet && p.getPlayer().equals(player)) {
-				planetSet.add((Planet) p);
-			}
+		final Set<Planet> planets = aPlanetsByPlayer.get(player);
+		if (planets == null) {
+			return Collections.emptySet();
 		}
-		return planetSet;
+		return Collections.unmodifiableSet(planets);
 	}
 
 	/**
@@ -516,6 +547,20 @@ public class EVGameState implements Jsonable
 		return aGameData.getResources();
 	}
 
+	/**
+	 * @param player
+	 *            The Player whose Ships are being retrieved
+	 * @return A read-only view of all the ships owned by a particular player, ordered by ID.
+	 */
+	public Set<Ship> getShipsByPlayer(final Player player)
+	{
+		final Set<Ship> ships = aShipsByPlayer.get(player);
+		if (ships == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(ships);
+	}
+
 	/**
 	 * @param id
 	 *            The ID of the solar system
@@ -589,10 +634,8 @@ public class EVGameState implements Jsonable
 	public boolean hasLost(final Player player)
 	{
 		// Defeat condition 1: Planet ownership (A player loses if he loses all his planets)
-		for (final Prop prop : aAllProps.values()) {
-			if (prop instanceof Planet && prop.getPlayer().equals(player)) {
-				return false;
-			}
+		if (!getPlanetByPlayer(player).isEmpty()) {
+			return false;
 		}
 		// TODO: Insert other defeat conditions here
 		return true;
@@ -606,6 +649,23 @@ public class EVGameState implements Jsonable
 		return aGameStarted;
 	}
 
+	/**
+	 * Moves a Planet from the index of the Planets of its previous owner to the one of its current owner. Planets call this
+	 * when they change hands.
+	 * 
+	 * @param planet
+	 *            The Planet
+	 * @param previousOwner
+	 *            The Player that owned the Planet until now
+	 */
+	public void planetOwnerChanged(final Planet planet, final Player previousOwner)
+	{
+		if (aAllPlanets.contains(planet)) {
+			getIndex(aPlanetsByPlayer, previousOwner).remove(planet);
+			getIndex(aPlanetsByPlayer, planet.getPlayer()).add(planet);
+		}
+	}
+
 	/**
 	 * @return Whether the game is ready to be started (all players ready, all slots filled)
 	 */
@@ -624,6 +684,7 @@ public class EVGameState implements Jsonable
 	public void registerBuilding(final Building building)
 	{
 		aAllBuildings.put(building.getID(), building);
+		aNextBuildingID = Math.max(aNextBuildingID, building.getID() + 1);
 	}
 
 	/**
@@ -635,6 +696,15 @@ public class EVGameState implements Jsonable
 	public void registerProp(final Prop prop)
 	{
 		aAllProps.put(prop.getID(), prop);
+		aNextPropID = Math.max(aNextPropID, prop.getID() + 1);
+		if (prop instanceof Ship) {
+			aAllShips.add((Ship) prop);
+			getIndex(aShipsByPlayer, prop.getPlayer()).add((Ship) prop);
+		}
+		else if (prop instanceof Planet) {
+			aAllPlanets.add((Planet) prop);
+			getIndex(aPlanetsByPlayer, prop.getPlayer()).add((Planet) prop);
+		}
 	}
 
 	/**
@@ -651,13 +721,39 @@ public class EVGameState implements Jsonable
 		prop.enterContainer(container);
 	}
 
+	/**
+	 * Takes a snapshot of this state. Only the Props that changed since the last snapshot or Json representation of this state
+	 * are serialized again, and the GameData is shared rather than copied.
+	 * 
+	 * @return A snapshot of this state, from which copies of it can be restored
+	 */
+	public StateSnapshot snapshot()
+	{
+		return new StateSnapshot(toJson(), aGameData);
+	}
+
 	@Override
 	public Json toJson()
+	{
+		return toJson(true);
+	}
+
+	/**
+	 * Serializes the state, optionally leaving the SolarSystems of its Galaxy out so that they can be serialized one at a
+	 * time, as {@link SaveFile} does.
+	 * 
+	 * @param withSolarSystems
+	 *            Whether to serialize the SolarSystems
+	 * @return The Json representation of the state
+	 */
+	Json toJson(final boolean withSolarSystems)
 	{
 		final Json j = new Json();
 		j.setAttribute("gamestarted", aGameStarted);
+		j.setAttribute("nextpropid", aNextPropID);
+		j.setAttribute("nextbuildingid", aNextBuildingID);
 		j.setAttribute("gamedata", aGameData);
-		j.setAttribute("galaxy", aGalaxy);
+		j.setAttribute("galaxy", aGalaxy.toJson(withSolarSystems));
 		j.setListAttribute("players", aPlayerList);
 		return j;
 	}
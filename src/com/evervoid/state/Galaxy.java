@@ -24,6 +24,14 @@ public class Galaxy implements Jsonable
 	 * This padding establishes a sphere around a SolarSystem within which wormholes are not allowed to pass.
 	 */
 	private static final int sSolarPadding = 50;
+	/**
+	 * The ID the next solar system will get.
+	 */
+	private int aNextSolarID = 0;
+	/**
+	 * The ID the next wormhole will get.
+	 */
+	private int aNextWormholeID = 0;
 	/**
 	 * This is the radius of the Galaxy, it is determined by the radius and distance of the farthest SoalrSystem.
 	 */
@@ -105,6 +113,7 @@ public class Galaxy implements Jsonable
 			aTempSolarSystem = pSolar;
 		}
 		aSolarSystems.put(pSolar.getID(), pSolar);
+		aNextSolarID = Math.max(aNextSolarID, pSolar.getID() + 1);
 		// if new solar system is out of bounds, resize
 		aRadius = Math.max(aRadius, pSolar.getRadius() + (int) pSolar.getPoint3D().getDistanceToOrigin());
 	}
@@ -123,6 +132,7 @@ public class Galaxy implements Jsonable
 			return false;
 		}
 		aWormholes.put(wormhole.getID(), wormhole);
+		aNextWormholeID = Math.max(aNextWormholeID, wormhole.getID() + 1);
 		return true;
 	}
 
@@ -194,17 +204,7 @@ public class Galaxy implements Jsonable
 	 */
 	public int getNextSolarID()
 	{
-		// If we have no solar system, then ID 0 is not taken
-		if (aSolarSystems.isEmpty()) {
-			return 0;
-		}
-		// If we have solar systems, iterate over them, get the max, and return max+1
-		// because that ID is certainly not taken
-		int maxId = Integer.MIN_VALUE;
-		for (final Integer id : aSolarSystems.keySet()) {
-			maxId = Math.max(maxId, id);
-		}
-		return maxId + 1;
+		return aNextSolarID;
 	}
 
 	/**
@@ -212,11 +212,7 @@ public class Galaxy implements Jsonable
 	 */
 	public int getNextWormholeID()
 	{
-		int maxId = -1;
-		for (final Integer id : aWormholes.keySet()) {
-			maxId = Math.max(maxId, id);
-		}
-		return maxId + 1;
+		return aNextWormholeID;
 	}
 
 	/**
@@ -433,9 +429,26 @@ public class Galaxy implements Jsonable
 
 	@Override
 	public Json toJson()
+	{
+		return toJson(true);
+	}
+
+	/**
+	 * Serializes the Galaxy, optionally leaving its SolarSystems out so that they can be serialized one at a time.
+	 * 
+	 * @param withSolarSystems
+	 *            Whether to serialize the SolarSystems; if not, the "solarsystems" attribute is an empty object
+	 * @return The Json representation of the Galaxy
+	 */
+	Json toJson(final boolean withSolarSystems)
 	{
 		final Json j = new Json();
-		j.setMapAttribute("solarsystems", aSolarSystems);
+		if (withSolarSystems) {
+			j.setMapAttribute("solarsystems", aSolarSystems);
+		}
+		else {
+			j.setAttribute("solarsystems", new Json());
+		}
 		j.setListAttribute("wormholes", aWormholes.values());
 		return j;
 	}
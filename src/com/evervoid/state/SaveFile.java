@@ -0,0 +1,389 @@
+package com.evervoid.state;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.evervoid.json.Json;
+import com.evervoid.json.JsonParseException;
+import com.evervoid.state.player.Player;
+
+/**
+ * A saved game, split in chunks so that it never has to be held in memory as a whole, neither as a Json tree nor as a
+ * string. The first chunk holds the state without the SolarSystems of its Galaxy; each SolarSystem then has a chunk of its
+ * own. Each chunk is the Json representation of its part of the state, deflated if the file is compressed. An index at the
+ * end of the file gives the offset of each chunk and the home SolarSystem of each player, so that a single SolarSystem can
+ * be read without going through the rest of the file. Regular usage: SaveFile.write(file, state, true); Json state = new
+ * SaveFile(file).readState();
+ * <p>
+ * Layout: the magic bytes, the chunks, the index (an uncompressed Json object), then the offset of the index as 8 bytes.
+ */
+public class SaveFile
+{
+	/**
+	 * Counts the bytes written through it, to know the offset of each chunk.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream
+	{
+		/**
+		 * Number of bytes written so far.
+		 */
+		private long aCount = 0;
+
+		/**
+		 * @param out
+		 *            The stream to write to
+		 */
+		CountingOutputStream(final OutputStream out)
+		{
+			super(out);
+		}
+
+		/**
+		 * @return The number of bytes written so far.
+		 */
+		long getCount()
+		{
+			return aCount;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException
+		{
+			out.write(b, off, len);
+			aCount += len;
+		}
+
+		@Override
+		public void write(final int b) throws IOException
+		{
+			out.write(b);
+			aCount++;
+		}
+	}
+
+	/**
+	 * The bytes every chunked save file starts with; older save files are plain Json and start with '{'.
+	 */
+	private static final byte[] sMagic = { 'E', 'V', 'S', 'A', 'V', 'E', '0', '1' };
+
+	/**
+	 * @param file
+	 *            A file
+	 * @return Whether the file is a chunked save file; if not, it may be a save file from before chunked ones, holding the
+	 *         Json representation of the state as a whole.
+	 */
+	public static boolean isChunked(final File file)
+	{
+		final byte[] header = new byte[sMagic.length];
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int read = 0;
+			while (read < header.length) {
+				final int count = in.read(header, read, header.length - read);
+				if (count < 0) {
+					return false;
+				}
+				read += count;
+			}
+			return Arrays.equals(header, sMagic);
+		}
+		catch (final IOException e) {
+			return false;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (final IOException e) {
+					// Nothing left to do with it anyway
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a chunk: the Json representation of one part of the state.
+	 * 
+	 * @param json
+	 *            The Json representation of the part
+	 * @param out
+	 *            The stream of the file
+	 * @param compressed
+	 *            Whether to deflate the chunk
+	 * @return The offset of the chunk in the file
+	 * @throws IOException
+	 *             If the file cannot be written to
+	 */
+	private static int writeChunk(final Json json, final CountingOutputStream out, final boolean compressed)
+			throws IOException
+	{
+		final long offset = out.getCount();
+		if (offset > Integer.MAX_VALUE) {
+			throw new IOException("Save file too large");
+		}
+		if (compressed) {
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				final DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater);
+				json.write(deflated);
+				deflated.finish();
+			}
+			finally {
+				deflater.end();
+			}
+		}
+		else {
+			json.write(out);
+		}
+		return (int) offset;
+	}
+
+	/**
+	 * Writes a state to a chunked save file. Only one SolarSystem is serialized at a time, and chunks are written out as
+	 * they are serialized.
+	 * 
+	 * @param file
+	 *            The file to write to; it is overwritten
+	 * @param state
+	 *            The state to save
+	 * @param compressed
+	 *            Whether to deflate the chunks
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public static void write(final File file, final EVGameState state, final boolean compressed) throws IOException
+	{
+		final OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			final CountingOutputStream out = new CountingOutputStream(stream);
+			out.write(sMagic);
+			final Json index = new Json();
+			index.setAttribute("compressed", compressed);
+			index.setAttribute("state", writeChunk(state.toJson(false), out, compressed));
+			final Json systems = new Json();
+			for (final SolarSystem ss : state.getGalaxy().getSolarSystems()) {
+				systems.setAttribute(String.valueOf(ss.getID()), writeChunk(ss.toJson(), out, compressed));
+			}
+			index.setAttribute("solarsystems", systems);
+			final List<Json> homes = new ArrayList<Json>();
+			for (final Player p : state.getPlayers()) {
+				final SolarSystem home = p.getHomeSolarSystem();
+				if (home != null) {
+					homes.add(new Json().setAttribute("player", p.getName()).setAttribute("solarsystem", home.getID()));
+				}
+			}
+			index.setListAttribute("homes", homes);
+			final long indexOffset = out.getCount();
+			index.write(out);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				out.write((int) (indexOffset >>> shift));
+			}
+			out.flush();
+		}
+		finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * The file.
+	 */
+	private final File aFile;
+	/**
+	 * The index of the file.
+	 */
+	private final Json aIndex;
+
+	/**
+	 * Opens a chunked save file and reads its index.
+	 * 
+	 * @param file
+	 *            The file
+	 * @throws BadSaveFileException
+	 *             If the file is not a chunked save file
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public SaveFile(final File file) throws BadSaveFileException, IOException
+	{
+		if (!isChunked(file)) {
+			throw new BadSaveFileException("Not a chunked save file.");
+		}
+		aFile = file;
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		final long indexOffset;
+		try {
+			raf.seek(raf.length() - 8);
+			indexOffset = raf.readLong();
+		}
+		finally {
+			raf.close();
+		}
+		aIndex = readChunk(indexOffset, false);
+		if (!aIndex.hasAttribute("state") || !aIndex.hasAttribute("solarsystems")) {
+			throw new BadSaveFileException("Invalid save file.");
+		}
+	}
+
+	/**
+	 * @param player
+	 *            The name of a player
+	 * @return The ID of the home SolarSystem of the player; -1 if the player has none.
+	 */
+	public int getHomeSolarSystem(final String player)
+	{
+		for (final Json home : aIndex.getListAttribute("homes")) {
+			if (home.getStringAttribute("player").equals(player)) {
+				return home.getIntAttribute("solarsystem");
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The IDs of the SolarSystems saved in the file.
+	 */
+	public List<Integer> getSolarSystemIDs()
+	{
+		final List<Integer> ids = new ArrayList<Integer>();
+		for (final String id : aIndex.getAttribute("solarsystems").getAttributes()) {
+			ids.add(Integer.valueOf(id));
+		}
+		return ids;
+	}
+
+	/**
+	 * @return Whether the chunks of the file are deflated.
+	 */
+	public boolean isCompressed()
+	{
+		return aIndex.getBooleanAttribute("compressed");
+	}
+
+	/**
+	 * Reads a chunk. The chunk must hold a complete Json value and, if it is deflated, end right after it with a valid
+	 * checksum.
+	 * 
+	 * @param offset
+	 *            The offset of the chunk in the file
+	 * @param compressed
+	 *            Whether the chunk is deflated
+	 * @return The Json representation stored in the chunk
+	 * @throws BadSaveFileException
+	 *             If the chunk is corrupt or cut short
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	private Json readChunk(final long offset, final boolean compressed) throws BadSaveFileException, IOException
+	{
+		final FileInputStream file = new FileInputStream(aFile);
+		final Inflater inflater = compressed ? new Inflater() : null;
+		try {
+			file.getChannel().position(offset);
+			InputStream in = new BufferedInputStream(file);
+			if (compressed) {
+				in = new InflaterInputStream(in, inflater);
+			}
+			final Reader reader = new InputStreamReader(in, "UTF-8");
+			final Json json;
+			try {
+				json = Json.fromReader(reader);
+			}
+			catch (final JsonParseException e) {
+				if (e.getCause() instanceof IOException && !(e.getCause() instanceof ZipException)) {
+					throw (IOException) e.getCause();
+				}
+				throw new BadSaveFileException("Corrupt save file chunk at offset " + offset + ": " + e.getMessage());
+			}
+			if (compressed) {
+				// Inflate the rest of the chunk, so that its checksum gets verified
+				try {
+					int c;
+					while ((c = reader.read()) != -1) {
+						if (!Character.isWhitespace(c)) {
+							throw new BadSaveFileException("Unexpected data after save file chunk at offset " + offset);
+						}
+					}
+				}
+				catch (final ZipException e) {
+					throw new BadSaveFileException("Corrupt save file chunk at offset " + offset + ": " + e.getMessage());
+				}
+				if (!inflater.finished()) {
+					throw new BadSaveFileException("Save file chunk at offset " + offset + " is cut short");
+				}
+			}
+			return json;
+		}
+		finally {
+			if (inflater != null) {
+				inflater.end();
+			}
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads a single SolarSystem, without reading the rest of the file; for instance to show the home SolarSystem of a
+	 * player before the rest of the state is read.
+	 * 
+	 * @param id
+	 *            The ID of the SolarSystem
+	 * @return The Json representation of the SolarSystem; null if there is no such SolarSystem in the file
+	 * @throws BadSaveFileException
+	 *             If the chunk of the SolarSystem is corrupt
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public Json readSolarSystem(final int id) throws BadSaveFileException, IOException
+	{
+		final Json systems = aIndex.getAttribute("solarsystems");
+		final String key = String.valueOf(id);
+		if (!systems.hasAttribute(key)) {
+			return null;
+		}
+		return readChunk(systems.getIntAttribute(key), isCompressed());
+	}
+
+	/**
+	 * Reads the whole state, one chunk at a time.
+	 * 
+	 * @return The Json representation of the state, as given by {@link EVGameState#toJson()}
+	 * @throws BadSaveFileException
+	 *             If a chunk is corrupt, or the state has no Galaxy to put the SolarSystems in
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public Json readState() throws BadSaveFileException, IOException
+	{
+		final Json state = readChunk(aIndex.getIntAttribute("state"), isCompressed());
+		final Json galaxy = state.isObject() ? state.getAttribute("galaxy") : null;
+		if (galaxy == null || !galaxy.isObject() || galaxy.getAttribute("solarsystems") == null) {
+			throw new BadSaveFileException("Invalid save file: the state has no galaxy.");
+		}
+		final Json systems = galaxy.getAttribute("solarsystems");
+		for (final Integer id : getSolarSystemIDs()) {
+			systems.setAttribute(String.valueOf(id), readSolarSystem(id));
+		}
+		return state;
+	}
+}
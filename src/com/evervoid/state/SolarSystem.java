@@ -1,10 +1,8 @@
 package com.evervoid.state;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -40,13 +38,14 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	 */
 	private final Point3D aCenter;
 	/**
-	 * The dimension of the solar system grid.
+	 * The prop occupying each cell of the grid, column by column (the cell at (x, y) is at index x * height + y). A null value
+	 * signifies the cell is empty.
 	 */
-	private final Dimension aDimension;
+	private final Prop[] aCells;
 	/**
-	 * Mapping from point to prop. A null value for a point signifies the point is empty.
+	 * The dimension of the solar system grid.
 	 */
-	private final Map<Point, Prop> aGrid;
+	private final Dimension aDimension;
 	/**
 	 * The Solar System's unique identifier.
 	 */
@@ -59,10 +58,23 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	 * All the objects observing this SolarSystem.
 	 */
 	private final Set<SolarObserver> aObservableSet;
+	/**
+	 * Incremented whenever the occupancy of the grid changes, so that what was derived from it can tell when it is outdated.
+	 */
+	private int aOccupancyVersion = 0;
+	/**
+	 * Occupancy bitmap of the grid, row by row: bit x % 64 of word y * aRowWords + x / 64 is set when the cell at (x, y) is
+	 * occupied. Kept alongside {@link #aCells} so that whole rows of a rectangle can be checked a word at a time.
+	 */
+	private final long[] aOccupied;
 	/**
 	 * A set of all props located in this solar system.
 	 */
 	private final SortedSet<Prop> aProps;
+	/**
+	 * Number of words of {@link #aOccupied} per row of the grid.
+	 */
+	private final int aRowWords;
 	/**
 	 * The central star in this SolarSystem.
 	 */
@@ -90,11 +102,13 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		// prime for observers
 		aObservableSet = new HashSet<SolarObserver>();
 		// prime for props
-		aGrid = new HashMap<Point, Prop>();
 		aProps = new TreeSet<Prop>();
 		// set attributes
 		aID = state.getNextSolarID();
 		aDimension = dim;
+		aCells = new Prop[dim.width * dim.height];
+		aRowWords = (dim.width + 63) >>> 6;
+		aOccupied = new long[aRowWords * dim.height];
 		aCenter = center;
 		aStar = star;
 		// register the star, else it won't show up
@@ -117,10 +131,12 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		// prime fro observers
 		aObservableSet = new HashSet<SolarObserver>();
 		// prime for props
-		aGrid = new HashMap<Point, Prop>();
 		aProps = new TreeSet<Prop>();
 		// parse attributes
 		aDimension = new Dimension(j.getAttribute("dimension"));
+		aCells = new Prop[aDimension.width * aDimension.height];
+		aRowWords = (aDimension.width + 63) >>> 6;
+		aOccupied = new long[aRowWords * aDimension.height];
 		aCenter = Point3D.fromJson(j.getAttribute("point"));
 		aID = j.getIntAttribute("id");
 		// TODO fetch the star
@@ -136,9 +152,7 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 			return false;
 		}
 		aProps.add(prop);
-		for (final Point p : prop.getLocation().getPoints()) {
-			aGrid.put(p, prop);
-		}
+		fill(loc, prop);
 		prop.enterContainer(this);
 		if (prop instanceof Ship) {
 			for (final SolarObserver observer : aObservableSet) {
@@ -181,6 +195,35 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		return getID() == o.getID();
 	}
 
+	/**
+	 * Sets the prop occupying every cell of a location; the parts of the location lying outside the grid are ignored.
+	 * 
+	 * @param location
+	 *            The location to fill
+	 * @param prop
+	 *            The prop occupying the location, or null to mark it empty
+	 */
+	private void fill(final GridLocation location, final Prop prop)
+	{
+		final int minX = Math.max(location.getX(), 0);
+		final int maxX = Math.min(location.getX() + location.getWidth(), aDimension.width);
+		final int minY = Math.max(location.getY(), 0);
+		final int maxY = Math.min(location.getY() + location.getHeight(), aDimension.height);
+		aOccupancyVersion++;
+		for (int x = minX; x < maxX; x++) {
+			final long bit = 1L << x;
+			for (int y = minY; y < maxY; y++) {
+				aCells[x * aDimension.height + y] = prop;
+				if (prop == null) {
+					aOccupied[y * aRowWords + (x >>> 6)] &= ~bit;
+				}
+				else {
+					aOccupied[y * aRowWords + (x >>> 6)] |= bit;
+				}
+			}
+		}
+	}
+
 	/**
 	 * @return The dimension for of the solar system.
 	 */
@@ -221,10 +264,14 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		if (location == null) {
 			return null;
 		}
-		for (final Point p : location.getPoints()) {
-			final Prop match = getPropAt(p);
-			if (match != null) {
-				return match;
+		final int maxX = Math.min(location.getX() + location.getWidth(), aDimension.width);
+		final int maxY = Math.min(location.getY() + location.getHeight(), aDimension.height);
+		for (int x = Math.max(location.getX(), 0); x < maxX; x++) {
+			for (int y = Math.max(location.getY(), 0); y < maxY; y++) {
+				final Prop match = aCells[x * aDimension.height + y];
+				if (match != null) {
+					return match;
+				}
 			}
 		}
 		return null;
@@ -294,6 +341,14 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		return aName;
 	}
 
+	/**
+	 * @return The occupancy version of the grid, which changes whenever a prop enters, leaves or moves in it
+	 */
+	public int getOccupancyVersion()
+	{
+		return aOccupancyVersion;
+	}
+
 	/**
 	 * Return all direct neighbors of the given gridPoint in which props of dimension size could fit and that are not currently
 	 * unoccupied.
@@ -412,6 +467,21 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 		return tempLocation;
 	}
 
+	/**
+	 * @param x
+	 *            The x coordinate of the cell at which to look for a Prop
+	 * @param y
+	 *            The y coordinate of the cell at which to look for a Prop
+	 * @return The prop at the given cell, or null if the cell is free or off the grid
+	 */
+	public Prop getPropAt(final int x, final int y)
+	{
+		if (x < 0 || y < 0 || x >= aDimension.width || y >= aDimension.height) {
+			return null;
+		}
+		return aCells[x * aDimension.height + y];
+	}
+
 	/**
 	 * @param point
 	 *            The Point at which to look for a Prop
@@ -419,7 +489,7 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	 */
 	public Prop getPropAt(final Point point)
 	{
-		return aGrid.get(point);
+		return getPropAt(point.x, point.y);
 	}
 
 	/**
@@ -430,10 +500,14 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	public Set<Prop> getPropsAt(final GridLocation location)
 	{
 		final Set<Prop> props = new HashSet<Prop>();
-		for (final Point p : location.getPoints()) {
-			final Prop match = getPropAt(p);
-			if (match != null) {
-				props.add(match);
+		final int maxX = Math.min(location.getX() + location.getWidth(), aDimension.width);
+		final int maxY = Math.min(location.getY() + location.getHeight(), aDimension.height);
+		for (int x = Math.max(location.getX(), 0); x < maxX; x++) {
+			for (int y = Math.max(location.getY(), 0); y < maxY; y++) {
+				final Prop match = aCells[x * aDimension.height + y];
+				if (match != null) {
+					props.add(match);
+				}
 			}
 		}
 		return props;
@@ -536,7 +610,39 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	 */
 	public boolean isOccupied(final GridLocation location)
 	{
-		return getFirstPropAt(location) != null;
+		if (location == null) {
+			return false;
+		}
+		final int minX = Math.max(location.getX(), 0);
+		final int maxX = Math.min(location.getX() + location.getWidth(), aDimension.width);
+		final int minY = Math.max(location.getY(), 0);
+		final int maxY = Math.min(location.getY() + location.getHeight(), aDimension.height);
+		if (minX >= maxX || minY >= maxY) {
+			return false;
+		}
+		// Masks of the bits covered by the location in its first and last word of each row
+		final int firstWord = minX >>> 6;
+		final int lastWord = (maxX - 1) >>> 6;
+		final long firstMask = -1L << minX;
+		final long lastMask = -1L >>> (63 - ((maxX - 1) & 63));
+		for (int y = minY; y < maxY; y++) {
+			final int row = y * aRowWords;
+			if (firstWord == lastWord) {
+				if ((aOccupied[row + firstWord] & firstMask & lastMask) != 0) {
+					return true;
+				}
+				continue;
+			}
+			if ((aOccupied[row + firstWord] & firstMask) != 0 || (aOccupied[row + lastWord] & lastMask) != 0) {
+				return true;
+			}
+			for (int word = firstWord + 1; word < lastWord; word++) {
+				if (aOccupied[row + word] != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -617,9 +723,7 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	public boolean removeElem(final Prop prop)
 	{
 		if (aProps.contains(prop)) {
-			for (final Point p : prop.getLocation().getPoints()) {
-				aGrid.remove(p);
-			}
+			fill(prop.getLocation(), null);
 			aProps.remove(prop);
 			if (prop instanceof Ship) {
 				for (final SolarObserver observer : aObservableSet) {
@@ -647,9 +751,7 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	@Override
 	public void shipDestroyed(final Ship ship)
 	{
-		for (final Point p : ship.getLocation().getPoints()) {
-			aGrid.remove(p);
-		}
+		fill(ship.getLocation(), null);
 		aProps.remove(ship);
 	}
 
@@ -690,13 +792,9 @@ public class SolarSystem implements EVContainer<Prop>, Jsonable, ShipObserver
 	@Override
 	public void shipMoved(final Ship ship, final GridLocation oldLocation, final ShipPath path)
 	{
-		for (final Point p : oldLocation.getPoints()) {
-			aGrid.remove(p);
-		}
+		fill(oldLocation, null);
 		final List<GridLocation> elbows = path.getPath();
-		for (final Point p : elbows.get(elbows.size() - 1).getPoints()) {
-			aGrid.put(p, ship);
-		}
+		fill(elbows.get(elbows.size() - 1), ship);
 	}
 
 	@Override
@@ -0,0 +1,77 @@
+package com.evervoid.state;
+
+import com.evervoid.json.BadJsonInitialization;
+import com.evervoid.json.Json;
+import com.evervoid.state.data.GameData;
+import com.evervoid.utils.LoggerUtils;
+
+/**
+ * An immutable copy of an {@link EVGameState}, taken with {@link EVGameState#snapshot()}, from which any number of independent
+ * states can be restored. A snapshot holds the Json representation of the state along with its GameData. Props keep their
+ * Json representation until they change, so the snapshots of a state taken one after the other share the subtrees of
+ * everything that did not change in between, along with their cached hashes: taking a snapshot costs in proportion to what
+ * changed, and keeping many of them around (for replays or looking ahead) uses little memory. Restoring a state from a
+ * snapshot skips parsing the GameData, which is shared with the original state.
+ */
+public class StateSnapshot
+{
+	/**
+	 * The GameData of the state, shared with the original and all restored states.
+	 */
+	private final GameData aGameData;
+	/**
+	 * The Json representation of the state; it shares subtrees with the Props of the original state and other snapshots, so
+	 * it must never be modified.
+	 */
+	private final Json aJson;
+
+	/**
+	 * Creates a snapshot.
+	 * 
+	 * @param json
+	 *            The Json representation of the state
+	 * @param data
+	 *            The GameData of the state
+	 */
+	StateSnapshot(final Json json, final GameData data)
+	{
+		aJson = json;
+		aGameData = data;
+	}
+
+	/**
+	 * @return The structural hash of the state; only the parts of the snapshot that are not shared with a previously hashed
+	 *         one are hashed again
+	 */
+	public String getHash()
+	{
+		return aJson.getHash();
+	}
+
+	/**
+	 * @return The Json representation of the state; it must not be modified
+	 */
+	public Json getJson()
+	{
+		return aJson;
+	}
+
+	/**
+	 * Restores a state from this snapshot. Each call returns a new state, independent from the original one and from the other
+	 * restored states, apart from the GameData they share.
+	 * 
+	 * @return The restored state
+	 */
+	public EVGameState restore()
+	{
+		try {
+			return new EVGameState(aJson, aGameData);
+		}
+		catch (final BadJsonInitialization e) {
+			// this should never happen
+			// if it does, this mean the toJson() is not in sync with the constructor
+			LoggerUtils.severe("Error caught while restoring a State snapshot. It very likely means the toJson() is having trouble");
+			return null;
+		}
+	}
+}
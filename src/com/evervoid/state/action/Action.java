@@ -1,7 +1,5 @@
 package com.evervoid.state.action;
 
-import java.lang.reflect.InvocationTargetException;
-
 import com.evervoid.json.Json;
 import com.evervoid.json.Jsonable;
 import com.evervoid.state.EVGameState;
@@ -24,45 +22,20 @@ public abstract class Action implements Jsonable
 {
     /**
      * Creates an Action from the Json object passed. The particular type of Action created is determined by the
-     * actiontype
-     * attribute. This attribute must be a string in the form of a Class name (ex.
-     * com.evervoid.state.action.ship.moveship) and
-     * the given object must have a constructor that takes the parameter pair (Json, EVGameState).
+     * actiontype attribute, which holds the tag of the type in the {@link ActionRegistry}, or the class name of the type for
+     * Actions serialized before tags.
      * 
      * @param state
      *            The state object on which the Action will execute.
      * @param json
      *            The Json containing the information necessary to create the given Action.
      * @return The Action object as determined by the contents of the Json.
-     * @throws ClassNotFoundException
-     *             If the class specified in the Json does not exist.
-     * @throws NoSuchMethodException
-     *             If the class specified in the Json does not conform to the (Json, EVGameState) constructor.
-     * @throws SecurityException
-     *             If the (Json, EVGameState) Constructor is a secure field.
-     * @throws InvocationTargetException
-     *             If the (Json, EVGameState) throws an exception.
-     * @throws IllegalAccessException
-     *             If the (Json, EVGameState) constructor is not a visible field.
-     * @throws InstantiationException
-     *             If the class specified by the Json cannot be instantiated (ie. is an abstract class).
-     * @throws IllegalArgumentException
-     *             If the state and json arguments are not instance of EVGameState and Json respectively. (This should
-     *             never be
-     *             thrown)
      * @throws IllegalEVActionException
-     *             The action may throw this exception upon construction if it is not valid.
+     *             If the type of the Action is not registered, or the Action is not valid.
      */
-    public static Action deserializeAction(final EVGameState state, final Json json) throws ClassNotFoundException,
-                    SecurityException, IllegalArgumentException, InstantiationException, InvocationTargetException,
-                    IllegalAccessException, NoSuchMethodException, IllegalEVActionException
+    public static Action deserializeAction(final EVGameState state, final Json json) throws IllegalEVActionException
     {
-        final String type = json.getStringAttribute("actiontype");
-        final Class<?> cl;
-        final java.lang.reflect.Constructor<?> co;
-        cl = Class.forName(type);
-        co = cl.getConstructor(Json.class, EVGameState.class);
-        return (Action) co.newInstance(json, state);
+        return ActionRegistry.create(json, state);
     }
 
     /**
@@ -157,7 +130,7 @@ public abstract class Action implements Jsonable
      */
     public final String getActionType()
     {
-        // returns the class name. NOTE this is used in deserialization and should not change.
+        // returns the class name. NOTE this is used to deserialize Actions serialized before ActionRegistry tags.
         return getClass().getName();
     }
 
@@ -208,7 +181,13 @@ public abstract class Action implements Jsonable
     {
         final Json j = new Json();
         j.setAttribute("player", aPlayer.getName());
-        j.setAttribute("actiontype", getActionType());
+        // the tag is much shorter than the class name; unregistered types cannot be deserialized anyway
+        final int tag = ActionRegistry.getTag(getClass());
+        if (tag < 0) {
+            j.setAttribute("actiontype", getActionType());
+        } else {
+            j.setAttribute("actiontype", tag);
+        }
         return j;
     }
 
@@ -0,0 +1,245 @@
+package com.evervoid.state.action;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.evervoid.json.Json;
+import com.evervoid.state.EVGameState;
+import com.evervoid.state.action.building.CancelShipConstruction;
+import com.evervoid.state.action.building.DestroyBuilding;
+import com.evervoid.state.action.building.IncrementBuildingConstruction;
+import com.evervoid.state.action.building.IncrementShipConstruction;
+import com.evervoid.state.action.planet.RegeneratePlanet;
+import com.evervoid.state.action.planet.StartBuildingConstruction;
+import com.evervoid.state.action.player.ReceiveIncome;
+import com.evervoid.state.action.research.IncrementResearch;
+import com.evervoid.state.action.ship.BombPlanet;
+import com.evervoid.state.action.ship.CapturePlanet;
+import com.evervoid.state.action.ship.EnterCargo;
+import com.evervoid.state.action.ship.JumpShipIntoPortal;
+import com.evervoid.state.action.ship.LeaveCargo;
+import com.evervoid.state.action.ship.MoveShip;
+import com.evervoid.state.action.ship.RegenerateShip;
+import com.evervoid.state.action.ship.ShootShip;
+
+/**
+ * The types of {@link Action}s that can be deserialized, each with a numeric tag and a factory. Actions are serialized with
+ * their tag rather than their class name, and deserialized by their factory rather than by looking their constructor up by
+ * reflection. The tag of a type is its position in the registry: new types must be registered last, and registered types
+ * must never be removed or reordered, or turns sent or journaled before the change could not be read anymore.
+ */
+public class ActionRegistry
+{
+	/**
+	 * Creates Actions of one type from their Json representation.
+	 */
+	public interface Factory
+	{
+		/**
+		 * @param json
+		 *            The Json representation of the Action
+		 * @param state
+		 *            The state on which the Action will execute
+		 * @return The Action
+		 * @throws IllegalEVActionException
+		 *             If the Action is not valid
+		 */
+		public Action create(Json json, EVGameState state) throws IllegalEVActionException;
+	}
+
+	/**
+	 * The factories of all registered types, indexed by tag.
+	 */
+	private static final List<Factory> sFactories = new ArrayList<Factory>();
+	/**
+	 * The tags of all registered types, by class name.
+	 */
+	private static final Map<String, Integer> sTags = new HashMap<String, Integer>();
+	static {
+		// Append new types at the end only; tags are positions in this list
+		register(CancelShipConstruction.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new CancelShipConstruction(json, state);
+			}
+		});
+		register(DestroyBuilding.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new DestroyBuilding(json, state);
+			}
+		});
+		register(IncrementBuildingConstruction.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new IncrementBuildingConstruction(json, state);
+			}
+		});
+		register(IncrementShipConstruction.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new IncrementShipConstruction(json, state);
+			}
+		});
+		register(RegeneratePlanet.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new RegeneratePlanet(json, state);
+			}
+		});
+		register(StartBuildingConstruction.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new StartBuildingConstruction(json, state);
+			}
+		});
+		register(ReceiveIncome.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new ReceiveIncome(json, state);
+			}
+		});
+		register(IncrementResearch.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new IncrementResearch(json, state);
+			}
+		});
+		register(BombPlanet.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new BombPlanet(json, state);
+			}
+		});
+		register(CapturePlanet.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new CapturePlanet(json, state);
+			}
+		});
+		register(EnterCargo.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new EnterCargo(json, state);
+			}
+		});
+		register(JumpShipIntoPortal.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new JumpShipIntoPortal(json, state);
+			}
+		});
+		register(LeaveCargo.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new LeaveCargo(json, state);
+			}
+		});
+		register(MoveShip.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new MoveShip(json, state);
+			}
+		});
+		register(RegenerateShip.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new RegenerateShip(json, state);
+			}
+		});
+		register(ShootShip.class, new Factory()
+		{
+			@Override
+			public Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+			{
+				return new ShootShip(json, state);
+			}
+		});
+	}
+
+	/**
+	 * Creates an Action from its Json representation. Its type is given by the "actiontype" attribute: either a tag, or the
+	 * class name of the type as Actions were serialized before tags, for instance in older journals.
+	 * 
+	 * @param json
+	 *            The Json representation of the Action
+	 * @param state
+	 *            The state on which the Action will execute
+	 * @return The Action
+	 * @throws IllegalEVActionException
+	 *             If the type is not registered, or the Action is not valid
+	 */
+	public static Action create(final Json json, final EVGameState state) throws IllegalEVActionException
+	{
+		final Json type = json.getAttribute("actiontype");
+		final int tag;
+		if (type != null && type.isNumber()) {
+			tag = type.getInt();
+		}
+		else {
+			final Integer named = type == null ? null : sTags.get(type.getString());
+			tag = named == null ? -1 : named;
+		}
+		if (tag < 0 || tag >= sFactories.size()) {
+			throw new IllegalEVActionException("Unknown action type " + type);
+		}
+		return sFactories.get(tag).create(json, state);
+	}
+
+	/**
+	 * @param type
+	 *            A type of Action
+	 * @return The tag of the type; -1 if it is not registered
+	 */
+	public static int getTag(final Class<? extends Action> type)
+	{
+		final Integer tag = sTags.get(type.getName());
+		return tag == null ? -1 : tag;
+	}
+
+	/**
+	 * Registers a type of Action, with the next free tag.
+	 * 
+	 * @param type
+	 *            The type
+	 * @param factory
+	 *            The factory creating Actions of this type
+	 */
+	private static void register(final Class<? extends Action> type, final Factory factory)
+	{
+		sTags.put(type.getName(), sFactories.size());
+		sFactories.add(factory);
+	}
+}
@@ -4,8 +4,15 @@ import static com.evervoid.state.action.Action.deserializeAction;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.evervoid.json.Json;
 import com.evervoid.json.Jsonable;
@@ -13,21 +20,30 @@ import com.evervoid.state.EVGameState;
 import com.evervoid.utils.LoggerUtils;
 
 /**
- * Represents a game turn. Holds a list of actions.
+ * Represents a game turn. Holds an ordered set of actions; a turn holds each action at most once. Actions are also grouped by
+ * class, so that removing an action or getting the actions of a type does not go through the whole turn.
  */
 public class Turn implements Jsonable, Iterable<Action>
 {
     /**
-     * The list of actions played during this turn
+     * The actions played during this turn, in order, each mapped to its position in the turn. Positions only grow as actions
+     * are added, so that actions from different classes can be put back in order.
      */
-    private final List<Action> aActions;
+    private final LinkedHashMap<Action, Long> aActions = new LinkedHashMap<Action, Long>();
+    /**
+     * The actions of this turn grouped by class, each group in the order of the turn.
+     */
+    private final Map<Class<?>, Set<Action>> aActionsByClass = new HashMap<Class<?>, Set<Action>>();
+    /**
+     * The position given to the next action added to the turn.
+     */
+    private long aNextPosition = 0;
 
     /**
      * Default constructor, creates an empty turn.
      */
     public Turn()
     {
-        aActions = new ArrayList<Action>();
     }
 
     /**
@@ -40,10 +56,9 @@ public class Turn implements Jsonable, Iterable<Action>
      */
     public Turn(final Json j, final EVGameState state)
     {
-        aActions = new ArrayList<Action>();
         for (final Json action : j.getListAttribute("turns")) {
             try {
-                aActions.add(deserializeAction(state, action));
+                addAction(deserializeAction(state, action));
             } catch (final IllegalEVActionException e) {
                 LoggerUtils.severe("Got an illegal action serialization while constructing turn");
             } catch (final Exception e) {
@@ -55,14 +70,24 @@ public class Turn implements Jsonable, Iterable<Action>
     }
 
     /**
-     * Adds an action to the list of actions during this turn
+     * Adds an action to the back of the list of actions during this turn. Does nothing if the action is already part of the
+     * turn.
      * 
      * @param action
      *            The action to add
      */
     public void addAction(final Action action)
     {
-        aActions.add(action);
+        if (aActions.containsKey(action)) {
+            return;
+        }
+        aActions.put(action, aNextPosition++);
+        Set<Action> actions = aActionsByClass.get(action.getClass());
+        if (actions == null) {
+            actions = new LinkedHashSet<Action>();
+            aActionsByClass.put(action.getClass(), actions);
+        }
+        actions.add(action);
     }
 
     /**
@@ -91,7 +116,7 @@ public class Turn implements Jsonable, Iterable<Action>
         if (turn == null) {
             return;
         }
-        for (final Action a : turn.getActions()) {
+        for (final Action a : turn) {
             addAction(a);
         }
     }
@@ -100,7 +125,7 @@ public class Turn implements Jsonable, Iterable<Action>
     public Turn clone()
     {
         final Turn newTurn = new Turn();
-        newTurn.aActions.addAll(aActions);
+        newTurn.addTurn(this);
         return newTurn;
     }
 
@@ -112,7 +137,9 @@ public class Turn implements Jsonable, Iterable<Action>
      */
     public void delAction(final Action action)
     {
-        aActions.remove(action);
+        if (aActions.remove(action) != null) {
+            aActionsByClass.get(action.getClass()).remove(action);
+        }
     }
 
     /**
@@ -124,42 +151,85 @@ public class Turn implements Jsonable, Iterable<Action>
      */
     public Turn delActions(final Turn turn)
     {
-        for (final Action a : turn.getActions()) {
+        for (final Action a : turn) {
             delAction(a);
         }
         return this;
     }
 
     /**
-     * @return The list of Actions this Turn contains.
+     * @return A copy of the list of Actions this Turn contains; changing it does not affect the turn.
      */
     public List<Action> getActions()
     {
-        return aActions;
+        return new ArrayList<Action>(aActions.keySet());
     }
 
     /**
      * @param classTypes
      *            The types of the Actions to get.
-     * @return A list of all actions in this turn that are instances of at least one of the passed classes.
+     * @return A list of all actions in this turn that are instances of at least one of the passed classes, in the order of the
+     *         turn.
      */
     public List<Action> getActionsOfType(final Class<?>... classTypes)
     {
-        final List<Action> actions = new ArrayList<Action>(aActions.size() / 2 + 1);
-        for (final Action act : aActions) {
+        final List<Set<Action>> matching = new ArrayList<Set<Action>>();
+        int count = 0;
+        for (final Map.Entry<Class<?>, Set<Action>> entry : aActionsByClass.entrySet()) {
             for (final Class<?> c : classTypes) {
-                if (c.isInstance(act)) {
-                    actions.add(act);
+                if (c.isAssignableFrom(entry.getKey())) {
+                    matching.add(entry.getValue());
+                    count += entry.getValue().size();
+                    break;
                 }
             }
         }
+        final List<Action> actions = new ArrayList<Action>(count);
+        for (final Set<Action> group : matching) {
+            actions.addAll(group);
+        }
+        if (matching.size() > 1) {
+            // Put the groups back in the order of the turn
+            Collections.sort(actions, new Comparator<Action>()
+            {
+                @Override
+                public int compare(final Action a1, final Action a2)
+                {
+                    return aActions.get(a1).compareTo(aActions.get(a2));
+                }
+            });
+        }
         return actions;
     }
 
     @Override
     public Iterator<Action> iterator()
     {
-        return aActions.iterator();
+        final Iterator<Action> iterator = aActions.keySet().iterator();
+        return new Iterator<Action>()
+        {
+            private Action aLast = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Action next()
+            {
+                aLast = iterator.next();
+                return aLast;
+            }
+
+            @Override
+            public void remove()
+            {
+                iterator.remove();
+                aActionsByClass.get(aLast.getClass()).remove(aLast);
+            }
+        };
     }
 
     /**
@@ -189,11 +259,19 @@ public class Turn implements Jsonable, Iterable<Action>
         }
     }
 
+    /**
+     * @return The number of actions in this turn.
+     */
+    public int size()
+    {
+        return aActions.size();
+    }
+
     @Override
     public Json toJson()
     {
         final Json j = new Json();
-        j.setListAttribute("turns", aActions);
+        j.setListAttribute("turns", aActions.keySet());
         return j;
     }
 
@@ -202,7 +280,7 @@ public class Turn implements Jsonable, Iterable<Action>
     {
         String s = "";
         final String sep = "\n~ THEN ~\n";
-        for (final Action a : aActions) {
+        for (final Action a : aActions.keySet()) {
             s += a + sep;
         }
         return s.substring(0, Math.max(0, s.length() - sep.length()));
@@ -1,5 +1,7 @@
 package com.evervoid.state.action.ship;
 
+import java.util.Random;
+
 import com.evervoid.json.Json;
 import com.evervoid.state.EVGameState;
 import com.evervoid.state.action.IllegalEVActionException;
@@ -7,6 +9,7 @@ import com.evervoid.state.player.Player;
 import com.evervoid.state.prop.Planet;
 import com.evervoid.state.prop.Ship;
 import com.evervoid.utils.MathUtils;
+import com.jme3.math.FastMath;
 
 /**
  * Bomb Planet lets a {@link Ship} deal damage to a {@link Planet}. It checks that the Ship is within range of the Planet, that
@@ -107,11 +110,22 @@ public class BombPlanet extends ShipAction
 	 * Sets the damage to a random value. Will only do so if the current damage is zero (in order to keep consistent damage).
 	 */
 	public void rollDamage()
+	{
+		rollDamage(FastMath.rand);
+	}
+
+	/**
+	 * Same as rollDamage(), but rolling from the given random number generator, so that the roll can be reproduced from its
+	 * seed.
+	 * 
+	 * @param random
+	 *            The random number generator to roll with
+	 */
+	public void rollDamage(final Random random)
 	{
 		if (aDamage == 0) {
-			aDamage = MathUtils.getRandomIntBetween(0, getShip().getMaxDamage());
+			aDamage = MathUtils.getRandomIntBetween(random, 0, getShip().getMaxDamage());
 		}
-		// TODO: Do it
 	}
 
 	@Override
@@ -85,7 +85,12 @@ public class MoveShip extends ShipAction
 			return false;
 		}
 		if (!isValid()) {
-			aDestination = aDestination.getClosest(getShip().getValidDestinations(), getShip().getLocation());
+			final GridLocation closest = aDestination.getClosest(getShip().getValidDestinations(), getShip().getLocation());
+			if (closest == null || closest.equals(getShip().getLocation())) {
+				// Boxed in by the ships that moved before this one; stay put
+				return false;
+			}
+			aDestination = closest;
 			aFinalPath = null;
 		}
 		executeAction();
@@ -139,7 +144,8 @@ public class MoveShip extends ShipAction
 	{
 		// 1. Ship must be in a SolarSystem
 		// 2. Destination is reachable
-		return getShip().getContainer() instanceof SolarSystem && getShip().getValidDestinations().contains(aDestination);
+		return getShip().getContainer() instanceof SolarSystem
+				&& new Pathfinder().getReachability(getShip()).isValidDestination(aDestination);
 	}
 
 	@Override
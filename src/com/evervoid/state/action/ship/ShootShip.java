@@ -1,5 +1,7 @@
 package com.evervoid.state.action.ship;
 
+import java.util.Random;
+
 import com.evervoid.json.Json;
 import com.evervoid.state.EVGameState;
 import com.evervoid.state.SolarSystem;
@@ -7,6 +9,7 @@ import com.evervoid.state.action.IllegalEVActionException;
 import com.evervoid.state.prop.Prop;
 import com.evervoid.state.prop.Ship;
 import com.evervoid.utils.MathUtils;
+import com.jme3.math.FastMath;
 
 /**
  * An action that lets one {@link Ship} shoot an opponent Ship.
@@ -119,7 +122,19 @@ public class ShootShip extends ShipAction
 	 */
 	public void rollDamage()
 	{
-		aDamage = MathUtils.getRandomIntBetween(getShip().getMaxDamage() * 0.8f, getShip().getMaxDamage());
+		rollDamage(FastMath.rand);
+	}
+
+	/**
+	 * Roll the damage of this shot from the given random number generator, so that the roll can be reproduced from its seed.
+	 * 
+	 * @param random
+	 *            The random number generator to roll with
+	 * @see #rollDamage()
+	 */
+	public void rollDamage(final Random random)
+	{
+		aDamage = MathUtils.getRandomIntBetween(random, (int) (getShip().getMaxDamage() * 0.8f), getShip().getMaxDamage());
 	}
 
 	@Override
@@ -265,6 +265,7 @@ public class Building implements Jsonable, Comparable<Building>
 	{
 		if (!isBuildingComplete()) {
 			aBuildingProgress++;
+			aPlanet.invalidateJson();
 		}
 		return isBuildingComplete();
 	}
@@ -287,6 +288,7 @@ public class Building implements Jsonable, Comparable<Building>
 		}
 		final int maxProgress = shipData.getBaseBuildTime();
 		aShipProgress.setValue(Math.min(maxProgress, aShipProgress.getValue() + 1));
+		aPlanet.invalidateJson();
 		return aShipProgress.getValue() == maxProgress;
 	}
 
@@ -312,6 +314,7 @@ public class Building implements Jsonable, Comparable<Building>
 	public void resetShipConstruction()
 	{
 		aShipProgress = null;
+		aPlanet.invalidateJson();
 	}
 
 	@Override
@@ -12,6 +12,7 @@ import com.evervoid.json.Jsonable;
 import com.evervoid.state.Color;
 import com.evervoid.state.EVGameState;
 import com.evervoid.state.player.Player;
+import com.evervoid.state.player.ResourceAmount;
 import com.evervoid.state.prop.Planet;
 import com.evervoid.state.prop.Star;
 import com.evervoid.utils.LoggerUtils;
@@ -57,6 +58,11 @@ public class GameData implements Jsonable
         System.out.println("Match: " + jData2.equals(jData));
     }
 
+    /**
+     * The Json representation of this GameData, built on first use; GameData never changes, so it is shared by all the
+     * representations of the states using it.
+     */
+    private Json aJson = null;
     /**
      * The base radiation cost for ships to jump.
      */
@@ -108,6 +114,12 @@ public class GameData implements Jsonable
     public GameData(final Json j) throws BadJsonInitialization
     {
         try {
+            // Resources first, so that they get their ResourceAmount indices in the order of the game data
+            final Json resourceJson = j.getAttribute("resources");
+            for (final String resource : resourceJson.getAttributes()) {
+                aResources.put(resource, new ResourceData(resource, resourceJson.getAttribute(resource)));
+                ResourceAmount.registerResource(resource);
+            }
             final Json starJson = j.getAttribute("star");
             for (final String star : starJson.getAttributes()) {
                 aStarData.put(star, new StarData(star, starJson.getAttribute(star)));
@@ -120,10 +132,6 @@ public class GameData implements Jsonable
             for (final String race : raceJson.getAttributes()) {
                 aRaceData.put(race, new RaceData(race, raceJson.getAttribute(race)));
             }
-            final Json resourceJson = j.getAttribute("resources");
-            for (final String resource : resourceJson.getAttributes()) {
-                aResources.put(resource, new ResourceData(resource, resourceJson.getAttribute(resource)));
-            }
             final Json colorJson = j.getAttribute("playercolors");
             for (final String color : colorJson.getAttributes()) {
                 aPlayerColors.put(color, new Color(color, colorJson.getAttribute(color)));
@@ -290,6 +298,9 @@ public class GameData implements Jsonable
     @Override
     public Json toJson()
     {
+        if (aJson != null) {
+            return aJson;
+        }
         final Json j = new Json();
         j.setMapAttribute("star", aStarData);
         j.setMapAttribute("planet", aPlanetData);
@@ -298,6 +309,7 @@ public class GameData implements Jsonable
         j.setMapAttribute("resources", aResources);
         j.setAttribute("turnLength", aTurnDurationInSeconds);
         j.setAttribute("jumpCost", aJumpRadiationCost);
+        aJson = j;
         return j;
     }
 }
@@ -130,6 +130,20 @@ public class Dimension implements Cloneable, Jsonable
 		return height;
 	}
 
+	/**
+	 * Return the PointSet spanned from the given point by this Dimension; unlike {@link #getPoints(Point)}, no Point is created
+	 * 
+	 * @param point
+	 *            The origin point
+	 * @return The PointSet spanned
+	 */
+	public PointSet getPointSet(final Point point)
+	{
+		final PointSet points = new PointSet(width * height);
+		points.add(point.x, point.y, width, height);
+		return points;
+	}
+
 	/**
 	 * Return the Set of Points spanned from the given point by this Dimension
 	 * 
@@ -139,7 +153,7 @@ public class Dimension implements Cloneable, Jsonable
 	 */
 	public Set<Point> getPoints(final Point point)
 	{
-		final Set<Point> points = new HashSet<Point>();
+		final Set<Point> points = new HashSet<Point>(width * height * 2);
 		for (int x = 0; x < width; x++) {
 			for (int y = 0; y < height; y++) {
 				points.add(point.add(x, y));
@@ -167,7 +181,7 @@ public class Dimension implements Cloneable, Jsonable
 	@Override
 	public int hashCode()
 	{
-		return toString().hashCode();
+		return width << 16 ^ height;
 	}
 
 	/**
@@ -422,6 +422,14 @@ public class GridLocation implements Cloneable, Jsonable
 		return dimension.getPoints(origin);
 	}
 
+	/**
+	 * @return The PointSet of all points covered by this GridLocation; unlike {@link #getPoints()}, no Point is created
+	 */
+	public PointSet getPointSet()
+	{
+		return dimension.getPointSet(origin);
+	}
+
 	/**
 	 * @return The width of this GridLocation.
 	 */
@@ -449,7 +457,7 @@ public class GridLocation implements Cloneable, Jsonable
 	@Override
 	public int hashCode()
 	{
-		return toString().hashCode();
+		return 31 * origin.hashCode() + dimension.hashCode();
 	}
 
 	/**
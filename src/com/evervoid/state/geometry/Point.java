@@ -174,7 +174,8 @@ public final class Point implements Cloneable, Jsonable
 	@Override
 	public int hashCode()
 	{
-		return toString().hashCode();
+		// Distinct for all points of any grid, without building a String
+		return x << 16 ^ y;
 	}
 
 	/**
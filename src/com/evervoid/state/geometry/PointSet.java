@@ -0,0 +1,386 @@
+package com.evervoid.state.geometry;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of {@link Point}s stored as packed longs in an open-addressing hash table, so that adding and looking up points does
+ * not allocate anything. Points are only created when iterating over the set. Points cannot be removed from the set.
+ */
+public class PointSet implements Iterable<Point>
+{
+	/**
+	 * Marks the free slots of the table. The point it stands for is recorded apart, in {@link #aHasEmptyKey}.
+	 */
+	private static final long sEmptyKey = Long.MIN_VALUE;
+	/**
+	 * Multiplier spreading the packed points over the table (the golden ratio, as a 64-bit fraction).
+	 */
+	private static final long sHashMultiplier = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * @param x
+	 *            The x coordinate of a point
+	 * @param y
+	 *            The y coordinate of a point
+	 * @return The point, packed in a long
+	 */
+	public static long pack(final int x, final int y)
+	{
+		return (long) x << 32 | y & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @param packed
+	 *            A point packed by {@link #pack(int, int)}
+	 * @return The x coordinate of the point
+	 */
+	public static int unpackX(final long packed)
+	{
+		return (int) (packed >> 32);
+	}
+
+	/**
+	 * @param packed
+	 *            A point packed by {@link #pack(int, int)}
+	 * @return The y coordinate of the point
+	 */
+	public static int unpackY(final long packed)
+	{
+		return (int) packed;
+	}
+
+	/**
+	 * Whether the point packed as {@link #sEmptyKey} is in the set.
+	 */
+	private boolean aHasEmptyKey = false;
+	/**
+	 * The hash table; its length is a power of two, and it is kept at most half full.
+	 */
+	private long[] aKeys;
+	/**
+	 * Number of bits of the slot indices, log2 of the length of the table.
+	 */
+	private int aShift;
+	/**
+	 * Number of points in the set.
+	 */
+	private int aSize = 0;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public PointSet()
+	{
+		this(8);
+	}
+
+	/**
+	 * Creates an empty set, with room for the given number of points.
+	 * 
+	 * @param expectedSize
+	 *            The number of points expected to be added
+	 */
+	public PointSet(final int expectedSize)
+	{
+		aShift = 3;
+		while (1 << aShift < expectedSize * 2) {
+			aShift++;
+		}
+		aKeys = newTable(1 << aShift);
+	}
+
+	/**
+	 * Creates a copy of a set.
+	 * 
+	 * @param other
+	 *            The set to copy
+	 */
+	public PointSet(final PointSet other)
+	{
+		aHasEmptyKey = other.aHasEmptyKey;
+		aKeys = other.aKeys.clone();
+		aShift = other.aShift;
+		aSize = other.aSize;
+	}
+
+	/**
+	 * Adds every point of a location to the set.
+	 * 
+	 * @param location
+	 *            The location
+	 */
+	public void add(final GridLocation location)
+	{
+		add(location.getX(), location.getY(), location.getWidth(), location.getHeight());
+	}
+
+	/**
+	 * @param x
+	 *            The x coordinate of the point
+	 * @param y
+	 *            The y coordinate of the point
+	 * @return Whether the point was not in the set already
+	 */
+	public boolean add(final int x, final int y)
+	{
+		final long key = pack(x, y);
+		if (key == sEmptyKey) {
+			if (aHasEmptyKey) {
+				return false;
+			}
+			aHasEmptyKey = true;
+			aSize++;
+			return true;
+		}
+		int slot = getSlot(key);
+		while (aKeys[slot] != sEmptyKey) {
+			if (aKeys[slot] == key) {
+				return false;
+			}
+			slot = slot + 1 & aKeys.length - 1;
+		}
+		aKeys[slot] = key;
+		aSize++;
+		if (aSize * 2 > aKeys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Adds every point of a rectangle to the set.
+	 * 
+	 * @param x
+	 *            The x coordinate of the bottom-left corner of the rectangle
+	 * @param y
+	 *            The y coordinate of the bottom-left corner of the rectangle
+	 * @param width
+	 *            The width of the rectangle
+	 * @param height
+	 *            The height of the rectangle
+	 */
+	public void add(final int x, final int y, final int width, final int height)
+	{
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				add(x + i, y + j);
+			}
+		}
+	}
+
+	/**
+	 * @param point
+	 *            The point
+	 * @return Whether the point was not in the set already
+	 */
+	public boolean add(final Point point)
+	{
+		return add(point.x, point.y);
+	}
+
+	/**
+	 * Adds every point of another set to this one.
+	 * 
+	 * @param other
+	 *            The other set
+	 */
+	public void addAll(final PointSet other)
+	{
+		if (other.aHasEmptyKey) {
+			add(unpackX(sEmptyKey), unpackY(sEmptyKey));
+		}
+		for (final long key : other.aKeys) {
+			if (key != sEmptyKey) {
+				add(unpackX(key), unpackY(key));
+			}
+		}
+	}
+
+	/**
+	 * Removes every point from the set.
+	 */
+	public void clear()
+	{
+		Arrays.fill(aKeys, sEmptyKey);
+		aHasEmptyKey = false;
+		aSize = 0;
+	}
+
+	/**
+	 * @param x
+	 *            The x coordinate of the point
+	 * @param y
+	 *            The y coordinate of the point
+	 * @return Whether the point is in the set
+	 */
+	public boolean contains(final int x, final int y)
+	{
+		final long key = pack(x, y);
+		if (key == sEmptyKey) {
+			return aHasEmptyKey;
+		}
+		int slot = getSlot(key);
+		while (aKeys[slot] != sEmptyKey) {
+			if (aKeys[slot] == key) {
+				return true;
+			}
+			slot = slot + 1 & aKeys.length - 1;
+		}
+		return false;
+	}
+
+	/**
+	 * @param point
+	 *            The point
+	 * @return Whether the point is in the set
+	 */
+	public boolean contains(final Point point)
+	{
+		return contains(point.x, point.y);
+	}
+
+	/**
+	 * @param key
+	 *            A packed point
+	 * @return The slot of the table where the search for the point starts
+	 */
+	private int getSlot(final long key)
+	{
+		return (int) (key * sHashMultiplier >>> 64 - aShift);
+	}
+
+	/**
+	 * Doubles the size of the table.
+	 */
+	private void grow()
+	{
+		final long[] keys = aKeys;
+		aShift++;
+		aKeys = newTable(1 << aShift);
+		for (final long key : keys) {
+			if (key != sEmptyKey) {
+				int slot = getSlot(key);
+				while (aKeys[slot] != sEmptyKey) {
+					slot = slot + 1 & aKeys.length - 1;
+				}
+				aKeys[slot] = key;
+			}
+		}
+	}
+
+	/**
+	 * @param other
+	 *            Another set
+	 * @return Whether the two sets have at least one point in common
+	 */
+	public boolean intersects(final PointSet other)
+	{
+		if (other.aSize < aSize) {
+			return other.intersects(this);
+		}
+		if (aHasEmptyKey && other.aHasEmptyKey) {
+			return true;
+		}
+		for (final long key : aKeys) {
+			if (key != sEmptyKey && other.contains(unpackX(key), unpackY(key))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Whether the set is empty
+	 */
+	public boolean isEmpty()
+	{
+		return aSize == 0;
+	}
+
+	@Override
+	public Iterator<Point> iterator()
+	{
+		return new Iterator<Point>()
+		{
+			private boolean aEmptyKeyReturned = !aHasEmptyKey;
+			private int aSlot = nextSlot(0);
+
+			@Override
+			public boolean hasNext()
+			{
+				return !aEmptyKeyReturned || aSlot < aKeys.length;
+			}
+
+			@Override
+			public Point next()
+			{
+				if (!aEmptyKeyReturned) {
+					aEmptyKeyReturned = true;
+					return new Point(unpackX(sEmptyKey), unpackY(sEmptyKey));
+				}
+				if (aSlot >= aKeys.length) {
+					throw new NoSuchElementException();
+				}
+				final long key = aKeys[aSlot];
+				aSlot = nextSlot(aSlot + 1);
+				return new Point(unpackX(key), unpackY(key));
+			}
+
+			/**
+			 * @param from
+			 *            The first slot to look at
+			 * @return The first used slot of the table from the given one on, or the length of the table if there is none
+			 */
+			private int nextSlot(final int from)
+			{
+				int slot = from;
+				while (slot < aKeys.length && aKeys[slot] == sEmptyKey) {
+					slot++;
+				}
+				return slot;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * @param length
+	 *            The length of the table
+	 * @return A table with every slot free
+	 */
+	private long[] newTable(final int length)
+	{
+		final long[] keys = new long[length];
+		Arrays.fill(keys, sEmptyKey);
+		return keys;
+	}
+
+	/**
+	 * @return The number of points in the set
+	 */
+	public int size()
+	{
+		return aSize;
+	}
+
+	/**
+	 * @return The points of the set, as a regular Set
+	 */
+	public Set<Point> toSet()
+	{
+		final Set<Point> points = new HashSet<Point>(aSize * 2);
+		for (final Point point : this) {
+			points.add(point);
+		}
+		return points;
+	}
+}
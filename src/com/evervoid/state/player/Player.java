@@ -174,9 +174,9 @@ public class Player implements Jsonable
 	 */
 	public ResourceAmount getCurrentIncome()
 	{
-		ResourceAmount income = aResources.emptyClone();
+		final ResourceAmount income = aResources.emptyClone();
 		for (final Planet planet : aState.getPlanetByPlayer(this)) {
-			income = income.add(planet.getResourceRate());
+			income.addLocal(planet.getResourceRate());
 		}
 		return income;
 	}
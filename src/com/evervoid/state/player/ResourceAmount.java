@@ -1,8 +1,10 @@
 package com.evervoid.state.player;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Resource;
 
@@ -13,10 +15,23 @@ import com.evervoid.state.data.GameData;
 import com.evervoid.state.data.RaceData;
 
 /**
- * A map of {@link Resource}s to their amounts, used for costs or recording a Player's available {@link Resource}s.
+ * A map of {@link Resource}s to their amounts, used for costs or recording a Player's available {@link Resource}s. Resource
+ * names are mapped to dense indices when the {@link GameData} declaring them is loaded, and amounts are kept in an array by
+ * index, so that arithmetic on ResourceAmounts neither hashes names nor boxes values. Names that were never declared (from
+ * an incoming action, for instance) are never given an index; a ResourceAmount read with such names is incompatible with
+ * every other one. Methods ending in "Local" modify the ResourceAmount they are called on instead of allocating a new one.
  */
 public class ResourceAmount implements Jsonable
 {
+	/**
+	 * The index of each resource name.
+	 */
+	private static final Map<String, Integer> sIndices = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * The resource names, by index.
+	 */
+	private static volatile String[] sNames = new String[0];
+
 	/**
 	 * @param amount
 	 *            The amount to format
@@ -28,15 +43,85 @@ public class ResourceAmount implements Jsonable
 	}
 
 	/**
-	 * A mapping of Resource to amount.
+	 * @param resource
+	 *            The name of a resource
+	 * @return The index of the resource in ResourceAmounts; -1 if the resource was never registered.
+	 */
+	public static int getResourceIndex(final String resource)
+	{
+		final Integer index = sIndices.get(resource);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param j
+	 *            The Json representation of a ResourceAmount
+	 * @return Whether it has resources that were never registered
+	 */
+	private static boolean hasUnknownResources(final Json j)
+	{
+		for (final String resource : j.getAttributes()) {
+			if (!sIndices.containsKey(resource)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return An array of amounts with no entry, covering all the resource indices given so far
+	 */
+	private static double[] newValues()
+	{
+		final double[] values = new double[sNames.length];
+		Arrays.fill(values, Double.NaN);
+		return values;
+	}
+
+	/**
+	 * Gives an index to a resource name that does not have one yet. Only meant for the resources declared by the
+	 * {@link GameData}, as indices are never given back.
+	 * 
+	 * @param resource
+	 *            The name of the resource
+	 * @return The index of the resource
+	 */
+	public static synchronized int registerResource(final String resource)
+	{
+		Integer index = sIndices.get(resource);
+		if (index == null) {
+			index = sNames.length;
+			final String[] names = Arrays.copyOf(sNames, index + 1);
+			names[index] = resource;
+			sNames = names;
+			sIndices.put(resource, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Whether this ResourceAmount was read with resources that were never registered; if so, it is not compatible with any
+	 * other ResourceAmount.
 	 */
-	private final Map<String, Double> aResourceMap = new HashMap<String, Double>();
+	private final boolean aUnknownResources;
+	/**
+	 * The amount of each resource, by resource index. Resources this ResourceAmount has no entry for are NaN, as are the
+	 * indices past the end of the array.
+	 */
+	private double[] aValues;
 
 	/**
-	 * Private argument-less constructor; used for cloning. Use emptyClone to get an empty clone.
+	 * Private constructor; used for cloning. Use emptyClone to get an empty clone.
+	 * 
+	 * @param values
+	 *            The amounts by resource index, which the ResourceAmount takes ownership of
+	 * @param unknownResources
+	 *            Whether the amounts were read with resources that were never registered
 	 */
-	private ResourceAmount()
+	private ResourceAmount(final double[] values, final boolean unknownResources)
 	{
+		aValues = values;
+		aUnknownResources = unknownResources;
 	}
 
 	/**
@@ -50,22 +135,28 @@ public class ResourceAmount implements Jsonable
 	 */
 	public ResourceAmount(final GameData data, final RaceData race)
 	{
+		this(newValues(), false);
 		final ResourceAmount initial = race.getStartResources();
 		for (final String resource : data.getResources()) {
-			aResourceMap.put(resource, initial.getValue(resource));
+			set(registerResource(resource), initial.getValue(resource));
 		}
 	}
 
 	/**
-	 * Creates a ResourceAmount with the contents of the Json.
+	 * Creates a ResourceAmount with the contents of the Json. Resources that were never registered are left out, and make
+	 * the ResourceAmount incompatible with every other one.
 	 * 
 	 * @param j
 	 *            The Json containing the necessary information to build the ResourceAmount.
 	 */
 	public ResourceAmount(final Json j)
 	{
+		this(newValues(), hasUnknownResources(j));
 		for (final String resource : j.getAttributes()) {
-			aResourceMap.put(resource, j.getDoubleAttribute(resource));
+			final int index = getResourceIndex(resource);
+			if (index != -1) {
+				set(index, j.getDoubleAttribute(resource));
+			}
 		}
 	}
 
@@ -81,21 +172,35 @@ public class ResourceAmount implements Jsonable
 		if (!isCompatibleWith(other)) {
 			return null;
 		}
-		final ResourceAmount added = clone();
-		for (final String resName : other.getNames()) {
-			added.aResourceMap.put(resName, Math.max(0, aResourceMap.get(resName) + other.getValue(resName)));
+		return clone().addLocal(other);
+	}
+
+	/**
+	 * Adds the specified ResourceAmount to this one, in place. Amounts that would become negative are set to zero.
+	 * 
+	 * @param other
+	 *            The ResourceAmount to add
+	 * @return This ResourceAmount, or null if the other one has resources this one does not have (in which case this one is
+	 *         left as is)
+	 */
+	public ResourceAmount addLocal(final ResourceAmount other)
+	{
+		if (!isCompatibleWith(other)) {
+			return null;
 		}
-		return added;
+		final double[] values = other.aValues;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				aValues[i] = Math.max(0, aValues[i] + values[i]);
+			}
+		}
+		return this;
 	}
 
 	@Override
 	public ResourceAmount clone()
 	{
-		final ResourceAmount newObj = new ResourceAmount();
-		for (final String key : aResourceMap.keySet()) {
-			newObj.aResourceMap.put(key, aResourceMap.get(key));
-		}
-		return newObj;
+		return new ResourceAmount(aValues.clone(), aUnknownResources);
 	}
 
 	/**
@@ -108,8 +213,9 @@ public class ResourceAmount implements Jsonable
 		if (!isCompatibleWith(cost)) {
 			return false;
 		}
-		for (final String resName : cost.getNames()) {
-			if (getValue(resName) < cost.getValue(resName)) {
+		final double[] values = cost.aValues;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i]) && aValues[i] < values[i]) {
 				return false;
 			}
 		}
@@ -125,11 +231,24 @@ public class ResourceAmount implements Jsonable
 	 */
 	public ResourceAmount divide(final double factor)
 	{
-		final ResourceAmount product = clone();
-		for (final String resName : getNames()) {
-			product.aResourceMap.put(resName, Math.max(0, getValue(resName) / factor));
+		return clone().divideLocal(factor);
+	}
+
+	/**
+	 * Divides this ResourceAmount, in place.
+	 * 
+	 * @param factor
+	 *            The factor to divide by
+	 * @return This ResourceAmount
+	 */
+	public ResourceAmount divideLocal(final double factor)
+	{
+		for (int i = 0; i < aValues.length; i++) {
+			if (!Double.isNaN(aValues[i])) {
+				aValues[i] = Math.max(0, aValues[i] / factor);
+			}
 		}
-		return product;
+		return this;
 	}
 
 	/**
@@ -137,11 +256,23 @@ public class ResourceAmount implements Jsonable
 	 */
 	public ResourceAmount emptyClone()
 	{
-		final ResourceAmount clone = new ResourceAmount();
-		for (final String resource : aResourceMap.keySet()) {
-			clone.aResourceMap.put(resource, 0d);
+		final double[] values = aValues.clone();
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				values[i] = 0d;
+			}
 		}
-		return clone;
+		return new ResourceAmount(values, aUnknownResources);
+	}
+
+	/**
+	 * @param index
+	 *            The index of a resource
+	 * @return The amount of the resource, or NaN if this ResourceAmount has no entry for it
+	 */
+	private double get(final int index)
+	{
+		return index < aValues.length ? aValues[index] : Double.NaN;
 	}
 
 	/**
@@ -155,11 +286,18 @@ public class ResourceAmount implements Jsonable
 	}
 
 	/**
-	 * @return The set of all resources represented in this ResourceAmount.
+	 * @return The set of all resources represented in this ResourceAmount, in index order.
 	 */
 	public Set<String> getNames()
 	{
-		return aResourceMap.keySet();
+		final String[] names = sNames;
+		final Set<String> set = new LinkedHashSet<String>();
+		for (int i = 0; i < aValues.length; i++) {
+			if (!Double.isNaN(aValues[i])) {
+				set.add(names[i]);
+			}
+		}
+		return set;
 	}
 
 	/**
@@ -169,10 +307,12 @@ public class ResourceAmount implements Jsonable
 	 */
 	public double getValue(final String resourceName)
 	{
-		if (!hasResource(resourceName)) {
+		final Integer index = sIndices.get(resourceName);
+		if (index == null) {
 			return 0;
 		}
-		return aResourceMap.get(resourceName);
+		final double value = get(index);
+		return Double.isNaN(value) ? 0 : value;
 	}
 
 	/**
@@ -182,11 +322,13 @@ public class ResourceAmount implements Jsonable
 	 */
 	public boolean hasResource(final String resource)
 	{
-		return aResourceMap.containsKey(resource);
+		final Integer index = sIndices.get(resource);
+		return index != null && !Double.isNaN(get(index));
 	}
 
 	/**
-	 * Checks whether all keys in the provided ResourceAmount instance are contained in this one. Not transitive!
+	 * Checks whether all keys in the provided ResourceAmount instance are contained in this one. Not transitive! A
+	 * ResourceAmount read with resources that were never registered is not compatible with any other one.
 	 * 
 	 * @param other
 	 *            The other ResourceAmount
@@ -194,11 +336,12 @@ public class ResourceAmount implements Jsonable
 	 */
 	public boolean isCompatibleWith(final ResourceAmount other)
 	{
-		if (other == null) {
+		if (other == null || aUnknownResources || other.aUnknownResources) {
 			return false;
 		}
-		for (final String resName : other.getNames()) {
-			if (!hasResource(resName)) {
+		final double[] values = other.aValues;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i]) && Double.isNaN(get(i))) {
 				return false;
 			}
 		}
@@ -210,8 +353,8 @@ public class ResourceAmount implements Jsonable
 	 */
 	public boolean isZero()
 	{
-		for (final double val : aResourceMap.values()) {
-			if (val != 0d) {
+		for (final double val : aValues) {
+			if (!Double.isNaN(val) && val != 0d) {
 				return false;
 			}
 		}
@@ -230,11 +373,29 @@ public class ResourceAmount implements Jsonable
 		if (!isCompatibleWith(other)) {
 			return null;
 		}
-		final ResourceAmount product = clone();
-		for (final String resName : other.getNames()) {
-			product.aResourceMap.put(resName, Math.max(0, aResourceMap.get(resName) * other.getValue(resName)));
+		return clone().multLocal(other);
+	}
+
+	/**
+	 * Multiplies this ResourceAmount by the specified one, in place. Amounts that would become negative are set to zero.
+	 * 
+	 * @param other
+	 *            The ResourceAmount to multiply by
+	 * @return This ResourceAmount, or null if the other one has resources this one does not have (in which case this one is
+	 *         left as is)
+	 */
+	public ResourceAmount multLocal(final ResourceAmount other)
+	{
+		if (!isCompatibleWith(other)) {
+			return null;
+		}
+		final double[] values = other.aValues;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				aValues[i] = Math.max(0, aValues[i] * values[i]);
+			}
 		}
-		return product;
+		return this;
 	}
 
 	/**
@@ -244,11 +405,20 @@ public class ResourceAmount implements Jsonable
 	 */
 	public ResourceAmount negate()
 	{
-		final ResourceAmount newObj = clone();
-		for (final String resource : aResourceMap.keySet()) {
-			newObj.aResourceMap.put(resource, -aResourceMap.get(resource));
+		return clone().negateLocal();
+	}
+
+	/**
+	 * Negates this ResourceAmount, in place.
+	 * 
+	 * @return This ResourceAmount
+	 */
+	public ResourceAmount negateLocal()
+	{
+		for (int i = 0; i < aValues.length; i++) {
+			aValues[i] = -aValues[i]; // NaN stays NaN
 		}
-		return newObj;
+		return this;
 	}
 
 	/**
@@ -263,8 +433,9 @@ public class ResourceAmount implements Jsonable
 	{
 		final ResourceAmount copy = clone();
 		for (final String resName : state.getResourceNames()) {
-			if (!copy.hasResource(resName)) {
-				copy.aResourceMap.put(resName, 0d);
+			final int index = registerResource(resName);
+			if (Double.isNaN(copy.get(index))) {
+				copy.set(index, 0d);
 			}
 		}
 		return copy;
@@ -278,7 +449,25 @@ public class ResourceAmount implements Jsonable
 	 */
 	public void remove(final ResourceAmount amount)
 	{
-		add(amount.negate());
+		subtractLocal(amount);
+	}
+
+	/**
+	 * Sets the amount of a resource, making room for its index if needed.
+	 * 
+	 * @param index
+	 *            The index of the resource
+	 * @param value
+	 *            The amount
+	 */
+	private void set(final int index, final double value)
+	{
+		if (index >= aValues.length) {
+			final int length = aValues.length;
+			aValues = Arrays.copyOf(aValues, Math.max(index + 1, sNames.length));
+			Arrays.fill(aValues, length, aValues.length, Double.NaN);
+		}
+		aValues[index] = value;
 	}
 
 	/**
@@ -290,15 +479,43 @@ public class ResourceAmount implements Jsonable
 	 */
 	public ResourceAmount subtract(final ResourceAmount amount)
 	{
-		return add(amount.negate());
+		if (!isCompatibleWith(amount)) {
+			return null;
+		}
+		return clone().subtractLocal(amount);
+	}
+
+	/**
+	 * Subtracts the specified ResourceAmount from this one, in place. Amounts that would become negative are set to zero.
+	 * 
+	 * @param amount
+	 *            The ResourceAmount to subtract
+	 * @return This ResourceAmount, or null if the other one has resources this one does not have (in which case this one is
+	 *         left as is)
+	 */
+	public ResourceAmount subtractLocal(final ResourceAmount amount)
+	{
+		if (!isCompatibleWith(amount)) {
+			return null;
+		}
+		final double[] values = amount.aValues;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				aValues[i] = Math.max(0, aValues[i] - values[i]);
+			}
+		}
+		return this;
 	}
 
 	@Override
 	public Json toJson()
 	{
+		final String[] names = sNames;
 		final Json map = new Json();
-		for (final String resource : aResourceMap.keySet()) {
-			map.setAttribute(resource, aResourceMap.get(resource));
+		for (int i = 0; i < aValues.length; i++) {
+			if (!Double.isNaN(aValues[i])) {
+				map.setAttribute(names[i], aValues[i]);
+			}
 		}
 		return map;
 	}
@@ -308,4 +525,4 @@ public class ResourceAmount implements Jsonable
 	{
 		return toJson().toPrettyString();
 	}
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.evervoid.state.prop;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -18,21 +20,313 @@ import com.evervoid.state.geometry.Point;
 public class Pathfinder
 {
 	/**
-	 * The buffer distance by which the path should avoid props.
+	 * Tells where a ship fits in a SolarSystem.
 	 */
-	private final int avoidPropDistance;
+	interface Clearance
+	{
+		/**
+		 * @param x
+		 *            The column of the location
+		 * @param y
+		 *            The row of the location
+		 * @param dimension
+		 *            The dimension of the ship
+		 * @return Whether the ship fits in the solar system at the location without overlapping any prop
+		 */
+		public boolean isLocationClear(int x, int y, Dimension dimension);
+	}
+
 	/**
-	 * The penalty associated with trespassing in a prop's buffer zone.
+	 * Working memory of a search over the grid of a SolarSystem. Cells are referred to by their index, x * height + y. The
+	 * arrays are kept from one search to the next (one SearchGrid per thread) and only grown when a bigger SolarSystem comes
+	 * along; rather than clearing them, every search gets a new stamp, and a cell whose stamp is not the current one counts as
+	 * not visited yet.
 	 */
-	private final int avoidPropPenalty;
+	private static class SearchGrid implements Clearance
+	{
+		/**
+		 * Number of bits of the cell index in the keys of the open set.
+		 */
+		private static final int sIndexBits = 21;
+		/**
+		 * Summed-area table of the cells blocked by props: entry (x, y) of the (width + 1) * (height + 1) table is the number of
+		 * blocked cells with coordinates lower than (x, y).
+		 */
+		private int[] aBlocked = new int[0];
+		/**
+		 * Stamp of the cells taken out of the open set.
+		 */
+		private int[] aClosed = new int[0];
+		/**
+		 * Cost of the best known path to each cell (valid if the cell is seen).
+		 */
+		private int[] aCost = new int[0];
+		/**
+		 * Height of the grid.
+		 */
+		private int aHeight;
+		/**
+		 * Open set, as a binary min-heap of keys made of the estimated total cost, the heuristic (so that ties favour the cells
+		 * closest to the goal) and the cell index. Cells whose cost improves are pushed again; outdated keys are skipped once the
+		 * cell is closed.
+		 */
+		private long[] aOpen = new long[16];
+		/**
+		 * Number of keys in the open set.
+		 */
+		private int aOpenSize;
+		/**
+		 * Previous cell on the best known path to each cell (valid if the cell is seen).
+		 */
+		private int[] aParent = new int[0];
+		/**
+		 * Stamp of the cells seen so far.
+		 */
+		private int[] aSeen = new int[0];
+		/**
+		 * Stamp of the current search.
+		 */
+		private int aStamp = 0;
+		/**
+		 * Width of the grid.
+		 */
+		private int aWidth;
+
+		/**
+		 * @param x
+		 *            Column
+		 * @param y
+		 *            Row
+		 * @return The number of blocked cells with coordinates lower than (x, y), after clamping them to the grid
+		 */
+		private int blockedBefore(final int x, final int y)
+		{
+			final int cx = Math.max(0, Math.min(x, aWidth));
+			final int cy = Math.max(0, Math.min(y, aHeight));
+			return aBlocked[cx * (aHeight + 1) + cy];
+		}
+
+		/**
+		 * @param x
+		 *            Column of the bottom-left corner
+		 * @param y
+		 *            Row of the bottom-left corner
+		 * @param width
+		 *            Width of the area
+		 * @param height
+		 *            Height of the area
+		 * @return Whether no cell of the area is blocked; the parts of the area outside of the grid are clear
+		 */
+		private boolean isClear(final int x, final int y, final int width, final int height)
+		{
+			return blockedBefore(x + width, y + height) - blockedBefore(x, y + height) - blockedBefore(x + width, y)
+					+ blockedBefore(x, y) == 0;
+		}
+
+		/**
+		 * @param index
+		 *            A cell index
+		 * @return Whether the cell has been closed during the current search
+		 */
+		private boolean isClosed(final int index)
+		{
+			return aClosed[index] == aStamp;
+		}
+
+		@Override
+		public boolean isLocationClear(final int x, final int y, final Dimension dimension)
+		{
+			return x + dimension.width <= aWidth && y + dimension.height <= aHeight
+					&& isClear(x, y, dimension.width, dimension.height);
+		}
+
+		/**
+		 * @param index
+		 *            A cell index
+		 * @return Whether the cell has been seen during the current search
+		 */
+		private boolean isSeen(final int index)
+		{
+			return aSeen[index] == aStamp;
+		}
+
+		/**
+		 * @return The index of the cell with the lowest key in the open set, which is removed from it; -1 if the open set is
+		 *         empty
+		 */
+		private int pop()
+		{
+			if (aOpenSize == 0) {
+				return -1;
+			}
+			final long top = aOpen[0];
+			final long last = aOpen[--aOpenSize];
+			int hole = 0;
+			while (true) {
+				int child = 2 * hole + 1;
+				if (child >= aOpenSize) {
+					break;
+				}
+				if (child + 1 < aOpenSize && aOpen[child + 1] < aOpen[child]) {
+					child++;
+				}
+				if (aOpen[child] >= last) {
+					break;
+				}
+				aOpen[hole] = aOpen[child];
+				hole = child;
+			}
+			aOpen[hole] = last;
+			return (int) (top & (1 << sIndexBits) - 1);
+		}
+
+		/**
+		 * Adds a cell to the open set.
+		 * 
+		 * @param index
+		 *            The cell index
+		 * @param totalCost
+		 *            The estimated cost of the path to the goal through the cell
+		 * @param heuristic
+		 *            The estimated remaining cost from the cell to the goal
+		 */
+		private void push(final int index, final int totalCost, final int heuristic)
+		{
+			if (aOpenSize == aOpen.length) {
+				final long[] grown = new long[aOpen.length * 2];
+				System.arraycopy(aOpen, 0, grown, 0, aOpenSize);
+				aOpen = grown;
+			}
+			final long key = (long) totalCost << 2 * sIndexBits | (long) heuristic << sIndexBits | index;
+			int hole = aOpenSize++;
+			while (hole > 0) {
+				final int parent = (hole - 1) / 2;
+				if (aOpen[parent] <= key) {
+					break;
+				}
+				aOpen[hole] = aOpen[parent];
+				hole = parent;
+			}
+			aOpen[hole] = key;
+		}
+
+		/**
+		 * Prepares for a new search.
+		 * 
+		 * @param solarSystem
+		 *            The SolarSystem to search in
+		 * @param ship
+		 *            The Ship that is moving; it does not block itself
+		 */
+		private void reset(final SolarSystem solarSystem, final Ship ship)
+		{
+			aWidth = solarSystem.getWidth();
+			aHeight = solarSystem.getHeight();
+			final int cells = aWidth * aHeight;
+			if (aSeen.length < cells) {
+				aSeen = new int[cells];
+				aClosed = new int[cells];
+				aCost = new int[cells];
+				aParent = new int[cells];
+				aStamp = 0;
+			}
+			if (aStamp == Integer.MAX_VALUE) {
+				Arrays.fill(aSeen, 0);
+				Arrays.fill(aClosed, 0);
+				aStamp = 0;
+			}
+			aStamp++;
+			aOpenSize = 0;
+			// Build the summed-area table of blocked cells, in a single pass over the occupancy grid of the SolarSystem
+			final int stride = aHeight + 1;
+			if (aBlocked.length < (aWidth + 1) * stride) {
+				aBlocked = new int[(aWidth + 1) * stride];
+			}
+			Arrays.fill(aBlocked, 0, stride, 0);
+			for (int x = 0; x < aWidth; x++) {
+				final int column = (x + 1) * stride;
+				aBlocked[column] = 0;
+				for (int y = 0; y < aHeight; y++) {
+					final Prop prop = solarSystem.getPropAt(x, y);
+					final int index = column + y + 1;
+					aBlocked[index] = aBlocked[index - stride] + aBlocked[index - 1] - aBlocked[index - stride - 1];
+					if (prop != null && !prop.ignorePathfinder() && !prop.equals(ship)) {
+						aBlocked[index]++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Marks a cell as closed.
+		 * 
+		 * @param index
+		 *            The cell index
+		 */
+		private void setClosed(final int index)
+		{
+			aClosed[index] = aStamp;
+		}
+
+		/**
+		 * Records the best known path to a cell, marking it as seen.
+		 * 
+		 * @param index
+		 *            The cell index
+		 * @param cost
+		 *            The cost of the path to the cell
+		 * @param parent
+		 *            The previous cell on the path, or -1 for the origin
+		 */
+		private void setPath(final int index, final int cost, final int parent)
+		{
+			aSeen[index] = aStamp;
+			aCost[index] = cost;
+			aParent[index] = parent;
+		}
+	}
+
+	/**
+	 * Search grids, one per thread, so that searches on different threads do not share their working memory.
+	 */
+	private static final ThreadLocal<SearchGrid> sSearchGrids = new ThreadLocal<SearchGrid>()
+	{
+		@Override
+		protected SearchGrid initialValue()
+		{
+			return new SearchGrid();
+		}
+	};
+
 	/**
-	 * A list of PathNodes that have already been examined.
+	 * Computes the standard Euclidian distance between two points (floor).
+	 * 
+	 * @param x1
+	 *            Column of the first point.
+	 * @param y1
+	 *            Row of the first point.
+	 * @param x2
+	 *            Column of the second point.
+	 * @param y2
+	 *            Row of the second point.
+	 * @return An integer representing the distance between two points.
+	 */
+	private static int computeHeuristic(final int x1, final int y1, final int x2, final int y2)
+	{
+		// Straight line distance
+		final int a = y2 - y1;
+		final int b = x2 - x1;
+		return (int) Math.floor(Math.sqrt(a * a + b * b));
+	}
+
+	/**
+	 * The buffer distance by which the path should avoid props.
 	 */
-	private final List<PathNode> closed = new ArrayList<PathNode>();
+	private final int avoidPropDistance;
 	/**
-	 * A list of PathNodes that need to be examined.
+	 * The penalty associated with trespassing in a prop's buffer zone.
 	 */
-	private final List<PathNode> open = new ArrayList<PathNode>();
+	private final int avoidPropPenalty;
 
 	/**
 	 * Pathfinding Manager constructor using default prop avoidance and penalty values.
@@ -68,26 +362,8 @@ public class Pathfinder
 	}
 
 	/**
-	 * Computes the standard Euclidian distance between two points (floor).
-	 * 
-	 * @param pOrig
-	 *            Point of origin.
-	 * @param pDest
-	 *            Point of destination.
-	 * @return An integer representing the distance between two points.
-	 */
-	private int computeHeuristic(final Point pOrig, final Point pDest)
-	{
-		// Straight line distance
-		int a = (pDest.y - pOrig.y);
-		int b = (pDest.x - pOrig.x);
-		a *= a;
-		b *= b;
-		return (int) Math.floor(Math.sqrt(a + b));
-	}
-
-	/**
-	 * Returns an optimal path from a point to a goal. Assumes ship is in a solar system.
+	 * Returns an optimal path from a point to a goal. Assumes ship is in a solar system. Destinations that the ship can reach
+	 * this turn are looked up in its {@link ReachabilityMap}; only the others need a search.
 	 * 
 	 * @param pShip
 	 *            The ship that needs to move.
@@ -103,84 +379,68 @@ public class Pathfinder
 			// Ship can't go there, no need to go further
 			return null;
 		}
-		GridLocation currentLocation = null, inflatedCurrentLocation = null;
-		// cleanup
-		open.clear();
-		closed.clear();
-		// useful variables
-		int tentativeCostSoFar = 0;
-		boolean tentativeIsBetter = false;
-		PathNode current = null, neighbour = null;
 		// Grab the data we need from the ship.
 		final SolarSystem shipSolarSystem = (SolarSystem) pShip.getContainer();
-		final Dimension solarSystemDimension = new Dimension(shipSolarSystem.getWidth(), shipSolarSystem.getHeight());
 		final Point shipOrigin = pShip.getLocation().origin;
 		final Dimension shipDimension = pShip.getLocation().dimension;
-		// Create an internal representation of the grid.
-		final PathNode[][] nodes = new PathNode[shipSolarSystem.getWidth()][shipSolarSystem.getHeight()];
-		for (int i = 0; i < shipSolarSystem.getWidth(); i++) {
-			for (int j = 0; j < shipSolarSystem.getHeight(); j++) {
-				nodes[i][j] = new PathNode(new Point(i, j));
+		final int width = shipSolarSystem.getWidth();
+		final int height = shipSolarSystem.getHeight();
+		if (destinationPoint.x < 0 || destinationPoint.y < 0 || destinationPoint.x >= width || destinationPoint.y >= height) {
+			return null;
+		}
+		if (avoidPropPenalty == 0) {
+			// Without penalties, the shortest path in the reachability map is as good as any
+			final ReachabilityMap reachability = getReachability(pShip);
+			final List<Point> tempResults = reachability.getPath(destinationPoint.x, destinationPoint.y);
+			if (tempResults != null) {
+				return toPath(tempResults, pShip, reachability);
 			}
 		}
-		// Grab the origin node from the internal grid representation.
-		final PathNode originNode = nodes[shipOrigin.x][shipOrigin.y];
-		originNode.costSoFar = 0;
-		originNode.goalHeuristic = 0;
-		// Add the origin to the open list of nodes to consider.
-		open.add(originNode);
+		final SearchGrid grid = sSearchGrids.get();
+		grid.reset(shipSolarSystem, pShip);
+		final int goal = destinationPoint.x * height + destinationPoint.y;
+		// Add the origin to the open set of cells to consider.
+		final int origin = shipOrigin.x * height + shipOrigin.y;
+		grid.setPath(origin, 0, -1);
+		grid.push(origin, 0, 0);
+		final int[] neighbours = new int[4];
 		// Start main pathfinding loop.
-		while (open.size() != 0) {
-			// Grab the element with the lowest total cost from the open list.
-			current = grabLowest(open);
-			open.remove(current);
-			if (current.getCoord().equals(destinationPoint)) {
+		int current;
+		while ((current = grid.pop()) != -1) {
+			if (grid.isClosed(current)) {
+				continue; // Outdated entry, the cell was already reached more cheaply.
+			}
+			if (current == goal) {
 				// Found the goal, reconstruct the path from it.
-				final List<PathNode> tempResults = reconstructPath(current);
-				// PRUNE!!
-				prunePath(tempResults, pShip);
-				// Stupid conversion to GridLocations.
-				final List<GridLocation> finalResults = new ArrayList<GridLocation>();
-				for (final PathNode r : tempResults) {
-					finalResults.add(new GridLocation(r.getCoord().x, r.getCoord().y, shipDimension));
-				}
-				finalResults.remove(pShip.getLocation());
-				return finalResults;
+				return toPath(reconstructPath(grid, current), pShip, grid);
 			}
-			// Add the current element to the closed list.
-			closed.add(current);
-			for (final Point p : getNeighbours(shipSolarSystem, current.getCoord())) {
-				currentLocation = new GridLocation(p, shipDimension);
-				if (!currentLocation.fitsIn(solarSystemDimension) || !isLocationClear(pShip, currentLocation)) {
+			// Close the current cell.
+			grid.setClosed(current);
+			final int x = current / height;
+			final int y = current % height;
+			final int neighbourCount = getNeighbours(width, height, x, y, neighbours);
+			for (int i = 0; i < neighbourCount; i++) {
+				final int neighbour = neighbours[i];
+				if (grid.isClosed(neighbour)) {
+					continue; // We don't consider closed cells.
+				}
+				final int nx = neighbour / height;
+				final int ny = neighbour % height;
+				if (!grid.isLocationClear(nx, ny, shipDimension)) {
 					// Point doesn't fit in solar system or is occupied, discard.
 					continue;
 				}
-				neighbour = nodes[p.x][p.y];
-				if (closed.contains(neighbour)) {
-					continue; // We don't consider nodes in the closed list.
-				}
-				tentativeCostSoFar = current.costSoFar + 1;
+				int tentativeCostSoFar = grid.aCost[current] + 1;
 				// Induce a penalty if location is close to a prop.
-				inflatedCurrentLocation = new GridLocation(p.x - avoidPropDistance, p.y - avoidPropDistance,
-						shipDimension.getWidth() + 2 * avoidPropDistance, shipDimension.getWidth() + 2 * avoidPropDistance);
-				if (!isLocationClear(pShip, inflatedCurrentLocation)) {
+				if (avoidPropPenalty != 0
+						&& !grid.isClear(nx - avoidPropDistance, ny - avoidPropDistance, shipDimension.getWidth() + 2
+								* avoidPropDistance, shipDimension.getWidth() + 2 * avoidPropDistance)) {
 					tentativeCostSoFar += avoidPropPenalty;
 				}
-				if (!(open.contains(neighbour))) {
-					open.add(neighbour);
-					tentativeIsBetter = true;
-				}
-				else if (tentativeCostSoFar < neighbour.costSoFar) {
-					tentativeIsBetter = true;
-				}
-				else {
-					tentativeIsBetter = false;
-				}
-				if (tentativeIsBetter) {
-					neighbour.parent = current;
-					neighbour.costSoFar = tentativeCostSoFar;
-					neighbour.goalHeuristic = computeHeuristic(neighbour.getCoord(), destinationPoint);
-					neighbour.totalCost = neighbour.costSoFar + neighbour.goalHeuristic;
+				if (!grid.isSeen(neighbour) || tentativeCostSoFar < grid.aCost[neighbour]) {
+					grid.setPath(neighbour, tentativeCostSoFar, current);
+					final int goalHeuristic = computeHeuristic(nx, ny, destinationPoint.x, destinationPoint.y);
+					grid.push(neighbour, tentativeCostSoFar + goalHeuristic, goalHeuristic);
 				}
 			}
 		}
@@ -244,100 +504,69 @@ public class Pathfinder
 	}
 
 	/**
-	 * Returns a set of points that are the direct neighbours of the specified point.
+	 * Finds the direct neighbours of a cell.
 	 * 
-	 * @param pSolarSystem
-	 *            The SolarSystem containing the point.
-	 * @param p
-	 *            The point we find to find the neighbours of.
-	 * @return A set of points that are the direct neighbours of the specified point. Will not return points outside the
-	 *         specified SolarSystem.
+	 * @param width
+	 *            The width of the grid.
+	 * @param height
+	 *            The height of the grid.
+	 * @param x
+	 *            The column of the cell.
+	 * @param y
+	 *            The row of the cell.
+	 * @param pNeighbours
+	 *            Array of at least 4 elements, receiving the indices of the neighbours.
+	 * @return The number of neighbours; cells outside of the grid are not neighbours.
 	 */
-	private Set<Point> getNeighbours(final SolarSystem pSolarSystem, final Point p)
+	private int getNeighbours(final int width, final int height, final int x, final int y, final int[] pNeighbours)
 	{
-		final Set<Point> directNeighbours = new HashSet<Point>();
-		final Point east = new Point(p.x + 1, p.y);
-		final Point west = new Point(p.x - 1, p.y);
-		final Point north = new Point(p.x, p.y + 1);
-		final Point south = new Point(p.x, p.y - 1);
-		if (p.y - 1 >= 0) {
-			directNeighbours.add(south);
+		int count = 0;
+		if (y - 1 >= 0) {
+			pNeighbours[count++] = x * height + y - 1;
 		}
-		if (p.y + 1 < pSolarSystem.getHeight()) {
-			directNeighbours.add(north);
+		if (y + 1 < height) {
+			pNeighbours[count++] = x * height + y + 1;
 		}
-		if (p.x - 1 >= 0) {
-			directNeighbours.add(west);
+		if (x - 1 >= 0) {
+			pNeighbours[count++] = (x - 1) * height + y;
 		}
-		if (p.x + 1 < pSolarSystem.getWidth()) {
-			directNeighbours.add(east);
+		if (x + 1 < width) {
+			pNeighbours[count++] = (x + 1) * height + y;
 		}
-		return directNeighbours;
+		return count;
 	}
 
 	/**
-	 * Returns a list of points where a ship can move to.
+	 * Returns where a ship can move to this turn. The map is cached on the ship, and only computed again once the ship or the
+	 * occupancy of its solar system changes.
 	 * 
 	 * @param pShip
 	 *            A ship located in a solarSystem.
-	 * @return A list of points where the specified ship can move within the solar system.
+	 * @return The reachability map of the ship.
 	 */
-	public Set<GridLocation> getValidDestinations(final Ship pShip)
+	public ReachabilityMap getReachability(final Ship pShip)
 	{
-		final Point shipOrigin = pShip.getLocation().origin;
-		final Dimension shipDimension = pShip.getLocation().dimension;
 		final SolarSystem shipSolarSystem = (SolarSystem) pShip.getContainer();
-		final Dimension solarDimension = new Dimension(shipSolarSystem.getWidth(), shipSolarSystem.getHeight());
-		final Set<Point> graphFrontier = new HashSet<Point>();
-		final Set<Point> newFrontier = new HashSet<Point>();
-		final Set<Point> validDestinations = new HashSet<Point>();
-		GridLocation currentLocation = null;
-		graphFrontier.addAll(getNeighbours(shipSolarSystem, shipOrigin));
-		// Implementation of a limited-depth breadth-first search.
-		for (int i = 0; i < pShip.getSpeed(); i++) {
-			// Traverse all the points contained in the frontier.
-			for (final Point p : graphFrontier) {
-				currentLocation = new GridLocation(p, shipDimension);
-				if (currentLocation.fitsIn(solarDimension)) {
-					if (isLocationClear(pShip, currentLocation)) {
-						// Point is not occupied nor already known as valid.
-						validDestinations.add(p);
-						// Add the neighbours to the new frontier.
-						newFrontier.addAll(getNeighbours(shipSolarSystem, p));
-					}
-				}
-			}
-			/*
-			 * Remove all already known points from the new frontier, clear the old frontier and replace with new frontier.
-			 */
-			newFrontier.removeAll(validDestinations);
-			graphFrontier.clear();
-			graphFrontier.addAll(newFrontier);
-			newFrontier.clear();
+		ReachabilityMap reachability = pShip.getReachability();
+		if (reachability == null || !reachability.isCurrent(pShip, shipSolarSystem)) {
+			final SearchGrid grid = sSearchGrids.get();
+			grid.reset(shipSolarSystem, pShip);
+			reachability = new ReachabilityMap(pShip, shipSolarSystem, grid);
+			pShip.setReachability(reachability);
 		}
-		final Set<GridLocation> tempResults = new HashSet<GridLocation>();
-		for (final Point p : validDestinations) {
-			tempResults.add(new GridLocation(p, shipDimension));
-		}
-		return tempResults;
+		return reachability;
 	}
 
 	/**
-	 * Returns the PathNode with the lowest totalCost. Prevents the use of a priority queue to improve efficiency.
+	 * Returns a list of points where a ship can move to.
 	 * 
-	 * @param pOpen
-	 *            An ArrayList of PathNodes that are in the open list.
-	 * @return The PathNode with the lowest totalCost.
+	 * @param pShip
+	 *            A ship located in a solarSystem.
+	 * @return A list of points where the specified ship can move within the solar system.
 	 */
-	private PathNode grabLowest(final List<PathNode> pOpen)
+	public Set<GridLocation> getValidDestinations(final Ship pShip)
 	{
-		PathNode lowestNode = pOpen.get(0);
-		for (final PathNode p : pOpen) {
-			if (p.totalCost < lowestNode.totalCost) {
-				lowestNode = p;
-			}
-		}
-		return lowestNode;
+		return new HashSet<GridLocation>(getReachability(pShip).getValidDestinations());
 	}
 
 	/**
@@ -350,34 +579,46 @@ public class Pathfinder
 	 *            The destination point.
 	 * @param pShip
 	 *            The Ship executing the move.
+	 * @param pClearance
+	 *            Where the ship fits in its solar system.
 	 * @return True if route is clear of props, false otherwise.
 	 */
-	private boolean isDirectRouteClear(final Point pOrigin, final Point pDestination, final Ship pShip)
+	private boolean isDirectRouteClear(final Point pOrigin, final Point pDestination, final Ship pShip,
+			final Clearance pClearance)
 	{
-		for (final GridLocation loc : getDirectRoute(pOrigin, pDestination, pShip.getDimension())) {
-			if (!isLocationClear(pShip, loc)) {
+		// Same walk as getDirectRoute, without building the route
+		final Dimension dimension = pShip.getDimension();
+		int x0 = pOrigin.x;
+		int y0 = pOrigin.y;
+		final int x1 = pDestination.x;
+		final int y1 = pDestination.y;
+		final int deltax = Math.abs(x1 - x0);
+		final int deltay = Math.abs(y1 - y0);
+		final int steepx = x0 < x1 ? 1 : -1;
+		final int steepy = y0 < y1 ? 1 : -1;
+		int error = deltax - deltay;
+		while (true) {
+			if (!pClearance.isLocationClear(x0, y0, dimension)) {
 				return false;
 			}
-		}
-		return true;
-	}
-
-	/**
-	 * @param pShip
-	 *            The Ship
-	 * @param pLocation
-	 *            The Location to check
-	 * @return Whether pShip can fit in pLocation
-	 */
-	private boolean isLocationClear(final Ship pShip, final GridLocation pLocation)
-	{
-		final SolarSystem shipSolarSystem = (SolarSystem) pShip.getContainer();
-		for (final Prop p : shipSolarSystem.getPropsAt(pLocation)) {
-			if (!p.equals(pShip) && !p.ignorePathfinder()) {
+			if ((x0 == x1) && (y0 == y1)) {
+				return true;
+			}
+			final int error2 = 2 * error;
+			if (error2 > -deltay) {
+				error = error - deltay;
+				x0 = x0 + steepx;
+			}
+			if (error2 < deltax) {
+				error = error + deltax;
+				y0 = y0 + steepy;
+			}
+			if (error2 < deltax && error2 > -deltay
+					&& (!pClearance.isLocationClear(x0 - steepx, y0, dimension) || !pClearance.isLocationClear(x0,
+							y0 - steepy, dimension))) {
 				return false;
 			}
 		}
-		return true;
 	}
 
 	/**
@@ -385,17 +626,19 @@ public class Pathfinder
 	 * straight line between two points is clear or not. If it is, then all points in between are useless and are to be pruned.
 	 * 
 	 * @param pLongPath
-	 *            An ArrayList of PathNodes that needs to be pruned.
+	 *            A List of Points that needs to be pruned.
 	 * @param pShip
 	 *            The ship that will traverse this given path.
+	 * @param pClearance
+	 *            Where the ship fits in its solar system.
 	 */
-	private void prunePath(final List<PathNode> pLongPath, final Ship pShip)
+	private void prunePath(final List<Point> pLongPath, final Ship pShip, final Clearance pClearance)
 	{
-		final List<PathNode> nodesToPrune = new ArrayList<PathNode>();
-		PathNode current = pLongPath.get(0);
-		PathNode previous = null;
-		for (final PathNode p : pLongPath) {
-			if (isDirectRouteClear(current.getCoord(), p.getCoord(), pShip)) {
+		final List<Point> nodesToPrune = new ArrayList<Point>();
+		Point current = pLongPath.get(0);
+		Point previous = null;
+		for (final Point p : pLongPath) {
+			if (isDirectRouteClear(current, p, pShip, pClearance)) {
 				nodesToPrune.add(previous);
 			}
 			else {
@@ -409,19 +652,44 @@ public class Pathfinder
 	/**
 	 * Reconstruct the optimal path starting from the goal.
 	 * 
-	 * @param pCurrentNode
-	 *            Node currently being evaluated.
-	 * @return List of PathNodes containing the optimal path.
+	 * @param pGrid
+	 *            The search grid holding the path.
+	 * @param pGoal
+	 *            Index of the goal cell.
+	 * @return List of Points containing the optimal path, from the origin to the goal.
 	 */
-	private List<PathNode> reconstructPath(final PathNode pCurrentNode)
+	private List<Point> reconstructPath(final SearchGrid pGrid, final int pGoal)
 	{
-		if (pCurrentNode.parent != null) {
-			final List<PathNode> p = reconstructPath(pCurrentNode.parent);
-			p.add(pCurrentNode);
-			return p;
+		final List<Point> path = new ArrayList<Point>();
+		for (int cell = pGoal; cell != -1; cell = pGrid.aParent[cell]) {
+			path.add(new Point(cell / pGrid.aHeight, cell % pGrid.aHeight));
 		}
-		final List<PathNode> path = new ArrayList<PathNode>();
-		path.add(pCurrentNode);
+		Collections.reverse(path);
 		return path;
 	}
+
+	/**
+	 * Turns a path found on the grid into the path a ship follows: only the elbows are kept, and the cell of the ship itself is
+	 * left out.
+	 * 
+	 * @param pLongPath
+	 *            The cells along the path, from the ship to the goal.
+	 * @param pShip
+	 *            The ship that will traverse this path.
+	 * @param pClearance
+	 *            Where the ship fits in its solar system.
+	 * @return The GridLocations along the path.
+	 */
+	private List<GridLocation> toPath(final List<Point> pLongPath, final Ship pShip, final Clearance pClearance)
+	{
+		// PRUNE!!
+		prunePath(pLongPath, pShip, pClearance);
+		// Stupid conversion to GridLocations.
+		final List<GridLocation> finalResults = new ArrayList<GridLocation>(pLongPath.size());
+		for (final Point r : pLongPath) {
+			finalResults.add(new GridLocation(r.x, r.y, pShip.getDimension()));
+		}
+		finalResults.remove(pShip.getLocation());
+		return finalResults;
+	}
 }
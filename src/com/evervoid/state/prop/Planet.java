@@ -112,6 +112,7 @@ public class Planet extends Prop
 	public void addBuilding(final int slot, final Building building)
 	{
 		aBuildings.put(slot, building);
+		invalidateJson();
 	}
 
 	/**
@@ -125,6 +126,7 @@ public class Planet extends Prop
 	{
 		final int prevHealth = aCurrentHealth;
 		aCurrentHealth = MathUtils.clampInt(0, aCurrentHealth + amount, getMaxHealth());
+		invalidateJson();
 		for (final PlanetObserver obs : aObserverSet) {
 			obs.healthChanged(this, aCurrentHealth - prevHealth);
 		}
@@ -150,6 +152,16 @@ public class Planet extends Prop
 		}
 	}
 
+	@Override
+	protected Json buildJson()
+	{
+		final Json j = super.buildJson();
+		j.setAttribute("planettype", aData.getType());
+		j.setMapAttribute("buildings", aBuildings);
+		j.setAttribute("health", aCurrentHealth);
+		return j;
+	}
+
 	/**
 	 * Changes the owner of this Planet to be the parameter Player. Passing null or the current owner will have no effect.
 	 * 
@@ -162,7 +174,10 @@ public class Planet extends Prop
 			return; // No change
 		}
 		// change the player
+		final Player previousOwner = aOwner;
 		aOwner = player;
+		invalidateJson();
+		aState.planetOwnerChanged(this, previousOwner);
 		// Reset buildings
 		deleteBuildings();
 		// warn all observers
@@ -187,6 +202,7 @@ public class Planet extends Prop
 			toDelete.deregister();
 		}
 		aBuildings.put(slot, null);
+		invalidateJson();
 	}
 
 	/**
@@ -327,12 +343,12 @@ public class Planet extends Prop
 	 */
 	public ResourceAmount getResourceRate()
 	{
-		ResourceAmount income = aData.getResourceRate().populateWith(getState());
+		final ResourceAmount income = aData.getResourceRate().populateWith(getState());
 		for (final Building b : aBuildings.values()) {
 			if (b != null && b.isBuildingComplete()) {
 				final ResourceAmount bIncome = b.getIncomeRate();
 				if (bIncome != null) {
-					income = income.add(bIncome);
+					income.addLocal(bIncome);
 				}
 			}
 		}
@@ -520,14 +536,4 @@ public class Planet extends Prop
 		removeHealth(Math.max(0, damage - aCurrentShields));
 		removeShields(Math.min(aCurrentShields, damage));
 	}
-
-	@Override
-	public Json toJson()
-	{
-		final Json j = super.toJson();
-		j.setAttribute("planettype", aData.getType());
-		j.setMapAttribute("buildings", aBuildings);
-		j.setAttribute("health", aCurrentHealth);
-		return j;
-	}
 }
@@ -104,6 +104,15 @@ public class Portal extends Prop
 		aState.registerProp(this, aContainer);
 	}
 
+	@Override
+	protected Json buildJson()
+	{
+		final Json j = super.buildJson();
+		j.setAttribute("destination", aWormhole.getID());
+		j.setAttribute("orientation", aOrientation.ordinal());
+		return j;
+	}
+
 	/**
 	 * @param ss
 	 *            The SolarSystem that this Portal may connect to
@@ -187,13 +196,4 @@ public class Portal extends Prop
 	{
 		return aOrientation.equals(GridEdge.TOP) || aOrientation.equals(GridEdge.BOTTOM);
 	}
-
-	@Override
-	public Json toJson()
-	{
-		final Json j = super.toJson();
-		j.setAttribute("destination", aWormhole.getID());
-		j.setAttribute("orientation", aOrientation.ordinal());
-		return j;
-	}
 }
@@ -28,6 +28,12 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 	 * The ID with which this Prop has been registered to the State.
 	 */
 	protected final int aID;
+	/**
+	 * The Json representation of this Prop as it was last built, or null if the Prop has changed since. It is only rebuilt
+	 * after a change, so that the representations of a state taken one after the other share the subtrees of the Props that
+	 * did not change, along with their cached hashes; it must therefore never be modified.
+	 */
+	private Json aJson = null;
 	/**
 	 * The location of this Prop within the container if it applies.
 	 */
@@ -84,6 +90,23 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 		aContainer = state.getSolarSystem(j.getIntAttribute("container"));
 	}
 
+	/**
+	 * Builds a new Json representation of this Prop. Subclasses add their own attributes to the one built by their parent
+	 * class.
+	 * 
+	 * @return The Json representation of this Prop
+	 */
+	protected Json buildJson()
+	{
+		final Json j = new Json();
+		j.setAttribute("player", aOwner.getName());
+		j.setAttribute("location", aLocation);
+		j.setAttribute("id", aID);
+		j.setAttribute("proptype", getPropType());
+		j.setAttribute("container", aContainer.getID());
+		return j;
+	}
+
 	@Override
 	public int compareTo(final Prop other)
 	{
@@ -98,6 +121,7 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 		if (aContainer == null) {
 			return;
 		}
+		invalidateJson();
 		aContainer.removeElem(this);
 		aContainer = null;
 	}
@@ -113,6 +137,7 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 	{
 		if (container != null && container.addElem(this)) {
 			aContainer = container;
+			invalidateJson();
 			return true;
 		}
 		// failed to enter container
@@ -267,6 +292,19 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 		return false;
 	}
 
+	/**
+	 * Forgets the cached Json representation of this Prop. This must be called whenever anything that is part of the
+	 * representation changes. Ships include the representation of their cargo in theirs, so the representation of the Ship
+	 * carrying this Prop, if any, is forgotten as well.
+	 */
+	public void invalidateJson()
+	{
+		aJson = null;
+		if (aContainer instanceof Prop) {
+			((Prop) aContainer).invalidateJson();
+		}
+	}
+
 	/**
 	 * @param location
 	 *            The location to check.
@@ -296,15 +334,12 @@ public abstract class Prop implements Jsonable, Comparable<Prop>
 	}
 
 	@Override
-	public Json toJson()
+	public final Json toJson()
 	{
-		final Json j = new Json();
-		j.setAttribute("player", aOwner.getName());
-		j.setAttribute("location", aLocation);
-		j.setAttribute("id", aID);
-		j.setAttribute("proptype", getPropType());
-		j.setAttribute("container", aContainer.getID());
-		return j;
+		if (aJson == null) {
+			aJson = buildJson();
+		}
+		return aJson;
 	}
 
 	@Override
@@ -0,0 +1,292 @@
+package com.evervoid.state.prop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.evervoid.state.SolarSystem;
+import com.evervoid.state.geometry.Dimension;
+import com.evervoid.state.geometry.GridLocation;
+import com.evervoid.state.geometry.Point;
+
+/**
+ * Where a {@link Ship} can move within its {@link SolarSystem} this turn: the distance from the ship to every cell it can reach
+ * with its speed, in a window of the grid around the ship. A ReachabilityMap stays current as long as neither the ship nor
+ * the occupancy of its SolarSystem changes; the {@link Pathfinder} caches it on the ship, so that selecting a ship again, or
+ * validating and finding the path of its move, does not search the grid again.
+ */
+public class ReachabilityMap implements Pathfinder.Clearance
+{
+	/**
+	 * Bottom row of the window.
+	 */
+	private final int aBottom;
+	/**
+	 * Whether the ship fits at each cell of the window, column by column (the cell at (x, y) is at index (x - left) * height
+	 * + y - bottom).
+	 */
+	private final boolean[] aClear;
+	/**
+	 * Valid destinations, built the first time they are requested.
+	 */
+	private volatile Set<GridLocation> aDestinations;
+	/**
+	 * Dimension of the ship.
+	 */
+	private final Dimension aDimension;
+	/**
+	 * Distance from the ship to each cell of the window, in the same order as {@link #aClear}; -1 for the cells the ship
+	 * cannot reach.
+	 */
+	private final short[] aDistances;
+	/**
+	 * Height of the window.
+	 */
+	private final int aHeight;
+	/**
+	 * Leftmost column of the window.
+	 */
+	private final int aLeft;
+	/**
+	 * Location of the ship.
+	 */
+	private final GridLocation aLocation;
+	/**
+	 * Whether the ship can move back to where it is, by leaving and returning.
+	 */
+	private final boolean aOriginReachable;
+	/**
+	 * The SolarSystem the ship is in.
+	 */
+	private final SolarSystem aSolarSystem;
+	/**
+	 * Speed of the ship.
+	 */
+	private final int aSpeed;
+	/**
+	 * Occupancy version of the SolarSystem when the map was computed.
+	 */
+	private final int aVersion;
+	/**
+	 * Width of the window.
+	 */
+	private final int aWidth;
+
+	/**
+	 * Computes the reachability map of a ship with a breadth-first search limited to its speed. The window extends one cell
+	 * past the reach of the ship on every side (within the grid), so that the straight lines between reachable cells can be
+	 * checked against it as well.
+	 * 
+	 * @param ship
+	 *            The ship
+	 * @param solarSystem
+	 *            The SolarSystem the ship is in
+	 * @param clearance
+	 *            Tells where the ship fits in the SolarSystem
+	 */
+	ReachabilityMap(final Ship ship, final SolarSystem solarSystem, final Pathfinder.Clearance clearance)
+	{
+		aSolarSystem = solarSystem;
+		aVersion = solarSystem.getOccupancyVersion();
+		aLocation = ship.getLocation().clone();
+		aDimension = aLocation.dimension;
+		aSpeed = ship.getSpeed();
+		final int reach = Math.min(aSpeed + 1, Math.max(solarSystem.getWidth(), solarSystem.getHeight()));
+		aLeft = Math.max(aLocation.getX() - reach, 0);
+		aBottom = Math.max(aLocation.getY() - reach, 0);
+		aWidth = Math.max(Math.min(aLocation.getX() + reach + 1, solarSystem.getWidth()) - aLeft, 0);
+		aHeight = Math.max(Math.min(aLocation.getY() + reach + 1, solarSystem.getHeight()) - aBottom, 0);
+		aClear = new boolean[aWidth * aHeight];
+		aDistances = new short[aWidth * aHeight];
+		for (int x = 0; x < aWidth; x++) {
+			for (int y = 0; y < aHeight; y++) {
+				aClear[x * aHeight + y] = clearance.isLocationClear(aLeft + x, aBottom + y, aDimension);
+				aDistances[x * aHeight + y] = -1;
+			}
+		}
+		aOriginReachable = search();
+	}
+
+	/**
+	 * @param x
+	 *            Column of a cell
+	 * @param y
+	 *            Row of a cell
+	 * @return The distance from the ship to the cell, or -1 if the ship cannot reach it this turn; the cell of the ship itself
+	 *         is at distance 0
+	 */
+	public int getDistance(final int x, final int y)
+	{
+		final int index = getIndex(x, y);
+		return index < 0 ? -1 : aDistances[index];
+	}
+
+	/**
+	 * @param x
+	 *            Column of a cell
+	 * @param y
+	 *            Row of a cell
+	 * @return The index of the cell in the window, or -1 if it lies outside of it
+	 */
+	private int getIndex(final int x, final int y)
+	{
+		if (x < aLeft || y < aBottom || x >= aLeft + aWidth || y >= aBottom + aHeight) {
+			return -1;
+		}
+		return (x - aLeft) * aHeight + y - aBottom;
+	}
+
+	/**
+	 * Builds a shortest path to a reachable cell, by walking the distances back down from it.
+	 * 
+	 * @param x
+	 *            Column of the cell
+	 * @param y
+	 *            Row of the cell
+	 * @return The cells along the path, from the ship to the given cell; null if the cell cannot be reached
+	 */
+	List<Point> getPath(final int x, final int y)
+	{
+		int distance = getDistance(x, y);
+		if (distance < 0) {
+			return null;
+		}
+		final List<Point> path = new ArrayList<Point>(distance + 1);
+		int cx = x;
+		int cy = y;
+		path.add(new Point(cx, cy));
+		while (distance > 0) {
+			distance--;
+			if (getDistance(cx, cy - 1) == distance) {
+				cy--;
+			}
+			else if (getDistance(cx, cy + 1) == distance) {
+				cy++;
+			}
+			else if (getDistance(cx - 1, cy) == distance) {
+				cx--;
+			}
+			else {
+				cx++;
+			}
+			path.add(new Point(cx, cy));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * @return The set of all GridLocations to which the ship can move; it must not be modified
+	 */
+	public Set<GridLocation> getValidDestinations()
+	{
+		Set<GridLocation> destinations = aDestinations;
+		if (destinations == null) {
+			destinations = new HashSet<GridLocation>();
+			for (int x = 0; x < aWidth; x++) {
+				for (int y = 0; y < aHeight; y++) {
+					if (isValidDestination(aLeft + x, aBottom + y)) {
+						destinations.add(new GridLocation(aLeft + x, aBottom + y, aDimension));
+					}
+				}
+			}
+			destinations = Collections.unmodifiableSet(destinations);
+			aDestinations = destinations;
+		}
+		return destinations;
+	}
+
+	/**
+	 * @param ship
+	 *            A ship
+	 * @param solarSystem
+	 *            The SolarSystem the ship is in
+	 * @return Whether this map still describes where the ship can move
+	 */
+	boolean isCurrent(final Ship ship, final SolarSystem solarSystem)
+	{
+		return aSolarSystem == solarSystem && aVersion == solarSystem.getOccupancyVersion() && aSpeed == ship.getSpeed()
+				&& aLocation.equals(ship.getLocation());
+	}
+
+	/**
+	 * Only answers for the dimension of the ship; cells outside of the window are assumed not to fit.
+	 */
+	@Override
+	public boolean isLocationClear(final int x, final int y, final Dimension dimension)
+	{
+		final int index = getIndex(x, y);
+		return index >= 0 && aClear[index] && dimension.equals(aDimension);
+	}
+
+	/**
+	 * @param location
+	 *            A location
+	 * @return Whether the ship can move to the location this turn
+	 */
+	public boolean isValidDestination(final GridLocation location)
+	{
+		return location.dimension.equals(aDimension) && isValidDestination(location.getX(), location.getY());
+	}
+
+	/**
+	 * @param x
+	 *            Column of the cell
+	 * @param y
+	 *            Row of the cell
+	 * @return Whether the ship can move to the cell this turn
+	 */
+	private boolean isValidDestination(final int x, final int y)
+	{
+		if (x == aLocation.getX() && y == aLocation.getY()) {
+			return aOriginReachable && isLocationClear(x, y, aDimension);
+		}
+		return getDistance(x, y) > 0;
+	}
+
+	/**
+	 * Fills in the distances, with a breadth-first search from the ship.
+	 * 
+	 * @return Whether the ship can come back to where it is, if it can leave it and has the speed to return
+	 */
+	private boolean search()
+	{
+		final int origin = getIndex(aLocation.getX(), aLocation.getY());
+		if (origin < 0) {
+			return false;
+		}
+		boolean originReachable = false;
+		final int[] queue = new int[aDistances.length];
+		int head = 0;
+		int tail = 0;
+		aDistances[origin] = 0;
+		queue[tail++] = origin;
+		while (head < tail) {
+			final int current = queue[head++];
+			final int distance = aDistances[current];
+			if (distance >= aSpeed) {
+				break; // Cells are queued by increasing distance
+			}
+			final int x = current / aHeight;
+			final int y = current % aHeight;
+			for (int i = 0; i < 4; i++) {
+				final int nx = i < 2 ? x : x + (i == 2 ? -1 : 1);
+				final int ny = i < 2 ? y + (i == 0 ? -1 : 1) : y;
+				if (nx < 0 || ny < 0 || nx >= aWidth || ny >= aHeight) {
+					continue;
+				}
+				final int neighbour = nx * aHeight + ny;
+				if (neighbour == origin) {
+					originReachable = true;
+				}
+				else if (aDistances[neighbour] < 0 && aClear[neighbour]) {
+					aDistances[neighbour] = (short) (distance + 1);
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+		return originReachable;
+	}
+}
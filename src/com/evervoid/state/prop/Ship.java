@@ -48,6 +48,10 @@ public class Ship extends Prop implements EVContainer<Prop>
 	 * @invariant In range [ 0, aData.getRadiation(<current research>).
 	 */
 	private int aRadiation;
+	/**
+	 * Where this ship can move this turn, as last computed by the {@link Pathfinder}; may be outdated.
+	 */
+	private ReachabilityMap aReachability;
 	/**
 	 * The current number of shields on this ship
 	 * 
@@ -143,6 +147,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 	public void addHealth(final int amount)
 	{
 		aHealth = MathUtils.clampInt(0, aHealth + amount, getMaxHealth());
+		invalidateJson();
 		for (final ShipObserver observer : aObserverList) {
 			observer.shipHealthChanged(this, aHealth);
 		}
@@ -161,6 +166,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 	public void addRadiation(final int amount)
 	{
 		aRadiation = MathUtils.clampInt(0, aRadiation + amount, getMaxRadiation());
+		invalidateJson();
 	}
 
 	/**
@@ -173,11 +179,24 @@ public class Ship extends Prop implements EVContainer<Prop>
 	public void addShields(final int amount)
 	{
 		aShields = MathUtils.clampInt(0, aShields + amount, getMaxShields());
+		invalidateJson();
 		for (final ShipObserver observer : aObserverList) {
 			observer.shipShieldsChanged(this, aShields);
 		}
 	}
 
+	@Override
+	protected Json buildJson()
+	{
+		final Json j = super.buildJson();
+		j.setAttribute("health", aHealth);
+		j.setAttribute("radiation", aRadiation);
+		j.setAttribute("shields", aShields);
+		j.setAttribute("shiptype", aData.getType());
+		j.setListAttribute("shipCargo", aShipCargo);
+		return j;
+	}
+
 	/**
 	 * @param ship
 	 *            The container Ship
@@ -266,6 +285,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 	public void die()
 	{
 		aHealth = 0;
+		invalidateJson();
 		// warn all observers
 		for (final ShipObserver observer : aObserverList) {
 			observer.shipDestroyed(this);
@@ -348,6 +368,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 	public void enterContainer(final EVContainer<Prop> container, final GridLocation destination)
 	{
 		aLocation = destination;
+		invalidateJson();
 		enterContainer(container);
 	}
 
@@ -482,6 +503,14 @@ public class Ship extends Prop implements EVContainer<Prop>
 		// FIXME - do correctly. Logarithmically based on distance (with a cap)
 	}
 
+	/**
+	 * @return The reachability map last computed for this ship, or null; see {@link Pathfinder#getReachability(Ship)}
+	 */
+	ReachabilityMap getReachability()
+	{
+		return aReachability;
+	}
+
 	/**
 	 * @return The current shield regeneration rate.
 	 */
@@ -646,6 +675,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 		}
 		leaveContainer();
 		aLocation = destinationLocation;
+		invalidateJson();
 		enterContainer(ss);
 	}
 
@@ -685,6 +715,7 @@ public class Ship extends Prop implements EVContainer<Prop>
 	{
 		final GridLocation oldLocation = aLocation;
 		aLocation = destination;
+		invalidateJson();
 		for (final ShipObserver observer : aObserverList) {
 			observer.shipMoved(this, oldLocation, path.clone());
 		}
@@ -743,6 +774,17 @@ public class Ship extends Prop implements EVContainer<Prop>
 		addShields(-amount);
 	}
 
+	/**
+	 * Caches the reachability map of this ship.
+	 * 
+	 * @param reachability
+	 *            The reachability map, computed for the current state of the ship and its solar system
+	 */
+	void setReachability(final ReachabilityMap reachability)
+	{
+		aReachability = reachability;
+	}
+
 	/**
 	 * Simple function needed to pass the event to all of the ship's observers
 	 * 
@@ -767,16 +809,4 @@ public class Ship extends Prop implements EVContainer<Prop>
 		removeHealth(Math.max(0, damage - aShields));
 		removeShields(Math.min(aShields, damage));
 	}
-
-	@Override
-	public Json toJson()
-	{
-		final Json j = super.toJson();
-		j.setAttribute("health", aHealth);
-		j.setAttribute("radiation", aRadiation);
-		j.setAttribute("shields", aShields);
-		j.setAttribute("shiptype", aData.getType());
-		j.setListAttribute("shipCargo", aShipCargo);
-		return j;
-	}
 }
@@ -1,14 +1,12 @@
 package com.evervoid.state.prop;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import com.evervoid.state.SolarSystem;
 import com.evervoid.state.action.ship.MoveShip;
 import com.evervoid.state.geometry.GridLocation;
-import com.evervoid.state.geometry.Point;
+import com.evervoid.state.geometry.PointSet;
 
 /**
  * A ShipPath represents the path a {@link Ship} takes along a {@link SolarSystem} while moving. This path must not intersect
@@ -23,7 +21,7 @@ public class ShipPath
 	/**
 	 * Set of Points traversed by this path
 	 */
-	private final Set<Point> aPoints;
+	private final PointSet aPoints;
 	/**
 	 * The Solar System in which the path will be executed.
 	 */
@@ -52,12 +50,12 @@ public class ShipPath
 			aPath = path;
 		}
 		aSolarSystem = solarsystem;
-		aPoints = new HashSet<Point>();
+		aPoints = new PointSet();
 		GridLocation previous = origin;
 		final Pathfinder pathFinder = new Pathfinder();
 		for (final GridLocation loc : aPath) {
 			for (final GridLocation subloc : pathFinder.getDirectRoute(previous.origin, loc.origin, loc.dimension)) {
-				aPoints.addAll(subloc.getPoints());
+				aPoints.add(subloc);
 			}
 			previous = loc;
 		}
@@ -72,7 +70,7 @@ public class ShipPath
 	private ShipPath(final ShipPath origin)
 	{
 		aPath = new ArrayList<GridLocation>(origin.aPath);
-		aPoints = new HashSet<Point>(origin.aPoints);
+		aPoints = new PointSet(origin.aPoints);
 		aSolarSystem = origin.aSolarSystem;
 	}
 
@@ -91,17 +89,10 @@ public class ShipPath
 	 *            The SolarSystem in which collisions are being checked for
 	 * @return True if no collisions were detected between this set of points and all points on the path.
 	 */
-	public boolean collidesWith(final Set<Point> points, final SolarSystem solarSystem)
+	public boolean collidesWith(final PointSet points, final SolarSystem solarSystem)
 	{
-		if (getSolarSystem().equals(solarSystem)) {
-			// no point comparing if we're not in the same solar system
-			for (final Point p : aPoints) {
-				if (points.contains(p)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		// no point comparing if we're not in the same solar system
+		return getSolarSystem().equals(solarSystem) && aPoints.intersects(points);
 	}
 
 	/**
@@ -116,10 +107,7 @@ public class ShipPath
 		if (other == null) {
 			return false;
 		}
-		if (other.aPoints.size() < aPoints.size()) { // If other has less points
-			return other.collidesWith(this); // Then switch order of comparison
-		}
-		// Else, do the comparison (the current GridPath has less points than the other)
+		// The intersection is checked from the smaller set of points
 		return collidesWith(other.getPoints(), other.getSolarSystem());
 	}
 
@@ -134,7 +122,7 @@ public class ShipPath
 	/**
 	 * @return The set of all points the ship will hit on the way along the path.
 	 */
-	public Set<Point> getPoints()
+	public PointSet getPoints()
 	{
 		return aPoints;
 	}
@@ -74,6 +74,13 @@ public class Star extends Prop
 		aData = aState.getStarData(j.getStringAttribute("startype"));
 	}
 
+	@Override
+	protected Json buildJson()
+	{
+		final Json j = super.buildJson();
+		return j.setAttribute("startype", aData.getType());
+	}
+
 	/**
 	 * @return The SpriteData of the border halo surrounding the Star.
 	 */
@@ -121,11 +128,4 @@ public class Star extends Prop
 	{
 		return aData.getSprite();
 	}
-
-	@Override
-	public Json toJson()
-	{
-		final Json j = super.toJson();
-		return j.setAttribute("startype", aData.getType());
-	}
 }
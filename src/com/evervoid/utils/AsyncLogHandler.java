@@ -0,0 +1,191 @@
+package com.evervoid.utils;
+
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A Handler that puts LogRecords in a bounded ring buffer and returns right away, so that logging never waits on a file or
+ * console. A daemon thread drains the buffer into the wrapped Handlers, in batches. When the buffer is full, records are
+ * dropped rather than blocking the thread logging them; how many were dropped is logged once the buffer has been drained.
+ */
+public class AsyncLogHandler extends Handler implements Runnable
+{
+	/**
+	 * The ring buffer; records are stored from aHead on, wrapping around.
+	 */
+	private final LogRecord[] aBuffer;
+	/**
+	 * Whether the Handler has been closed; the remaining records are still written.
+	 */
+	private boolean aClosed = false;
+	/**
+	 * Number of records dropped since the buffer was last drained.
+	 */
+	private int aDropped = 0;
+	/**
+	 * The Handlers the records are written to.
+	 */
+	private final Handler[] aHandlers;
+	/**
+	 * Index of the oldest record in the buffer.
+	 */
+	private int aHead = 0;
+	/**
+	 * Number of records in the buffer.
+	 */
+	private int aSize = 0;
+	/**
+	 * The thread draining the buffer.
+	 */
+	private final Thread aThread;
+	/**
+	 * Whether the thread is writing a batch it took out of the buffer.
+	 */
+	private boolean aWriting = false;
+
+	/**
+	 * Creates the Handler and starts its thread.
+	 * 
+	 * @param capacity
+	 *            The number of records the buffer can hold
+	 * @param handlers
+	 *            The Handlers to write the records to
+	 */
+	public AsyncLogHandler(final int capacity, final Handler... handlers)
+	{
+		aBuffer = new LogRecord[capacity];
+		aHandlers = handlers.clone();
+		aThread = new Thread(this, "everVoid log writer");
+		aThread.setDaemon(true);
+		aThread.start();
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized (this) {
+			aClosed = true;
+			notifyAll();
+		}
+		try {
+			aThread.join();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (final Handler handler : aHandlers) {
+			handler.close();
+		}
+	}
+
+	@Override
+	public void flush()
+	{
+		synchronized (this) {
+			while ((aSize > 0 || aWriting) && aThread.isAlive()) {
+				try {
+					wait();
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		for (final Handler handler : aHandlers) {
+			handler.flush();
+		}
+	}
+
+	/**
+	 * @return The number of records waiting to be written
+	 */
+	public synchronized int getPending()
+	{
+		return aSize;
+	}
+
+	@Override
+	public synchronized void publish(final LogRecord record)
+	{
+		if (aClosed) {
+			return;
+		}
+		if (aSize == aBuffer.length) {
+			aDropped++;
+			return;
+		}
+		aBuffer[(aHead + aSize) % aBuffer.length] = record;
+		aSize++;
+		if (aSize == 1) {
+			notifyAll();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		while (true) {
+			final LogRecord[] batch;
+			final int dropped;
+			synchronized (this) {
+				while (aSize == 0 && !aClosed) {
+					try {
+						wait();
+					}
+					catch (final InterruptedException e) {
+						// Only closing stops the thread
+					}
+				}
+				if (aSize == 0) {
+					notifyAll();
+					return;
+				}
+				batch = new LogRecord[aSize];
+				for (int i = 0; i < aSize; i++) {
+					final int index = (aHead + i) % aBuffer.length;
+					batch[i] = aBuffer[index];
+					aBuffer[index] = null;
+				}
+				aHead = (aHead + aSize) % aBuffer.length;
+				aSize = 0;
+				dropped = aDropped;
+				aDropped = 0;
+				aWriting = true;
+			}
+			for (final LogRecord record : batch) {
+				write(record);
+			}
+			if (dropped > 0) {
+				final LogRecord record = new LogRecord(Level.WARNING, "Dropped " + dropped
+						+ " log records, the log buffer was full");
+				record.setSourceClassName(AsyncLogHandler.class.getName());
+				write(record);
+			}
+			synchronized (this) {
+				aWriting = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Writes a record to all the Handlers; each of them decides whether it is loggable.
+	 * 
+	 * @param record
+	 *            The record to write
+	 */
+	private void write(final LogRecord record)
+	{
+		for (final Handler handler : aHandlers) {
+			try {
+				handler.publish(record);
+			}
+			catch (final RuntimeException e) {
+				reportError(null, e, ErrorManager.WRITE_FAILURE);
+			}
+		}
+	}
+}
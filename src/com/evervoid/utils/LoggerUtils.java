@@ -1,48 +1,148 @@
 package com.evervoid.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 /**
- * This class initializes the Logger to be used by all of everVoid. All logs are piped to a log file, located at
- * /%APPDIR%/everVoid/everVoid.log, the actual location is defined in ResourceUtils. The file is overwritten at each
- * time the
- * program is launches anew.
+ * This class holds the logging pipeline used by all of everVoid. All logs are piped to a log file, located at
+ * /%APPDIR%/everVoid/everVoid.log, the actual location is defined in ResourceUtils, and to the handlers of the root Logger
+ * (the console). The file is overwritten at each time the program is launches anew.
+ * <p>
+ * Every message belongs to a category, each of which has its own level; messages below the level of their category are
+ * discarded before their text is built. Levels can be changed at runtime through {@link #setLevel(String, Level)}, or set at
+ * launch through the "evervoid.log" (all categories) and "evervoid.log.&lt;category&gt;" system properties. Messages whose text
+ * is expensive to build should be passed as a {@link LogMessage}, or logged behind {@link #isLoggable(String, Level)}.
+ * <p>
+ * Messages are written asynchronously by an {@link AsyncLogHandler}, so logging never waits on the file or console.
  */
 public class LoggerUtils
 {
     /**
-     * The default logger to be used by all of everVoid.
+     * A message whose text is only built if it is going to be logged.
      */
-    public static Logger sEverVoidLogger = null;
+    public interface LogMessage
+    {
+        /**
+         * @return The text of the message
+         */
+        public String build();
+    }
+
+    /**
+     * Number of messages that can wait to be written before new ones are dropped.
+     */
+    private static final int sBufferSize = 4096;
+    /**
+     * The category of messages that do not specify one.
+     */
+    public static final String sDefaultCategory = "evervoid";
+    /**
+     * The level of categories that do not have one of their own.
+     */
+    private static volatile Level sDefaultLevel = Level.INFO;
+    /**
+     * The category of the game engine on the server.
+     */
+    public static final String sEngineCategory = "engine";
+    /**
+     * The handler all messages go through, created on first use.
+     */
+    private static AsyncLogHandler sHandler = null;
+    /**
+     * The levels of the categories that have one of their own.
+     */
+    private static final Map<String, Level> sLevels = new ConcurrentHashMap<String, Level>();
+    /**
+     * The category of the messages sent and received over the network.
+     */
+    public static final String sNetworkCategory = "network";
+    /**
+     * Prefix of the system properties setting levels.
+     */
+    private static final String sPropertyPrefix = "evervoid.log";
+    static {
+        for (final String property : System.getProperties().stringPropertyNames()) {
+            if (!property.equals(sPropertyPrefix) && !property.startsWith(sPropertyPrefix + ".")) {
+                continue;
+            }
+            try {
+                final Level level = Level.parse(System.getProperty(property));
+                if (property.equals(sPropertyPrefix)) {
+                    sDefaultLevel = level;
+                }
+                else {
+                    sLevels.put(property.substring(sPropertyPrefix.length() + 1), level);
+                }
+            } catch (final IllegalArgumentException e) {
+                System.err.println("Ignoring invalid log level " + System.getProperty(property) + " for " + property);
+            }
+        }
+    }
 
     /**
-     * Creates the logger if that has not already been done, then returns the logger for use.
+     * Waits for all the messages logged so far to be written.
+     */
+    public static void flush()
+    {
+        getHandler().flush();
+    }
+
+    /**
+     * Creates the logging pipeline if that has not already been done, then returns its handler.
      * 
-     * @return The logger.
+     * @return The handler.
      */
-    private static Logger getLogger()
+    private static synchronized AsyncLogHandler getHandler()
     {
-        if (sEverVoidLogger == null) {
-            // we have not created a logger yet, do so.
-            sEverVoidLogger = Logger.getLogger(LoggerUtils.class.getName());
-            sEverVoidLogger.setLevel(Level.ALL);
+        if (sHandler == null) {
+            final List<Handler> handlers = new ArrayList<Handler>();
             try {
                 // attempt to pipe the logs to the everVoid log file
                 final FileHandler fh = new FileHandler(ResourceUtils.getAppDir() + "everVoid.log", false);
                 fh.setFormatter(new SimpleFormatter());
-                sEverVoidLogger.addHandler(fh);
+                fh.setLevel(Level.ALL);
+                handlers.add(fh);
             } catch (final Exception e) {
                 // well shit
                 e.printStackTrace();
                 // maybe someone's listening
-                sEverVoidLogger.warning("Could not open log file at " + ResourceUtils.getAppDir() + "everVoid.log");
+                Logger.getLogger(LoggerUtils.class.getName()).warning(
+                        "Could not open log file at " + ResourceUtils.getAppDir() + "everVoid.log");
+            }
+            for (final Handler handler : Logger.getLogger("").getHandlers()) {
+                handlers.add(handler);
             }
+            sHandler = new AsyncLogHandler(sBufferSize, handlers.toArray(new Handler[handlers.size()]));
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    // write out whatever is left in the buffer
+                    sHandler.close();
+                }
+            });
         }
-        // return the logger for use
-        return sEverVoidLogger;
+        return sHandler;
+    }
+
+    /**
+     * @param category
+     *            The category
+     * @return The level of the category
+     */
+    public static Level getLevel(final String category)
+    {
+        final Level level = sLevels.get(category);
+        return level == null ? sDefaultLevel : level;
     }
 
     /**
@@ -53,8 +153,124 @@ public class LoggerUtils
      */
     public static void info(final String msg)
     {
-        // use getLogger() in case the Logger hasn't been created yet
-        getLogger().info(msg);
+        log(sDefaultCategory, Level.INFO, msg);
+    }
+
+    /**
+     * @param category
+     *            The category of the message
+     * @param level
+     *            The level of the message
+     * @return Whether a message of this level is logged in this category
+     */
+    public static boolean isLoggable(final String category, final Level level)
+    {
+        final Level enabled = getLevel(category);
+        return enabled != Level.OFF && level.intValue() >= enabled.intValue();
+    }
+
+    /**
+     * Logs a message, if its level is enabled in its category. The text of the message is only built if it is logged.
+     * 
+     * @param category
+     *            The category of the message
+     * @param level
+     *            The level of the message
+     * @param msg
+     *            The message to log
+     */
+    public static void log(final String category, final Level level, final LogMessage msg)
+    {
+        if (isLoggable(category, level)) {
+            publish(category, level, msg.build(), null);
+        }
+    }
+
+    /**
+     * Logs a message, if its level is enabled in its category.
+     * 
+     * @param category
+     *            The category of the message
+     * @param level
+     *            The level of the message
+     * @param msg
+     *            The message to log
+     */
+    public static void log(final String category, final Level level, final String msg)
+    {
+        if (isLoggable(category, level)) {
+            publish(category, level, msg, null);
+        }
+    }
+
+    /**
+     * Logs a message and a throwable, if the level is enabled in the category.
+     * 
+     * @param category
+     *            The category of the message
+     * @param level
+     *            The level of the message
+     * @param msg
+     *            The message to log
+     * @param t
+     *            The throwable object to log
+     */
+    public static void log(final String category, final Level level, final String msg, final Throwable t)
+    {
+        if (isLoggable(category, level)) {
+            publish(category, level, msg, t);
+        }
+    }
+
+    /**
+     * Hands a message over to the handler. The category stands for the source of the record, so that the caller does not
+     * have to be looked up from the stack trace.
+     * 
+     * @param category
+     *            The category of the message
+     * @param level
+     *            The level of the message
+     * @param msg
+     *            The text of the message
+     * @param t
+     *            The throwable object to log, or null
+     */
+    private static void publish(final String category, final Level level, final String msg, final Throwable t)
+    {
+        final LogRecord record = new LogRecord(level, msg);
+        record.setLoggerName(category);
+        record.setSourceClassName(category);
+        record.setThrown(t);
+        getHandler().publish(record);
+    }
+
+    /**
+     * Sets the level of categories that do not have one of their own.
+     * 
+     * @param level
+     *            The new level
+     */
+    public static void setDefaultLevel(final Level level)
+    {
+        sDefaultLevel = level;
+    }
+
+    /**
+     * Sets the level of a category.
+     * 
+     * @param category
+     *            The category
+     * @param level
+     *            The new level, or null to use the default level
+     */
+    public static void setLevel(final String category, final Level level)
+    {
+        if (level == null) {
+            sLevels.remove(category);
+        }
+        else {
+            sLevels.put(category, level);
+        }
     }
 
     /**
@@ -65,8 +281,7 @@ public class LoggerUtils
      */
     public static void severe(final String msg)
     {
-        // use getLogger() in case the Logger hasn't been created yet
-        getLogger().severe(msg);
+        log(sDefaultCategory, Level.SEVERE, msg);
     }
 
     /**
@@ -79,8 +294,7 @@ public class LoggerUtils
      */
     public static void severe(final String msg, final Throwable t)
     {
-        // use getLogger() in case the Logger hasn't been created yet
-        getLogger().log(Level.SEVERE, msg, t);
+        log(sDefaultCategory, Level.SEVERE, msg, t);
     }
 
     /**
@@ -91,7 +305,6 @@ public class LoggerUtils
      */
     public static void warning(final String msg)
     {
-        // use getLogger() in case the Logger hasn't been created yet
-        getLogger().warning(msg);
+        log(sDefaultCategory, Level.WARNING, msg);
     }
 }
@@ -5,6 +5,7 @@ import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import com.evervoid.client.graphics.geometry.Rectangle;
 import com.evervoid.state.geometry.GridLocation;
@@ -410,6 +411,24 @@ public class MathUtils
 		return Math.round(getRandomFloatBetween(min, max));
 	}
 
+	/**
+	 * Same as getRandomIntBetween(int, int), but drawing from the given random number generator rather than the global one, so
+	 * that the result can be reproduced from the seed of the generator.
+	 * 
+	 * @param random
+	 *            The random number generator to draw from
+	 * @param min
+	 *            The minimum value of the number
+	 * @param max
+	 *            The maximum value of the number
+	 * @return A random integer in the range [int, max].
+	 * @precondition, max > min
+	 */
+	public static int getRandomIntBetween(final Random random, final int min, final int max)
+	{
+		return Math.round((float) clampDouble(min, min + random.nextDouble() * (max - min), max));
+	}
+
 	/**
 	 * @param xMin
 	 *            The minimum x value of the vector
@@ -0,0 +1,440 @@
+package com.evervoid.utils;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks after a delay, on a single thread. Tasks are hashed into the buckets of a wheel by the tick they are due at; the
+ * wheel advances one bucket per tick and runs the due tasks of that bucket, so that scheduling and cancelling a task costs
+ * the same no matter how many are pending. Delays longer than a turn of the wheel are counted in rounds. Tasks run late by
+ * up to one tick; how late they actually run (the drift) is measured, and exposed along with the number of tasks run.
+ * <p>
+ * Tasks run on the thread of the wheel, so they must be short: hand longer work over to another thread. One wheel is shared
+ * by the whole program, for turn deadlines, pinging rounds and reassembly timeouts alike.
+ */
+public class TimingWheel implements Runnable
+{
+	/**
+	 * The Timeouts hashed to one slot of the wheel, as a doubly linked list. Only the wheel thread touches buckets.
+	 */
+	private static class Bucket
+	{
+		/**
+		 * The first Timeout of the list.
+		 */
+		private Timeout aHead = null;
+		/**
+		 * The last Timeout of the list.
+		 */
+		private Timeout aTail = null;
+
+		/**
+		 * Adds a Timeout at the end of the list.
+		 * 
+		 * @param timeout
+		 *            The Timeout
+		 */
+		void add(final Timeout timeout)
+		{
+			timeout.aBucket = this;
+			if (aHead == null) {
+				aHead = aTail = timeout;
+			}
+			else {
+				aTail.aNext = timeout;
+				timeout.aPrevious = aTail;
+				aTail = timeout;
+			}
+		}
+
+		/**
+		 * Removes a Timeout from the list.
+		 * 
+		 * @param timeout
+		 *            The Timeout
+		 * @return The Timeout that followed it
+		 */
+		Timeout remove(final Timeout timeout)
+		{
+			final Timeout next = timeout.aNext;
+			if (timeout.aPrevious != null) {
+				timeout.aPrevious.aNext = next;
+			}
+			if (next != null) {
+				next.aPrevious = timeout.aPrevious;
+			}
+			if (timeout == aHead) {
+				aHead = next;
+			}
+			if (timeout == aTail) {
+				aTail = timeout.aPrevious;
+			}
+			timeout.aPrevious = null;
+			timeout.aNext = null;
+			timeout.aBucket = null;
+			return next;
+		}
+	}
+
+	/**
+	 * A task scheduled on the wheel.
+	 */
+	public static class Timeout
+	{
+		/**
+		 * State of a Timeout that has been cancelled.
+		 */
+		private static final int sCancelled = 1;
+		/**
+		 * State of a Timeout whose task has been run.
+		 */
+		private static final int sExpired = 2;
+		/**
+		 * State of a Timeout that is waiting to be run.
+		 */
+		private static final int sPending = 0;
+		/**
+		 * The bucket the Timeout is in; null until the wheel thread puts it in one.
+		 */
+		private Bucket aBucket = null;
+		/**
+		 * When the task is due, as given by System.nanoTime().
+		 */
+		private final long aDeadline;
+		/**
+		 * The next Timeout in the bucket.
+		 */
+		private Timeout aNext = null;
+		/**
+		 * The previous Timeout in the bucket.
+		 */
+		private Timeout aPrevious = null;
+		/**
+		 * Number of turns of the wheel left before the task is due.
+		 */
+		private long aRounds = 0;
+		/**
+		 * The state of the Timeout: pending, cancelled or expired.
+		 */
+		private final AtomicInteger aState = new AtomicInteger(sPending);
+		/**
+		 * The task to run.
+		 */
+		private final Runnable aTask;
+		/**
+		 * The wheel the Timeout is scheduled on.
+		 */
+		private final TimingWheel aWheel;
+
+		/**
+		 * @param wheel
+		 *            The wheel the Timeout is scheduled on
+		 * @param task
+		 *            The task to run
+		 * @param deadline
+		 *            When the task is due, as given by System.nanoTime()
+		 */
+		private Timeout(final TimingWheel wheel, final Runnable task, final long deadline)
+		{
+			aWheel = wheel;
+			aTask = task;
+			aDeadline = deadline;
+		}
+
+		/**
+		 * Cancels the task, if it has not run yet.
+		 * 
+		 * @return Whether the task was cancelled; false if it already ran or was already cancelled
+		 */
+		public boolean cancel()
+		{
+			if (!aState.compareAndSet(sPending, sCancelled)) {
+				return false;
+			}
+			aWheel.aCancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * @return Whether the task was cancelled
+		 */
+		public boolean isCancelled()
+		{
+			return aState.get() == sCancelled;
+		}
+
+		/**
+		 * @return Whether the task was run
+		 */
+		public boolean isExpired()
+		{
+			return aState.get() == sExpired;
+		}
+	}
+
+	/**
+	 * Number of buckets of the shared wheel; a turn of the wheel lasts this many ticks.
+	 */
+	private static final int sBuckets = 512;
+	/**
+	 * The wheel shared by the whole program, created on first use.
+	 */
+	private static TimingWheel sInstance = null;
+	/**
+	 * Duration of a tick of the shared wheel, in milliseconds.
+	 */
+	private static final long sTickMillis = 10;
+
+	/**
+	 * @return The wheel shared by the whole program.
+	 */
+	public static synchronized TimingWheel getInstance()
+	{
+		if (sInstance == null) {
+			sInstance = new TimingWheel("everVoid scheduler", sTickMillis, sBuckets);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * The slots of the wheel.
+	 */
+	private final Bucket[] aBuckets;
+	/**
+	 * Timeouts cancelled since the last tick, to be removed from their bucket.
+	 */
+	private final Queue<Timeout> aCancelled = new ConcurrentLinkedQueue<Timeout>();
+	/**
+	 * Number of tasks that have been run.
+	 */
+	private final AtomicLong aExpired = new AtomicLong();
+	/**
+	 * Number of tasks that have been run but threw an exception.
+	 */
+	private final AtomicLong aFailed = new AtomicLong();
+	/**
+	 * The largest drift of a task, in nanoseconds.
+	 */
+	private final AtomicLong aMaxDrift = new AtomicLong();
+	/**
+	 * Timeouts scheduled since the last tick, to be put in their bucket.
+	 */
+	private final Queue<Timeout> aNew = new ConcurrentLinkedQueue<Timeout>();
+	/**
+	 * Number of tasks scheduled and neither run nor cancelled yet.
+	 */
+	private final AtomicInteger aPending = new AtomicInteger();
+	/**
+	 * When the wheel started, as given by System.nanoTime(); ticks are counted from then.
+	 */
+	private final long aStart;
+	/**
+	 * The thread of the wheel.
+	 */
+	private final Thread aThread;
+	/**
+	 * Number of ticks since the wheel started.
+	 */
+	private long aTick = 0;
+	/**
+	 * Duration of a tick, in nanoseconds.
+	 */
+	private final long aTickNanos;
+	/**
+	 * Sum of the drifts of all tasks, in nanoseconds.
+	 */
+	private final AtomicLong aTotalDrift = new AtomicLong();
+
+	/**
+	 * Creates a wheel and starts its thread.
+	 * 
+	 * @param name
+	 *            The name of the thread of the wheel
+	 * @param tickMillis
+	 *            Duration of a tick, in milliseconds
+	 * @param buckets
+	 *            Number of buckets; rounded up to a power of two
+	 */
+	public TimingWheel(final String name, final long tickMillis, final int buckets)
+	{
+		aBuckets = new Bucket[Integer.highestOneBit(Math.max(1, buckets - 1)) << 1];
+		for (int i = 0; i < aBuckets.length; i++) {
+			aBuckets[i] = new Bucket();
+		}
+		aTickNanos = tickMillis * 1000000L;
+		aStart = System.nanoTime();
+		aThread = new Thread(this, name);
+		aThread.setDaemon(true);
+		aThread.start();
+	}
+
+	/**
+	 * Runs the due tasks of the current bucket, and counts down the rounds of the others.
+	 * 
+	 * @param bucket
+	 *            The current bucket
+	 */
+	private void expire(final Bucket bucket)
+	{
+		Timeout timeout = bucket.aHead;
+		while (timeout != null) {
+			if (timeout.aRounds > 0) {
+				timeout.aRounds--;
+				timeout = timeout.aNext;
+				continue;
+			}
+			final Timeout next = bucket.remove(timeout);
+			if (timeout.aState.compareAndSet(Timeout.sPending, Timeout.sExpired)) {
+				aPending.decrementAndGet();
+				final long drift = Math.max(0, System.nanoTime() - timeout.aDeadline);
+				aTotalDrift.addAndGet(drift);
+				long max = aMaxDrift.get();
+				while (drift > max && !aMaxDrift.compareAndSet(max, drift)) {
+					max = aMaxDrift.get();
+				}
+				aExpired.incrementAndGet();
+				try {
+					timeout.aTask.run();
+				}
+				catch (final RuntimeException e) {
+					aFailed.incrementAndGet();
+					LoggerUtils.severe("Uncaught exception in a task run by " + aThread.getName(), e);
+				}
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * @return Number of tasks that have been run.
+	 */
+	public long getExpired()
+	{
+		return aExpired.get();
+	}
+
+	/**
+	 * @return Number of tasks that have been run but threw an exception.
+	 */
+	public long getFailed()
+	{
+		return aFailed.get();
+	}
+
+	/**
+	 * @return The largest drift of a task, in milliseconds.
+	 */
+	public double getMaxDrift()
+	{
+		return aMaxDrift.get() / 1e6;
+	}
+
+	/**
+	 * @return The average drift of the tasks run so far, in milliseconds.
+	 */
+	public double getMeanDrift()
+	{
+		final long expired = aExpired.get();
+		return expired == 0 ? 0 : aTotalDrift.get() / 1e6 / expired;
+	}
+
+	/**
+	 * @return Number of tasks scheduled and neither run nor cancelled yet.
+	 */
+	public int getPending()
+	{
+		return aPending.get();
+	}
+
+	/**
+	 * Resets the drift measurements and task counters.
+	 */
+	public void resetMetrics()
+	{
+		aExpired.set(0);
+		aFailed.set(0);
+		aMaxDrift.set(0);
+		aTotalDrift.set(0);
+	}
+
+	@Override
+	public void run()
+	{
+		while (true) {
+			final long nextTick = aStart + (aTick + 1) * aTickNanos;
+			long sleep = nextTick - System.nanoTime();
+			while (sleep > 0) {
+				try {
+					Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+				}
+				catch (final InterruptedException e) {
+					// The wheel runs for as long as the program does
+				}
+				sleep = nextTick - System.nanoTime();
+			}
+			transferCancelled();
+			transferNew();
+			expire(aBuckets[(int) (aTick & aBuckets.length - 1)]);
+			aTick++;
+		}
+	}
+
+	/**
+	 * Runs a task after a delay.
+	 * 
+	 * @param task
+	 *            The task; it runs on the thread of the wheel, so it must be short
+	 * @param delayMillis
+	 *            The delay, in milliseconds
+	 * @return The Timeout of the task, to cancel it
+	 */
+	public Timeout schedule(final Runnable task, final long delayMillis)
+	{
+		final Timeout timeout = new Timeout(this, task, System.nanoTime() + Math.max(0, delayMillis) * 1000000L);
+		aPending.incrementAndGet();
+		aNew.add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(Locale.US, "%s: %d tasks run, %d failed, %d pending; drift %.2f ms average, %.2f ms max",
+				aThread.getName(), getExpired(), getFailed(), getPending(), getMeanDrift(), getMaxDrift());
+	}
+
+	/**
+	 * Removes the Timeouts cancelled since the last tick from their bucket.
+	 */
+	private void transferCancelled()
+	{
+		Timeout timeout;
+		while ((timeout = aCancelled.poll()) != null) {
+			aPending.decrementAndGet();
+			if (timeout.aBucket != null) {
+				timeout.aBucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * Puts the Timeouts scheduled since the last tick in the bucket of the tick they are due at.
+	 */
+	private void transferNew()
+	{
+		Timeout timeout;
+		while ((timeout = aNew.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue; // Already cancelled, and not in any bucket
+			}
+			// A tick is processed once it is over, so a task runs on the tick its deadline falls in; tasks due before the
+			// current tick run on the current tick
+			final long due = Math.max(aTick, (timeout.aDeadline - aStart) / aTickNanos);
+			timeout.aRounds = (due - aTick) / aBuckets.length;
+			aBuckets[(int) (due & aBuckets.length - 1)].add(timeout);
+		}
+	}
+}